@@ -0,0 +1,168 @@
+package cn.javen.tool.reversegeo.benchmark;
+
+/**
+ * @Description 批量逆地理编码基准测试：同一批混合点（80% 内部、10% 边界、10% 查不到）分别用
+ * 单线程循环、旧 batch-reverse 接口的 parallelStream 写法、BatchReverseService 的分块流水线处理，
+ * 以及 SpatialJoinService 按 Hilbert 曲线排序、按 tile 查询的批量空间连接；另有 RegionQueryService 的区域查询
+ * @Author: Javen
+ * @CreateTime: 2025/10/28 11:40
+ */
+
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.RegionDistrict;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.BatchReverseService;
+import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import cn.javen.tool.reversegeo.service.GeoMetrics;
+import cn.javen.tool.reversegeo.service.GeocodeExecutor;
+import cn.javen.tool.reversegeo.service.RegionQueryService;
+import cn.javen.tool.reversegeo.service.SpatialJoinService;
+import cn.javen.tool.reversegeo.service.StreetDictionary;
+import org.locationtech.jts.geom.Geometry;
+import org.openjdk.jmh.annotations.*;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+import java.util.stream.IntStream;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class BatchBenchmark {
+
+    @Param({"10000"})
+    public int streets;
+
+    @Param({"16"})
+    public int verticesPerEdge;
+
+    @Param({"10000"})
+    public int points;
+
+    private SyntheticDataset dataset;
+    private GeoDataLoader loader;
+    private GeocodeExecutor geocodeExecutor;
+    private BatchReverseService batchReverseService;
+    private SpatialJoinService spatialJoinService;
+    private RegionQueryService regionQueryService;
+    private double[] coords;
+    private Geometry region;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = SyntheticDataset.generate(Files.createTempDirectory("geo-bench"), streets, verticesPerEdge);
+        loader = new GeoDataLoader(dataset.properties());
+        geocodeExecutor = new GeocodeExecutor(dataset.properties());
+        batchReverseService = new BatchReverseService(loader, dataset.properties(), GeoMetrics.noop(), geocodeExecutor,
+                new StreetDictionary(loader));
+        spatialJoinService = new SpatialJoinService(loader, dataset.properties(), GeoMetrics.noop(),
+                new StreetDictionary(loader), geocodeExecutor);
+        regionQueryService = new RegionQueryService(loader, dataset.properties(), geocodeExecutor);
+        coords = dataset.mixedPoints(points, 7);
+        // 合成数据覆盖 1 度 × 1 度（10000 个街道时），菱形约占其中 1/8
+        region = regionQueryService.parse(
+                "POLYGON ((116.25 39.5, 116.5 39.25, 116.75 39.5, 116.5 39.75, 116.25 39.5))", CoordinateSystem.WGS84);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        geocodeExecutor.shutdown();
+        loader.shutdown();
+        dataset.delete();
+    }
+
+    @Benchmark
+    public void sequential(Blackhole blackhole) {
+        for (int i = 0; i < points; i++) {
+            Street street = loader.reverseGeocode(coords[i * 2], coords[i * 2 + 1]);
+            if (street != null) {
+                blackhole.consume(street.getAdminPath());
+            }
+        }
+    }
+
+    /**
+     * 旧接口的写法：公共 ForkJoinPool 并行，每个点一个 Map
+     */
+    @Benchmark
+    public List<Map<String, String>> parallelStream() {
+        return IntStream.range(0, points).parallel().mapToObj(i -> {
+                    Street street = loader.reverseGeocode(coords[i * 2], coords[i * 2 + 1]);
+                    if (street == null) {
+                        return null;
+                    }
+                    Map<String, String> addr = loader.getAddress(street.getStreetId());
+                    addr.put("street", street.getName());
+                    addr.put("streetid", street.getStreetId());
+                    return addr;
+                })
+                .filter(Objects::nonNull)
+                .collect(Collectors.toList());
+    }
+
+    /**
+     * 新 batch-reverse 接口的写法：分块提交到 GeocodeExecutor 的线程池
+     */
+    @Benchmark
+    public Street[] geocodeAll() {
+        return batchReverseService.geocodeAll(coords, CoordinateSystem.WGS84);
+    }
+
+    /**
+     * 包含 NDJSON 序列化，输出丢弃
+     */
+    @Benchmark
+    public void bulkReverse() throws IOException {
+        batchReverseService.reverse(coords, CoordinateSystem.WGS84, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * 输入按 GCJ-02 处理，与 bulkReverse 对比坐标转换的开销（查询结果不同，只比较耗时）
+     */
+    @Benchmark
+    public void bulkReverseGcj02() throws IOException {
+        batchReverseService.reverse(coords, CoordinateSystem.GCJ02, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * 字典编码的二进制输出，与 bulkReverse 对比序列化开销
+     */
+    @Benchmark
+    public void bulkReverseBinary() throws IOException {
+        batchReverseService.reverseBinary(coords, CoordinateSystem.WGS84, OutputStream.nullOutputStream());
+    }
+
+    /**
+     * 批量空间连接，与 geocodeAll 对比（同样并行、不含序列化）
+     */
+    @Benchmark
+    public Street[] spatialJoin() {
+        return spatialJoinService.join(coords, points);
+    }
+
+    /**
+     * 区域查询首页，只判断凑满一页所需的候选
+     */
+    @Benchmark
+    public RegionQueryService.Page regionFirstPage() {
+        return regionQueryService.streets(region, false, null, 100);
+    }
+
+    /**
+     * 按区汇总并计算重叠面积，需要并行判断全部候选
+     */
+    @Benchmark
+    public List<RegionDistrict> regionDistricts() {
+        return regionQueryService.districts(region, true);
+    }
+}
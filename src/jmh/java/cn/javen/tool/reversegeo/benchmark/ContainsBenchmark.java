@@ -0,0 +1,103 @@
+package cn.javen.tool.reversegeo.benchmark;
+
+/**
+ * @Description 单个街道的点面判断基准测试：在合成街道的外包矩形内均匀取点（内部点和外部点都会覆盖到），
+ * method 参数切换判断方式：raw（Geometry.contains）、prepared（PreparedGeometry.contains）、
+ * locator（PolygonLocator 原始坐标）、index（GeoIndex.contains，简化多边形 + 容差带 + 原多边形）
+ * verticesPerEdge 越大多边形顶点越多，用于观察各方式随顶点数的变化
+ * @Author: Javen
+ * @CreateTime: 2025/10/9 14:20
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import cn.javen.tool.reversegeo.service.GeoIndex;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class ContainsBenchmark {
+
+    // 取样点数，2 的幂，便于用掩码循环取点
+    private static final int POINTS = 4096;
+
+    @Param({"16", "256"})
+    public int verticesPerEdge;
+
+    @Param({"raw", "prepared", "locator", "index"})
+    public String method;
+
+    private SyntheticDataset dataset;
+    private GeoDataLoader loader;
+    private GeoIndex index;
+    private Street[] streets;
+    private Point[] points;
+
+    /**
+     * 每个线程独立的取点游标
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+
+        int next() {
+            return next++ & (POINTS - 1);
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = SyntheticDataset.generate(Files.createTempDirectory("geo-bench"), 100, verticesPerEdge);
+        GeoProperties properties = dataset.properties();
+        properties.setPreparedGeometry(true);
+        loader = new GeoDataLoader(properties);
+        index = loader.getIndex();
+        GeometryFactory factory = loader.getGeometryFactory();
+
+        List<Street> all = loader.getStreets().stream().filter(s -> s.getPolygon() != null).toList();
+        Random random = new Random(42);
+        streets = new Street[POINTS];
+        points = new Point[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            Street street = all.get(random.nextInt(all.size()));
+            Envelope env = street.getPolygon().getEnvelopeInternal();
+            streets[i] = street;
+            points[i] = factory.createPoint(new Coordinate(env.getMinX() + random.nextDouble() * env.getWidth(),
+                    env.getMinY() + random.nextDouble() * env.getHeight()));
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loader.shutdown();
+        dataset.delete();
+    }
+
+    @Benchmark
+    public boolean contains(Cursor cursor) {
+        int i = cursor.next();
+        Street street = streets[i];
+        Point point = points[i];
+        return switch (method) {
+            case "prepared" -> street.getPreparedPolygon().contains(point);
+            case "locator" -> street.getLocator().contains(point.getX(), point.getY());
+            case "index" -> index.contains(street, point.getX(), point.getY());
+            default -> street.getPolygon().contains(point);
+        };
+    }
+}
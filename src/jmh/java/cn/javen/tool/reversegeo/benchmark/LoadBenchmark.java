@@ -0,0 +1,81 @@
+package cn.javen.tool.reversegeo.benchmark;
+
+/**
+ * @Description 加载与建索引基准测试：完整构建一份 GeoIndex（CSV + WKT 解析、PreparedGeometry、STRtree），
+ * 以及单独的 STRtree 构建；threads 为加载线程数，0 表示 CPU 核数
+ * @Author: Javen
+ * @CreateTime: 2025/10/28 11:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.STRtreeIndex;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.GeoIndex;
+import cn.javen.tool.reversegeo.service.GeoIndexBuilder;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.PrecisionModel;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@Fork(1)
+@Warmup(iterations = 3)
+@Measurement(iterations = 10)
+public class LoadBenchmark {
+
+    @Param({"10000", "100000"})
+    public int streets;
+
+    @Param({"16"})
+    public int verticesPerEdge;
+
+    @Param({"1", "0"})
+    public int threads;
+
+    private SyntheticDataset dataset;
+    private GeometryFactory geometryFactory;
+    private List<Street> loaded;
+    private ForkJoinPool pool;
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = SyntheticDataset.generate(Files.createTempDirectory("geo-bench"), streets, verticesPerEdge);
+        geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
+        loaded = new GeoIndexBuilder(properties(), geometryFactory).build().getStreets();
+        pool = new ForkJoinPool(threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        pool.shutdownNow();
+        dataset.delete();
+    }
+
+    private GeoProperties properties() {
+        GeoProperties properties = dataset.properties();
+        properties.getLoad().setThreads(threads);
+        return properties;
+    }
+
+    /**
+     * 与 GeoDataLoader 启动、热加载时执行的构建过程相同
+     */
+    @Benchmark
+    @BenchmarkMode(Mode.SingleShotTime)
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public GeoIndex load() {
+        return new GeoIndexBuilder(properties(), geometryFactory).build();
+    }
+
+    @Benchmark
+    @BenchmarkMode({Mode.AverageTime, Mode.SampleTime})
+    @OutputTimeUnit(TimeUnit.MILLISECONDS)
+    public STRtreeIndex buildSpatialIndex() {
+        return GeoIndexBuilder.buildSpatialIndex(loaded, pool);
+    }
+}
@@ -0,0 +1,136 @@
+package cn.javen.tool.reversegeo.benchmark;
+
+/**
+ * @Description 单点逆地理编码基准测试：分别测量街道内部、紧贴公共边、查不到三类点，以及按街道编码查省市区
+ * strategy 参数切换查询策略，便于在同一份数据上对比：
+ * raw（原始 Geometry.contains）、prepared（PolygonLocator 原始坐标点面索引）、grid（分层网格查找表）、cache（量化网格结果缓存）
+ * prepared 与 grid 下 interior / boundary / miss 的查询路径不创建对象，gc.alloc.rate.norm 应接近 0 B/op
+ * track / trackNear 对比同一条 GPS 轨迹逐点独立查询与按上一个点的街道优先查询
+ * @Author: Javen
+ * @CreateTime: 2025/10/28 11:20
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import org.openjdk.jmh.annotations.*;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+@State(Scope.Benchmark)
+@BenchmarkMode({Mode.Throughput, Mode.SampleTime})
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class LookupBenchmark {
+
+    // 每类点的个数，2 的幂，便于用掩码循环取点
+    private static final int POINTS = 4096;
+
+    @Param({"10000"})
+    public int streets;
+
+    @Param({"16"})
+    public int verticesPerEdge;
+
+    @Param({"raw", "prepared", "grid", "cache"})
+    public String strategy;
+
+    private SyntheticDataset dataset;
+    private GeoDataLoader loader;
+    private double[] interior;
+    private double[] boundary;
+    private double[] miss;
+    private double[] track;
+    private String[] streetIds;
+
+    /**
+     * 每个线程独立的取点游标
+     */
+    @State(Scope.Thread)
+    public static class Cursor {
+        int next;
+        // 轨迹查询中上一个点的结果
+        Street previous;
+
+        int next() {
+            return (next++ & (POINTS - 1)) * 2;
+        }
+    }
+
+    @Setup(Level.Trial)
+    public void setUp() throws IOException {
+        dataset = SyntheticDataset.generate(Files.createTempDirectory("geo-bench"), streets, verticesPerEdge);
+        GeoProperties properties = dataset.properties();
+        properties.setPreparedGeometry(!"raw".equals(strategy));
+        properties.getGrid().setEnabled("grid".equals(strategy));
+        properties.getCache().setEnabled("cache".equals(strategy));
+        loader = new GeoDataLoader(properties);
+
+        interior = dataset.interiorPoints(POINTS, 1);
+        boundary = dataset.boundaryPoints(POINTS, 2);
+        miss = dataset.missPoints(POINTS, 3);
+        track = dataset.trackPoints(POINTS, 30, 4);
+        List<String> ids = dataset.getStreetIds();
+        streetIds = new String[POINTS];
+        for (int i = 0; i < POINTS; i++) {
+            streetIds[i] = ids.get(i % ids.size());
+        }
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+        loader.shutdown();
+        dataset.delete();
+    }
+
+    @Benchmark
+    public Street interior(Cursor cursor) {
+        int i = cursor.next();
+        return loader.reverseGeocode(interior[i], interior[i + 1]);
+    }
+
+    @Benchmark
+    public Street boundary(Cursor cursor) {
+        int i = cursor.next();
+        return loader.reverseGeocode(boundary[i], boundary[i + 1]);
+    }
+
+    @Benchmark
+    public Street miss(Cursor cursor) {
+        int i = cursor.next();
+        return loader.reverseGeocode(miss[i], miss[i + 1]);
+    }
+
+    @Benchmark
+    public Street track(Cursor cursor) {
+        int i = cursor.next();
+        return loader.reverseGeocode(track[i], track[i + 1]);
+    }
+
+    @Benchmark
+    public Street trackNear(Cursor cursor) {
+        int i = cursor.next();
+        Street street = loader.reverseGeocodeNear(cursor.previous, track[i], track[i + 1]);
+        cursor.previous = street;
+        return street;
+    }
+
+    @Benchmark
+    public AdminPath getAdminPath(Cursor cursor) {
+        return loader.getAdminPath(streetIds[cursor.next() / 2]);
+    }
+
+    /**
+     * 旧接口，每次返回新建的 Map
+     */
+    @Benchmark
+    public Object getAddress(Cursor cursor) {
+        return loader.getAddress(streetIds[cursor.next() / 2]);
+    }
+}
@@ -0,0 +1,297 @@
+package cn.javen.tool.reversegeo.benchmark;
+
+/**
+ * @Description 基准测试用的合成数据：side × side 个相邻街道多边形铺满一块区域，不依赖真实数据，可离线运行
+ * 多边形的顶点取自一张共享的抖动格点，相邻街道的公共边完全重合，没有缝隙和重叠；
+ * 少量格子留空，用于构造查不到的点
+ * @Author: Javen
+ * @CreateTime: 2025/10/28 10:10
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Random;
+import java.util.TreeMap;
+import java.util.stream.Stream;
+
+public class SyntheticDataset {
+
+    private static final double ORIGIN_LNG = 116.0;
+    private static final double ORIGIN_LAT = 39.0;
+    // 单个街道格子的边长（度），约 1km
+    private static final double CELL_SIZE = 0.01;
+
+    private final Path dir;
+    private final int side;
+    private final int verticesPerEdge;
+    // 共享格点坐标，(side * verticesPerEdge + 1) ^ 2 个
+    private final double[][] latticeX;
+    private final double[][] latticeY;
+    private final List<String> streetIds = new ArrayList<>();
+
+    private SyntheticDataset(Path dir, int streets, int verticesPerEdge) {
+        this.dir = dir;
+        this.side = Math.max(1, (int) Math.round(Math.sqrt(streets)));
+        this.verticesPerEdge = Math.max(2, verticesPerEdge);
+        int m = side * this.verticesPerEdge + 1;
+        double step = CELL_SIZE / this.verticesPerEdge;
+        this.latticeX = new double[m][m];
+        this.latticeY = new double[m][m];
+        // 内部格点在两个方向上各抖动不超过 0.3 个步长，边始终不会自交；最外圈不抖动，保持外包矩形规整
+        Random random = new Random(20251028L);
+        for (int i = 0; i < m; i++) {
+            for (int j = 0; j < m; j++) {
+                boolean border = i == 0 || j == 0 || i == m - 1 || j == m - 1;
+                double dx = border ? 0 : (random.nextDouble() - 0.5) * 0.6 * step;
+                double dy = border ? 0 : (random.nextDouble() - 0.5) * 0.6 * step;
+                latticeX[i][j] = ORIGIN_LNG + i * step + dx;
+                latticeY[i][j] = ORIGIN_LAT + j * step + dy;
+            }
+        }
+    }
+
+    /**
+     * 在 dir 下生成街道 CSV 与省、市、区映射文件
+     *
+     * @param streets 街道数（取最接近的平方数）
+     * @param verticesPerEdge 每条边的顶点数，多边形顶点数约为其 4 倍
+     */
+    public static SyntheticDataset generate(Path dir, int streets, int verticesPerEdge) {
+        SyntheticDataset dataset = new SyntheticDataset(dir, streets, verticesPerEdge);
+        try {
+            Files.createDirectories(dir);
+            dataset.writeFiles();
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+        return dataset;
+    }
+
+    /**
+     * 指向合成数据的配置，不使用快照
+     */
+    public GeoProperties properties() {
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(dir.resolve("streets.csv").toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        return properties;
+    }
+
+    public List<String> getStreetIds() {
+        return streetIds;
+    }
+
+    /**
+     * 街道内部的点：距格子中心不超过 1/4 格，远离抖动后的边界
+     */
+    public double[] interiorPoints(int count, long seed) {
+        Random random = new Random(seed);
+        double[] points = new double[count * 2];
+        for (int n = 0; n < count; n++) {
+            int cx, cy;
+            do {
+                cx = random.nextInt(side);
+                cy = random.nextInt(side);
+            } while (isEmpty(cx, cy));
+            points[n * 2] = ORIGIN_LNG + (cx + 0.5 + (random.nextDouble() - 0.5) * 0.5) * CELL_SIZE;
+            points[n * 2 + 1] = ORIGIN_LAT + (cy + 0.5 + (random.nextDouble() - 0.5) * 0.5) * CELL_SIZE;
+        }
+        return points;
+    }
+
+    /**
+     * 紧贴街道公共边的点：取左边界上相邻两个格点的中点，横向偏移 1e-9 度，
+     * 外包矩形筛选后会有多个候选，需要逐个做精确判断
+     */
+    public double[] boundaryPoints(int count, long seed) {
+        Random random = new Random(seed);
+        double[] points = new double[count * 2];
+        for (int n = 0; n < count; n++) {
+            int cx = 1 + random.nextInt(Math.max(1, side - 1));
+            int cy = random.nextInt(side);
+            int i = cx * verticesPerEdge;
+            int j = cy * verticesPerEdge + random.nextInt(verticesPerEdge);
+            double x = (latticeX[i][j] + latticeX[i][j + 1]) / 2;
+            double y = (latticeY[i][j] + latticeY[i][j + 1]) / 2;
+            points[n * 2] = x + (random.nextBoolean() ? 1e-9 : -1e-9);
+            points[n * 2 + 1] = y;
+        }
+        return points;
+    }
+
+    /**
+     * 查不到的点：一半落在留空的格子中心，一半在数据范围之外
+     */
+    public double[] missPoints(int count, long seed) {
+        Random random = new Random(seed);
+        List<int[]> empty = new ArrayList<>();
+        for (int cx = 0; cx < side; cx++) {
+            for (int cy = 0; cy < side; cy++) {
+                if (isEmpty(cx, cy)) {
+                    empty.add(new int[]{cx, cy});
+                }
+            }
+        }
+        double[] points = new double[count * 2];
+        for (int n = 0; n < count; n++) {
+            if (n % 2 == 0 && !empty.isEmpty()) {
+                int[] cell = empty.get(random.nextInt(empty.size()));
+                points[n * 2] = ORIGIN_LNG + (cell[0] + 0.5) * CELL_SIZE;
+                points[n * 2 + 1] = ORIGIN_LAT + (cell[1] + 0.5) * CELL_SIZE;
+            } else {
+                points[n * 2] = ORIGIN_LNG - 1 - random.nextDouble();
+                points[n * 2 + 1] = ORIGIN_LAT - 1 - random.nextDouble();
+            }
+        }
+        return points;
+    }
+
+    /**
+     * 按比例混合内部、边界和查不到的点，模拟批量请求
+     */
+    public double[] mixedPoints(int count, long seed) {
+        int boundary = count / 10;
+        int miss = count / 10;
+        int interior = count - boundary - miss;
+        double[] points = new double[count * 2];
+        System.arraycopy(interiorPoints(interior, seed), 0, points, 0, interior * 2);
+        System.arraycopy(boundaryPoints(boundary, seed + 1), 0, points, interior * 2, boundary * 2);
+        System.arraycopy(missPoints(miss, seed + 2), 0, points, (interior + boundary) * 2, miss * 2);
+        // 打乱顺序，避免分块后每块的耗时差异过大
+        Random random = new Random(seed + 3);
+        for (int n = count - 1; n > 0; n--) {
+            int k = random.nextInt(n + 1);
+            double x = points[n * 2], y = points[n * 2 + 1];
+            points[n * 2] = points[k * 2];
+            points[n * 2 + 1] = points[k * 2 + 1];
+            points[k * 2] = x;
+            points[k * 2 + 1] = y;
+        }
+        return points;
+    }
+
+    /**
+     * GPS 轨迹：从随机的街道内部出发随机游走，每步约 stepMeters 米，大部分相邻点落在同一街道内
+     */
+    public double[] trackPoints(int count, double stepMeters, long seed) {
+        Random random = new Random(seed);
+        double step = stepMeters / 111_000.0;
+        double[] start = interiorPoints(1, seed);
+        double x = start[0];
+        double y = start[1];
+        double heading = random.nextDouble() * Math.PI * 2;
+        double[] points = new double[count * 2];
+        for (int n = 0; n < count; n++) {
+            heading += (random.nextDouble() - 0.5) * 0.5;
+            double nx = x + Math.cos(heading) * step;
+            double ny = y + Math.sin(heading) * step;
+            // 走出数据范围时掉头
+            if (nx < ORIGIN_LNG || nx > ORIGIN_LNG + side * CELL_SIZE
+                    || ny < ORIGIN_LAT || ny > ORIGIN_LAT + side * CELL_SIZE) {
+                heading += Math.PI;
+                nx = x;
+                ny = y;
+            }
+            x = nx;
+            y = ny;
+            points[n * 2] = x;
+            points[n * 2 + 1] = y;
+        }
+        return points;
+    }
+
+    public void delete() {
+        try (Stream<Path> files = Files.walk(dir)) {
+            files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+        } catch (IOException e) {
+            throw new UncheckedIOException(e);
+        }
+    }
+
+    private boolean isEmpty(int cx, int cy) {
+        return (cx * 31 + cy * 17) % 13 == 0;
+    }
+
+    private void writeFiles() throws IOException {
+        TreeMap<String, String> provinces = new TreeMap<>();
+        TreeMap<String, String> cities = new TreeMap<>();
+        TreeMap<String, String> districts = new TreeMap<>();
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("streets.csv"), StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int cx = 0; cx < side; cx++) {
+                for (int cy = 0; cy < side; cy++) {
+                    if (isEmpty(cx, cy)) {
+                        continue;
+                    }
+                    // 每 40 个街道一个区，每 10 个区一个市，每 10 个市一个省
+                    int cell = cx * side + cy;
+                    int districtNo = cell / 40;
+                    String province = String.valueOf(11 + (districtNo / 100) % 89);
+                    String city = province + String.format("%02d", (districtNo / 10) % 10 + 1);
+                    String district = city + String.format("%02d", districtNo % 10 + 1);
+                    provinces.put(province, "省" + province);
+                    cities.put(city, "市" + city);
+                    districts.put(district, "区" + district);
+
+                    String streetId = district + String.format("%06d", cell);
+                    streetIds.add(streetId);
+                    double centerX = ORIGIN_LNG + (cx + 0.5) * CELL_SIZE;
+                    double centerY = ORIGIN_LAT + (cy + 0.5) * CELL_SIZE;
+                    writer.write(streetId + ",街道" + cell + ",4,POINT(" + centerX + " " + centerY + "),\"");
+                    writePolygon(writer, cx, cy);
+                    writer.write("\"\n");
+                }
+            }
+        }
+        writeMapping(dir.resolve("province.txt"), provinces);
+        writeMapping(dir.resolve("city.txt"), cities);
+        writeMapping(dir.resolve("district.txt"), districts);
+    }
+
+    /**
+     * 沿下、右、上、左四条边逆时针取格点，首尾闭合
+     */
+    private void writePolygon(Writer writer, int cx, int cy) throws IOException {
+        int k = verticesPerEdge;
+        int i0 = cx * k, j0 = cy * k;
+        StringBuilder wkt = new StringBuilder("POLYGON ((");
+        for (int t = 0; t < k; t++) {
+            appendVertex(wkt, i0 + t, j0);
+        }
+        for (int t = 0; t < k; t++) {
+            appendVertex(wkt, i0 + k, j0 + t);
+        }
+        for (int t = 0; t < k; t++) {
+            appendVertex(wkt, i0 + k - t, j0 + k);
+        }
+        for (int t = 0; t < k; t++) {
+            appendVertex(wkt, i0, j0 + k - t);
+        }
+        wkt.append(latticeX[i0][j0]).append(' ').append(latticeY[i0][j0]).append("))");
+        writer.write(wkt.toString());
+    }
+
+    private void appendVertex(StringBuilder wkt, int i, int j) {
+        wkt.append(latticeX[i][j]).append(' ').append(latticeY[i][j]).append(", ");
+    }
+
+    private static void writeMapping(Path file, TreeMap<String, String> mapping) throws IOException {
+        try (BufferedWriter writer = Files.newBufferedWriter(file, StandardCharsets.UTF_8)) {
+            for (var entry : mapping.entrySet()) {
+                writer.write(entry.getKey() + "," + entry.getValue());
+                writer.newLine();
+            }
+        }
+    }
+}
@@ -0,0 +1,182 @@
+package cn.javen.tool.reversegeo.loadtest;
+
+/**
+ * @Description 混合负载测试：若干单点查询客户端与若干批量查询客户端同时压测运行中的服务，
+ * 持续指定时间后按请求类型输出 p50/p99/p999 延迟、吞吐量与 429 次数
+ * 用于对比开启 / 关闭准入控制（geo.serving.*）时，批量请求对单点请求尾延迟的影响
+ * 只依赖 JDK HttpClient，运行方式：./gradlew loadTest -PloadTestArgs="url=http://localhost:8081 single=32 batch=4"
+ * @Author: Javen
+ * @CreateTime: 2025/11/5 15:00
+ */
+
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+public class MixedLoadTest {
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = parse(args);
+        String url = options.getOrDefault("url", "http://localhost:8081");
+        int singleClients = Integer.parseInt(options.getOrDefault("single", "32"));
+        int batchClients = Integer.parseInt(options.getOrDefault("batch", "4"));
+        int batchSize = Integer.parseInt(options.getOrDefault("batchSize", "10000"));
+        long seconds = Long.parseLong(options.getOrDefault("duration", "60"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "10"));
+        // 随机点范围：minLng,minLat,maxLng,maxLat
+        String[] bbox = options.getOrDefault("bbox", "116.20,39.80,116.60,40.05").split(",");
+        double minLng = Double.parseDouble(bbox[0]);
+        double minLat = Double.parseDouble(bbox[1]);
+        double maxLng = Double.parseDouble(bbox[2]);
+        double maxLat = Double.parseDouble(bbox[3]);
+
+        HttpClient client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+
+        long warmupEnd = System.nanoTime() + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        Stats single = new Stats("single");
+        Stats batch = new Stats("batch");
+
+        List<Thread> threads = new ArrayList<>();
+        for (int i = 0; i < singleClients; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    double lng = random.nextDouble(minLng, maxLng);
+                    double lat = random.nextDouble(minLat, maxLat);
+                    HttpRequest request = HttpRequest.newBuilder(
+                                    URI.create(url + "/api/geocode/reverse?lng=" + lng + "&lat=" + lat))
+                            .GET().build();
+                    send(client, request, single, warmupEnd);
+                }
+            }, "load-single-" + i));
+        }
+        for (int i = 0; i < batchClients; i++) {
+            threads.add(new Thread(() -> {
+                ThreadLocalRandom random = ThreadLocalRandom.current();
+                while (System.nanoTime() < end) {
+                    StringBuilder body = new StringBuilder(batchSize * 24).append('[');
+                    for (int k = 0; k < batchSize; k++) {
+                        if (k > 0) {
+                            body.append(',');
+                        }
+                        body.append(random.nextDouble(minLng, maxLng)).append(',')
+                                .append(random.nextDouble(minLat, maxLat));
+                    }
+                    body.append(']');
+                    HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/geocode/bulk-reverse"))
+                            .header("Content-Type", "application/json")
+                            .POST(HttpRequest.BodyPublishers.ofString(body.toString()))
+                            .build();
+                    if (send(client, request, batch, warmupEnd) == 429) {
+                        // 按 Retry-After 的量级退避，避免空转
+                        sleep(200);
+                    }
+                }
+            }, "load-batch-" + i));
+        }
+
+        System.out.printf("压测 %s：单点客户端 %d，批量客户端 %d（每批 %d 点），预热 %ds，持续 %ds%n",
+                url, singleClients, batchClients, batchSize, warmupSeconds, seconds);
+        threads.forEach(Thread::start);
+        for (Thread thread : threads) {
+            thread.join();
+        }
+        single.print(seconds);
+        batch.print(seconds);
+    }
+
+    /**
+     * 发送请求并读完响应体（批量请求的延迟包含整个 NDJSON 响应），预热期内不计入统计
+     *
+     * @return 状态码，连接失败时为 -1
+     */
+    private static int send(HttpClient client, HttpRequest request, Stats stats, long warmupEnd) {
+        long start = System.nanoTime();
+        int status;
+        try {
+            HttpResponse<Void> response = client.send(request, HttpResponse.BodyHandlers.discarding());
+            status = response.statusCode();
+        } catch (Exception e) {
+            status = -1;
+        }
+        if (start >= warmupEnd) {
+            stats.record(status, System.nanoTime() - start);
+        }
+        return status;
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    static Map<String, String> parse(String[] args) {
+        Map<String, String> options = new HashMap<>();
+        for (String arg : args) {
+            int eq = arg.indexOf('=');
+            if (eq > 0) {
+                options.put(arg.substring(0, eq), arg.substring(eq + 1));
+            }
+        }
+        return options;
+    }
+
+    /**
+     * 一类请求的统计：成功请求的延迟（微秒）与 429、其它错误的次数
+     */
+    private static final class Stats {
+        private final String name;
+        private final List<Long> latencies = new ArrayList<>();
+        private final AtomicLong rejected = new AtomicLong();
+        private final AtomicLong errors = new AtomicLong();
+
+        Stats(String name) {
+            this.name = name;
+        }
+
+        void record(int status, long nanos) {
+            if (status == 429) {
+                rejected.incrementAndGet();
+            } else if (status == 200 || status == 404) {
+                // 404 为查不到街道，属于正常结果
+                synchronized (latencies) {
+                    latencies.add(TimeUnit.NANOSECONDS.toMicros(nanos));
+                }
+            } else {
+                errors.incrementAndGet();
+            }
+        }
+
+        void print(long seconds) {
+            long[] sorted = latencies.stream().mapToLong(Long::longValue).sorted().toArray();
+            System.out.printf("%-6s 成功 %8d（%.1f/s）429 %6d 错误 %4d  p50 %8.2fms p99 %8.2fms p999 %8.2fms max %8.2fms%n",
+                    name, sorted.length, sorted.length / (double) seconds, rejected.get(), errors.get(),
+                    percentile(sorted, 0.5), percentile(sorted, 0.99), percentile(sorted, 0.999),
+                    sorted.length == 0 ? 0.0 : sorted[sorted.length - 1] / 1000.0);
+        }
+
+        private static double percentile(long[] sorted, double p) {
+            if (sorted.length == 0) {
+                return 0.0;
+            }
+            int index = (int) Math.ceil(p * sorted.length) - 1;
+            return sorted[Math.max(0, index)] / 1000.0;
+        }
+    }
+}
@@ -0,0 +1,197 @@
+package cn.javen.tool.reversegeo.loadtest;
+
+/**
+ * @Description 压测使用的坐标分布：
+ * uniform   范围内均匀随机，大部分点落在街道内部，网格表命中率最高
+ * clustered 若干城市中心附近的正态分布，模拟真实请求集中在城区的情况
+ * track     若干设备沿随机方向连续行进，相邻请求的点相距 stepMeters，模拟轨迹回放
+ * recorded  从文件回放真实坐标，CSV 取第 3、4 列（与 CSV 逆地理编码的输入相同），只有两列时取第 1、2 列，读到末尾后从头循环
+ * 由调度线程单线程调用，不是线程安全的
+ * @Author: Javen
+ * @CreateTime: 2025/11/12 10:00
+ */
+
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+abstract class PointSource {
+
+    // 1 度纬度约 111km
+    private static final double METERS_PER_DEGREE = 111_000.0;
+
+    protected final double minLng;
+    protected final double minLat;
+    protected final double maxLng;
+    protected final double maxLat;
+    protected final Random random;
+
+    private PointSource(double[] bbox, long seed) {
+        this.minLng = bbox[0];
+        this.minLat = bbox[1];
+        this.maxLng = bbox[2];
+        this.maxLat = bbox[3];
+        this.random = new Random(seed);
+    }
+
+    /**
+     * 下一个点，写入 point[0] = lng, point[1] = lat
+     */
+    abstract void next(double[] point);
+
+    /**
+     * @param name    uniform / clustered / track / recorded
+     * @param bbox    minLng,minLat,maxLng,maxLat，recorded 不使用
+     * @param options clusters、sigmaMeters、devices、stepMeters、file
+     */
+    static PointSource create(String name, double[] bbox, long seed, Map<String, String> options)
+            throws IOException {
+        return switch (name) {
+            case "uniform" -> new Uniform(bbox, seed);
+            case "clustered" -> new Clustered(bbox, seed,
+                    Integer.parseInt(options.getOrDefault("clusters", "20")),
+                    Double.parseDouble(options.getOrDefault("sigmaMeters", "2000")));
+            case "track" -> new Track(bbox, seed,
+                    Integer.parseInt(options.getOrDefault("devices", "1000")),
+                    Double.parseDouble(options.getOrDefault("stepMeters", "15")));
+            case "recorded" -> {
+                String file = options.get("file");
+                if (file == null) {
+                    throw new IllegalArgumentException("recorded 分布需要 file=坐标文件");
+                }
+                yield new Recorded(bbox, seed, Path.of(file));
+            }
+            default -> throw new IllegalArgumentException("不支持的分布: " + name + "，可选 uniform、clustered、track、recorded");
+        };
+    }
+
+    private static final class Uniform extends PointSource {
+        Uniform(double[] bbox, long seed) {
+            super(bbox, seed);
+        }
+
+        @Override
+        void next(double[] point) {
+            point[0] = minLng + random.nextDouble() * (maxLng - minLng);
+            point[1] = minLat + random.nextDouble() * (maxLat - minLat);
+        }
+    }
+
+    /**
+     * 中心在范围内随机选取，权重按 Zipf 分布（第 k 个中心的权重为 1/k），少数大城市占大部分请求
+     */
+    private static final class Clustered extends PointSource {
+        private final double[] centers;
+        private final double[] cumulative;
+        private final double sigma;
+
+        Clustered(double[] bbox, long seed, int clusters, double sigmaMeters) {
+            super(bbox, seed);
+            this.centers = new double[clusters * 2];
+            this.cumulative = new double[clusters];
+            this.sigma = sigmaMeters / METERS_PER_DEGREE;
+            double sum = 0;
+            for (int k = 0; k < clusters; k++) {
+                centers[k * 2] = minLng + random.nextDouble() * (maxLng - minLng);
+                centers[k * 2 + 1] = minLat + random.nextDouble() * (maxLat - minLat);
+                sum += 1.0 / (k + 1);
+                cumulative[k] = sum;
+            }
+            for (int k = 0; k < clusters; k++) {
+                cumulative[k] /= sum;
+            }
+        }
+
+        @Override
+        void next(double[] point) {
+            double r = random.nextDouble();
+            int k = 0;
+            while (k < cumulative.length - 1 && cumulative[k] < r) {
+                k++;
+            }
+            point[0] = centers[k * 2] + random.nextGaussian() * sigma;
+            point[1] = centers[k * 2 + 1] + random.nextGaussian() * sigma;
+        }
+    }
+
+    /**
+     * 设备轮流前进一步，方向每步随机偏转，走出范围时掉头
+     */
+    private static final class Track extends PointSource {
+        private final double[] positions;
+        private final double[] headings;
+        private final double step;
+        private int cursor;
+
+        Track(double[] bbox, long seed, int devices, double stepMeters) {
+            super(bbox, seed);
+            this.positions = new double[devices * 2];
+            this.headings = new double[devices];
+            this.step = stepMeters / METERS_PER_DEGREE;
+            for (int d = 0; d < devices; d++) {
+                positions[d * 2] = minLng + random.nextDouble() * (maxLng - minLng);
+                positions[d * 2 + 1] = minLat + random.nextDouble() * (maxLat - minLat);
+                headings[d] = random.nextDouble() * Math.PI * 2;
+            }
+        }
+
+        @Override
+        void next(double[] point) {
+            int d = cursor;
+            cursor = (cursor + 1) % headings.length;
+            headings[d] += (random.nextDouble() - 0.5) * 0.5;
+            double x = positions[d * 2] + Math.cos(headings[d]) * step;
+            double y = positions[d * 2 + 1] + Math.sin(headings[d]) * step;
+            if (x < minLng || x > maxLng || y < minLat || y > maxLat) {
+                headings[d] += Math.PI;
+            } else {
+                positions[d * 2] = x;
+                positions[d * 2 + 1] = y;
+            }
+            point[0] = positions[d * 2];
+            point[1] = positions[d * 2 + 1];
+        }
+    }
+
+    private static final class Recorded extends PointSource {
+        private final double[] coords;
+        private int cursor;
+
+        Recorded(double[] bbox, long seed, Path file) throws IOException {
+            super(bbox, seed);
+            List<String> lines = Files.readAllLines(file, StandardCharsets.UTF_8);
+            double[] parsed = new double[lines.size() * 2];
+            int n = 0;
+            for (String line : lines) {
+                String[] split = line.split(",");
+                int lngColumn = split.length >= 4 ? 2 : 0;
+                if (split.length < 2) {
+                    continue;
+                }
+                try {
+                    parsed[n * 2] = Double.parseDouble(split[lngColumn].trim());
+                    parsed[n * 2 + 1] = Double.parseDouble(split[lngColumn + 1].trim());
+                    n++;
+                } catch (NumberFormatException e) {
+                    // 表头
+                }
+            }
+            if (n == 0) {
+                throw new IllegalArgumentException("坐标文件中没有可用的坐标: " + file);
+            }
+            this.coords = Arrays.copyOf(parsed, n * 2);
+        }
+
+        @Override
+        void next(double[] point) {
+            point[0] = coords[cursor];
+            point[1] = coords[cursor + 1];
+            cursor = (cursor + 2) % coords.length;
+        }
+    }
+}
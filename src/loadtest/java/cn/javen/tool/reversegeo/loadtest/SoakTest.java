@@ -0,0 +1,471 @@
+package cn.javen.tool.reversegeo.loadtest;
+
+/**
+ * @Description 开环（open-loop）负载与长时间浸泡测试：按目标 RPS 以固定间隔发出请求，不等待上一个请求返回，
+ * 延迟从计划发出时刻开始计算，服务变慢时排队的等待时间也计入延迟，不会因客户端被阻塞而少发请求（避免 coordinated omission）
+ * 请求按权重混合：reverse（GET 单点）、batch（POST /batch-reverse，每批 batchSize 点）、csv（上传 CSV 提交异步任务），
+ * csv 另外统计任务从计划提交到完成的耗时（csv-job）
+ * 坐标分布见 PointSource：uniform、clustered、track、recorded
+ * 延迟用 HdrHistogram 记录（微秒），每个统计周期输出各类请求的吞吐量、错误率与 p50/p99/p999/max，结束时输出全程汇总；
+ * 429、其它错误、连接失败、超时与丢弃的请求同样从计划发出时刻计时，记在单独的失败直方图中并列输出，
+ * 避免只统计成功请求时服务过载反而让延迟看起来更好；
+ * 指定 hlog 时把每个周期的直方图写入 HdrHistogram 日志，可用 HistogramLogAnalyzer 等工具绘制随时间变化的延迟
+ * 运行方式：./gradlew soakTest -PsoakTestArgs="url=http://localhost:8081 rps=2000 duration=1800 distribution=clustered"
+ * @Author: Javen
+ * @CreateTime: 2025/11/12 10:30
+ */
+
+import org.HdrHistogram.Histogram;
+import org.HdrHistogram.HistogramLogWriter;
+import org.HdrHistogram.Recorder;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.net.URI;
+import java.net.http.HttpClient;
+import java.net.http.HttpRequest;
+import java.net.http.HttpResponse;
+import java.nio.charset.StandardCharsets;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.LockSupport;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+public class SoakTest {
+
+    private static final Pattern JOB_ID = Pattern.compile("\"id\"\\s*:\\s*\"([^\"]+)\"");
+    private static final Pattern JOB_STATUS = Pattern.compile("\"status\"\\s*:\\s*\"([A-Z]+)\"");
+
+    private final String url;
+    private final HttpClient client;
+    private final Duration timeout;
+    private final int maxInFlight;
+    private final AtomicInteger inFlight = new AtomicInteger();
+    // 本周期内调度线程实际发出时刻落后计划时刻的最大值（微秒），持续偏大说明压测客户端本身是瓶颈
+    private final AtomicLong schedulerLag = new AtomicLong();
+    private final Queue<PendingJob> pendingJobs = new ConcurrentLinkedQueue<>();
+    private volatile long warmupEnd;
+
+    private SoakTest(String url, Duration timeout, int maxInFlight) {
+        this.url = url;
+        this.timeout = timeout;
+        this.maxInFlight = maxInFlight;
+        this.client = HttpClient.newBuilder()
+                .version(HttpClient.Version.HTTP_1_1)
+                .connectTimeout(Duration.ofSeconds(5))
+                .build();
+    }
+
+    public static void main(String[] args) throws Exception {
+        Map<String, String> options = MixedLoadTest.parse(args);
+        String url = options.getOrDefault("url", "http://localhost:8081");
+        double rps = Double.parseDouble(options.getOrDefault("rps", "500"));
+        long seconds = Long.parseLong(options.getOrDefault("duration", "300"));
+        long warmupSeconds = Long.parseLong(options.getOrDefault("warmup", "30"));
+        long intervalSeconds = Long.parseLong(options.getOrDefault("interval", "10"));
+        // 权重：名称:权重，逗号分隔
+        String mix = options.getOrDefault("mix", "reverse:95,batch:5");
+        // /batch-reverse 每批最多 100 点
+        int batchSize = Math.min(100, Integer.parseInt(options.getOrDefault("batchSize", "100")));
+        int csvRows = Integer.parseInt(options.getOrDefault("csvRows", "10000"));
+        String distribution = options.getOrDefault("distribution", "uniform");
+        long seed = Long.parseLong(options.getOrDefault("seed", "42"));
+        String[] bboxText = options.getOrDefault("bbox", "116.20,39.80,116.60,40.05").split(",");
+        double[] bbox = new double[4];
+        for (int i = 0; i < 4; i++) {
+            bbox[i] = Double.parseDouble(bboxText[i]);
+        }
+        Duration timeout = Duration.ofSeconds(Long.parseLong(options.getOrDefault("timeout", "30")));
+        int maxInFlight = Integer.parseInt(options.getOrDefault("maxInFlight", "10000"));
+        long jobWaitSeconds = Long.parseLong(options.getOrDefault("jobWait", "300"));
+        String hlog = options.get("hlog");
+
+        PointSource points = PointSource.create(distribution, bbox, seed, options);
+        SoakTest test = new SoakTest(url, timeout, maxInFlight);
+        List<Endpoint> endpoints = parseMix(mix);
+        Endpoint csvJob = new Endpoint("csv-job", 0);
+
+        System.out.printf("开环压测 %s：目标 %.0f req/s，分布 %s，混合 %s，预热 %ds，持续 %ds，每 %ds 输出一次%n",
+                url, rps, distribution, mix, warmupSeconds, seconds, intervalSeconds);
+        test.run(endpoints, csvJob, points, rps, batchSize, csvRows,
+                warmupSeconds, seconds, intervalSeconds, jobWaitSeconds, hlog);
+    }
+
+    private static List<Endpoint> parseMix(String mix) {
+        List<Endpoint> endpoints = new ArrayList<>();
+        for (String part : mix.split(",")) {
+            String[] kv = part.split(":");
+            String name = kv[0].trim();
+            if (!name.equals("reverse") && !name.equals("batch") && !name.equals("csv")) {
+                throw new IllegalArgumentException("不支持的请求类型: " + name + "，可选 reverse、batch、csv");
+            }
+            double weight = kv.length > 1 ? Double.parseDouble(kv[1]) : 1;
+            if (weight > 0) {
+                endpoints.add(new Endpoint(name, weight));
+            }
+        }
+        if (endpoints.isEmpty()) {
+            throw new IllegalArgumentException("mix 中没有权重大于 0 的请求类型");
+        }
+        return endpoints;
+    }
+
+    private void run(List<Endpoint> endpoints, Endpoint csvJob, PointSource points, double rps,
+                     int batchSize, int csvRows, long warmupSeconds, long seconds, long intervalSeconds,
+                     long jobWaitSeconds, String hlog) throws InterruptedException, FileNotFoundException {
+        double totalWeight = endpoints.stream().mapToDouble(e -> e.weight).sum();
+        // CSV 请求体启动时生成一次，避免每次提交都在调度线程上生成上万行
+        byte[] csvBody = endpoints.stream().anyMatch(e -> e.name.equals("csv"))
+                ? csvBody(points, csvRows) : null;
+        String boundary = "----soak" + UUID.randomUUID().toString().replace("-", "");
+
+        List<Endpoint> reported = new ArrayList<>(endpoints);
+        if (csvBody != null) {
+            reported.add(csvJob);
+        }
+        HistogramLogWriter logWriter = hlog == null ? null : new HistogramLogWriter(new File(hlog));
+
+        long start = System.nanoTime();
+        warmupEnd = start + TimeUnit.SECONDS.toNanos(warmupSeconds);
+        long end = warmupEnd + TimeUnit.SECONDS.toNanos(seconds);
+        long measureStartMillis = System.currentTimeMillis() + TimeUnit.SECONDS.toMillis(warmupSeconds);
+        if (logWriter != null) {
+            logWriter.outputLogFormatVersion();
+            logWriter.outputStartTime(measureStartMillis);
+            logWriter.setBaseTime(measureStartMillis);
+            logWriter.outputLegend();
+        }
+
+        ScheduledExecutorService background = Executors.newScheduledThreadPool(2, r -> {
+            Thread thread = new Thread(r, "soak-background");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long intervalMillis = TimeUnit.SECONDS.toMillis(intervalSeconds);
+        long firstReport = TimeUnit.NANOSECONDS.toMillis(warmupEnd - System.nanoTime()) + intervalMillis;
+        background.scheduleAtFixedRate(() -> report(reported, measureStartMillis, intervalSeconds, logWriter),
+                firstReport, intervalMillis, TimeUnit.MILLISECONDS);
+        if (csvBody != null) {
+            background.scheduleWithFixedDelay(() -> pollJobs(csvJob), 500, 500, TimeUnit.MILLISECONDS);
+        }
+
+        // 第 i 个请求的计划发出时刻为 start + i * period，落后时立即补发，不跳过
+        double period = TimeUnit.SECONDS.toNanos(1) / rps;
+        double[] point = new double[2];
+        for (long i = 0; ; i++) {
+            long intended = start + (long) (i * period);
+            if (intended >= end) {
+                break;
+            }
+            long now = System.nanoTime();
+            if (now < intended) {
+                LockSupport.parkNanos(intended - now);
+            } else {
+                schedulerLag.accumulateAndGet(TimeUnit.NANOSECONDS.toMicros(now - intended), Math::max);
+            }
+            Endpoint endpoint = pick(endpoints, totalWeight, points);
+            HttpRequest request = switch (endpoint.name) {
+                case "reverse" -> {
+                    points.next(point);
+                    yield HttpRequest.newBuilder(URI.create(
+                                    url + "/api/geocode/reverse?lng=" + point[0] + "&lat=" + point[1]))
+                            .timeout(timeout).GET().build();
+                }
+                case "batch" -> HttpRequest.newBuilder(URI.create(url + "/api/geocode/batch-reverse"))
+                        .timeout(timeout)
+                        .header("Content-Type", "application/json")
+                        .POST(HttpRequest.BodyPublishers.ofString(batchBody(points, batchSize, point)))
+                        .build();
+                default -> HttpRequest.newBuilder(URI.create(url + "/api/jobs/csv-reverse"))
+                        .timeout(timeout)
+                        .header("Content-Type", "multipart/form-data; boundary=" + boundary)
+                        .POST(HttpRequest.BodyPublishers.ofByteArray(multipart(boundary, csvBody)))
+                        .build();
+            };
+            send(endpoint, request, intended);
+        }
+
+        // 等待在途请求结束（每个请求最多 timeout），之后输出最后一个周期与全程汇总
+        long drainDeadline = System.nanoTime() + timeout.toNanos() + TimeUnit.SECONDS.toNanos(5);
+        while (inFlight.get() > 0 && System.nanoTime() < drainDeadline) {
+            Thread.sleep(100);
+        }
+        long jobDeadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(jobWaitSeconds);
+        while (!pendingJobs.isEmpty() && System.nanoTime() < jobDeadline) {
+            Thread.sleep(500);
+        }
+        background.shutdownNow();
+        background.awaitTermination(5, TimeUnit.SECONDS);
+        report(reported, measureStartMillis, intervalSeconds, logWriter);
+        if (logWriter != null) {
+            logWriter.close();
+        }
+        if (inFlight.get() > 0 || !pendingJobs.isEmpty()) {
+            System.out.printf("结束时仍有 %d 个请求、%d 个 CSV 任务未完成%n", inFlight.get(), pendingJobs.size());
+        }
+        printSummary(reported, seconds);
+    }
+
+    private static Endpoint pick(List<Endpoint> endpoints, double totalWeight, PointSource points) {
+        if (endpoints.size() == 1) {
+            return endpoints.get(0);
+        }
+        double r = points.random.nextDouble() * totalWeight;
+        for (Endpoint endpoint : endpoints) {
+            r -= endpoint.weight;
+            if (r < 0) {
+                return endpoint;
+            }
+        }
+        return endpoints.get(endpoints.size() - 1);
+    }
+
+    /**
+     * 异步发出请求，完成时按计划发出时刻计算延迟；在途请求达到上限时不再发出，记为丢弃
+     */
+    private void send(Endpoint endpoint, HttpRequest request, long intended) {
+        boolean measured = intended >= warmupEnd;
+        if (inFlight.get() >= maxInFlight) {
+            if (measured) {
+                endpoint.dropped.increment();
+                endpoint.failed.recordValue(TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+            }
+            return;
+        }
+        inFlight.incrementAndGet();
+        if (measured) {
+            endpoint.sent.increment();
+        }
+        if (!endpoint.name.equals("csv")) {
+            client.sendAsync(request, HttpResponse.BodyHandlers.discarding())
+                    .whenComplete((response, error) -> complete(endpoint, response, error, intended, measured));
+            return;
+        }
+        // CSV 任务需要读取响应中的任务编号，之后由 pollJobs 查询完成时间
+        client.sendAsync(request, HttpResponse.BodyHandlers.ofString())
+                .whenComplete((response, error) -> {
+                    int status = complete(endpoint, response, error, intended, measured);
+                    if (measured && status == 202) {
+                        Matcher matcher = JOB_ID.matcher(response.body());
+                        if (matcher.find()) {
+                            pendingJobs.add(new PendingJob(matcher.group(1), intended));
+                        }
+                    }
+                });
+    }
+
+    /**
+     * @return 状态码，连接失败或超时为 -1
+     */
+    private int complete(Endpoint endpoint, HttpResponse<?> response, Throwable error, long intended,
+                         boolean measured) {
+        inFlight.decrementAndGet();
+        int status = error == null ? response.statusCode() : -1;
+        if (measured) {
+            endpoint.record(status, TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - intended));
+        }
+        return status;
+    }
+
+    /**
+     * 查询未完成的 CSV 任务，完成时按计划提交时刻记录任务耗时，失败记为错误
+     */
+    private void pollJobs(Endpoint csvJob) {
+        for (Iterator<PendingJob> it = pendingJobs.iterator(); it.hasNext(); ) {
+            PendingJob job = it.next();
+            try {
+                HttpRequest request = HttpRequest.newBuilder(URI.create(url + "/api/jobs/" + job.id()))
+                        .timeout(timeout).GET().build();
+                HttpResponse<String> response = client.send(request, HttpResponse.BodyHandlers.ofString());
+                Matcher matcher = JOB_STATUS.matcher(response.body());
+                String status = matcher.find() ? matcher.group(1) : "";
+                if (status.equals("SUCCEEDED") || status.equals("FAILED") || response.statusCode() == 404) {
+                    it.remove();
+                    csvJob.sent.increment();
+                    csvJob.record(status.equals("SUCCEEDED") ? 200 : 500,
+                            TimeUnit.NANOSECONDS.toMicros(System.nanoTime() - job.intended()));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            } catch (Exception e) {
+                // 查询失败时下次再查
+            }
+        }
+    }
+
+    /**
+     * 输出一个统计周期，并把周期直方图并入全程直方图
+     */
+    private synchronized void report(List<Endpoint> endpoints, long measureStartMillis, long intervalSeconds,
+                                     HistogramLogWriter logWriter) {
+        long elapsed = (System.currentTimeMillis() - measureStartMillis) / 1000;
+        long lag = schedulerLag.getAndSet(0);
+        for (Endpoint endpoint : endpoints) {
+            Histogram interval = endpoint.recorder.getIntervalHistogram();
+            Histogram failed = endpoint.failed.getIntervalHistogram();
+            endpoint.total.add(interval);
+            endpoint.totalFailed.add(failed);
+            long sent = endpoint.sent.sumThenReset();
+            long ok = endpoint.ok.sumThenReset();
+            long rejected = endpoint.rejected.sumThenReset();
+            long errors = endpoint.errors.sumThenReset();
+            long dropped = endpoint.dropped.sumThenReset();
+            endpoint.totalSent += sent;
+            endpoint.totalOk += ok;
+            endpoint.totalRejected += rejected;
+            endpoint.totalErrors += errors;
+            endpoint.totalDropped += dropped;
+            long completed = ok + rejected + errors;
+            System.out.printf("[%5ds] %-8s 发出 %7d 成功 %7.1f/s 错误率 %6.2f%% (429 %d, 其它 %d, 丢弃 %d)"
+                            + "  p50 %8.2fms p99 %8.2fms p999 %8.2fms max %8.2fms%n",
+                    elapsed, endpoint.name, sent, ok / (double) intervalSeconds,
+                    completed == 0 ? 0.0 : (rejected + errors) * 100.0 / completed, rejected, errors, dropped,
+                    millis(interval, 50), millis(interval, 99), millis(interval, 99.9),
+                    interval.getMaxValue() / 1000.0);
+            if (failed.getTotalCount() > 0) {
+                System.out.printf("[%5ds] %-8s 失败 %7d 个%36s p50 %8.2fms p99 %8.2fms p999 %8.2fms max %8.2fms%n",
+                        elapsed, endpoint.name, failed.getTotalCount(), "",
+                        millis(failed, 50), millis(failed, 99), millis(failed, 99.9), failed.getMaxValue() / 1000.0);
+            }
+            if (logWriter != null && interval.getTotalCount() > 0) {
+                interval.setTag(endpoint.name);
+                logWriter.outputIntervalHistogram(interval);
+            }
+            if (logWriter != null && failed.getTotalCount() > 0) {
+                failed.setTag(endpoint.name + "-failed");
+                logWriter.outputIntervalHistogram(failed);
+            }
+        }
+        if (lag > 1000) {
+            System.out.printf("[%5ds] 调度最大落后 %.2fms，在途 %d%n", elapsed, lag / 1000.0, inFlight.get());
+        }
+    }
+
+    private static void printSummary(List<Endpoint> endpoints, long seconds) {
+        System.out.println("全程汇总（不含预热，延迟从计划发出时刻计算）：");
+        for (Endpoint endpoint : endpoints) {
+            Histogram total = endpoint.total;
+            long completed = endpoint.totalOk + endpoint.totalRejected + endpoint.totalErrors;
+            System.out.printf("%-8s 发出 %8d 成功 %8d（%.1f/s）429 %6d 错误 %6d 丢弃 %6d 错误率 %6.2f%%%n"
+                            + "         p50 %8.2fms p90 %8.2fms p99 %8.2fms p999 %8.2fms p9999 %8.2fms max %8.2fms%n",
+                    endpoint.name, endpoint.totalSent, endpoint.totalOk, endpoint.totalOk / (double) seconds,
+                    endpoint.totalRejected, endpoint.totalErrors, endpoint.totalDropped,
+                    completed == 0 ? 0.0 : (endpoint.totalRejected + endpoint.totalErrors) * 100.0 / completed,
+                    millis(total, 50), millis(total, 90), millis(total, 99), millis(total, 99.9),
+                    millis(total, 99.99), total.getMaxValue() / 1000.0);
+            Histogram failed = endpoint.totalFailed;
+            if (failed.getTotalCount() > 0) {
+                System.out.printf("         失败（429、错误、超时、丢弃）%d 个：p50 %8.2fms p99 %8.2fms p999 %8.2fms max %8.2fms%n",
+                        failed.getTotalCount(), millis(failed, 50), millis(failed, 99), millis(failed, 99.9),
+                        failed.getMaxValue() / 1000.0);
+            }
+        }
+    }
+
+    private static double millis(Histogram histogram, double percentile) {
+        return histogram.getTotalCount() == 0 ? 0.0 : histogram.getValueAtPercentile(percentile) / 1000.0;
+    }
+
+    /**
+     * /batch-reverse 的请求体：["lng,lat", ...]
+     */
+    private static String batchBody(PointSource points, int batchSize, double[] point) {
+        StringBuilder body = new StringBuilder(batchSize * 40).append('[');
+        for (int k = 0; k < batchSize; k++) {
+            points.next(point);
+            if (k > 0) {
+                body.append(',');
+            }
+            body.append('"').append(point[0]).append(',').append(point[1]).append('"');
+        }
+        return body.append(']').toString();
+    }
+
+    /**
+     * CSV 任务的输入：id,time,lng,lat，第 3、4 列为坐标
+     */
+    private static byte[] csvBody(PointSource points, int rows) {
+        double[] point = new double[2];
+        StringBuilder csv = new StringBuilder(rows * 48).append("id,time,lng,lat\n");
+        for (int i = 0; i < rows; i++) {
+            points.next(point);
+            csv.append(i).append(",0,").append(point[0]).append(',').append(point[1]).append('\n');
+        }
+        return csv.toString().getBytes(StandardCharsets.UTF_8);
+    }
+
+    private static byte[] multipart(String boundary, byte[] csv) {
+        byte[] head = ("--" + boundary + "\r\n"
+                + "Content-Disposition: form-data; name=\"file\"; filename=\"soak.csv\"\r\n"
+                + "Content-Type: text/csv\r\n\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] tail = ("\r\n--" + boundary + "--\r\n").getBytes(StandardCharsets.UTF_8);
+        byte[] body = new byte[head.length + csv.length + tail.length];
+        System.arraycopy(head, 0, body, 0, head.length);
+        System.arraycopy(csv, 0, body, head.length, csv.length);
+        System.arraycopy(tail, 0, body, head.length + csv.length, tail.length);
+        return body;
+    }
+
+    private record PendingJob(String id, long intended) {
+    }
+
+    /**
+     * 一类请求：本周期的延迟记录器与计数，以及全程累计
+     */
+    private static final class Endpoint {
+        final String name;
+        final double weight;
+        // 微秒，自动扩展量程，3 位有效数字
+        final Recorder recorder = new Recorder(3);
+        final Histogram total = new Histogram(3);
+        // 429、其它错误、连接失败、超时与丢弃的请求，同样从计划发出时刻计时
+        final Recorder failed = new Recorder(3);
+        final Histogram totalFailed = new Histogram(3);
+        final LongAdder sent = new LongAdder();
+        final LongAdder ok = new LongAdder();
+        final LongAdder rejected = new LongAdder();
+        final LongAdder errors = new LongAdder();
+        final LongAdder dropped = new LongAdder();
+        // 以下只在 report 中访问
+        long totalSent;
+        long totalOk;
+        long totalRejected;
+        long totalErrors;
+        long totalDropped;
+
+        Endpoint(String name, double weight) {
+            this.name = name;
+            this.weight = weight;
+        }
+
+        /**
+         * 2xx 与 404（查不到街道）计为成功并记录延迟，429 与其它状态、连接失败、超时计为错误，延迟记入失败直方图
+         */
+        void record(int status, long micros) {
+            if (status == 429) {
+                rejected.increment();
+                failed.recordValue(micros);
+            } else if ((status >= 200 && status < 300) || status == 404) {
+                recorder.recordValue(micros);
+                ok.increment();
+            } else {
+                errors.increment();
+                failed.recordValue(micros);
+            }
+        }
+    }
+}
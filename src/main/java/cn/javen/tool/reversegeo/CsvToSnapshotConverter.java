@@ -0,0 +1,76 @@
+package cn.javen.tool.reversegeo;
+
+/**
+ * @Description 离线工具：将 streets_over.csv 转换为二进制快照和堆外多边形存储文件，服务启动时优先加载快照
+ * 指定分片目录时另外按省（街道编码前两位）各写一个快照，供 geo.shard.enabled 按需加载
+ * @Author: Javen
+ * @CreateTime: 2025/10/11 11:05
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import cn.javen.tool.reversegeo.storage.PolygonStore;
+import cn.javen.tool.reversegeo.storage.StreetSnapshot;
+
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.stream.Collectors;
+
+public class CsvToSnapshotConverter {
+
+    public static void convert(String csvPath, String snapshotPath, String polygonStorePath, double scale) throws Exception {
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(csvPath);
+        properties.setSnapshot(""); // 强制解析 CSV
+        properties.setPreparedGeometry(false);
+
+        GeoDataLoader loader = new GeoDataLoader(properties);
+        StreetSnapshot.write(loader.getStreets(), Path.of(snapshotPath), scale);
+        System.out.printf("街道数: %d, 快照大小: %d bytes%n", loader.getStreets().size(), Files.size(Path.of(snapshotPath)));
+
+        // 堆外多边形存储按快照中的街道顺序写出，坐标取定点化后的值，保证两种存储模式结果一致
+        List<Street> ordered = StreetSnapshot.read(Path.of(snapshotPath), loader.getGeometryFactory());
+        PolygonStore.write(ordered, Path.of(polygonStorePath));
+        System.out.printf("多边形存储大小: %d bytes%n", Files.size(Path.of(polygonStorePath)));
+    }
+
+    /**
+     * 按省分片写出快照，文件名为 {省编码}.snap；编码不足两位的街道不写入任何分片
+     */
+    public static void convertShards(String csvPath, String shardDir, double scale) throws Exception {
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(csvPath);
+        properties.setSnapshot(""); // 强制解析 CSV
+        properties.setPreparedGeometry(false);
+
+        GeoDataLoader loader = new GeoDataLoader(properties);
+        Map<String, List<Street>> byProvince = loader.getStreets().stream()
+                .filter(street -> street.getStreetId() != null && street.getStreetId().length() >= 2)
+                .collect(Collectors.groupingBy(street -> street.getStreetId().substring(0, 2),
+                        TreeMap::new, Collectors.toList()));
+        Files.createDirectories(Path.of(shardDir));
+        for (Map.Entry<String, List<Street>> entry : byProvince.entrySet()) {
+            Path path = Path.of(shardDir, entry.getKey() + ".snap");
+            StreetSnapshot.write(entry.getValue(), path, scale);
+            System.out.printf("分片 %s: 街道数 %d, 大小 %d bytes%n", entry.getKey(), entry.getValue().size(), Files.size(path));
+        }
+        loader.shutdown();
+    }
+
+    public static void main(String[] args) throws Exception {
+        // 参数：CSV 路径、快照输出路径、多边形存储输出路径、坐标定点化倍数（默认 1e7，约 1 厘米）、按省分片目录（可选）
+        String csvPath = args.length > 0 ? args[0] : "src/main/resources/streets_over.csv";
+        String snapshotPath = args.length > 1 ? args[1] : "src/main/resources/streets.snap";
+        String polygonStorePath = args.length > 2 ? args[2] : "src/main/resources/streets.rings";
+        double scale = args.length > 3 ? Double.parseDouble(args[3]) : StreetSnapshot.DEFAULT_SCALE;
+        convert(csvPath, snapshotPath, polygonStorePath, scale);
+        if (args.length > 4) {
+            convertShards(csvPath, args[4], scale);
+        }
+        System.out.println("转换完成");
+    }
+}
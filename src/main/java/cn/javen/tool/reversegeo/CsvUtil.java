@@ -46,6 +46,24 @@ public class CsvUtil {
         return result;
     }
 
+    /**
+     * 打开 CSV 文件的流式读取器，编码与 read 一致，调用方负责关闭
+     *
+     * @param filePath 文件路径
+     * @param separator 分隔符
+     * @return CSVReader，逐行 readNext
+     */
+    public static CSVReader openReader(String filePath, char separator) {
+        try {
+            Reader reader = new InputStreamReader(new FileInputStream(filePath), "GBK");
+            return new CSVReaderBuilder(reader)
+                    .withCSVParser(new CSVParserBuilder().withSeparator(separator).build())
+                    .build();
+        } catch (IOException e) {
+            throw new RuntimeException("读取 CSV 文件失败: " + filePath, e);
+        }
+    }
+
     /**
      * 读取 CSV 文件（默认逗号分隔）
      */
@@ -74,6 +92,37 @@ public class CsvUtil {
         }
     }
 
+    /**
+     * 打开 CSV 文件的流式写入器，编码与格式与 write 一致，调用方负责关闭
+     *
+     * @param filePath 文件路径
+     * @param separator 分隔符
+     * @return CSVWriter，逐行 writeNext
+     */
+    public static CSVWriter openWriter(String filePath, char separator) {
+        return openWriter(filePath, separator, false);
+    }
+
+    /**
+     * 打开 CSV 文件的流式写入器
+     *
+     * @param filePath 文件路径
+     * @param separator 分隔符
+     * @param append 是否追加到已有文件末尾
+     * @return CSVWriter，逐行 writeNext
+     */
+    public static CSVWriter openWriter(String filePath, char separator, boolean append) {
+        try {
+            Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(filePath, append), "GBK"));
+            return new CSVWriter(writer, separator,
+                    CSVWriter.NO_QUOTE_CHARACTER,
+                    CSVWriter.DEFAULT_ESCAPE_CHARACTER,
+                    CSVWriter.DEFAULT_LINE_END);
+        } catch (IOException e) {
+            throw new RuntimeException("写入 CSV 文件失败: " + filePath, e);
+        }
+    }
+
     /**
      * 写入 CSV（默认逗号分隔）
      */
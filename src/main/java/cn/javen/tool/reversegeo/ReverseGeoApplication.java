@@ -2,8 +2,10 @@ package cn.javen.tool.reversegeo;
 
 import org.springframework.boot.SpringApplication;
 import org.springframework.boot.autoconfigure.SpringBootApplication;
+import org.springframework.boot.context.properties.ConfigurationPropertiesScan;
 
 @SpringBootApplication
+@ConfigurationPropertiesScan
 public class ReverseGeoApplication {
 
     public static void main(String[] args) {
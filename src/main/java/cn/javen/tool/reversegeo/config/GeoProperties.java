@@ -0,0 +1,499 @@
+package cn.javen.tool.reversegeo.config;
+
+/**
+ * @Description 逆地理编码相关配置（application.properties 中以 geo. 开头）
+ * @Author: Javen
+ * @CreateTime: 2025/10/9 10:12
+ */
+
+import org.springframework.boot.context.properties.ConfigurationProperties;
+
+import java.util.ArrayList;
+import java.util.List;
+
+@ConfigurationProperties(prefix = "geo")
+public class GeoProperties {
+
+    /**
+     * 加载时为每个街道多边形构建 PreparedGeometry（带线段区间索引的点面判断），默认开启
+     */
+    private boolean preparedGeometry = true;
+
+    /**
+     * 街道数据 CSV
+     */
+    private String streetsCsv = "src/main/resources/streets_over.csv";
+
+    /**
+     * 街道数据二进制快照（由 CsvToSnapshotConverter 生成），文件存在时优先加载，置空则始终解析 CSV
+     */
+    private String snapshot = "src/main/resources/streets.snap";
+
+    /**
+     * 多边形存储方式：HEAP 为 JTS 对象，MAPPED 为内存映射的紧凑坐标数组（需要快照和多边形存储文件）
+     */
+    private StorageMode storage = StorageMode.HEAP;
+
+    /**
+     * 堆外多边形存储文件（由 CsvToSnapshotConverter 与快照一同生成）
+     */
+    private String polygonStore = "src/main/resources/streets.rings";
+
+    /**
+     * 行政区划映射文件目录（province.txt / city.txt / district.txt）
+     */
+    private String adminDir = "src/main/resources";
+
+    private final Reload reload = new Reload();
+
+    private final Cache cache = new Cache();
+
+    private final Grid grid = new Grid();
+
+    private final Csv csv = new Csv();
+
+    private final Jobs jobs = new Jobs();
+
+    private final Batch batch = new Batch();
+
+    private final Nearest nearest = new Nearest();
+
+    private final Simplify simplify = new Simplify();
+
+    private final Load load = new Load();
+
+    private final Shard shard = new Shard();
+
+    private final Serving serving = new Serving();
+
+    private final Boundary boundary = new Boundary();
+
+    private final Join join = new Join();
+
+    private final Region region = new Region();
+
+    public boolean isPreparedGeometry() { return preparedGeometry; }
+    public void setPreparedGeometry(boolean preparedGeometry) { this.preparedGeometry = preparedGeometry; }
+
+    public String getStreetsCsv() { return streetsCsv; }
+    public void setStreetsCsv(String streetsCsv) { this.streetsCsv = streetsCsv; }
+
+    public String getSnapshot() { return snapshot; }
+    public void setSnapshot(String snapshot) { this.snapshot = snapshot; }
+
+    public StorageMode getStorage() { return storage; }
+    public void setStorage(StorageMode storage) { this.storage = storage; }
+
+    public String getPolygonStore() { return polygonStore; }
+    public void setPolygonStore(String polygonStore) { this.polygonStore = polygonStore; }
+
+    public String getAdminDir() { return adminDir; }
+    public void setAdminDir(String adminDir) { this.adminDir = adminDir; }
+
+    public Reload getReload() { return reload; }
+
+    public Cache getCache() { return cache; }
+
+    public Grid getGrid() { return grid; }
+
+    public Csv getCsv() { return csv; }
+
+    public Jobs getJobs() { return jobs; }
+
+    public Batch getBatch() { return batch; }
+
+    public Nearest getNearest() { return nearest; }
+
+    public Simplify getSimplify() { return simplify; }
+
+    public Load getLoad() { return load; }
+
+    public Shard getShard() { return shard; }
+
+    public Serving getServing() { return serving; }
+
+    public Boundary getBoundary() { return boundary; }
+
+    public Join getJoin() { return join; }
+
+    public Region getRegion() { return region; }
+
+    public enum StorageMode {
+        HEAP, MAPPED
+    }
+
+    public static class Reload {
+        /**
+         * 监听数据文件变化并自动热加载；替换文件请使用 mv 等原子重命名方式，避免读到写了一半的文件
+         */
+        private boolean watch = false;
+
+        /**
+         * 文件最后一次变化后等待多久再触发加载，合并连续的写入事件
+         */
+        private long debounceMillis = 2000;
+
+        public boolean isWatch() { return watch; }
+        public void setWatch(boolean watch) { this.watch = watch; }
+
+        public long getDebounceMillis() { return debounceMillis; }
+        public void setDebounceMillis(long debounceMillis) { this.debounceMillis = debounceMillis; }
+    }
+
+    public static class Cache {
+        /**
+         * 是否开启量化网格结果缓存
+         */
+        private boolean enabled = false;
+
+        /**
+         * 网格边长（度），1e-5 约 1 米
+         */
+        private double grid = 1e-5;
+
+        /**
+         * 最多缓存的网格数
+         */
+        private long maximumSize = 1_000_000;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getGrid() { return grid; }
+        public void setGrid(double grid) { this.grid = grid; }
+
+        public long getMaximumSize() { return maximumSize; }
+        public void setMaximumSize(long maximumSize) { this.maximumSize = maximumSize; }
+    }
+
+    public static class Grid {
+        /**
+         * 是否在加载时构建分层网格查找表（构建耗时与多边形边界总长度相关）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 根网格边长（度）
+         */
+        private double rootSize = 0.05;
+
+        /**
+         * 最大细分层数，最细单元边长为 rootSize / 2^maxDepth
+         */
+        private int maxDepth = 6;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getRootSize() { return rootSize; }
+        public void setRootSize(double rootSize) { this.rootSize = rootSize; }
+
+        public int getMaxDepth() { return maxDepth; }
+        public void setMaxDepth(int maxDepth) { this.maxDepth = maxDepth; }
+    }
+
+    public static class Csv {
+        /**
+         * 每批行数，批次在 GeocodeExecutor 的线程池中查询，在途批次最多为其线程数的 2 倍
+         */
+        private int batchSize = 5000;
+
+        public int getBatchSize() { return batchSize; }
+        public void setBatchSize(int batchSize) { this.batchSize = batchSize; }
+    }
+
+    public static class Jobs {
+        /**
+         * 任务目录，每个任务一个子目录，保存状态、断点和输出文件
+         */
+        private String dir = "jobs";
+
+        /**
+         * 按文件名（name）提交任务时的输入目录，文件名按此目录解析，不能指向目录之外
+         */
+        private String inputDir = "jobs-input";
+
+        /**
+         * 同时执行的任务数
+         */
+        private int concurrency = 2;
+
+        /**
+         * 排队任务上限，超出时提交返回 429
+         */
+        private int queueCapacity = 16;
+
+        /**
+         * 每处理多少行记录一次断点
+         */
+        private long checkpointRows = 100_000;
+
+        public String getDir() { return dir; }
+        public void setDir(String dir) { this.dir = dir; }
+
+        public String getInputDir() { return inputDir; }
+        public void setInputDir(String inputDir) { this.inputDir = inputDir; }
+
+        public int getConcurrency() { return concurrency; }
+        public void setConcurrency(int concurrency) { this.concurrency = concurrency; }
+
+        public int getQueueCapacity() { return queueCapacity; }
+        public void setQueueCapacity(int queueCapacity) { this.queueCapacity = queueCapacity; }
+
+        public long getCheckpointRows() { return checkpointRows; }
+        public void setCheckpointRows(long checkpointRows) { this.checkpointRows = checkpointRows; }
+    }
+
+    public static class Join {
+        /**
+         * 空间连接的数据目录，接口参数中的输入、输出文件名都按此目录解析，不能指向目录之外
+         */
+        private String dir = "join";
+
+        /**
+         * 每次读入内存、按 Hilbert 曲线排序的点数，越大 tile 越紧凑，内存占用也越大
+         */
+        private int blockSize = 1 << 20;
+
+        /**
+         * 每个 tile 的点数：一个 tile 只查询一次 STRtree，再逐个街道判断 tile 内落在其外包矩形中的点
+         */
+        private int tilePoints = 2048;
+
+        public String getDir() { return dir; }
+        public void setDir(String dir) { this.dir = dir; }
+
+        public int getBlockSize() { return blockSize; }
+        public void setBlockSize(int blockSize) { this.blockSize = blockSize; }
+
+        public int getTilePoints() { return tilePoints; }
+        public void setTilePoints(int tilePoints) { this.tilePoints = tilePoints; }
+    }
+
+    public static class Region {
+        /**
+         * 未指定 size 时每页返回的街道数
+         */
+        private int defaultPageSize = 100;
+
+        /**
+         * 每页最多返回的街道数
+         */
+        private int maxPageSize = 1000;
+
+        /**
+         * 每个并行任务判断的候选街道数，候选数不超过该值时在请求线程中直接判断
+         */
+        private int chunkSize = 256;
+
+        public int getDefaultPageSize() { return defaultPageSize; }
+        public void setDefaultPageSize(int defaultPageSize) { this.defaultPageSize = defaultPageSize; }
+
+        public int getMaxPageSize() { return maxPageSize; }
+        public void setMaxPageSize(int maxPageSize) { this.maxPageSize = maxPageSize; }
+
+        public int getChunkSize() { return chunkSize; }
+        public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+    }
+
+    public static class Batch {
+        /**
+         * 每块点数，每个请求的在途块最多为 geo.serving.threads 的 2 倍
+         */
+        private int chunkSize = 1024;
+
+        /**
+         * JSON 数组请求体的最大点数，更多的点请使用 NDJSON 流式提交
+         */
+        private int maxPoints = 200_000;
+
+        public int getChunkSize() { return chunkSize; }
+        public void setChunkSize(int chunkSize) { this.chunkSize = chunkSize; }
+
+        public int getMaxPoints() { return maxPoints; }
+        public void setMaxPoints(int maxPoints) { this.maxPoints = maxPoints; }
+    }
+
+    public static class Nearest {
+        /**
+         * 点不在任何街道内时，是否默认返回距离上限内最近的街道（单次请求可用 nearest 参数覆盖）
+         */
+        private boolean enabled = false;
+
+        /**
+         * 最近街道的距离上限（米）
+         */
+        private double maxDistanceMeters = 200;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public double getMaxDistanceMeters() { return maxDistanceMeters; }
+        public void setMaxDistanceMeters(double maxDistanceMeters) { this.maxDistanceMeters = maxDistanceMeters; }
+    }
+
+    public static class Simplify {
+        /**
+         * 是否为顶点数较多的街道构建简化多边形，容差带外的点只用简化多边形判断，结果与原多边形一致
+         */
+        private boolean enabled = true;
+
+        /**
+         * 顶点数达到该值才构建简化多边形
+         */
+        private int minVertices = 200;
+
+        /**
+         * 简化容差（度），0.00005 约 5 米
+         */
+        private double tolerance = 0.00005;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public int getMinVertices() { return minVertices; }
+        public void setMinVertices(int minVertices) { this.minVertices = minVertices; }
+
+        public double getTolerance() { return tolerance; }
+        public void setTolerance(double tolerance) { this.tolerance = tolerance; }
+    }
+
+    public static class Load {
+        /**
+         * 启动与热加载时解析 CSV、预处理多边形、构建空间索引的并行线程数，0 表示使用 CPU 核数
+         */
+        private int threads = 0;
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+    }
+
+    public static class Shard {
+        /**
+         * 按省分片加载：启动时只读取各省快照的外包范围，某省的街道在第一次查询命中时才加载
+         */
+        private boolean enabled = false;
+
+        /**
+         * 分片快照目录，每省一个文件 {省编码}.snap（由 CsvToSnapshotConverter 生成）
+         */
+        private String dir = "src/main/resources/shards";
+
+        /**
+         * 只服务这些省（两位省编码），为空表示目录中的全部省份；范围外的点直接查不到
+         */
+        private List<String> provinces = new ArrayList<>();
+
+        /**
+         * 启动时预先加载的省，避免首次查询等待加载
+         */
+        private List<String> preload = new ArrayList<>();
+
+        /**
+         * 同时驻留内存的分片上限，超出时卸载最久未访问的分片，0 表示不限
+         */
+        private int maxLoaded = 0;
+
+        /**
+         * 分片连续多少分钟未被访问则卸载，0 表示不按空闲时间卸载
+         */
+        private long idleEvictMinutes = 0;
+
+        /**
+         * 分片路由网格的根网格边长（度）：按各省街道外包矩形覆盖的范围把点路由到省，
+         * 只有一个省覆盖的单元直接路由，多个省交界的单元细分到 routeMaxDepth 层后再逐个检查
+         */
+        private double routeRootSize = 1.0;
+
+        /**
+         * 分片路由网格的最大细分层数，最细单元边长为 routeRootSize / 2^routeMaxDepth
+         */
+        private int routeMaxDepth = 8;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getDir() { return dir; }
+        public void setDir(String dir) { this.dir = dir; }
+
+        public List<String> getProvinces() { return provinces; }
+        public void setProvinces(List<String> provinces) { this.provinces = provinces; }
+
+        public List<String> getPreload() { return preload; }
+        public void setPreload(List<String> preload) { this.preload = preload; }
+
+        public int getMaxLoaded() { return maxLoaded; }
+        public void setMaxLoaded(int maxLoaded) { this.maxLoaded = maxLoaded; }
+
+        public long getIdleEvictMinutes() { return idleEvictMinutes; }
+        public void setIdleEvictMinutes(long idleEvictMinutes) { this.idleEvictMinutes = idleEvictMinutes; }
+
+        public double getRouteRootSize() { return routeRootSize; }
+        public void setRouteRootSize(double routeRootSize) { this.routeRootSize = routeRootSize; }
+
+        public int getRouteMaxDepth() { return routeMaxDepth; }
+        public void setRouteMaxDepth(int routeMaxDepth) { this.routeMaxDepth = routeMaxDepth; }
+    }
+
+    public static class Serving {
+        /**
+         * 逆地理编码专用 CPU 线程池的线程数（批量请求的分块在此执行），0 表示使用 CPU 核数
+         */
+        private int threads = 0;
+
+        /**
+         * 同时执行的批量请求（batch-reverse / bulk-reverse）上限，超出时立即返回 429，0 表示不限
+         * 线程池队列长度按 上限 × 每请求在途块数 设定，已接受的请求不会因队列满而中途失败
+         */
+        private int maxConcurrentBatches = 4;
+
+        /**
+         * 同时执行的单点请求上限，超出时立即返回 429，0 表示不限
+         */
+        private int maxInFlight = 1024;
+
+        /**
+         * 没有空闲名额时最多等待多久再返回 429，0 表示不等待
+         */
+        private long admissionTimeoutMillis = 0;
+
+        public int getThreads() { return threads; }
+        public void setThreads(int threads) { this.threads = threads; }
+
+        public int getMaxConcurrentBatches() { return maxConcurrentBatches; }
+        public void setMaxConcurrentBatches(int maxConcurrentBatches) { this.maxConcurrentBatches = maxConcurrentBatches; }
+
+        public int getMaxInFlight() { return maxInFlight; }
+        public void setMaxInFlight(int maxInFlight) { this.maxInFlight = maxInFlight; }
+
+        public long getAdmissionTimeoutMillis() { return admissionTimeoutMillis; }
+        public void setAdmissionTimeoutMillis(long admissionTimeoutMillis) { this.admissionTimeoutMillis = admissionTimeoutMillis; }
+    }
+
+    public static class Boundary {
+        /**
+         * 加载省、市、区边界多边形：查不到街道的点返回所在的区（或市、省），结果带 level 字段
+         */
+        private boolean enabled = false;
+
+        /**
+         * 边界数据 CSV，每行 code,name,polygon（WKT），编码为 2 位省、4 位市或 6 位区编码，名称取自行政区划映射文件
+         */
+        private String csv = "src/main/resources/admin_boundaries.csv";
+
+        /**
+         * 按 省 → 市 → 区 逐级定位后只在该区的街道中查找，查不到时仍走空间索引；
+         * 网格查找表与 STRtree 通常已经比三次边界点面判断快，只建议在街道极多、网格未开启时打开
+         */
+        private boolean hierarchicalLookup = false;
+
+        public boolean isEnabled() { return enabled; }
+        public void setEnabled(boolean enabled) { this.enabled = enabled; }
+
+        public String getCsv() { return csv; }
+        public void setCsv(String csv) { this.csv = csv; }
+
+        public boolean isHierarchicalLookup() { return hierarchicalLookup; }
+        public void setHierarchicalLookup(boolean hierarchicalLookup) { this.hierarchicalLookup = hierarchicalLookup; }
+    }
+}
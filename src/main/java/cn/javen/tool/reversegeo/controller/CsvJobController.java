@@ -0,0 +1,96 @@
+package cn.javen.tool.reversegeo.controller;
+
+/**
+ * @Description CSV 逆地理编码异步任务接口：提交、查询进度、下载结果
+ * @Author: Javen
+ * @CreateTime: 2025/10/24 15:00
+ */
+
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.CsvJob;
+import cn.javen.tool.reversegeo.service.CsvJobService;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.core.io.FileSystemResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.nio.file.Path;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.RejectedExecutionException;
+
+@RestController
+@RequestMapping("/api/jobs")
+public class CsvJobController {
+
+    @Autowired
+    private CsvJobService csvJobService;
+
+    /**
+     * 提交任务：上传文件（file）或指定服务器上的文件（name，相对于 geo.jobs.input-dir），二选一
+     * name 指向目录之外时返回 400
+     *
+     * @param crs 输入坐标的坐标系 wgs84（默认）、gcj02、bd09
+     */
+    @PostMapping("/csv-reverse")
+    public ResponseEntity<?> submit(@RequestParam(required = false) MultipartFile file,
+                                    @RequestParam(required = false) String name,
+                                    @RequestParam(required = false) String crs) throws IOException {
+        CoordinateSystem coordinateSystem;
+        try {
+            coordinateSystem = CoordinateSystem.parse(crs);
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        }
+        CsvJob job;
+        try {
+            if (file != null && !file.isEmpty()) {
+                job = csvJobService.submit(file, coordinateSystem);
+            } else if (name != null && !name.isEmpty()) {
+                job = csvJobService.submit(name, coordinateSystem);
+            } else {
+                return ResponseEntity.badRequest().body("请上传文件或指定文件路径");
+            }
+        } catch (IllegalArgumentException e) {
+            return ResponseEntity.badRequest().body(e.getMessage());
+        } catch (RejectedExecutionException e) {
+            return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS).body("任务队列已满，请稍后再试");
+        }
+        return ResponseEntity.accepted().body(job.toStatus());
+    }
+
+    @GetMapping
+    public ResponseEntity<?> list() {
+        List<Map<String, Object>> list = csvJobService.list().stream().map(CsvJob::toStatus).toList();
+        return ResponseEntity.ok(list);
+    }
+
+    @GetMapping("/{id}")
+    public ResponseEntity<?> status(@PathVariable String id) {
+        CsvJob job = csvJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(job.toStatus());
+    }
+
+    @GetMapping("/{id}/output")
+    public ResponseEntity<?> download(@PathVariable String id) {
+        CsvJob job = csvJobService.get(id);
+        if (job == null) {
+            return ResponseEntity.notFound().build();
+        }
+        if (job.getStatus() != CsvJob.Status.SUCCEEDED) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(job.toStatus());
+        }
+        return ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment; filename=\"" + id + "-ok.csv\"")
+                .contentType(MediaType.APPLICATION_OCTET_STREAM)
+                .body(new FileSystemResource(Path.of(job.getOutput())));
+    }
+}
@@ -0,0 +1,66 @@
+package cn.javen.tool.reversegeo.controller;
+
+/**
+ * @Description 数据管理接口：热加载街道与行政区划数据、查看缓存、网格查找表与分片统计
+ * @Author: Javen
+ * @CreateTime: 2025/10/15 15:10
+ */
+
+import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.*;
+
+import java.util.Map;
+
+@RestController
+@RequestMapping("/api/admin")
+public class DataAdminController {
+
+    @Autowired
+    private GeoDataLoader geoDataLoader;
+
+    /**
+     * 触发后台热加载，加载完成前查询继续使用旧数据
+     */
+    @PostMapping("/reload")
+    public ResponseEntity<?> reload() {
+        if (!geoDataLoader.reloadAsync()) {
+            return ResponseEntity.status(HttpStatus.CONFLICT).body(geoDataLoader.getReloadStatus());
+        }
+        return ResponseEntity.accepted().body(geoDataLoader.getReloadStatus());
+    }
+
+    @GetMapping("/reload")
+    public ResponseEntity<?> reloadStatus() {
+        return ResponseEntity.ok(geoDataLoader.getReloadStatus());
+    }
+
+    @GetMapping("/cache")
+    public ResponseEntity<?> cacheStats() {
+        Map<String, Object> stats = geoDataLoader.getCacheStats();
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/grid")
+    public ResponseEntity<?> gridStats() {
+        Map<String, Object> stats = geoDataLoader.getGridStats();
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stats);
+    }
+
+    @GetMapping("/shards")
+    public ResponseEntity<?> shardStats() {
+        Map<String, Object> stats = geoDataLoader.getShardStats();
+        if (stats == null) {
+            return ResponseEntity.notFound().build();
+        }
+        return ResponseEntity.ok(stats);
+    }
+}
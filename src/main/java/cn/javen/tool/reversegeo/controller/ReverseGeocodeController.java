@@ -6,76 +6,305 @@ package cn.javen.tool.reversegeo.controller;
  * @CreateTime: 2025/9/23 15:35
  */
 
-import cn.javen.tool.reversegeo.CsvUtil;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.GeocodeResult;
+import cn.javen.tool.reversegeo.model.NearestStreet;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.service.BatchReverseService;
+import cn.javen.tool.reversegeo.service.CsvReverseService;
 import cn.javen.tool.reversegeo.service.GeoDataLoader;
+import cn.javen.tool.reversegeo.service.GeocodeExecutor;
+import cn.javen.tool.reversegeo.service.RegionQueryService;
+import cn.javen.tool.reversegeo.service.SpatialJoinService;
+import cn.javen.tool.reversegeo.service.StreetDictionary;
+import cn.javen.tool.reversegeo.service.TrackReverseService;
 import com.opencsv.bean.CsvConverter;
+import org.locationtech.jts.geom.Geometry;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 
+import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
-import java.util.Objects;
 import java.util.Set;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
 @RestController
 @RequestMapping("/api/geocode")
 public class ReverseGeocodeController {
 
+    // 字典编码的二进制响应，格式见 StreetDictionary
+    private static final MediaType BINARY = MediaType.parseMediaType(StreetDictionary.MEDIA_TYPE);
+
     @Autowired
     private GeoDataLoader geoDataLoader;
 
+    @Autowired
+    private CsvReverseService csvReverseService;
+
+    @Autowired
+    private BatchReverseService batchReverseService;
+
+    @Autowired
+    private GeocodeExecutor geocodeExecutor;
+
+    @Autowired
+    private StreetDictionary streetDictionary;
+
+    @Autowired
+    private SpatialJoinService spatialJoinService;
+
+    @Autowired
+    private TrackReverseService trackReverseService;
+
+    @Autowired
+    private RegionQueryService regionQueryService;
+
+    /**
+     * @param nearest 点不在任何街道内时是否返回距离上限内最近的街道（结果带 distance，单位米），
+     *                不传时取 geo.nearest.enabled
+     * @param crs     输入坐标的坐标系 wgs84（默认）、gcj02、bd09，查询前转换为 WGS84
+     * @param accept  为 application/x-reversegeo 时返回字典编码的二进制结果，查不到时同样返回 200
+     *                查不到街道但加载了省市区边界（geo.boundary.enabled）时，JSON 返回所在区 / 市 / 省及 level
+     */
     @GetMapping("/reverse")
+    @SuppressWarnings("try")
     public ResponseEntity<?> reverse(
             @RequestParam double lng,
-            @RequestParam double lat) {
+            @RequestParam double lat,
+            @RequestParam(required = false) Boolean nearest,
+            @RequestParam(required = false) String crs,
+            @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
 
-        var street = geoDataLoader.reverseGeocode(lng, lat);
-        if (street == null) {
-            return ResponseEntity.notFound().build();
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        if (coordinateSystem != CoordinateSystem.WGS84) {
+            double[] wgs84 = coordinateSystem.toWgs84(lng, lat);
+            lng = wgs84[0];
+            lat = wgs84[1];
         }
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.admitSingle()) {
+            var street = geoDataLoader.reverseGeocode(lng, lat);
+            NearestStreet found = null;
+            if (street == null && (nearest != null ? nearest : geoDataLoader.isNearestEnabled())) {
+                found = geoDataLoader.nearestStreet(lng, lat);
+            }
+            if (isBinary(accept)) {
+                return binary(street, found);
+            }
+            if (street == null) {
+                if (found != null) {
+                    return ResponseEntity.ok(GeocodeResult.of(found));
+                }
+                AdminBoundary boundary = geoDataLoader.locateAdmin(lng, lat);
+                if (boundary != null) {
+                    return ResponseEntity.ok(GeocodeResult.of(boundary));
+                }
+                return ResponseEntity.notFound().build();
+            }
+
+            return ResponseEntity.ok(GeocodeResult.of(street));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+    }
+
+    private ResponseEntity<byte[]> binary(Street street, NearestStreet nearest) {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32);
+        try {
+            StreetDictionary.Encoder encoder = streetDictionary.encoder(out);
+            encoder.writeHeader();
+            if (nearest != null) {
+                encoder.writeRecord(nearest);
+            } else {
+                encoder.writeRecord(street);
+            }
+            encoder.flush();
+        } catch (IOException e) {
+            throw new IllegalStateException(e);
+        }
+        return ResponseEntity.ok().contentType(BINARY).body(out.toByteArray());
+    }
+
+    /**
+     * 二进制响应使用的字典：全部省市区与编号从 from 开始的街道，客户端首次下载 from=0，之后按本地字典大小增量下载
+     */
+    @GetMapping(value = "/dictionary", produces = StreetDictionary.MEDIA_TYPE)
+    public ResponseEntity<StreamingResponseBody> dictionary(@RequestParam(defaultValue = "0") int from) {
+        StreamingResponseBody body = out -> streetDictionary.writeDictionary(out, from);
+        return ResponseEntity.ok().contentType(BINARY).body(body);
+    }
 
-        Map<String, String> addr = geoDataLoader.getAddress(street.getStreetId());
-        addr.put("street", street.getName());
-        addr.put("streetid", street.getStreetId());
+    private static boolean isBinary(String accept) {
+        return accept != null && accept.contains(StreetDictionary.MEDIA_TYPE);
+    }
 
-        return ResponseEntity.ok(addr);
+    /**
+     * 不支持的坐标系、无法解析的坐标
+     */
+    @ExceptionHandler(IllegalArgumentException.class)
+    public ResponseEntity<String> badRequest(IllegalArgumentException e) {
+        return ResponseEntity.badRequest().body(e.getMessage());
     }
 
+    /**
+     * 二进制响应时按输入顺序每个点一条记录，不回显坐标
+     */
     @PostMapping("/batch-reverse")
-    public ResponseEntity<?> batchReverse(@RequestBody List<String> locationList) {
+    @SuppressWarnings("try")
+    public ResponseEntity<?> batchReverse(@RequestBody List<String> locationList,
+                                          @RequestParam(required = false) String crs,
+                                          @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
         if (locationList.size() > 100) {
             return ResponseEntity.ok("每批次查询不能超过100个坐标点");
         }
+        double[] coords = new double[locationList.size() * 2];
+        for (int i = 0; i < locationList.size(); i++) {
+            String[] split = locationList.get(i).split(",");
+            coords[i * 2] = Double.parseDouble(split[0]);
+            coords[i * 2 + 1] = Double.parseDouble(split[1]);
+        }
 
-        Set<Map<String, String>> collect = locationList.parallelStream().map(loc -> {
-                    String[] split = loc.split(",");
-                    double lng = Double.parseDouble(split[0]);
-                    double lat = Double.parseDouble(split[1]);
-                    var street = geoDataLoader.reverseGeocode(lng, lat);
-                    if (Objects.nonNull(street)) {
-                        Map<String, String> addr = geoDataLoader.getAddress(street.getStreetId());
-                        addr.put("street", street.getName());
-                        addr.put("streetid", street.getStreetId());
-                        addr.put("location", loc);
-                        return addr;
-                    }
-                    return null;
-                })
-                .filter(Objects::nonNull)
-                .collect(Collectors.toSet());
+        Street[] streets;
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.admitBatch()) {
+            streets = batchReverseService.geocodeAll(coords, coordinateSystem);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
 
+        if (isBinary(accept)) {
+            StreamingResponseBody body = out -> {
+                StreetDictionary.Encoder encoder = streetDictionary.encoder(out);
+                encoder.writeHeader();
+                for (Street street : streets) {
+                    encoder.writeRecord(street);
+                }
+                encoder.flush();
+            };
+            return ResponseEntity.ok().contentType(BINARY).body(body);
+        }
+        Set<GeocodeResult> collect = new HashSet<>();
+        for (int i = 0; i < streets.length; i++) {
+            if (streets[i] != null) {
+                collect.add(GeocodeResult.of(streets[i], locationList.get(i)));
+            }
+        }
         return ResponseEntity.ok(collect);
     }
 
+    /**
+     * 大批量逆地理编码：请求体为扁平坐标数组 [lng,lat,lng,lat,...]
+     * 返回 NDJSON，每个输入点按顺序对应一行，查不到的点为 null；Accept 为 application/x-reversegeo 时返回二进制
+     */
+    @PostMapping(value = "/bulk-reverse", consumes = MediaType.APPLICATION_JSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, StreetDictionary.MEDIA_TYPE})
+    public ResponseEntity<?> bulkReverse(@RequestBody double[] coords,
+                                         @RequestParam(required = false) String crs,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        if (coords.length % 2 != 0) {
+            return ResponseEntity.badRequest().body("坐标数组长度必须为偶数");
+        }
+        if (coords.length / 2 > batchReverseService.getMaxPoints()) {
+            return ResponseEntity.badRequest()
+                    .body("每批次查询不能超过" + batchReverseService.getMaxPoints() + "个坐标点，请使用 NDJSON 流式提交");
+        }
+        GeocodeExecutor.Admission admission;
+        try {
+            admission = geocodeExecutor.admitBatch();
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+        // 名额在响应写完后归还
+        boolean binary = isBinary(accept);
+        StreamingResponseBody body = out -> {
+            try (admission) {
+                if (binary) {
+                    batchReverseService.reverseBinary(coords, coordinateSystem, out);
+                } else {
+                    batchReverseService.reverse(coords, coordinateSystem, out);
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(binary ? BINARY : MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * 大批量逆地理编码：请求体为 NDJSON，每行一个点（lng,lat 或 [lng,lat]），边读边查边写，点数不限
+     */
+    @PostMapping(value = "/bulk-reverse", consumes = MediaType.APPLICATION_NDJSON_VALUE,
+            produces = {MediaType.APPLICATION_NDJSON_VALUE, StreetDictionary.MEDIA_TYPE})
+    public ResponseEntity<?> bulkReverseStream(InputStream in,
+                                               @RequestParam(required = false) String crs,
+                                               @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        GeocodeExecutor.Admission admission;
+        try {
+            admission = geocodeExecutor.admitBatch();
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+        boolean binary = isBinary(accept);
+        StreamingResponseBody body = out -> {
+            try (admission) {
+                if (binary) {
+                    batchReverseService.reverseBinary(in, coordinateSystem, out);
+                } else {
+                    batchReverseService.reverse(in, coordinateSystem, out);
+                }
+            }
+        };
+        return ResponseEntity.ok().contentType(binary ? BINARY : MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * 轨迹逆地理编码：请求体每行一个点 device,time,lng,lat，同一设备按时间排序，
+     * 返回 NDJSON，每行为设备在一个街道内的分段（enter、exit、points）
+     */
+    @PostMapping(value = "/track", produces = MediaType.APPLICATION_NDJSON_VALUE)
+    public ResponseEntity<?> track(InputStream in, @RequestParam(required = false) String crs) {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        GeocodeExecutor.Admission admission;
+        try {
+            admission = geocodeExecutor.admitBatch();
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+        StreamingResponseBody body = out -> {
+            try (admission) {
+                trackReverseService.reverse(in, coordinateSystem, out);
+            }
+        };
+        return ResponseEntity.ok().contentType(MediaType.APPLICATION_NDJSON).body(body);
+    }
+
+    /**
+     * 并发名额已满：立即返回 429，客户端按 Retry-After 退避重试
+     */
+    private static ResponseEntity<String> tooManyRequests(RejectedExecutionException e) {
+        return ResponseEntity.status(HttpStatus.TOO_MANY_REQUESTS)
+                .header(HttpHeaders.RETRY_AFTER, "1")
+                .body(e.getMessage() + "，请稍后再试");
+    }
+
     @PostMapping("/reverse")
-    public ResponseEntity<?> reversePost(@RequestBody Coordinate coord) {
-        return reverse(coord.lng, coord.lat);
+    public ResponseEntity<?> reversePost(@RequestBody Coordinate coord,
+                                         @RequestParam(required = false) String crs,
+                                         @RequestHeader(value = HttpHeaders.ACCEPT, required = false) String accept) {
+        return reverse(coord.lng, coord.lat, null, crs, accept);
     }
 
     static class Coordinate {
@@ -100,39 +329,120 @@ public class ReverseGeocodeController {
     }
 
     @GetMapping("/csv-reverse")
-    public ResponseEntity<?> csvReverse(@RequestParam String name) throws IOException {
+    @SuppressWarnings("try")
+    public ResponseEntity<?> csvReverse(@RequestParam String name,
+                                        @RequestParam(required = false) String crs) throws IOException {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
         String filename = name;
 
-        List<String[]> sourceLines = CsvUtil.read(filename);
-        List<String[]> newLines = sourceLines.stream().map(line -> {
-            double lng = 0;
-            try {
-                lng = Double.parseDouble(line[2]);
-                double lat = Double.parseDouble(line[3]);
-                var street = geoDataLoader.reverseGeocode(lng, lat);
-                if (Objects.nonNull(street)) {
-                    Map<String, String> addr = geoDataLoader.getAddress(street.getStreetId());
-                    addr.put("street", street.getName());
-                    addr.put("streetid", street.getStreetId());
-
-                    List<String> newLine = List.of(line[0], line[1], line[2], line[3],
-                            addr.getOrDefault("province", ""),
-                            addr.getOrDefault("city", ""),
-                            addr.getOrDefault("district", ""),
-                            addr.getOrDefault("street", ""));
-                    return newLine.stream().toArray(String[]::new);
-                }
-                return line;
-            }
-            catch (NumberFormatException e) {
-                // 表头行
-                return List.of(line[0], line[1], line[2], line[3], "省", "市", "区", "街道").stream().toArray(String[]::new);
-            }
-        }).collect(Collectors.toUnmodifiableList());
-
+        // 流式读取、分批并行查询、按原顺序写出，内存占用与文件大小无关；同步执行，占用一个批量请求名额
         String fileoutputname = filename.substring(0, filename.length() - 4) + "-ok.csv";
-        CsvUtil.write(fileoutputname, newLines);
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.admitBatch()) {
+            csvReverseService.reverse(filename, fileoutputname, coordinateSystem, 0, null);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
 
         return ResponseEntity.ok("finish");
     }
-}
\ No newline at end of file
+
+    /**
+     * 批量空间连接：处理服务器上的文件，同步执行，占用一个批量请求名额
+     *
+     * @param format csv（默认，输入输出与 csv-reverse 相同）或 binary（小端 float64 坐标，输出字典编码记录与 .dict 字典）
+     * @param name   输入文件，相对于 geo.join.dir
+     * @param output 输出文件，相对于 geo.join.dir，默认 csv 为 {name 去掉 .csv}-join.csv，binary 为 {name}.rgeo
+     *               name 或 output 指向目录之外时返回 400
+     */
+    @GetMapping("/spatial-join")
+    @SuppressWarnings("try")
+    public ResponseEntity<?> spatialJoin(@RequestParam String name,
+                                         @RequestParam(required = false) String output,
+                                         @RequestParam(defaultValue = "csv") String format,
+                                         @RequestParam(required = false) String crs) throws IOException {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        boolean binary = "binary".equalsIgnoreCase(format);
+        if (!binary && !"csv".equalsIgnoreCase(format)) {
+            return ResponseEntity.badRequest().body("不支持的格式: " + format + "，可选 csv、binary");
+        }
+        String target = output != null && !output.isEmpty() ? output
+                : binary ? name + ".rgeo" : (name.endsWith(".csv") ? name.substring(0, name.length() - 4) : name) + "-join.csv";
+        // 先校验路径，越界的请求不占用批量名额
+        spatialJoinService.resolve(name);
+        spatialJoinService.resolve(target);
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.admitBatch()) {
+            long start = System.currentTimeMillis();
+            long points = binary
+                    ? spatialJoinService.joinBinary(name, target, coordinateSystem)
+                    : spatialJoinService.joinCsv(name, target, coordinateSystem);
+            Map<String, Object> result = new LinkedHashMap<>();
+            result.put("output", target);
+            result.put("points", points);
+            result.put("millis", System.currentTimeMillis() - start);
+            return ResponseEntity.ok(result);
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+    }
+
+    /**
+     * 区域查询：与矩形范围相交的街道，适用于地图视口等场景
+     *
+     * @param bbox   minLng,minLat,maxLng,maxLat
+     * @param area   是否计算每个街道与区域重叠的面积（平方米，area）及占街道面积的比例（fraction）
+     * @param level  street（默认，按街道分页返回）或 district（按区汇总街道数与面积，不分页）
+     * @param cursor 上一页返回的 next，首页不传；数据重新加载后失效，返回 400
+     * @param size   每页街道数，默认 geo.region.default-page-size，不超过 geo.region.max-page-size
+     * @param crs    坐标的坐标系，同 /reverse
+     */
+    @GetMapping("/region")
+    public ResponseEntity<?> region(@RequestParam String bbox,
+                                    @RequestParam(defaultValue = "false") boolean area,
+                                    @RequestParam(defaultValue = "street") String level,
+                                    @RequestParam(required = false) String cursor,
+                                    @RequestParam(defaultValue = "0") int size,
+                                    @RequestParam(required = false) String crs) {
+        CoordinateSystem coordinateSystem = CoordinateSystem.parse(crs);
+        String[] split = bbox.split(",");
+        if (split.length != 4) {
+            return ResponseEntity.badRequest().body("bbox 应为 minLng,minLat,maxLng,maxLat");
+        }
+        Geometry region = regionQueryService.bbox(Double.parseDouble(split[0]), Double.parseDouble(split[1]),
+                Double.parseDouble(split[2]), Double.parseDouble(split[3]), coordinateSystem);
+        return region(region, area, level, cursor, size);
+    }
+
+    /**
+     * 区域查询：请求体为 WKT 的 POLYGON / MULTIPOLYGON（如配送范围），其余参数同 GET；
+     * 分页时每页请求都需要带上同一请求体
+     */
+    @PostMapping(value = "/region", consumes = MediaType.TEXT_PLAIN_VALUE)
+    public ResponseEntity<?> regionPost(@RequestBody String wkt,
+                                        @RequestParam(defaultValue = "false") boolean area,
+                                        @RequestParam(defaultValue = "street") String level,
+                                        @RequestParam(required = false) String cursor,
+                                        @RequestParam(defaultValue = "0") int size,
+                                        @RequestParam(required = false) String crs) {
+        Geometry region = regionQueryService.parse(wkt, CoordinateSystem.parse(crs));
+        return region(region, area, level, cursor, size);
+    }
+
+    @SuppressWarnings("try")
+    private ResponseEntity<?> region(Geometry region, boolean area, String level, String cursor, int size) {
+        if (geoDataLoader.isSharded()) {
+            return ResponseEntity.status(HttpStatus.NOT_IMPLEMENTED).body("分片模式下没有全量街道索引，不支持区域查询");
+        }
+        boolean district = "district".equalsIgnoreCase(level);
+        if (!district && !"street".equalsIgnoreCase(level)) {
+            return ResponseEntity.badRequest().body("不支持的级别: " + level + "，可选 street、district");
+        }
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.admitBatch()) {
+            if (district) {
+                return ResponseEntity.ok(regionQueryService.districts(region, area));
+            }
+            return ResponseEntity.ok(regionQueryService.streets(region, area, cursor, size));
+        } catch (RejectedExecutionException e) {
+            return tooManyRequests(e);
+        }
+    }
+}
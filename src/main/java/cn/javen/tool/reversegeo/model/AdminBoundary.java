@@ -0,0 +1,98 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 一个省、市或区的边界多边形，加载时构建点面索引，挂在 AdminHierarchy 的上一级下面
+ * 区级边界另外持有该区的街道列表（按街道编码前 6 位归属），逐级查找时只在这些街道中做点面判断
+ * 构建完成后只读，可多线程并发查询
+ * @Author: Javen
+ * @CreateTime: 2025/11/11 10:00
+ */
+
+import org.locationtech.jts.geom.Envelope;
+
+public final class AdminBoundary {
+
+    public static final int PROVINCE = 1;
+    public static final int CITY = 2;
+    public static final int DISTRICT = 3;
+
+    private static final AdminBoundary[] NO_CHILDREN = new AdminBoundary[0];
+    private static final Street[] NO_STREETS = new Street[0];
+
+    private final int code;
+    private final int level;
+    private final AdminPath path;
+    private final Envelope envelope;
+    private final PolygonLocator locator;
+    // 顶点数较多的边界的简化多边形，容差带外的点不必再查原边界
+    private final PolygonLocator coarseLocator;
+
+    // 下一级边界与区内街道，AdminHierarchy.build 时设置
+    private AdminBoundary[] children = NO_CHILDREN;
+    private Street[] streets = NO_STREETS;
+
+    public AdminBoundary(int code, int level, AdminPath path, Envelope envelope,
+                         PolygonLocator locator, PolygonLocator coarseLocator) {
+        this.code = code;
+        this.level = level;
+        this.path = path;
+        this.envelope = envelope;
+        this.locator = locator;
+        this.coarseLocator = coarseLocator;
+    }
+
+    /**
+     * 按编码位数确定级别：2 位省、4 位市、6 位区，其余返回 -1
+     */
+    public static int levelOf(String code) {
+        return switch (code.length()) {
+            case 2 -> PROVINCE;
+            case 4 -> CITY;
+            case 6 -> DISTRICT;
+            default -> -1;
+        };
+    }
+
+    /**
+     * 点是否在边界内：先比外包矩形，再查简化多边形，只有容差带内的点才查原边界
+     */
+    public boolean contains(double x, double y) {
+        if (!envelope.contains(x, y)) {
+            return false;
+        }
+        if (coarseLocator != null) {
+            int location = coarseLocator.locate(x, y);
+            if (location != PolygonLocator.UNCERTAIN) {
+                return location == PolygonLocator.INSIDE;
+            }
+        }
+        return locator.contains(x, y);
+    }
+
+    public int getCode() { return code; }
+
+    public int getLevel() { return level; }
+
+    /**
+     * 接口中 level 字段的取值
+     */
+    public String getLevelName() {
+        return switch (level) {
+            case PROVINCE -> "province";
+            case CITY -> "city";
+            default -> "district";
+        };
+    }
+
+    public AdminPath getPath() { return path; }
+
+    public Envelope getEnvelope() { return envelope; }
+
+    public AdminBoundary[] getChildren() { return children; }
+
+    void setChildren(AdminBoundary[] children) { this.children = children; }
+
+    public Street[] getStreets() { return streets; }
+
+    void setStreets(Street[] streets) { this.streets = streets; }
+}
@@ -0,0 +1,107 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 行政区划映射：省、市、区编码以 int 为键，加载时为每个区生成一个共享的 AdminPath
+ * freeze() 之后只读，按区编码有序数组二分查找，查询路径不创建对象，可多线程并发读取
+ * @Author: Javen
+ * @CreateTime: 2025/10/29 10:20
+ */
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+public class AdminDivisions {
+
+    private final Map<Integer, String> provinces = new HashMap<>();
+    private final Map<Integer, String> cities = new HashMap<>();
+    private final Map<Integer, String> districts = new HashMap<>();
+
+    // 加载阶段的去重表，键由省、市、区编码拼成
+    private final Map<Long, AdminPath> interned = new HashMap<>();
+
+    // freeze() 后按区编码排序的查找表
+    private int[] districtCodes = new int[0];
+    private AdminPath[] districtPaths = new AdminPath[0];
+
+    /**
+     * 读取映射文件中的一行 "编码,名称"，编码不是数字的行忽略
+     *
+     * @return 是否有效
+     */
+    public boolean putProvince(String line) {
+        return put(provinces, line, 2);
+    }
+
+    public boolean putCity(String line) {
+        return put(cities, line, 4);
+    }
+
+    public boolean putDistrict(String line) {
+        return put(districts, line, 6);
+    }
+
+    private static boolean put(Map<Integer, String> map, String line, int digits) {
+        String[] split = line.split(",");
+        if (split.length < 2) {
+            return false;
+        }
+        // 文件可能带 UTF-8 BOM
+        String code = split[0].replace("\uFEFF", "").trim();
+        int value = code.length() == digits ? AdminPath.parseCode(code, digits) : -1;
+        if (value < 0) {
+            return false;
+        }
+        map.put(value, split[1]);
+        return true;
+    }
+
+    /**
+     * 加载阶段按街道编码解析并去重，同一区的街道得到同一个实例
+     */
+    public AdminPath resolve(String streetId) {
+        int p = AdminPath.parseCode(streetId, 2);
+        int c = AdminPath.parseCode(streetId, 4);
+        int d = AdminPath.parseCode(streetId, 6);
+        long key = ((long) (p + 1) << 42) | ((long) (c + 1) << 21) | (d + 1);
+        return interned.computeIfAbsent(key, k -> create(p, c, d));
+    }
+
+    /**
+     * 建立按区编码的有序查找表，之后不再调用 resolve
+     */
+    public void freeze() {
+        AdminPath[] paths = interned.values().stream()
+                .filter(path -> path.getDistrictCode() >= 0)
+                .sorted((a, b) -> Integer.compare(a.getDistrictCode(), b.getDistrictCode()))
+                .toArray(AdminPath[]::new);
+        int[] codes = new int[paths.length];
+        for (int i = 0; i < paths.length; i++) {
+            codes[i] = paths[i].getDistrictCode();
+        }
+        districtCodes = codes;
+        districtPaths = paths;
+    }
+
+    /**
+     * 查询任意街道编码的行政区划：已加载街道所在的区直接返回共享实例，
+     * 其余编码（不在数据中的区、编码不足 6 位）临时解析
+     */
+    public AdminPath find(String streetId) {
+        int d = AdminPath.parseCode(streetId, 6);
+        if (d >= 0) {
+            int i = Arrays.binarySearch(districtCodes, d);
+            if (i >= 0) {
+                return districtPaths[i];
+            }
+        }
+        return create(AdminPath.parseCode(streetId, 2), AdminPath.parseCode(streetId, 4), d);
+    }
+
+    private AdminPath create(int p, int c, int d) {
+        return new AdminPath(p, c, d,
+                provinces.getOrDefault(p, AdminPath.UNKNOWN_PROVINCE),
+                cities.getOrDefault(c, AdminPath.UNKNOWN_CITY),
+                districts.getOrDefault(d, AdminPath.UNKNOWN_DISTRICT));
+    }
+}
@@ -0,0 +1,118 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 省 → 市 → 区三级边界树：按编码挂接上下级（市编码 / 100 为省，区编码 / 100 为市），
+ * 缺少上一级边界时挂到更上一级，都没有时作为根节点；街道按所属区编码挂到区级边界下
+ * 查询时从根节点逐级向下，每级只检查上一级命中边界的子节点，返回最深一级包含该点的边界
+ * 构建完成后只读，查询路径不创建对象，可多线程并发读取
+ * @Author: Javen
+ * @CreateTime: 2025/11/11 10:20
+ */
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+public final class AdminHierarchy {
+
+    private final AdminBoundary[] roots;
+    private final int[] counts;
+    private final int assignedStreets;
+
+    private AdminHierarchy(AdminBoundary[] roots, int[] counts, int assignedStreets) {
+        this.roots = roots;
+        this.counts = counts;
+        this.assignedStreets = assignedStreets;
+    }
+
+    /**
+     * @param boundaries 各级边界，同一编码出现多次时只保留第一个
+     * @param streets    已解析 AdminPath 的街道，所在区没有边界的街道不挂接
+     */
+    public static AdminHierarchy build(List<AdminBoundary> boundaries, List<Street> streets) {
+        Map<Integer, AdminBoundary> provinces = new HashMap<>();
+        Map<Integer, AdminBoundary> cities = new HashMap<>();
+        Map<Integer, AdminBoundary> districts = new HashMap<>();
+        int[] counts = new int[AdminBoundary.DISTRICT + 1];
+        // 去重后的边界，编码重复时只保留文件中的第一条，保持输入顺序
+        List<AdminBoundary> unique = new ArrayList<>(boundaries.size());
+        for (AdminBoundary boundary : boundaries) {
+            Map<Integer, AdminBoundary> level = switch (boundary.getLevel()) {
+                case AdminBoundary.PROVINCE -> provinces;
+                case AdminBoundary.CITY -> cities;
+                default -> districts;
+            };
+            if (level.putIfAbsent(boundary.getCode(), boundary) == null) {
+                counts[boundary.getLevel()]++;
+                unique.add(boundary);
+            }
+        }
+
+        // 保持输入顺序，重叠的边界按文件中的先后决定
+        Map<AdminBoundary, List<AdminBoundary>> children = new LinkedHashMap<>();
+        List<AdminBoundary> roots = new ArrayList<>();
+        for (AdminBoundary boundary : unique) {
+            int code = boundary.getCode();
+            AdminBoundary parent = switch (boundary.getLevel()) {
+                case AdminBoundary.PROVINCE -> null;
+                case AdminBoundary.CITY -> provinces.get(code / 100);
+                default -> cities.getOrDefault(code / 100, provinces.get(code / 10000));
+            };
+            if (parent == null) {
+                roots.add(boundary);
+            } else {
+                children.computeIfAbsent(parent, k -> new ArrayList<>()).add(boundary);
+            }
+        }
+        children.forEach((parent, list) -> parent.setChildren(list.toArray(new AdminBoundary[0])));
+
+        Map<AdminBoundary, List<Street>> districtStreets = new HashMap<>();
+        int assigned = 0;
+        for (Street street : streets) {
+            AdminBoundary district = districts.get(street.getAdminPath().getDistrictCode());
+            if (district != null) {
+                districtStreets.computeIfAbsent(district, k -> new ArrayList<>()).add(street);
+                assigned++;
+            }
+        }
+        districtStreets.forEach((district, list) -> district.setStreets(list.toArray(new Street[0])));
+        return new AdminHierarchy(roots.toArray(new AdminBoundary[0]), counts, assigned);
+    }
+
+    /**
+     * 包含该点的最深一级边界，不在任何边界内时返回 null
+     */
+    public AdminBoundary locate(double x, double y) {
+        AdminBoundary found = null;
+        AdminBoundary[] candidates = roots;
+        boolean descended = true;
+        while (descended) {
+            descended = false;
+            for (AdminBoundary candidate : candidates) {
+                if (candidate.contains(x, y)) {
+                    found = candidate;
+                    candidates = candidate.getChildren();
+                    descended = true;
+                    break;
+                }
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 某一级（AdminBoundary.PROVINCE / CITY / DISTRICT）的边界数
+     */
+    public int count(int level) {
+        return counts[level];
+    }
+
+    /**
+     * 挂接到区级边界下的街道数
+     */
+    public int getAssignedStreets() {
+        return assignedStreets;
+    }
+}
@@ -0,0 +1,79 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 街道所属的省、市、区，加载时按街道编码前缀解析一次，同一区的街道共享同一个实例
+ * 编码取街道编码的前 2、4、6 位，无法解析或映射中不存在时名称为"未知省/未知市/未知区"
+ * @Author: Javen
+ * @CreateTime: 2025/10/29 10:00
+ */
+
+import java.util.HashMap;
+import java.util.Map;
+
+public final class AdminPath {
+
+    public static final String UNKNOWN_PROVINCE = "未知省";
+    public static final String UNKNOWN_CITY = "未知市";
+    public static final String UNKNOWN_DISTRICT = "未知区";
+
+    public static final AdminPath UNKNOWN = new AdminPath(-1, -1, -1,
+            UNKNOWN_PROVINCE, UNKNOWN_CITY, UNKNOWN_DISTRICT);
+
+    private final int provinceCode;
+    private final int cityCode;
+    private final int districtCode;
+    private final String province;
+    private final String city;
+    private final String district;
+
+    public AdminPath(int provinceCode, int cityCode, int districtCode,
+                     String province, String city, String district) {
+        this.provinceCode = provinceCode;
+        this.cityCode = cityCode;
+        this.districtCode = districtCode;
+        this.province = province;
+        this.city = city;
+        this.district = district;
+    }
+
+    public int getProvinceCode() { return provinceCode; }
+
+    public int getCityCode() { return cityCode; }
+
+    public int getDistrictCode() { return districtCode; }
+
+    public String getProvince() { return province; }
+
+    public String getCity() { return city; }
+
+    public String getDistrict() { return district; }
+
+    /**
+     * 取编码前 digits 位的数值，长度不足或含非数字字符时返回 -1，不创建子串
+     */
+    public static int parseCode(String code, int digits) {
+        if (code == null || code.length() < digits) {
+            return -1;
+        }
+        int value = 0;
+        for (int i = 0; i < digits; i++) {
+            char c = code.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * 旧接口使用的可修改 Map，每次调用新建
+     */
+    public Map<String, String> toMap() {
+        Map<String, String> addr = new HashMap<>();
+        addr.put("province", province);
+        addr.put("city", city);
+        addr.put("district", district);
+        return addr;
+    }
+}
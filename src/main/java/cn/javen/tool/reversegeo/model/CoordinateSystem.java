@@ -0,0 +1,148 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 输入坐标的坐标系：WGS84（GPS 原始坐标，街道数据使用的坐标系）、GCJ-02（国测局坐标，高德、腾讯）、BD-09（百度）
+ * 查询前在原地把坐标转换为 WGS84：只使用基本类型与 Math 函数，按扁平数组 [lng,lat,lng,lat,...] 逐点转换，不创建对象
+ * GCJ-02、BD-09 到 WGS84 没有解析逆变换，常见的一步近似有 1~2 米误差，会把紧贴街道边界的点判到相邻街道；
+ * 这里以近似值为起点，用正向变换反复修正，直到误差小于 1e-10 度（约 0.01 毫米）
+ * 中国境外的坐标 GCJ-02 与 WGS84 相同，不做偏移
+ * @Author: Javen
+ * @CreateTime: 2025/11/10 10:00
+ */
+
+public enum CoordinateSystem {
+    WGS84, GCJ02, BD09;
+
+    // 克拉索夫斯基椭球长半轴与偏心率平方
+    private static final double A = 6378245.0;
+    private static final double EE = 0.00669342162296594323;
+    private static final double X_PI = Math.PI * 3000.0 / 180.0;
+    private static final double EPSILON = 1e-10;
+    private static final int MAX_ITERATIONS = 10;
+
+    /**
+     * 解析请求参数，不区分大小写，忽略 '-' 与 '_'（gcj-02、GCJ02、bd09 均可），为空时为 WGS84
+     *
+     * @throws IllegalArgumentException 不支持的坐标系
+     */
+    public static CoordinateSystem parse(String name) {
+        if (name == null || name.isBlank()) {
+            return WGS84;
+        }
+        String normalized = name.replace("-", "").replace("_", "").trim().toUpperCase();
+        return switch (normalized) {
+            case "WGS84", "EPSG4326" -> WGS84;
+            case "GCJ02" -> GCJ02;
+            case "BD09", "BD09LL" -> BD09;
+            default -> throw new IllegalArgumentException("不支持的坐标系: " + name + "，可选 wgs84、gcj02、bd09");
+        };
+    }
+
+    /**
+     * 把 points 个点原地转换为 WGS84，坐标按 lng,lat 交替存放，从 coords[offset] 开始；NaN 保持为 NaN
+     */
+    public void toWgs84(double[] coords, int offset, int points) {
+        if (this == WGS84) {
+            return;
+        }
+        int end = offset + points * 2;
+        for (int i = offset; i < end; i += 2) {
+            if (this == BD09) {
+                bd09ToGcj02(coords, i);
+            }
+            gcj02ToWgs84(coords, i);
+        }
+    }
+
+    /**
+     * 单点转换，返回新数组 {lng, lat}
+     */
+    public double[] toWgs84(double lng, double lat) {
+        double[] point = {lng, lat};
+        toWgs84(point, 0, 1);
+        return point;
+    }
+
+    private static void gcj02ToWgs84(double[] coords, int i) {
+        double gLng = coords[i];
+        double gLat = coords[i + 1];
+        if (outOfChina(gLng, gLat)) {
+            return;
+        }
+        // 以 GCJ-02 坐标为初值，wgs += gcj - forward(wgs)
+        double lng = gLng;
+        double lat = gLat;
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            double errLng = lng + offsetLng(lng, lat) - gLng;
+            double errLat = lat + offsetLat(lng, lat) - gLat;
+            lng -= errLng;
+            lat -= errLat;
+            if (Math.abs(errLng) < EPSILON && Math.abs(errLat) < EPSILON) {
+                break;
+            }
+        }
+        coords[i] = lng;
+        coords[i + 1] = lat;
+    }
+
+    private static void bd09ToGcj02(double[] coords, int i) {
+        double bLng = coords[i];
+        double bLat = coords[i + 1];
+        // 常用的一步近似逆变换作为初值
+        double x = bLng - 0.0065;
+        double y = bLat - 0.006;
+        double z = Math.sqrt(x * x + y * y) - 0.00002 * Math.sin(y * X_PI);
+        double theta = Math.atan2(y, x) - 0.000003 * Math.cos(x * X_PI);
+        double lng = z * Math.cos(theta);
+        double lat = z * Math.sin(theta);
+        for (int k = 0; k < MAX_ITERATIONS; k++) {
+            double fz = Math.sqrt(lng * lng + lat * lat) + 0.00002 * Math.sin(lat * X_PI);
+            double fTheta = Math.atan2(lat, lng) + 0.000003 * Math.cos(lng * X_PI);
+            double errLng = fz * Math.cos(fTheta) + 0.0065 - bLng;
+            double errLat = fz * Math.sin(fTheta) + 0.006 - bLat;
+            lng -= errLng;
+            lat -= errLat;
+            if (Math.abs(errLng) < EPSILON && Math.abs(errLat) < EPSILON) {
+                break;
+            }
+        }
+        coords[i] = lng;
+        coords[i + 1] = lat;
+    }
+
+    private static boolean outOfChina(double lng, double lat) {
+        return lng < 72.004 || lng > 137.8347 || lat < 0.8293 || lat > 55.8271;
+    }
+
+    /**
+     * WGS84 点 (lng, lat) 处 GCJ-02 的经度偏移（度）
+     */
+    private static double offsetLng(double lng, double lat) {
+        double x = lng - 105.0;
+        double y = lat - 35.0;
+        double t = 300.0 + x + 2.0 * y + 0.1 * x * x + 0.1 * x * y + 0.1 * Math.sqrt(Math.abs(x));
+        t += (20.0 * Math.sin(6.0 * x * Math.PI) + 20.0 * Math.sin(2.0 * x * Math.PI)) * 2.0 / 3.0;
+        t += (20.0 * Math.sin(x * Math.PI) + 40.0 * Math.sin(x / 3.0 * Math.PI)) * 2.0 / 3.0;
+        t += (150.0 * Math.sin(x / 12.0 * Math.PI) + 300.0 * Math.sin(x / 30.0 * Math.PI)) * 2.0 / 3.0;
+        double radLat = lat / 180.0 * Math.PI;
+        double sin = Math.sin(radLat);
+        double magic = 1 - EE * sin * sin;
+        return t * 180.0 / (A / Math.sqrt(magic) * Math.cos(radLat) * Math.PI);
+    }
+
+    /**
+     * WGS84 点 (lng, lat) 处 GCJ-02 的纬度偏移（度）
+     */
+    private static double offsetLat(double lng, double lat) {
+        double x = lng - 105.0;
+        double y = lat - 35.0;
+        double t = -100.0 + 2.0 * x + 3.0 * y + 0.2 * y * y + 0.1 * x * y + 0.2 * Math.sqrt(Math.abs(x));
+        t += (20.0 * Math.sin(6.0 * x * Math.PI) + 20.0 * Math.sin(2.0 * x * Math.PI)) * 2.0 / 3.0;
+        t += (20.0 * Math.sin(y * Math.PI) + 40.0 * Math.sin(y / 3.0 * Math.PI)) * 2.0 / 3.0;
+        t += (160.0 * Math.sin(y / 12.0 * Math.PI) + 320.0 * Math.sin(y * Math.PI / 30.0)) * 2.0 / 3.0;
+        double radLat = lat / 180.0 * Math.PI;
+        double sin = Math.sin(radLat);
+        double magic = 1 - EE * sin * sin;
+        return t * 180.0 / ((A * (1 - EE)) / (magic * Math.sqrt(magic)) * Math.PI);
+    }
+}
@@ -0,0 +1,171 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description CSV 逆地理编码异步任务，状态与断点持久化在任务目录的 job.properties 中
+ * @Author: Javen
+ * @CreateTime: 2025/10/24 10:40
+ */
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+
+public class CsvJob {
+
+    public enum Status {
+        QUEUED, RUNNING, SUCCEEDED, FAILED
+    }
+
+    private String id;
+    private String input;
+    private String output;
+    // 输入坐标的坐标系
+    private CoordinateSystem crs = CoordinateSystem.WGS84;
+    private volatile Status status = Status.QUEUED;
+    private volatile long totalRows = -1;
+    private volatile long rowsDone;
+    // 最近一次断点：已写出的行数以及此时输出文件的字节数
+    private volatile long checkpointRows;
+    private volatile long checkpointBytes;
+    private long createdAt;
+    private volatile long finishedAt;
+    private volatile String error;
+
+    // 本次运行的起点，用于计算吞吐量（不持久化）
+    private volatile long runStartRows;
+    private volatile long runStartNanos;
+
+    public String getId() { return id; }
+    public void setId(String id) { this.id = id; }
+
+    public String getInput() { return input; }
+    public void setInput(String input) { this.input = input; }
+
+    public String getOutput() { return output; }
+    public void setOutput(String output) { this.output = output; }
+
+    public CoordinateSystem getCrs() { return crs; }
+    public void setCrs(CoordinateSystem crs) { this.crs = crs; }
+
+    public Status getStatus() { return status; }
+    public void setStatus(Status status) { this.status = status; }
+
+    public long getTotalRows() { return totalRows; }
+    public void setTotalRows(long totalRows) { this.totalRows = totalRows; }
+
+    public long getRowsDone() { return rowsDone; }
+    public void setRowsDone(long rowsDone) { this.rowsDone = rowsDone; }
+
+    public long getCheckpointRows() { return checkpointRows; }
+    public void setCheckpointRows(long checkpointRows) { this.checkpointRows = checkpointRows; }
+
+    public long getCheckpointBytes() { return checkpointBytes; }
+    public void setCheckpointBytes(long checkpointBytes) { this.checkpointBytes = checkpointBytes; }
+
+    public long getCreatedAt() { return createdAt; }
+    public void setCreatedAt(long createdAt) { this.createdAt = createdAt; }
+
+    public long getFinishedAt() { return finishedAt; }
+    public void setFinishedAt(long finishedAt) { this.finishedAt = finishedAt; }
+
+    public String getError() { return error; }
+    public void setError(String error) { this.error = error; }
+
+    /**
+     * 标记本次运行的起点
+     */
+    public void startRun() {
+        this.runStartRows = rowsDone;
+        this.runStartNanos = System.nanoTime();
+    }
+
+    /**
+     * 本次运行的吞吐量（行/秒）
+     */
+    public long getRowsPerSecond() {
+        long nanos = System.nanoTime() - runStartNanos;
+        if (status != Status.RUNNING || nanos <= 0) {
+            return 0;
+        }
+        return (rowsDone - runStartRows) * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * 按当前吞吐量估算的剩余秒数，无法估算时返回 -1
+     */
+    public long getEtaSeconds() {
+        long rate = getRowsPerSecond();
+        if (rate <= 0 || totalRows < 0) {
+            return -1;
+        }
+        return Math.max(0, totalRows - rowsDone) / rate;
+    }
+
+    public Map<String, Object> toStatus() {
+        Map<String, Object> map = new LinkedHashMap<>();
+        map.put("id", id);
+        map.put("status", status);
+        map.put("crs", crs);
+        map.put("totalRows", totalRows);
+        map.put("rowsDone", rowsDone);
+        map.put("rowsPerSecond", getRowsPerSecond());
+        map.put("etaSeconds", getEtaSeconds());
+        map.put("createdAt", createdAt);
+        map.put("finishedAt", finishedAt);
+        map.put("error", error);
+        return map;
+    }
+
+    /**
+     * 写入 job.properties，先写临时文件再替换，进程崩溃时不会留下半个文件
+     */
+    public void save(Path file) throws IOException {
+        Properties props = new Properties();
+        props.setProperty("id", id);
+        props.setProperty("input", input);
+        props.setProperty("output", output);
+        props.setProperty("crs", crs.name());
+        props.setProperty("status", status.name());
+        props.setProperty("totalRows", String.valueOf(totalRows));
+        props.setProperty("checkpointRows", String.valueOf(checkpointRows));
+        props.setProperty("checkpointBytes", String.valueOf(checkpointBytes));
+        props.setProperty("createdAt", String.valueOf(createdAt));
+        props.setProperty("finishedAt", String.valueOf(finishedAt));
+        if (error != null) {
+            props.setProperty("error", error);
+        }
+        Path tmp = file.resolveSibling(file.getFileName() + ".tmp");
+        try (Writer writer = Files.newBufferedWriter(tmp, StandardCharsets.UTF_8)) {
+            props.store(writer, null);
+        }
+        Files.move(tmp, file, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public static CsvJob load(Path file) throws IOException {
+        Properties props = new Properties();
+        try (Reader reader = Files.newBufferedReader(file, StandardCharsets.UTF_8)) {
+            props.load(reader);
+        }
+        CsvJob job = new CsvJob();
+        job.setId(props.getProperty("id"));
+        job.setInput(props.getProperty("input"));
+        job.setOutput(props.getProperty("output"));
+        job.setCrs(CoordinateSystem.valueOf(props.getProperty("crs", CoordinateSystem.WGS84.name())));
+        job.setStatus(Status.valueOf(props.getProperty("status")));
+        job.setTotalRows(Long.parseLong(props.getProperty("totalRows", "-1")));
+        job.setCheckpointRows(Long.parseLong(props.getProperty("checkpointRows", "0")));
+        job.setCheckpointBytes(Long.parseLong(props.getProperty("checkpointBytes", "0")));
+        job.setRowsDone(job.getCheckpointRows());
+        job.setCreatedAt(Long.parseLong(props.getProperty("createdAt", "0")));
+        job.setFinishedAt(Long.parseLong(props.getProperty("finishedAt", "0")));
+        job.setError(props.getProperty("error"));
+        return job;
+    }
+}
@@ -0,0 +1,69 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 点到多边形边界的距离（米）：以查询点为中心做等距矩形投影，经度差乘以 cos(纬度)
+ * 适用于几公里以内的近距离判断，误差远小于 GPS 漂移
+ * @Author: Javen
+ * @CreateTime: 2025/10/31 10:00
+ */
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+public final class GeoDistance {
+
+    // 平均地球半径下每度弧长
+    public static final double METERS_PER_DEGREE = 6_371_008.8 * Math.PI / 180;
+
+    private GeoDistance() {
+    }
+
+    /**
+     * 距离对应的纬度差
+     */
+    public static double metersToLatDegrees(double meters) {
+        return meters / METERS_PER_DEGREE;
+    }
+
+    /**
+     * 距离在给定纬度处对应的经度差
+     */
+    public static double metersToLngDegrees(double meters, double lat) {
+        return meters / (METERS_PER_DEGREE * Math.max(Math.cos(Math.toRadians(lat)), 1e-6));
+    }
+
+    /**
+     * 点 (x, y) 到线段 (x1, y1)-(x2, y2) 的距离（米）
+     *
+     * @param cosLat cos(查询点纬度)，同一次查询中复用
+     */
+    public static double segmentMeters(double x, double y, double x1, double y1, double x2, double y2, double cosLat) {
+        double ax = (x1 - x) * cosLat, ay = y1 - y;
+        double dx = (x2 - x1) * cosLat, dy = y2 - y1;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 > 0 ? Math.max(0, Math.min(1, -(ax * dx + ay * dy) / len2)) : 0;
+        double px = ax + t * dx, py = ay + t * dy;
+        return Math.sqrt(px * px + py * py) * METERS_PER_DEGREE;
+    }
+
+    /**
+     * 点到 Polygon / MultiPolygon 所有环的最短距离（米）
+     */
+    public static double toGeometryMeters(Geometry geometry, double x, double y) {
+        double cosLat = Math.cos(Math.toRadians(y));
+        double min = Double.POSITIVE_INFINITY;
+        for (int g = 0; g < geometry.getNumGeometries(); g++) {
+            Polygon polygon = (Polygon) geometry.getGeometryN(g);
+            for (int r = -1; r < polygon.getNumInteriorRing(); r++) {
+                CoordinateSequence seq = (r < 0 ? polygon.getExteriorRing() : polygon.getInteriorRingN(r))
+                        .getCoordinateSequence();
+                for (int k = 1; k < seq.size(); k++) {
+                    min = Math.min(min, segmentMeters(x, y, seq.getX(k - 1), seq.getY(k - 1),
+                            seq.getX(k), seq.getY(k), cosLat));
+                }
+            }
+        }
+        return min;
+    }
+}
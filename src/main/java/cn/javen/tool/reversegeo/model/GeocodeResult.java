@@ -0,0 +1,49 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 逆地理编码接口返回的结果，字段直接引用街道与共享的 AdminPath 中的字符串，每次请求只创建这一个对象
+ * distance 只在按最近街道兜底时输出，为点到街道边界的距离（米）
+ * level 只在查不到街道、按省市区边界返回部分结果时输出（province / city / district），此时不含街道字段
+ * @Author: Javen
+ * @CreateTime: 2025/10/29 10:40
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record GeocodeResult(String province, String city, String district,
+                            String street, String streetid, String location, Double distance,
+                            String level) {
+
+    public static GeocodeResult of(Street street) {
+        return of(street, null);
+    }
+
+    public static GeocodeResult of(NearestStreet nearest) {
+        Street street = nearest.street();
+        AdminPath admin = street.getAdminPath();
+        return new GeocodeResult(admin.getProvince(), admin.getCity(), admin.getDistrict(),
+                street.getName(), street.getStreetId(), null, nearest.distanceMeters(), null);
+    }
+
+    /**
+     * 部分结果：只输出边界所在级别及以上的名称
+     */
+    public static GeocodeResult of(AdminBoundary boundary) {
+        AdminPath admin = boundary.getPath();
+        int level = boundary.getLevel();
+        return new GeocodeResult(admin.getProvince(),
+                level >= AdminBoundary.CITY ? admin.getCity() : null,
+                level >= AdminBoundary.DISTRICT ? admin.getDistrict() : null,
+                null, null, null, null, boundary.getLevelName());
+    }
+
+    /**
+     * @param location 批量查询时回显的原始坐标，单点查询为 null，不输出
+     */
+    public static GeocodeResult of(Street street, String location) {
+        AdminPath admin = street.getAdminPath();
+        return new GeocodeResult(admin.getProvince(), admin.getCity(), admin.getDistrict(),
+                street.getName(), street.getStreetId(), location, null, null);
+    }
+}
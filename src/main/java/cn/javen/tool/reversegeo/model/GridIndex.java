@@ -0,0 +1,211 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 分层网格查找表：加载时把数据范围切成等大的根网格，每个根网格按四叉树细分
+ * 整个单元落在同一街道内部时直接记录街道下标，不与任何街道相交时记录为空，
+ * 跨越多边形边界且已到最大深度的单元记录为回退，查询时再走 STRtree + contains
+ * @Author: Javen
+ * @CreateTime: 2025/10/20 10:30
+ *
+ * 节点统一存放在 int 数组中：>= 0 为街道下标，EMPTY / FALLBACK 为叶子标记，
+ * <= -3 为子节点指针，四个子节点连续存放在 -(value) - 3 开始的位置，顺序为 西南、东南、西北、东北
+ */
+
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.stream.IntStream;
+
+public class GridIndex {
+
+    public static final int EMPTY = -1;
+    public static final int FALLBACK = -2;
+
+    /**
+     * 单元分类器：返回完全覆盖单元的街道下标，单元不与任何街道相交时返回 EMPTY，其余情况返回 FALLBACK
+     */
+    public interface CellClassifier {
+        int classify(Envelope cell);
+    }
+
+    private final double minX;
+    private final double minY;
+    private final double rootSize;
+    private final int cols;
+    private final int rows;
+    private final int[] nodes;
+
+    private final LongAdder directHits = new LongAdder();
+    private final LongAdder emptyHits = new LongAdder();
+    private final LongAdder fallbacks = new LongAdder();
+
+    private GridIndex(double minX, double minY, double rootSize, int cols, int rows, int[] nodes) {
+        this.minX = minX;
+        this.minY = minY;
+        this.rootSize = rootSize;
+        this.cols = cols;
+        this.rows = rows;
+        this.nodes = nodes;
+    }
+
+    /**
+     * 构建网格查找表，各根网格相互独立，在 pool 中并行构建
+     *
+     * @param extent 数据范围
+     * @param rootSize 根网格边长（度）
+     * @param maxDepth 最大细分层数
+     * @param classifier 单元分类器，需线程安全
+     * @param pool 构建使用的线程池，调用方负责关闭
+     */
+    public static GridIndex build(Envelope extent, double rootSize, int maxDepth, CellClassifier classifier,
+                                  ForkJoinPool pool) {
+        int cols = Math.max(1, (int) Math.ceil(extent.getWidth() / rootSize));
+        int rows = Math.max(1, (int) Math.ceil(extent.getHeight() / rootSize));
+        double minX = extent.getMinX();
+        double minY = extent.getMinY();
+        // 网格外扩一点余量，抵消浮点误差，保证查询点一定落在判断过的单元内
+        double margin = rootSize / (1 << maxDepth) * 1e-6;
+
+        int rootCount = cols * rows;
+        int[] roots = new int[rootCount];
+        int[][] subtrees = new int[rootCount][];
+        try {
+            pool.submit(() -> IntStream.range(0, rootCount).parallel().forEach(r -> {
+                double x0 = minX + (r % cols) * rootSize;
+                double y0 = minY + (r / cols) * rootSize;
+                IntList local = new IntList();
+                roots[r] = buildNode(x0, y0, rootSize, 0, maxDepth, margin, classifier, local);
+                subtrees[r] = local.toArray();
+            })).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("网格查找表构建被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException("网格查找表构建失败", e.getCause());
+        }
+
+        // 合并各根网格的子树，子节点指针从局部下标平移到全局下标
+        int total = rootCount;
+        for (int[] subtree : subtrees) {
+            total += subtree.length;
+        }
+        int[] nodes = Arrays.copyOf(roots, total);
+        int base = rootCount;
+        for (int r = 0; r < rootCount; r++) {
+            int[] subtree = subtrees[r];
+            if (nodes[r] <= -3) {
+                nodes[r] -= base;
+            }
+            for (int i = 0; i < subtree.length; i++) {
+                nodes[base + i] = subtree[i] <= -3 ? subtree[i] - base : subtree[i];
+            }
+            base += subtree.length;
+        }
+        return new GridIndex(minX, minY, rootSize, cols, rows, nodes);
+    }
+
+    private static int buildNode(double x0, double y0, double size, int depth, int maxDepth, double margin,
+                                 CellClassifier classifier, IntList out) {
+        Envelope cell = new Envelope(x0 - margin, x0 + size + margin, y0 - margin, y0 + size + margin);
+        int value = classifier.classify(cell);
+        if (value != FALLBACK || depth == maxDepth) {
+            return value;
+        }
+        double half = size / 2;
+        int start = out.size();
+        out.add(0, 4);
+        // 子单元坐标与 lookup 中的计算方式保持一致
+        out.set(start, buildNode(x0, y0, half, depth + 1, maxDepth, margin, classifier, out));
+        out.set(start + 1, buildNode(x0 + half, y0, half, depth + 1, maxDepth, margin, classifier, out));
+        out.set(start + 2, buildNode(x0, y0 + half, half, depth + 1, maxDepth, margin, classifier, out));
+        out.set(start + 3, buildNode(x0 + half, y0 + half, half, depth + 1, maxDepth, margin, classifier, out));
+        return -(start + 3);
+    }
+
+    /**
+     * 查找点所在单元
+     *
+     * @return 街道下标，或 EMPTY（确定不在任何街道内）/ FALLBACK（需要精确判断）
+     */
+    public int lookup(double x, double y) {
+        int col = (int) Math.floor((x - minX) / rootSize);
+        int row = (int) Math.floor((y - minY) / rootSize);
+        if (col < 0 || row < 0 || col >= cols || row >= rows) {
+            emptyHits.increment();
+            return EMPTY;
+        }
+        int value = nodes[row * cols + col];
+        double x0 = minX + col * rootSize;
+        double y0 = minY + row * rootSize;
+        double size = rootSize;
+        while (value <= -3) {
+            size /= 2;
+            int quadrant = 0;
+            if (x >= x0 + size) {
+                quadrant |= 1;
+                x0 += size;
+            }
+            if (y >= y0 + size) {
+                quadrant |= 2;
+                y0 += size;
+            }
+            value = nodes[-value - 3 + quadrant];
+        }
+        if (value >= 0) {
+            directHits.increment();
+        } else if (value == EMPTY) {
+            emptyHits.increment();
+        } else {
+            fallbacks.increment();
+        }
+        return value;
+    }
+
+    public Map<String, Object> getStats() {
+        long direct = directHits.sum();
+        long empty = emptyHits.sum();
+        long fallback = fallbacks.sum();
+        long total = direct + empty + fallback;
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("rootCells", cols * rows);
+        stats.put("nodes", nodes.length);
+        stats.put("directHits", direct);
+        stats.put("emptyHits", empty);
+        stats.put("fallbacks", fallback);
+        stats.put("directRatio", total == 0 ? 0.0 : (double) (direct + empty) / total);
+        return stats;
+    }
+
+    private static class IntList {
+        private int[] data = new int[16];
+        private int size;
+
+        int size() {
+            return size;
+        }
+
+        void add(int value, int count) {
+            if (size + count > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + count));
+            }
+            Arrays.fill(data, size, size + count, value);
+            size += count;
+        }
+
+        void set(int index, int value) {
+            data[index] = value;
+        }
+
+        int[] toArray() {
+            return Arrays.copyOf(data, size);
+        }
+    }
+}
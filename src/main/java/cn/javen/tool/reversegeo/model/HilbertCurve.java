@@ -0,0 +1,42 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description Hilbert 曲线编码：把 2^order × 2^order 网格上的格点映射为曲线上的序号
+ * 序号相邻的格点在平面上也相邻（Z-order 在象限交界处会跳跃，Hilbert 不会），
+ * 按序号排序后连续的一段点落在一块紧凑的区域内，批量空间连接按此切分 tile
+ * @Author: Javen
+ * @CreateTime: 2025/11/13 10:00
+ */
+
+public final class HilbertCurve {
+
+    private HilbertCurve() {
+    }
+
+    /**
+     * @param order 网格每边 2^order 个格子，不超过 30
+     * @param x     [0, 2^order)
+     * @param y     [0, 2^order)
+     * @return [0, 4^order)
+     */
+    public static long index(int order, int x, int y) {
+        int n = 1 << order;
+        long d = 0;
+        for (int s = 1 << (order - 1); s > 0; s >>= 1) {
+            int rx = (x & s) > 0 ? 1 : 0;
+            int ry = (y & s) > 0 ? 1 : 0;
+            d += (long) s * s * ((3 * rx) ^ ry);
+            // 旋转象限，使子曲线的起点、终点与上一级衔接
+            if (ry == 0) {
+                if (rx == 1) {
+                    x = n - 1 - x;
+                    y = n - 1 - y;
+                }
+                int t = x;
+                x = y;
+                y = t;
+            }
+        }
+        return d;
+    }
+}
@@ -0,0 +1,9 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 最近街道查询结果：点不在任何街道内时，距离上限内边界最近的街道及距离（米）
+ * @Author: Javen
+ * @CreateTime: 2025/10/31 10:20
+ */
+public record NearestStreet(Street street, double distanceMeters) {
+}
@@ -0,0 +1,306 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 基于原始坐标的点面判断：多边形的边按 Y 方向分带建立索引，判断时只检查点所在带内的边
+ * 坐标和索引都是基本类型数组，contains(x, y) 不创建任何对象，可多线程并发调用
+ * 与 Geometry.contains 语义一致：点落在边界上不算包含
+ *
+ * 粗略版本（coarse）由每个环单独做 Douglas-Peucker 简化得到，简化后的边界与原边界的 Hausdorff 距离不超过容差，
+ * 到简化边界距离大于容差的点，在简化多边形与原多边形中的内外判断必然相同；
+ * locate() 对容差带内的点返回 UNCERTAIN，由调用方再用原多边形精确判断，结果与只用原多边形完全一致
+ * @Author: Javen
+ * @CreateTime: 2025/10/30 10:00
+ */
+
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+import java.util.Arrays;
+
+public final class PolygonLocator {
+
+    public static final int OUTSIDE = 0;
+    public static final int INSIDE = 1;
+    public static final int UNCERTAIN = 2;
+
+    // 每带平均边数，带数 = 边数 / EDGES_PER_BAND
+    private static final int EDGES_PER_BAND = 4;
+    private static final int MAX_BANDS = 4096;
+
+    // 所有环的顶点依次存放，边 i 为 (i, i + 1)
+    private final double[] xs;
+    private final double[] ys;
+    // 第 r 个环的顶点为 [ringEnds[r - 1], ringEnds[r])，第 0 个环从 0 开始
+    private final int[] ringEnds;
+    private final double minX, maxX, minY, maxY;
+    // 容差（度），原多边形为 0；粗略版本的边按容差扩展后分带，带内的边覆盖了所有可能在容差内的边
+    private final double tolerance;
+    private final double tolerance2;
+    private final double bandScale;
+    private final int bandCount;
+    // CSR 格式：第 b 带的边为 bandEdges[bandStart[b] .. bandStart[b + 1])
+    private final int[] bandStart;
+    private final int[] bandEdges;
+
+    private PolygonLocator(double[] xs, double[] ys, int[] ringEnds, int[] edges, int edgeCount,
+                           double minX, double maxX, double minY, double maxY, double tolerance) {
+        this.xs = xs;
+        this.ys = ys;
+        this.ringEnds = ringEnds;
+        this.minX = minX;
+        this.maxX = maxX;
+        this.minY = minY;
+        this.maxY = maxY;
+        // 判断时把容差放宽万分之一，抵消距离计算的浮点误差
+        this.tolerance = tolerance * 1.0001;
+        this.tolerance2 = this.tolerance * this.tolerance;
+        this.bandCount = Math.max(1, Math.min(MAX_BANDS, edgeCount / EDGES_PER_BAND));
+        this.bandScale = maxY > minY ? bandCount / (maxY - minY) : 0;
+
+        // 第一遍统计每带的边数，第二遍填充
+        int[] start = new int[bandCount + 1];
+        for (int e = 0; e < edgeCount; e++) {
+            int i = edges[e];
+            int from = band(Math.min(ys[i], ys[i + 1]) - tolerance);
+            int to = band(Math.max(ys[i], ys[i + 1]) + tolerance);
+            for (int b = from; b <= to; b++) {
+                start[b + 1]++;
+            }
+        }
+        for (int b = 0; b < bandCount; b++) {
+            start[b + 1] += start[b];
+        }
+        int[] fill = new int[bandCount];
+        int[] list = new int[start[bandCount]];
+        for (int e = 0; e < edgeCount; e++) {
+            int i = edges[e];
+            int from = band(Math.min(ys[i], ys[i + 1]) - tolerance);
+            int to = band(Math.max(ys[i], ys[i + 1]) + tolerance);
+            for (int b = from; b <= to; b++) {
+                list[start[b] + fill[b]++] = i;
+            }
+        }
+        this.bandStart = start;
+        this.bandEdges = list;
+    }
+
+    /**
+     * 由 Polygon / MultiPolygon 构建，外环与内环（洞）统一按奇偶规则处理
+     *
+     * @return 几何为空时返回 null
+     */
+    public static PolygonLocator of(Geometry geometry) {
+        return of(geometry, 0);
+    }
+
+    /**
+     * 粗略版本：每个环单独做 Douglas-Peucker 简化，环不会被删除（最少保留首点和距首点最远的点），
+     * 退化的环不影响奇偶判断，容差带仍然覆盖原来的环
+     *
+     * @param tolerance 简化容差（度）
+     * @return 几何为空时返回 null
+     */
+    public static PolygonLocator coarse(Geometry geometry, double tolerance) {
+        return of(geometry, tolerance);
+    }
+
+    private static PolygonLocator of(Geometry geometry, double tolerance) {
+        int points = geometry.getNumPoints();
+        if (points == 0) {
+            return null;
+        }
+        double[] xs = new double[points];
+        double[] ys = new double[points];
+        int[] edges = new int[points];
+        int n = 0;
+        int edgeCount = 0;
+        int rings = 0;
+        for (int g = 0; g < geometry.getNumGeometries(); g++) {
+            rings += 1 + ((Polygon) geometry.getGeometryN(g)).getNumInteriorRing();
+        }
+        int[] ringEnds = new int[rings];
+        int ring = 0;
+        double minX = Double.POSITIVE_INFINITY, maxX = Double.NEGATIVE_INFINITY;
+        double minY = Double.POSITIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int g = 0; g < geometry.getNumGeometries(); g++) {
+            Polygon polygon = (Polygon) geometry.getGeometryN(g);
+            for (int r = -1; r < polygon.getNumInteriorRing(); r++) {
+                CoordinateSequence seq = (r < 0 ? polygon.getExteriorRing() : polygon.getInteriorRingN(r))
+                        .getCoordinateSequence();
+                int ringStart = n;
+                boolean[] keep = tolerance > 0 ? simplify(seq, tolerance) : null;
+                for (int k = 0; k < seq.size(); k++) {
+                    if (keep != null && !keep[k]) {
+                        continue;
+                    }
+                    double x = seq.getX(k);
+                    double y = seq.getY(k);
+                    xs[n] = x;
+                    ys[n] = y;
+                    minX = Math.min(minX, x);
+                    maxX = Math.max(maxX, x);
+                    minY = Math.min(minY, y);
+                    maxY = Math.max(maxY, y);
+                    n++;
+                }
+                // 环首尾闭合，最后一个点不再作为边的起点
+                for (int i = ringStart; i < n - 1; i++) {
+                    edges[edgeCount++] = i;
+                }
+                ringEnds[ring++] = n;
+            }
+        }
+        if (n == 0) {
+            return null;
+        }
+        if (n < points) {
+            xs = Arrays.copyOf(xs, n);
+            ys = Arrays.copyOf(ys, n);
+        }
+        return new PolygonLocator(xs, ys, ringEnds, edges, edgeCount, minX, maxX, minY, maxY, tolerance);
+    }
+
+    /**
+     * Douglas-Peucker：保留首尾点，递归保留离弦最远且超过容差的点
+     * 环首尾是同一点，第一次分割时弦退化为一个点，取离首点最远的点
+     */
+    private static boolean[] simplify(CoordinateSequence seq, double tolerance) {
+        int n = seq.size();
+        boolean[] keep = new boolean[n];
+        keep[0] = true;
+        keep[n - 1] = true;
+        double tolerance2 = tolerance * tolerance;
+        // 每保留一个点栈中最多多一段，最多 n 段
+        int[] stack = new int[n * 2 + 4];
+        int top = 0;
+        stack[top++] = 0;
+        stack[top++] = n - 1;
+        boolean first = true;
+        while (top > 0) {
+            int to = stack[--top];
+            int from = stack[--top];
+            double x1 = seq.getX(from), y1 = seq.getY(from);
+            double x2 = seq.getX(to), y2 = seq.getY(to);
+            int farthest = -1;
+            double max = -1;
+            for (int k = from + 1; k < to; k++) {
+                double d = segmentDistance2(seq.getX(k), seq.getY(k), x1, y1, x2, y2);
+                if (d > max) {
+                    max = d;
+                    farthest = k;
+                }
+            }
+            if (farthest >= 0 && (max > tolerance2 || first)) {
+                keep[farthest] = true;
+                stack[top++] = from;
+                stack[top++] = farthest;
+                stack[top++] = farthest;
+                stack[top++] = to;
+            }
+            first = false;
+        }
+        return keep;
+    }
+
+    /**
+     * 点到线段距离的平方（平面坐标）
+     */
+    private static double segmentDistance2(double x, double y, double x1, double y1, double x2, double y2) {
+        double dx = x2 - x1, dy = y2 - y1;
+        double len2 = dx * dx + dy * dy;
+        double t = len2 > 0 ? Math.max(0, Math.min(1, ((x - x1) * dx + (y - y1) * dy) / len2)) : 0;
+        double px = x1 + t * dx - x, py = y1 + t * dy - y;
+        return px * px + py * py;
+    }
+
+    /**
+     * 顶点数
+     */
+    public int getNumPoints() {
+        return xs.length;
+    }
+
+    /**
+     * 射线法判断点是否严格在多边形内部
+     */
+    public boolean contains(double x, double y) {
+        if (!(x >= minX && x <= maxX && y >= minY && y <= maxY)) {
+            return false;
+        }
+        int b = band(y);
+        boolean inside = false;
+        for (int k = bandStart[b], end = bandStart[b + 1]; k < end; k++) {
+            int i = bandEdges[k];
+            double x1 = xs[i], y1 = ys[i];
+            double x2 = xs[i + 1], y2 = ys[i + 1];
+            // 点相对于边的方向：> 0 在左侧，< 0 在右侧，0 共线
+            double cross = (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+            if (cross == 0
+                    && x >= Math.min(x1, x2) && x <= Math.max(x1, x2)
+                    && y >= Math.min(y1, y2) && y <= Math.max(y1, y2)) {
+                // 点在边界上
+                return false;
+            }
+            // 边跨过点所在的水平线，且交点在点的右侧
+            if ((y1 > y) != (y2 > y) && (y2 > y1 ? cross > 0 : cross < 0)) {
+                inside = !inside;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * 粗略判断：到简化边界的距离大于容差时返回 INSIDE / OUTSIDE，否则返回 UNCERTAIN
+     */
+    public int locate(double x, double y) {
+        if (x < minX - tolerance || x > maxX + tolerance || y < minY - tolerance || y > maxY + tolerance) {
+            return OUTSIDE;
+        }
+        int b = band(y);
+        boolean inside = false;
+        for (int k = bandStart[b], end = bandStart[b + 1]; k < end; k++) {
+            int i = bandEdges[k];
+            double x1 = xs[i], y1 = ys[i];
+            double x2 = xs[i + 1], y2 = ys[i + 1];
+            if (segmentDistance2(x, y, x1, y1, x2, y2) <= tolerance2) {
+                return UNCERTAIN;
+            }
+            double cross = (x2 - x1) * (y - y1) - (y2 - y1) * (x - x1);
+            if ((y1 > y) != (y2 > y) && (y2 > y1 ? cross > 0 : cross < 0)) {
+                inside = !inside;
+            }
+        }
+        return inside ? INSIDE : OUTSIDE;
+    }
+
+    /**
+     * 点到所有边的最短距离（米），按环遍历，每条边只算一次（跨多个带的边在 bandEdges 中重复出现），
+     * 只用于查不到街道时的最近街道兜底
+     */
+    public double distanceMeters(double x, double y) {
+        double cosLat = Math.cos(Math.toRadians(y));
+        double min = Double.POSITIVE_INFINITY;
+        int start = 0;
+        for (int end : ringEnds) {
+            for (int i = start; i < end - 1; i++) {
+                min = Math.min(min, GeoDistance.segmentMeters(x, y, xs[i], ys[i], xs[i + 1], ys[i + 1], cosLat));
+            }
+            start = end;
+        }
+        return min;
+    }
+
+    /**
+     * 点所在带内的边数，即 contains / locate 对该点检查的边数，用于统计点面判断的工作量
+     */
+    public int edgesAt(double y) {
+        int b = band(y);
+        return bandStart[b + 1] - bandStart[b];
+    }
+
+    private int band(double y) {
+        int b = (int) ((y - minY) * bandScale);
+        return b < 0 ? 0 : Math.min(b, bandCount - 1);
+    }
+}
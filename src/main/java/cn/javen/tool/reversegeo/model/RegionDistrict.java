@@ -0,0 +1,13 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 区域查询按区汇总的结果：区内与查询区域相交的街道数，请求面积时附带这些街道重叠面积之和（平方米）
+ * @Author: Javen
+ * @CreateTime: 2025/11/14 10:05
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RegionDistrict(String province, String city, String district, int streets, Double area) {
+}
@@ -0,0 +1,21 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 区域查询结果中的一个街道
+ * area 为街道与查询区域重叠部分的面积（平方米），fraction 为重叠面积占街道面积的比例，只在请求面积时输出
+ * @Author: Javen
+ * @CreateTime: 2025/11/14 10:00
+ */
+
+import com.fasterxml.jackson.annotation.JsonInclude;
+
+@JsonInclude(JsonInclude.Include.NON_NULL)
+public record RegionStreet(String province, String city, String district,
+                           String street, String streetid, Double area, Double fraction) {
+
+    public static RegionStreet of(Street street, Double area, Double fraction) {
+        AdminPath admin = street.getAdminPath();
+        return new RegionStreet(admin.getProvince(), admin.getCity(), admin.getDistrict(),
+                street.getName(), street.getStreetId(), area, fraction);
+    }
+}
@@ -2,26 +2,114 @@ package cn.javen.tool.reversegeo.model;
 
 /**
  * @Description 空间索引
+ * 并行构建时先按外包矩形中心 x 排序切成若干纵向分片（STR 的第一层切分），每片一棵 STRtree 并行打包，
+ * 查询时只访问外包范围与查询矩形相交的分片；分片数只取决于条目数，与机器核数无关，
+ * 同样的数据在任何机器上切出同样的分片，候选的遍历顺序也相同
  * @Author: Javen
  * @CreateTime: 2025/9/23 15:33
  */
 import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.index.ItemVisitor;
 import org.locationtech.jts.index.strtree.STRtree;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.IntStream;
 
 public class STRtreeIndex {
-    private final STRtree tree = new STRtree();
+
+    // 每个分片至少包含的条目数，条目较少时并行打包得不偿失
+    private static final int MIN_SLICE_ITEMS = 20_000;
+    // 分片数上限，固定值而不取线程池并行度，保证索引结构不随机器变化
+    private static final int MAX_SLICES = 16;
+
+    private final STRtree[] trees;
+    // 每个分片所有条目外包矩形的并集，单棵树时为 null
+    private final Envelope[] extents;
+
+    public STRtreeIndex() {
+        this(new STRtree[]{new STRtree()}, null);
+    }
+
+    private STRtreeIndex(STRtree[] trees, Envelope[] extents) {
+        this.trees = trees;
+        this.extents = extents;
+    }
+
+    /**
+     * 并行打包：街道较多时按中心 x 切成至多 MAX_SLICES 个分片，在 pool 中各自构建
+     * 没有外包矩形的街道不进入索引
+     */
+    public static STRtreeIndex pack(List<Street> streets, ForkJoinPool pool) {
+        Street[] items = streets.stream().filter(s -> s.getEnvelope() != null).toArray(Street[]::new);
+        int slices = Math.max(1, Math.min(MAX_SLICES, items.length / MIN_SLICE_ITEMS));
+        if (slices == 1) {
+            STRtreeIndex index = new STRtreeIndex();
+            for (Street street : items) {
+                index.insert(street.getEnvelope(), street);
+            }
+            index.build();
+            return index;
+        }
+
+        STRtree[] trees = new STRtree[slices];
+        Envelope[] extents = new Envelope[slices];
+        try {
+            pool.submit(() -> {
+                Arrays.parallelSort(items, Comparator.comparingDouble(
+                        (Street s) -> (s.getEnvelope().getMinX() + s.getEnvelope().getMaxX()) / 2));
+                IntStream.range(0, slices).parallel().forEach(k -> {
+                    int from = (int) ((long) items.length * k / slices);
+                    int to = (int) ((long) items.length * (k + 1) / slices);
+                    STRtree tree = new STRtree();
+                    Envelope extent = new Envelope();
+                    for (int i = from; i < to; i++) {
+                        tree.insert(items[i].getEnvelope(), items[i]);
+                        extent.expandToInclude(items[i].getEnvelope());
+                    }
+                    tree.build();
+                    trees[k] = tree;
+                    extents[k] = extent;
+                });
+            }).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("空间索引构建被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("空间索引构建失败", e.getCause());
+        }
+        return new STRtreeIndex(trees, extents);
+    }
 
     public void insert(Envelope envelope, Object item) {
-        tree.insert(envelope, item);
+        trees[0].insert(envelope, item);
     }
 
     public void build() {
-        tree.build();
+        for (STRtree tree : trees) {
+            tree.build();
+        }
     }
 
     //public List<Object> query(Envelope envelope) {
     public List<Street> query(Envelope envelope) {
-        return tree.query(envelope);
+        List<Street> result = new ArrayList<>();
+        query(envelope, item -> result.add((Street) item));
+        return result;
+    }
+
+    /**
+     * 逐个回调与矩形相交的条目，不创建结果列表
+     */
+    public void query(Envelope envelope, ItemVisitor visitor) {
+        for (int i = 0; i < trees.length; i++) {
+            if (extents == null || extents[i].intersects(envelope)) {
+                trees[i].query(envelope, visitor);
+            }
+        }
     }
 }
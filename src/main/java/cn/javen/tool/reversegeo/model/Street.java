@@ -5,8 +5,10 @@ package cn.javen.tool.reversegeo.model;
  * @Author: Javen
  * @CreateTime: 2025/9/23 15:28
  */
+import org.locationtech.jts.geom.Envelope;
 import org.locationtech.jts.geom.Geometry;
 import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
 
 public class Street {
     private String streetId;
@@ -14,6 +16,22 @@ public class Street {
     private String level;
     private Point center;
     private Geometry polygon;
+    // 加载时预处理的多边形（内部带线段索引），用于网格表构建时的面面判断
+    private PreparedGeometry preparedPolygon;
+    // 加载时构建的原始坐标点面索引，查询路径上的点面判断不创建对象
+    private PolygonLocator locator;
+    // 顶点数较多的街道的简化多边形（带容差），容差带外的点不必再查原多边形
+    private PolygonLocator coarseLocator;
+    // 多边形外包矩形，作为空间索引的键
+    private Envelope envelope;
+    // 堆外存储模式下多边形在 PolygonStore 中的序号，-1 表示不在堆外存储中
+    private int shapeId = -1;
+    // 在当前索引街道列表中的下标
+    private int index = -1;
+    // 所属省市区，加载时解析
+    private AdminPath adminPath = AdminPath.UNKNOWN;
+    // 二进制响应字典中的编号缓存，第一次编码时查表写入，-1 表示尚未查过
+    private int dictCode = -1;
 
     // Getters and Setters
     public String getStreetId() { return streetId; }
@@ -30,4 +48,28 @@ public class Street {
 
     public Geometry getPolygon() { return polygon; }
     public void setPolygon(Geometry polygon) { this.polygon = polygon; }
+
+    public PreparedGeometry getPreparedPolygon() { return preparedPolygon; }
+    public void setPreparedPolygon(PreparedGeometry preparedPolygon) { this.preparedPolygon = preparedPolygon; }
+
+    public PolygonLocator getLocator() { return locator; }
+    public void setLocator(PolygonLocator locator) { this.locator = locator; }
+
+    public PolygonLocator getCoarseLocator() { return coarseLocator; }
+    public void setCoarseLocator(PolygonLocator coarseLocator) { this.coarseLocator = coarseLocator; }
+
+    public Envelope getEnvelope() { return envelope; }
+    public void setEnvelope(Envelope envelope) { this.envelope = envelope; }
+
+    public int getShapeId() { return shapeId; }
+    public void setShapeId(int shapeId) { this.shapeId = shapeId; }
+
+    public int getIndex() { return index; }
+    public void setIndex(int index) { this.index = index; }
+
+    public AdminPath getAdminPath() { return adminPath; }
+    public void setAdminPath(AdminPath adminPath) { this.adminPath = adminPath; }
+
+    public int getDictCode() { return dictCode; }
+    public void setDictCode(int dictCode) { this.dictCode = dictCode; }
 }
\ No newline at end of file
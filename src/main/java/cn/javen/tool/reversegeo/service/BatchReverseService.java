@@ -0,0 +1,478 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.Street;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * @Description 大批量逆地理编码：坐标按块在 GeocodeExecutor 的专用线程池中并行查询，结果按输入顺序以 NDJSON 流式写出
+ * 每个输入点对应一行输出，查不到时输出 null，不去重、不丢点；加载了省市区边界时，查不到街道的点输出所在区 / 市 / 省及 level
+ * 每个请求的在途块数不超过 GeocodeExecutor.getChunksPerRequest()，并发请求数由调用方通过 admitBatch() 控制
+ * 也可按 StreetDictionary 的二进制格式输出，每个点只写一个字典编号
+ * 输入为 GCJ-02 / BD-09 坐标时，在工作线程中按块原地转换为 WGS84 后再查询
+ * @Author: Javen
+ * @CreateTime: 2025/10/27 10:00
+ */
+@Service
+public class BatchReverseService {
+
+    private final GeoDataLoader geoDataLoader;
+    private final GeoMetrics metrics;
+    private final int chunkSize;
+    private final int maxInFlight;
+    private final int maxPoints;
+    private final ExecutorService executor;
+    private final StreetDictionary dictionary;
+
+    public BatchReverseService(GeoDataLoader geoDataLoader, GeoProperties properties, GeoMetrics metrics,
+                               GeocodeExecutor geocodeExecutor, StreetDictionary dictionary) {
+        this.geoDataLoader = geoDataLoader;
+        this.metrics = metrics;
+        this.dictionary = dictionary;
+        GeoProperties.Batch batch = properties.getBatch();
+        this.chunkSize = batch.getChunkSize();
+        this.maxInFlight = geocodeExecutor.getChunksPerRequest();
+        this.maxPoints = batch.getMaxPoints();
+        this.executor = geocodeExecutor.getExecutor();
+    }
+
+    /**
+     * JSON 数组请求体允许的最大点数，NDJSON 流式输入不受限制
+     */
+    public int getMaxPoints() {
+        return maxPoints;
+    }
+
+    /**
+     * 扁平坐标数组 [lng,lat,lng,lat,...]
+     *
+     * @param crs 输入坐标的坐标系
+     */
+    public void reverse(double[] coords, CoordinateSystem crs, OutputStream out) throws IOException {
+        run(new ArraySource(coords), crs, new NdjsonWriter(out));
+    }
+
+    /**
+     * NDJSON 流式输入，每行一个点，格式为 lng,lat 或 [lng,lat]，无法解析的行输出 null
+     */
+    public void reverse(InputStream in, CoordinateSystem crs, OutputStream out) throws IOException {
+        run(new NdjsonSource(in), crs, new NdjsonWriter(out));
+    }
+
+    /**
+     * 扁平坐标数组，按二进制格式输出
+     */
+    public void reverseBinary(double[] coords, CoordinateSystem crs, OutputStream out) throws IOException {
+        run(new ArraySource(coords), crs, new BinaryWriter(dictionary.encoder(out)));
+    }
+
+    /**
+     * NDJSON 流式输入，按二进制格式输出，无法解析的行记为查不到
+     */
+    public void reverseBinary(InputStream in, CoordinateSystem crs, OutputStream out) throws IOException {
+        run(new NdjsonSource(in), crs, new BinaryWriter(dictionary.encoder(out)));
+    }
+
+    /**
+     * 小批量查询（旧 batch-reverse 接口）：按线程数切块并行查询，等待全部完成
+     *
+     * @param coords 按 crs 转换为 WGS84 时原地修改
+     * @return 与输入点一一对应，查不到的为 null
+     */
+    public Street[] geocodeAll(double[] coords, CoordinateSystem crs) {
+        int points = coords.length / 2;
+        int chunks = Math.max(1, Math.min(maxInFlight, points / 16));
+        Street[] result = new Street[points];
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        try {
+            for (int k = 0; k < chunks; k++) {
+                int from = points * k / chunks;
+                int to = points * (k + 1) / chunks;
+                futures.add(executor.submit(() -> {
+                    crs.toWgs84(coords, from * 2, to - from);
+                    for (int i = from; i < to; i++) {
+                        result[i] = geoDataLoader.reverseGeocode(coords[i * 2], coords[i * 2 + 1]);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("批量逆地理编码被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("批量逆地理编码失败", e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        metrics.recordBatch(points);
+        return result;
+    }
+
+    private void run(CoordinateSource source, CoordinateSystem crs, ResultWriter writer) throws IOException {
+        Deque<Future<Chunk>> inFlight = new ArrayDeque<>();
+        long points = 0;
+        try {
+            writer.start();
+            while (true) {
+                double[] chunk = new double[chunkSize * 2];
+                int n = source.read(chunk);
+                if (n > 0) {
+                    inFlight.addLast(executor.submit(() -> geocode(chunk, n, crs)));
+                    points += n;
+                }
+                // 在途块达到上限或输入结束时，按提交顺序写出最早的一块
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || n == 0)) {
+                    writer.write(inFlight.pollFirst().get());
+                }
+                if (n == 0) {
+                    break;
+                }
+            }
+            writer.flush();
+            metrics.recordBatch(points);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IOException("批量逆地理编码被中断", e);
+        } catch (ExecutionException e) {
+            throw new IOException("批量逆地理编码失败", e.getCause());
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private Chunk geocode(double[] chunk, int n, CoordinateSystem crs) {
+        crs.toWgs84(chunk, 0, n);
+        Street[] result = new Street[n];
+        AdminBoundary[] admins = null;
+        for (int i = 0; i < n; i++) {
+            double lng = chunk[i * 2];
+            double lat = chunk[i * 2 + 1];
+            if (Double.isNaN(lng) || Double.isNaN(lat)) {
+                continue;
+            }
+            result[i] = geoDataLoader.reverseGeocode(lng, lat);
+            if (result[i] == null) {
+                AdminBoundary boundary = geoDataLoader.locateAdmin(lng, lat);
+                if (boundary != null) {
+                    if (admins == null) {
+                        admins = new AdminBoundary[n];
+                    }
+                    admins[i] = boundary;
+                }
+            }
+        }
+        return new Chunk(result, admins);
+    }
+
+    /**
+     * 一块的结果：streets 与输入点一一对应；admins 为查不到街道的点所在的省市区边界，都没有时为 null
+     */
+    private record Chunk(Street[] streets, AdminBoundary[] admins) {
+    }
+
+    /**
+     * 结果输出格式，按提交顺序每次写出一块
+     */
+    private interface ResultWriter {
+        default void start() throws IOException {
+        }
+
+        void write(Chunk chunk) throws IOException;
+
+        void flush() throws IOException;
+    }
+
+    private static final class NdjsonWriter implements ResultWriter {
+        private final Writer writer;
+
+        NdjsonWriter(OutputStream out) {
+            this.writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        }
+
+        @Override
+        public void write(Chunk chunk) throws IOException {
+            Street[] streets = chunk.streets();
+            for (int i = 0; i < streets.length; i++) {
+                Street street = streets[i];
+                if (street == null) {
+                    AdminBoundary boundary = chunk.admins() == null ? null : chunk.admins()[i];
+                    if (boundary == null) {
+                        writer.write("null\n");
+                    } else {
+                        writeBoundary(boundary);
+                    }
+                    continue;
+                }
+                AdminPath admin = street.getAdminPath();
+                writer.write("{\"province\":");
+                writeString(writer, admin.getProvince());
+                writer.write(",\"city\":");
+                writeString(writer, admin.getCity());
+                writer.write(",\"district\":");
+                writeString(writer, admin.getDistrict());
+                writer.write(",\"street\":");
+                writeString(writer, street.getName());
+                writer.write(",\"streetid\":");
+                writeString(writer, street.getStreetId());
+                writer.write("}\n");
+            }
+        }
+
+        /**
+         * 部分结果：只写边界所在级别及以上的名称
+         */
+        private void writeBoundary(AdminBoundary boundary) throws IOException {
+            AdminPath admin = boundary.getPath();
+            writer.write("{\"province\":");
+            writeString(writer, admin.getProvince());
+            if (boundary.getLevel() >= AdminBoundary.CITY) {
+                writer.write(",\"city\":");
+                writeString(writer, admin.getCity());
+            }
+            if (boundary.getLevel() >= AdminBoundary.DISTRICT) {
+                writer.write(",\"district\":");
+                writeString(writer, admin.getDistrict());
+            }
+            writer.write(",\"level\":");
+            writeString(writer, boundary.getLevelName());
+            writer.write("}\n");
+        }
+
+        @Override
+        public void flush() throws IOException {
+            writer.flush();
+        }
+    }
+
+    private static final class BinaryWriter implements ResultWriter {
+        private final StreetDictionary.Encoder encoder;
+
+        BinaryWriter(StreetDictionary.Encoder encoder) {
+            this.encoder = encoder;
+        }
+
+        @Override
+        public void start() throws IOException {
+            encoder.writeHeader();
+        }
+
+        /**
+         * 二进制格式只有街道记录，部分结果记为查不到
+         */
+        @Override
+        public void write(Chunk chunk) throws IOException {
+            for (Street street : chunk.streets()) {
+                encoder.writeRecord(street);
+            }
+        }
+
+        @Override
+        public void flush() throws IOException {
+            encoder.flush();
+        }
+    }
+
+    static void writeString(Writer writer, String value) throws IOException {
+        if (value == null) {
+            writer.write("null");
+            return;
+        }
+        writer.write('"');
+        for (int i = 0; i < value.length(); i++) {
+            char c = value.charAt(i);
+            if (c == '"' || c == '\\') {
+                writer.write('\\');
+                writer.write(c);
+            } else if (c < 0x20) {
+                writer.write(String.format("\\u%04x", (int) c));
+            } else {
+                writer.write(c);
+            }
+        }
+        writer.write('"');
+    }
+
+    /**
+     * 坐标来源，每次读取一块
+     */
+    private interface CoordinateSource {
+        /**
+         * @param chunk 输出缓冲，按 lng,lat 交替存放
+         * @return 读取的点数，0 表示结束
+         */
+        int read(double[] chunk) throws IOException;
+    }
+
+    private class ArraySource implements CoordinateSource {
+        private final double[] coords;
+        private final int points;
+        private int next;
+
+        ArraySource(double[] coords) {
+            this.coords = coords;
+            this.points = coords.length / 2;
+        }
+
+        @Override
+        public int read(double[] chunk) {
+            int n = Math.min(chunkSize, points - next);
+            System.arraycopy(coords, next * 2, chunk, 0, n * 2);
+            next += n;
+            return n;
+        }
+    }
+
+    /**
+     * 逐字节解析 NDJSON，不按行创建字符串
+     */
+    private class NdjsonSource implements CoordinateSource {
+        private final InputStream in;
+        private byte[] line = new byte[64];
+        private boolean eof;
+
+        NdjsonSource(InputStream in) {
+            this.in = new BufferedInputStream(in, 1 << 16);
+        }
+
+        @Override
+        public int read(double[] chunk) throws IOException {
+            int n = 0;
+            while (n < chunkSize && !eof) {
+                int len = readLine();
+                if (len < 0) {
+                    eof = true;
+                    break;
+                }
+                if (isBlank(line, len)) {
+                    continue;
+                }
+                parsePoint(line, len, chunk, n * 2);
+                n++;
+            }
+            return n;
+        }
+
+        /**
+         * @return 行长度，流结束且没有数据时返回 -1
+         */
+        private int readLine() throws IOException {
+            int len = 0;
+            int b;
+            while ((b = in.read()) != -1 && b != '\n') {
+                if (len == line.length) {
+                    line = Arrays.copyOf(line, len * 2);
+                }
+                line[len++] = (byte) b;
+            }
+            return (b == -1 && len == 0) ? -1 : len;
+        }
+    }
+
+    private static boolean isBlank(byte[] buf, int len) {
+        for (int i = 0; i < len; i++) {
+            if (buf[i] > ' ') {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 解析一行中的两个数字，分隔符可以是逗号、空白或方括号，解析失败时写入 NaN
+     */
+    static void parsePoint(byte[] buf, int len, double[] out, int offset) {
+        out[offset] = Double.NaN;
+        out[offset + 1] = Double.NaN;
+        int pos = 0;
+        for (int k = 0; k < 2; k++) {
+            while (pos < len && (buf[pos] == ',' || buf[pos] == '[' || buf[pos] == ']' || buf[pos] <= ' ')) {
+                pos++;
+            }
+            int start = pos;
+            while (pos < len && buf[pos] != ',' && buf[pos] != ']' && buf[pos] > ' ') {
+                pos++;
+            }
+            if (start == pos) {
+                out[offset] = Double.NaN;
+                return;
+            }
+            out[offset + k] = parseDouble(buf, start, pos);
+        }
+    }
+
+    private static final double[] POW10 = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+            1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    /**
+     * 十进制小数快速解析：有效数字不超过 15 位时，整数尾数与 10 的幂都能精确表示为 double，
+     * 一次除法即为正确舍入的结果；其他情况（指数形式、位数过多）交给 Double.parseDouble
+     * 没有任何数字的输入（"-"、"+"、"."、"-."）返回 NaN
+     */
+    static double parseDouble(byte[] buf, int from, int to) {
+        int pos = from;
+        boolean negative = false;
+        if (buf[pos] == '-' || buf[pos] == '+') {
+            negative = buf[pos] == '-';
+            pos++;
+        }
+        long mantissa = 0;
+        // consumed 为读到的全部数字个数，digits 为去掉前导零后的有效数字个数
+        int consumed = 0;
+        int digits = 0;
+        int fraction = 0;
+        boolean dot = false;
+        for (; pos < to; pos++) {
+            byte c = buf[pos];
+            if (c >= '0' && c <= '9') {
+                consumed++;
+                if (digits > 0 || c != '0') {
+                    digits++;
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (dot) {
+                    fraction++;
+                }
+            } else if (c == '.' && !dot) {
+                dot = true;
+            } else {
+                break;
+            }
+        }
+        if (pos == to && consumed == 0) {
+            return Double.NaN;
+        }
+        if (pos != to || digits > 15 || fraction > 22 || pos == from) {
+            try {
+                return Double.parseDouble(new String(buf, from, to - from, StandardCharsets.ISO_8859_1));
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        double value = mantissa / POW10[fraction];
+        return negative ? -value : value;
+    }
+}
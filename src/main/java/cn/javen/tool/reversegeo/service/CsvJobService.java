@@ -0,0 +1,288 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.CsvJob;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+import org.springframework.web.multipart.MultipartFile;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.stream.Stream;
+
+/**
+ * @Description CSV 逆地理编码异步任务：提交后立即返回任务 id，在有界线程池中执行
+ * 任务开始执行前等待一个批量请求名额（GeocodeExecutor），与同步批量请求共用并发上限，等待期间状态仍为 QUEUED
+ * 每处理 N 行记录一次断点（已写出行数 + 输出文件字节数），服务重启后未完成的任务
+ * 截断输出到最近断点并从断点处继续，不必重新查询已完成的部分
+ * @Author: Javen
+ * @CreateTime: 2025/10/24 11:20
+ */
+@Service
+public class CsvJobService {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvJobService.class);
+
+    private static final String JOB_FILE = "job.properties";
+
+    private final CsvReverseService csvReverseService;
+    private final GeocodeExecutor geocodeExecutor;
+    private final Path jobsDir;
+    private final Path inputDir;
+    private final long checkpointRows;
+    private final ThreadPoolExecutor executor;
+    private final Map<String, CsvJob> jobs = new ConcurrentHashMap<>();
+    private volatile boolean stopping;
+
+    public CsvJobService(CsvReverseService csvReverseService, GeocodeExecutor geocodeExecutor,
+                         GeoProperties properties) {
+        this.csvReverseService = csvReverseService;
+        this.geocodeExecutor = geocodeExecutor;
+        GeoProperties.Jobs config = properties.getJobs();
+        this.jobsDir = Path.of(config.getDir());
+        this.inputDir = Path.of(config.getInputDir()).toAbsolutePath().normalize();
+        this.checkpointRows = config.getCheckpointRows();
+        AtomicInteger counter = new AtomicInteger();
+        this.executor = new ThreadPoolExecutor(config.getConcurrency(), config.getConcurrency(),
+                0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<>(config.getQueueCapacity()), r -> {
+            Thread thread = new Thread(r, "csv-job-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * 启动时恢复任务目录中的任务，未完成的重新排队并从断点继续
+     */
+    @PostConstruct
+    public void recover() throws IOException {
+        Files.createDirectories(jobsDir);
+        try (Stream<Path> dirs = Files.list(jobsDir)) {
+            for (Path dir : (Iterable<Path>) dirs::iterator) {
+                Path file = dir.resolve(JOB_FILE);
+                if (!Files.exists(file)) {
+                    continue;
+                }
+                CsvJob job = CsvJob.load(file);
+                jobs.put(job.getId(), job);
+                if (job.getStatus() == CsvJob.Status.QUEUED || job.getStatus() == CsvJob.Status.RUNNING) {
+                    log.info("恢复任务 {}，从第 {} 行继续", job.getId(), job.getCheckpointRows());
+                    job.setStatus(CsvJob.Status.QUEUED);
+                    try {
+                        executor.execute(() -> run(job));
+                    } catch (RejectedExecutionException e) {
+                        fail(job, "任务队列已满，恢复失败");
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 提交服务器上已有的文件
+     *
+     * @param name 输入目录（geo.jobs.input-dir）下的文件名
+     * @param crs  输入坐标的坐标系
+     * @throws IllegalArgumentException  文件名指向输入目录之外
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public CsvJob submit(String name, CoordinateSystem crs) throws IOException {
+        Path input = resolveInput(name);
+        CsvJob job = create(crs);
+        job.setInput(input.toString());
+        return enqueue(job);
+    }
+
+    /**
+     * 把接口传入的文件名解析为输入目录下的路径
+     *
+     * @throws IllegalArgumentException 绝对路径或含 .. 的路径指向了输入目录之外
+     */
+    public Path resolveInput(String name) {
+        Path path = inputDir.resolve(name).normalize();
+        if (!path.startsWith(inputDir) || path.equals(inputDir)) {
+            throw new IllegalArgumentException("文件必须位于任务输入目录内: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * 提交上传的文件，文件保存到任务目录
+     *
+     * @throws RejectedExecutionException 任务队列已满
+     */
+    public CsvJob submit(MultipartFile file, CoordinateSystem crs) throws IOException {
+        CsvJob job = create(crs);
+        Path input = jobDir(job).resolve("input.csv");
+        file.transferTo(input);
+        job.setInput(input.toAbsolutePath().toString());
+        return enqueue(job);
+    }
+
+    public CsvJob get(String id) {
+        return jobs.get(id);
+    }
+
+    public List<CsvJob> list() {
+        List<CsvJob> list = new ArrayList<>(jobs.values());
+        list.sort(Comparator.comparingLong(CsvJob::getCreatedAt).reversed());
+        return list;
+    }
+
+    private CsvJob create(CoordinateSystem crs) throws IOException {
+        CsvJob job = new CsvJob();
+        job.setCrs(crs);
+        job.setId(UUID.randomUUID().toString().replace("-", ""));
+        job.setCreatedAt(System.currentTimeMillis());
+        Path dir = Files.createDirectories(jobDir(job));
+        job.setOutput(dir.resolve("output.csv").toAbsolutePath().toString());
+        return job;
+    }
+
+    private CsvJob enqueue(CsvJob job) throws IOException {
+        job.save(jobDir(job).resolve(JOB_FILE));
+        jobs.put(job.getId(), job);
+        try {
+            executor.execute(() -> run(job));
+        } catch (RejectedExecutionException e) {
+            // 队列已满，清理任务目录后由调用方返回 429
+            jobs.remove(job.getId());
+            try (Stream<Path> files = Files.walk(jobDir(job))) {
+                files.sorted(Comparator.reverseOrder()).forEach(p -> p.toFile().delete());
+            }
+            throw e;
+        }
+        return job;
+    }
+
+    @SuppressWarnings("try")
+    private void run(CsvJob job) {
+        try (GeocodeExecutor.Admission ignored = geocodeExecutor.awaitBatch()) {
+            job.setStatus(CsvJob.Status.RUNNING);
+            save(job);
+            if (job.getTotalRows() < 0) {
+                job.setTotalRows(countLines(Path.of(job.getInput())));
+                save(job);
+            }
+
+            // 输出文件可能包含断点之后、崩溃之前写出的行，截断到断点处再追加
+            Path output = Path.of(job.getOutput());
+            long skipRows = job.getCheckpointRows();
+            if (skipRows > 0 && Files.exists(output) && Files.size(output) >= job.getCheckpointBytes()) {
+                try (FileChannel channel = FileChannel.open(output, StandardOpenOption.WRITE)) {
+                    channel.truncate(job.getCheckpointBytes());
+                }
+            } else {
+                skipRows = 0;
+                job.setCheckpointRows(0);
+                job.setCheckpointBytes(0);
+            }
+            job.setRowsDone(skipRows);
+            job.startRun();
+
+            csvReverseService.reverse(job.getInput(), job.getOutput(), job.getCrs(), skipRows, rows -> {
+                job.setRowsDone(rows);
+                if (rows - job.getCheckpointRows() >= checkpointRows) {
+                    checkpoint(job, rows);
+                }
+            });
+
+            checkpoint(job, job.getRowsDone());
+            job.setTotalRows(job.getRowsDone());
+            job.setStatus(CsvJob.Status.SUCCEEDED);
+            job.setFinishedAt(System.currentTimeMillis());
+            save(job);
+        } catch (Exception e) {
+            if (stopping) {
+                // 服务关闭导致的中断，保留断点，下次启动时继续
+                job.setStatus(CsvJob.Status.QUEUED);
+                try {
+                    save(job);
+                } catch (IOException ignored) {
+                    // 状态文件仍为 RUNNING，同样会被恢复
+                }
+                return;
+            }
+            log.error("任务 {} 失败", job.getId(), e);
+            fail(job, e.getMessage());
+        }
+    }
+
+    /**
+     * 记录断点：回调时已写出的数据都已 flush，此时的文件大小与行数一一对应
+     */
+    private void checkpoint(CsvJob job, long rows) {
+        try {
+            job.setCheckpointBytes(Files.size(Path.of(job.getOutput())));
+            job.setCheckpointRows(rows);
+            save(job);
+        } catch (IOException e) {
+            throw new RuntimeException("保存任务断点失败: " + job.getId(), e);
+        }
+    }
+
+    private void fail(CsvJob job, String error) {
+        job.setStatus(CsvJob.Status.FAILED);
+        job.setError(error);
+        job.setFinishedAt(System.currentTimeMillis());
+        try {
+            save(job);
+        } catch (IOException e) {
+            log.error("保存任务状态失败 {}", job.getId(), e);
+        }
+    }
+
+    private void save(CsvJob job) throws IOException {
+        job.save(jobDir(job).resolve(JOB_FILE));
+    }
+
+    private Path jobDir(CsvJob job) {
+        return jobsDir.resolve(job.getId());
+    }
+
+    /**
+     * 统计行数，用于估算剩余时间
+     */
+    private static long countLines(Path file) throws IOException {
+        long lines = 0;
+        byte last = '\n';
+        byte[] buffer = new byte[1 << 16];
+        try (InputStream in = Files.newInputStream(file)) {
+            int n;
+            while ((n = in.read(buffer)) > 0) {
+                for (int i = 0; i < n; i++) {
+                    if (buffer[i] == '\n') {
+                        lines++;
+                    }
+                }
+                last = buffer[n - 1];
+            }
+        }
+        return last == '\n' ? lines : lines + 1;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        stopping = true;
+        executor.shutdownNow();
+    }
+}
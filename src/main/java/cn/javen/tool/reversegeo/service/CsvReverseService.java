@@ -0,0 +1,234 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.CsvUtil;
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.Street;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Objects;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+
+/**
+ * @Description CSV 批量逆地理编码：流式读取、分批并行查询、按原顺序写出
+ * 读取线程每读满一批就提交到 GeocodeExecutor 的线程池，在途批次达到上限时先等待并写出最早的一批，
+ * 内存占用只与批大小和在途批次数有关，与文件大小无关；调用方需持有一个批量请求名额，CPU 占用受准入控制约束
+ * @Author: Javen
+ * @CreateTime: 2025/10/22 10:15
+ */
+@Service
+public class CsvReverseService {
+
+    private static final Logger log = LoggerFactory.getLogger(CsvReverseService.class);
+
+    // 进度日志间隔
+    private static final long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+
+    @FunctionalInterface
+    public interface ProgressListener {
+        /**
+         * 每写出一批后回调
+         *
+         * @param rowsWritten 已写出的行数
+         */
+        void onProgress(long rowsWritten);
+    }
+
+    private final GeoDataLoader geoDataLoader;
+    private final GeoMetrics metrics;
+    private final int batchSize;
+    private final int maxInFlight;
+    private final ExecutorService executor;
+
+    public CsvReverseService(GeoDataLoader geoDataLoader, GeoProperties properties, GeoMetrics metrics,
+                             GeocodeExecutor geocodeExecutor) {
+        this.geoDataLoader = geoDataLoader;
+        this.metrics = metrics;
+        this.batchSize = properties.getCsv().getBatchSize();
+        this.executor = geocodeExecutor.getExecutor();
+        this.maxInFlight = geocodeExecutor.getChunksPerRequest();
+    }
+
+    /**
+     * 逆地理编码整个 CSV 文件
+     *
+     * @param input 输入文件，第 3、4 列为经度、纬度
+     * @param output 输出文件，在原 4 列后追加省、市、区、街道
+     * @return 处理的行数
+     */
+    public long reverse(String input, String output) {
+        return reverse(input, output, null);
+    }
+
+    /**
+     * 逆地理编码 CSV 文件
+     *
+     * @param input 输入文件
+     * @param output 输出文件
+     * @param listener 进度回调，可为 null
+     * @return 处理的行数
+     */
+    public long reverse(String input, String output, ProgressListener listener) {
+        return reverse(input, output, 0, listener);
+    }
+
+    /**
+     * 逆地理编码 CSV 文件，跳过已处理的行后追加写出，用于任务断点续跑
+     *
+     * @param input 输入文件
+     * @param output 输出文件，skipRows 大于 0 时追加写入
+     * @param skipRows 跳过的输入行数
+     * @param listener 进度回调，参数为包含跳过行在内的累计行数，回调时已写出的数据均已 flush
+     * @return 本次处理的行数
+     */
+    public long reverse(String input, String output, long skipRows, ProgressListener listener) {
+        return reverse(input, output, CoordinateSystem.WGS84, skipRows, listener);
+    }
+
+    /**
+     * 逆地理编码 CSV 文件，输入坐标为 crs 坐标系，输出中的经纬度列保持原样
+     *
+     * @param crs 输入坐标的坐标系，按批转换为 WGS84 后查询
+     */
+    public long reverse(String input, String output, CoordinateSystem crs, long skipRows, ProgressListener listener) {
+        long start = System.nanoTime();
+        long lastLog = start;
+        long rows = 0;
+        Deque<Future<List<String[]>>> inFlight = new ArrayDeque<>();
+        try (CSVReader reader = CsvUtil.openReader(input, ',');
+             CSVWriter writer = CsvUtil.openWriter(output, ',', skipRows > 0)) {
+            for (long i = 0; i < skipRows && reader.readNext() != null; i++) {
+                // 跳过已处理的行
+            }
+
+            List<String[]> batch = new ArrayList<>(batchSize);
+            String[] line;
+            while (true) {
+                line = reader.readNext();
+                if (line != null) {
+                    batch.add(line);
+                }
+                if (batch.size() >= batchSize || (line == null && !batch.isEmpty())) {
+                    List<String[]> submitted = batch;
+                    inFlight.addLast(executor.submit(() -> geocodeBatch(submitted, crs)));
+                    batch = new ArrayList<>(batchSize);
+                }
+                // 在途批次达到上限或已读完时，按提交顺序写出最早的一批
+                while (!inFlight.isEmpty() && (inFlight.size() >= maxInFlight || line == null)) {
+                    List<String[]> done = inFlight.pollFirst().get();
+                    for (String[] row : done) {
+                        writer.writeNext(row);
+                    }
+                    rows += done.size();
+                    metrics.recordCsvRows(done.size());
+                    if (listener != null) {
+                        writer.flush();
+                        listener.onProgress(skipRows + rows);
+                    }
+                    long now = System.nanoTime();
+                    if (now - lastLog >= PROGRESS_INTERVAL_NANOS) {
+                        log.info("csv-reverse {}: {} 行, {} 行/秒", input, skipRows + rows, rate(rows, now - start));
+                        lastLog = now;
+                    }
+                }
+                if (line == null) {
+                    break;
+                }
+            }
+        } catch (IOException | CsvValidationException e) {
+            throw new RuntimeException("CSV 逆地理编码失败: " + input, e);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("CSV 逆地理编码被中断: " + input, e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("CSV 逆地理编码失败: " + input, e.getCause());
+        } finally {
+            inFlight.forEach(f -> f.cancel(true));
+        }
+        log.info("csv-reverse {} 完成: {} 行, {} 行/秒", input, skipRows + rows, rate(rows, System.nanoTime() - start));
+        return rows;
+    }
+
+    private static long rate(long rows, long nanos) {
+        return nanos <= 0 ? 0 : rows * 1_000_000_000L / nanos;
+    }
+
+    /**
+     * 先解析整批坐标，一次转换坐标系，再逐行查询
+     */
+    private List<String[]> geocodeBatch(List<String[]> lines, CoordinateSystem crs) {
+        double[] coords = new double[lines.size() * 2];
+        for (int i = 0; i < lines.size(); i++) {
+            String[] line = lines.get(i);
+            try {
+                coords[i * 2] = Double.parseDouble(line[2]);
+                coords[i * 2 + 1] = Double.parseDouble(line[3]);
+            } catch (NumberFormatException e) {
+                coords[i * 2] = Double.NaN;
+                coords[i * 2 + 1] = Double.NaN;
+            }
+        }
+        crs.toWgs84(coords, 0, lines.size());
+        List<String[]> result = new ArrayList<>(lines.size());
+        for (int i = 0; i < lines.size(); i++) {
+            result.add(geocodeRow(lines.get(i), coords[i * 2], coords[i * 2 + 1]));
+        }
+        return result;
+    }
+
+    /**
+     * 单行逆地理编码：第 3、4 列解析失败（坐标为 NaN）视为表头
+     *
+     * @param lng 已转换为 WGS84 的经度
+     */
+    String[] geocodeRow(String[] line, double lng, double lat) {
+        if (Double.isNaN(lng) || Double.isNaN(lat)) {
+            return outputRow(line, null, null, true);
+        }
+        Street street = geoDataLoader.reverseGeocode(lng, lat);
+        return outputRow(line, street, street == null ? geoDataLoader.locateAdmin(lng, lat) : null, false);
+    }
+
+    /**
+     * 输出行：原 4 列后追加省、市、区、街道
+     * 查不到街道但在省市区边界内时输出边界所在级别及以上的名称，街道列为空；都查不到时原样输出
+     *
+     * @param header 表头行，追加列名
+     */
+    static String[] outputRow(String[] line, Street street, AdminBoundary boundary, boolean header) {
+        if (header) {
+            return new String[]{line[0], line[1], line[2], line[3], "省", "市", "区", "街道"};
+        }
+        if (Objects.nonNull(street)) {
+            AdminPath admin = street.getAdminPath();
+            return new String[]{line[0], line[1], line[2], line[3],
+                    admin.getProvince(),
+                    admin.getCity(),
+                    admin.getDistrict(),
+                    street.getName()};
+        }
+        if (boundary != null) {
+            AdminPath admin = boundary.getPath();
+            return new String[]{line[0], line[1], line[2], line[3],
+                    admin.getProvince(),
+                    boundary.getLevel() >= AdminBoundary.CITY ? admin.getCity() : "",
+                    boundary.getLevel() >= AdminBoundary.DISTRICT ? admin.getDistrict() : "",
+                    ""};
+        }
+        return line;
+    }
+}
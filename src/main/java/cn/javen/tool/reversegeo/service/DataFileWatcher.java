@@ -0,0 +1,102 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import jakarta.annotation.PostConstruct;
+import jakarta.annotation.PreDestroy;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.nio.file.*;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 监听街道与行政区划数据文件，文件变化且稳定一段时间后触发热加载
+ * 通过 geo.reload.watch=true 开启
+ * @Author: Javen
+ * @CreateTime: 2025/10/15 14:40
+ */
+@Component
+@ConditionalOnProperty(prefix = "geo.reload", name = "watch", havingValue = "true")
+public class DataFileWatcher {
+
+    private final GeoDataLoader geoDataLoader;
+    private final GeoProperties properties;
+
+    private WatchService watchService;
+    private Thread thread;
+
+    public DataFileWatcher(GeoDataLoader geoDataLoader, GeoProperties properties) {
+        this.geoDataLoader = geoDataLoader;
+        this.properties = properties;
+    }
+
+    @PostConstruct
+    public void start() throws IOException {
+        Set<Path> files = new HashSet<>();
+        addFile(files, properties.getStreetsCsv());
+        addFile(files, properties.getSnapshot());
+        addFile(files, properties.getPolygonStore());
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            files.add(Path.of(properties.getAdminDir(), name).toAbsolutePath().normalize());
+        }
+
+        watchService = FileSystems.getDefault().newWatchService();
+        Set<Path> dirs = new HashSet<>();
+        for (Path file : files) {
+            Path dir = file.getParent();
+            if (dir != null && Files.isDirectory(dir) && dirs.add(dir)) {
+                dir.register(watchService, StandardWatchEventKinds.ENTRY_CREATE,
+                        StandardWatchEventKinds.ENTRY_MODIFY, StandardWatchEventKinds.ENTRY_DELETE);
+            }
+        }
+
+        thread = new Thread(() -> watch(files), "geo-file-watcher");
+        thread.setDaemon(true);
+        thread.start();
+    }
+
+    private void watch(Set<Path> files) {
+        long debounce = properties.getReload().getDebounceMillis();
+        long lastChange = 0;
+        try {
+            while (!Thread.currentThread().isInterrupted()) {
+                WatchKey key = watchService.poll(Math.max(debounce / 4, 100), TimeUnit.MILLISECONDS);
+                if (key != null) {
+                    Path dir = (Path) key.watchable();
+                    for (WatchEvent<?> event : key.pollEvents()) {
+                        if (event.context() instanceof Path name && files.contains(dir.resolve(name))) {
+                            lastChange = System.currentTimeMillis();
+                        }
+                    }
+                    key.reset();
+                }
+                // 文件停止变化超过 debounce 后再加载；已有加载任务时下一轮重试
+                if (lastChange > 0 && System.currentTimeMillis() - lastChange >= debounce
+                        && geoDataLoader.reloadAsync()) {
+                    lastChange = 0;
+                }
+            }
+        } catch (InterruptedException | ClosedWatchServiceException e) {
+            // 服务关闭
+        }
+    }
+
+    private void addFile(Set<Path> files, String path) {
+        if (path != null && !path.isEmpty()) {
+            files.add(Path.of(path).toAbsolutePath().normalize());
+        }
+    }
+
+    @PreDestroy
+    public void stop() throws IOException {
+        if (thread != null) {
+            thread.interrupt();
+        }
+        if (watchService != null) {
+            watchService.close();
+        }
+    }
+}
@@ -1,24 +1,31 @@
 package cn.javen.tool.reversegeo.service;
 
-import cn.javen.tool.reversegeo.model.STRtreeIndex;
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.NearestStreet;
 import cn.javen.tool.reversegeo.model.Street;
-import com.opencsv.CSVReader;
-import org.locationtech.jts.geom.Geometry;
-import org.locationtech.jts.geom.Point;
-import org.locationtech.jts.io.WKTReader;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
-import org.locationtech.jts.geom.Coordinate;
 import org.locationtech.jts.geom.GeometryFactory;
 import org.locationtech.jts.geom.PrecisionModel;
 
-import java.io.*;
-import java.nio.charset.StandardCharsets;
-import java.nio.file.Files;
-import java.nio.file.Path;
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @Description 加载数据 构建空间索引
+ * 当前数据保存在一份不可变的 GeoIndex 中，热加载时在后台构建新索引后原子替换，
+ * 正在执行的查询继续使用旧索引，查询路径不加锁
+ * 开启按省分片（geo.shard.enabled）时，GeoIndex 只包含行政区划，街道由 ShardedGeoIndex 按需加载
  * @Author: Javen
  * @CreateTime: 2025/9/23 15:29
  */
@@ -29,131 +36,176 @@ public class GeoDataLoader {
     // PrecisionModel 指定坐标的精度模型，这里使用默认的浮点精度
     // SRID 4326 表示 WGS84 坐标系，即经纬度坐标系统
     private final GeometryFactory geometryFactory = new GeometryFactory(new PrecisionModel(), 4326);
-    private final WKTReader wktReader = new WKTReader(geometryFactory);
 
-    // 存储所有街道（可替换为 RTree 索引）
-    private final List<Street> streets = new ArrayList<>();
+    // 当前对外服务的数据，索引与分片成对发布，查询看不到新索引配旧分片的中间状态
+    private final AtomicReference<Loaded> current = new AtomicReference<>();
 
-    // 空间索引：使用 STRtree（JTS 提供）
-    private final STRtreeIndex strTreeIndex = new STRtreeIndex();
+    private final GeoProperties properties;
 
-    // 行政区划映射（示例）
-    private final Map<String, String> districtMap = new HashMap<>();
-    private final Map<String, String> cityMap = new HashMap<>();
-    private final Map<String, String> provinceMap = new HashMap<>();
+    private final GeoMetrics metrics;
 
-    public GeoDataLoader() {
-        loadAdminMapping();       // 加载省市区映射
-        loadStreetsFromCSV();     // 加载街道数据
-        buildSpatialIndex();      // 构建空间索引
+    // 量化网格结果缓存，未开启时为 null
+    private final ReverseGeocodeCache cache;
+
+    // 热加载在单独的低优先级线程中执行，避免与查询线程争抢 CPU
+    private final ExecutorService reloadExecutor = Executors.newSingleThreadExecutor(r -> {
+        Thread thread = new Thread(r, "geo-reload");
+        thread.setDaemon(true);
+        thread.setPriority(Thread.MIN_PRIORITY);
+        return thread;
+    });
+    private final AtomicBoolean reloading = new AtomicBoolean();
+    // 定时卸载空闲分片，未开启时为 null
+    private final ScheduledExecutorService shardEvictor;
+    private volatile long lastReloadMillis;
+    private volatile String lastReloadError;
+
+    /**
+     * 离线工具与基准测试使用，不上报指标
+     */
+    public GeoDataLoader(GeoProperties properties) {
+        this(properties, GeoMetrics.noop());
+    }
+
+    @Autowired
+    public GeoDataLoader(GeoProperties properties, GeoMetrics metrics) {
+        this.properties = properties;
+        this.metrics = metrics;
+        GeoProperties.Cache cacheProperties = properties.getCache();
+        this.cache = cacheProperties.isEnabled()
+                ? new ReverseGeocodeCache(cacheProperties.getGrid(), cacheProperties.getMaximumSize())
+                : null;
+        if (cache != null) {
+            metrics.bindCache(cache);
+        }
+        long start = System.currentTimeMillis();
+        GeoIndex initial = new GeoIndexBuilder(properties, geometryFactory).build();
+        initial.setMetrics(metrics);
+        if (properties.getShard().isEnabled()) {
+            current.set(new Loaded(initial, openShardsOrFail(initial)));
+            this.shardEvictor = startEvictor();
+        } else {
+            current.set(new Loaded(initial, null));
+            this.shardEvictor = null;
+        }
+        lastReloadMillis = System.currentTimeMillis() - start;
+    }
+
+    private ShardedGeoIndex openShardsOrFail(GeoIndex admins) {
+        try {
+            return openShards(admins);
+        } catch (IOException e) {
+            throw new IllegalStateException("分片目录加载失败: " + properties.getShard().getDir(), e);
+        }
     }
 
     /**
-     * 查询省
-     * SELECT left(t.administrative_code, 2), t.area_name from t_pbm_poi_districts t where t.level=2 and t.is_deleted=0 and t.parent_id=1 order by t.administrative_code;
-     *
-     * 查询市
-     * SELECT left(t.administrative_code, 4) as code, t.area_name from t_pbm_poi_districts t where t.level=3
-     * and t.county_id=0
-     * and t.whole_id like '1,%'
-     * and t.is_deleted=0 having code != '' order by t.administrative_code;
-     *
+     * 按配置启动空闲分片的定时卸载，每次执行时取当前发布的分片
+     */
+    private ScheduledExecutorService startEvictor() {
+        long idleMinutes = properties.getShard().getIdleEvictMinutes();
+        if (idleMinutes <= 0) {
+            return null;
+        }
+        ScheduledExecutorService evictor = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "geo-shard-evict");
+            thread.setDaemon(true);
+            return thread;
+        });
+        long period = Math.max(1, idleMinutes * 60 / 4);
+        evictor.scheduleWithFixedDelay(() -> current.get().shards().evictIdle(TimeUnit.MINUTES.toMillis(idleMinutes)),
+                period, period, TimeUnit.SECONDS);
+        return evictor;
+    }
+
+    /**
+     * 打开分片目录，按 admins 中的区划映射解析分片街道的省市区
+     */
+    private ShardedGeoIndex openShards(GeoIndex admins) throws IOException {
+        ShardedGeoIndex opened = ShardedGeoIndex.open(properties, geometryFactory, metrics);
+        for (Street street : opened.getCatalog()) {
+            street.setAdminPath(admins.getAdminPath(street.getStreetId()));
+        }
+        return opened;
+    }
+
+    /**
+     * 在后台线程重新加载街道与行政区划数据，构建完成后原子替换当前索引
      *
+     * @return 是否已提交，已有加载任务在执行时返回 false
      */
-    private void loadAdminMapping() {
-        try {
-            List<String> provices = Files.readAllLines(Path.of("src/main/resources/province.txt"));
-            provices.forEach(s -> {
-                String[] split = s.split(",");
-                provinceMap.put(split[0], split[1]);
-            });
-
-            List<String> citys = Files.readAllLines(Path.of("src/main/resources/city.txt"));
-            citys.forEach(s -> {
-                String[] split = s.split(",");
-                cityMap.put(split[0], split[1]);
-            });
-
-            List<String> districts = Files.readAllLines(Path.of("src/main/resources/district.txt"));
-            districts.forEach(s -> {
-                String[] split = s.split(",");
-                districtMap.put(split[0], split[1]);
-            });
-        } catch (Exception e) {
-            e.printStackTrace();
+    public boolean reloadAsync() {
+        if (!reloading.compareAndSet(false, true)) {
+            return false;
         }
+        reloadExecutor.execute(() -> {
+            try {
+                reload();
+            } finally {
+                reloading.set(false);
+            }
+        });
+        return true;
     }
 
-    private void loadStreetsFromCSV() {
-        String csvFile = "src/main/resources/streets_over.csv"; // 放在 resources 目录
-        try (Reader reader = new InputStreamReader(new FileInputStream(csvFile), StandardCharsets.UTF_8);
-             CSVReader csvReader = new CSVReader(reader)) {
-
-            String[] line;
-            boolean first = true;
-            while ((line = csvReader.readNext()) != null) {
-                if (first) {
-                    first = false;
-                    continue;
-                } // skip header
-
-                Street street = new Street();
-                street.setStreetId(line[0]);
-                street.setName(line[1]);
-                street.setLevel(line[2]);
-
-                // 解析 center (POINT)
-                if (line[3] != null && !line[3].isEmpty()) {
-                    String[] center = parsePointFromWKT(line[3]);
-                    if (center != null) {
-                        double lng = Double.parseDouble(center[0]);
-                        double lat = Double.parseDouble(center[1]);
-                        street.setCenter(geometryFactory.createPoint(new Coordinate(lng, lat)));
-                    }
-                }
-
-                // 解析 polygon (WKT)
-                if (line[4] != null && !line[4].isEmpty()) {
-                    Geometry geom = wktReader.read(line[4]);
-                    street.setPolygon(geom);
-                }
-
-                streets.add(street);
+    /**
+     * 同步重新加载，加载过程中出现数据丢失的错误时保留旧索引
+     *
+     * @return 是否发布了新索引
+     */
+    public boolean reload() {
+        long start = System.currentTimeMillis();
+        try {
+            GeoIndexBuilder builder = new GeoIndexBuilder(properties, geometryFactory);
+            GeoIndex next = builder.build();
+            if (!builder.getFailures().isEmpty()) {
+                lastReloadError = String.join("; ", builder.getFailures());
+                return false;
+            }
+            next.setMetrics(metrics);
+            // 分片只重新读取外包范围，已加载的分片随旧对象释放，之后按需重新加载
+            ShardedGeoIndex nextShards = current.get().shards() != null ? openShards(next) : null;
+            current.set(new Loaded(next, nextShards));
+            if (cache != null) {
+                // 旧索引的缓存项按编号已不会再命中，清掉以免占着容量
+                cache.invalidateAll();
             }
-        } catch (Exception e) {
+            lastReloadError = null;
+            return true;
+        } catch (RuntimeException | IOException e) {
             e.printStackTrace();
+            lastReloadError = e.toString();
+            return false;
+        } finally {
+            lastReloadMillis = System.currentTimeMillis() - start;
         }
     }
 
-    private String[] parsePointFromWKT(String wkt) {
-        // POINT(116.4056 39.9126)
-        int start = wkt.indexOf('(') + 1;
-        int end = wkt.indexOf(')');
-        if (start > 0 && end > start) {
-            String[] coords = wkt.substring(start, end).split(" ");
-            return new String[]{coords[0], coords[1]};
+    public Map<String, Object> getReloadStatus() {
+        Loaded loaded = current.get();
+        Map<String, Object> status = new LinkedHashMap<>();
+        status.put("reloading", reloading.get());
+        status.put("streets", loaded.streets().size());
+        status.put("loadedAt", loaded.index().getLoadedAt());
+        status.put("lastReloadMillis", lastReloadMillis);
+        status.put("lastReloadError", lastReloadError);
+        return status;
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        reloadExecutor.shutdownNow();
+        if (shardEvictor != null) {
+            shardEvictor.shutdownNow();
         }
-        return null;
     }
 
     /**
-     * 构建空间索引（STRtree）以提高逆地理编码的查询效率
-     * 遍历所有已加载的街道数据，将具有有效多边形的街道插入到STRtree空间索引中
-     * 每个街道的多边形外包矩形（Envelope）作为索引键，街道对象本身作为值
-     * 最后调用build()方法完成索引的构建
+     * 当前对外服务的索引；需要多次查询且保证数据一致时，先取出索引再调用其方法
+     * 分片模式下只包含行政区划，不包含街道
      */
-    private void buildSpatialIndex() {
-        // 遍历所有街道对象
-        for (Street street : streets) {
-            // 检查街道是否具有有效的多边形几何对象
-            if (street.getPolygon() != null) {
-                // 将街道的多边形外包矩形和街道对象插入到STRtree索引中
-                // getEnvelopeInternal()获取几何对象的最小外包矩形，用于空间索引的快速筛选
-                strTreeIndex.insert(street.getPolygon().getEnvelopeInternal(), street);
-            }
-        }
-        // 构建STRtree索引，使其可以被高效查询
-        strTreeIndex.build();
+    public GeoIndex getIndex() {
+        return current.get().index();
     }
 
     /**
@@ -163,35 +215,131 @@ public class GeoDataLoader {
      * @return 匹配的Street对象，如果未找到则返回null
      */
     public Street reverseGeocode(double lng, double lat) {
-        // 使用给定的经纬度创建一个点几何对象
-        Point point = geometryFactory.createPoint(new Coordinate(lng, lat));
-        
-        // 使用STRtree空间索引查询可能包含该点的候选街道（基于外包矩形）
-        // 使用点的外包矩形（Envelope）作为查询条件，在STRtree空间索引中查找可能包含该点的候选街道
-        // getEnvelopeInternal() 获取几何对象（此处为点）的最小外包矩形，用于空间索引的快速筛选
-        List<Street> candidates = strTreeIndex.query(point.getEnvelopeInternal());
-
-        // 遍历候选街道，精确判断点是否在街道的多边形内部
-        for (Street street : candidates) {
-            if (street.getPolygon().contains(point)) {
-                // 找到包含该点的街道，立即返回
-                return street;
-            }
+        long start = System.nanoTime();
+        Street street = lookup(lng, lat);
+        metrics.recordReverse(System.nanoTime() - start, street != null);
+        return street;
+    }
+
+    private Street lookup(double lng, double lat) {
+        Loaded loaded = current.get();
+        if (loaded.shards() != null) {
+            return loaded.shards().reverseGeocode(lng, lat, cache);
+        }
+        if (cache != null) {
+            return cache.reverseGeocode(loaded.index(), lng, lat);
+        }
+        return loaded.index().reverseGeocode(lng, lat);
+    }
+
+    /**
+     * 轨迹查询：previous 为同一轨迹上一个点的结果，先检查它及其相邻街道，查不到时再走完整查询；不经过缓存
+     */
+    public Street reverseGeocodeNear(Street previous, double lng, double lat) {
+        long start = System.nanoTime();
+        Loaded loaded = current.get();
+        Street street = loaded.shards() != null
+                ? loaded.shards().reverseGeocodeNear(previous, lng, lat, cache)
+                : loaded.index().reverseGeocodeNear(previous, lng, lat);
+        metrics.recordReverse(System.nanoTime() - start, street != null);
+        return street;
+    }
+
+    /**
+     * 距离上限（geo.nearest.max-distance-meters）内边界最近的街道，先确认点不在任何街道内再调用
+     *
+     * @return 上限内没有街道时返回 null
+     */
+    public NearestStreet nearestStreet(double lng, double lat) {
+        double maxMeters = properties.getNearest().getMaxDistanceMeters();
+        Loaded loaded = current.get();
+        if (loaded.shards() != null) {
+            return loaded.shards().nearest(lng, lat, maxMeters);
         }
-        
-        // 如果没有找到匹配的街道，返回null
-        return null;
+        return loaded.index().nearest(lng, lat, maxMeters);
+    }
+
+    /**
+     * 包含该点的最深一级省市区边界（geo.boundary.enabled），查不到街道时返回区 / 市 / 省级的部分结果
+     * 分片模式下边界加载在全量索引中，不需要加载分片
+     *
+     * @return 未加载边界或不在任何边界内时返回 null
+     */
+    public AdminBoundary locateAdmin(double lng, double lat) {
+        return current.get().index().locateAdmin(lng, lat);
+    }
+
+    /**
+     * 查不到街道时是否默认返回最近街道
+     */
+    public boolean isNearestEnabled() {
+        return properties.getNearest().isEnabled();
+    }
+
+    /**
+     * 网格查找表直接命中与回退的统计，未开启时返回 null
+     */
+    public Map<String, Object> getGridStats() {
+        GridIndex gridIndex = current.get().index().getGridIndex();
+        return gridIndex == null ? null : gridIndex.getStats();
+    }
+
+    /**
+     * 缓存命中统计，未开启缓存时返回 null
+     */
+    public Map<String, Object> getCacheStats() {
+        return cache == null ? null : cache.getStats();
+    }
+
+    /**
+     * 分片模式下只返回已加载分片中的街道
+     */
+    public List<Street> getStreets() {
+        return current.get().streets();
+    }
+
+    /**
+     * 当前数据的全部街道，分片模式下包括未加载的分片（只有属性没有几何）；热加载后返回新的列表对象
+     */
+    public List<Street> getCatalog() {
+        Loaded loaded = current.get();
+        return loaded.shards() != null ? loaded.shards().getCatalog() : loaded.index().getStreets();
+    }
+
+    /**
+     * 是否按省分片加载，分片模式下 getIndex() 中没有街道
+     */
+    public boolean isSharded() {
+        return current.get().shards() != null;
+    }
+
+    /**
+     * 分片加载与卸载统计，未开启分片时返回 null
+     */
+    public Map<String, Object> getShardStats() {
+        ShardedGeoIndex sharded = current.get().shards();
+        return sharded == null ? null : sharded.getStats();
+    }
+
+    public GeometryFactory getGeometryFactory() {
+        return geometryFactory;
+    }
+
+    public AdminPath getAdminPath(String streetId) {
+        return current.get().index().getAdminPath(streetId);
     }
 
     public Map<String, String> getAddress(String streetId) {
-        Map<String, String> addr = new HashMap<>();
-        String code6 = streetId.length() >= 6 ? streetId.substring(0, 6) : "";
-        String code4 = streetId.length() >= 4 ? streetId.substring(0, 4) : "";
-        String code2 = streetId.length() >= 2 ? streetId.substring(0, 2) : "";
+        return current.get().index().getAddress(streetId);
+    }
 
-        addr.put("province", provinceMap.getOrDefault(code2, "未知省"));
-        addr.put("city", cityMap.getOrDefault(code4, "未知市"));
-        addr.put("district", districtMap.getOrDefault(code6, "未知区"));
-        return addr;
+    /**
+     * 一次发布的数据：分片模式下 index 只包含行政区划，shards 的省市区按同一个 index 解析；未开启分片时 shards 为 null
+     */
+    private record Loaded(GeoIndex index, ShardedGeoIndex shards) {
+
+        List<Street> streets() {
+            return shards != null ? shards.getLoadedStreets() : index.getStreets();
+        }
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,413 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.AdminDivisions;
+import cn.javen.tool.reversegeo.model.AdminHierarchy;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.GeoDistance;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.NearestStreet;
+import cn.javen.tool.reversegeo.model.PolygonLocator;
+import cn.javen.tool.reversegeo.model.STRtreeIndex;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.storage.PolygonStore;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Point;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.index.ItemVisitor;
+
+import java.util.*;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+
+/**
+ * @Description 一份完整的只读数据：街道、空间索引、行政区划映射
+ * 构建完成后不再修改，热加载时整体替换引用，查询线程无需加锁
+ * @Author: Javen
+ * @CreateTime: 2025/10/15 10:05
+ */
+public class GeoIndex {
+
+    // 每个线程复用的查询上下文（查询矩形 + 候选回调），查询路径不创建对象
+    private static final ThreadLocal<PointQuery> POINT_QUERY = ThreadLocal.withInitial(PointQuery::new);
+
+    private final GeometryFactory geometryFactory;
+    private final List<Street> streets;
+    private final STRtreeIndex strTreeIndex;
+    // 堆外多边形存储，仅 MAPPED 模式下不为空
+    private final PolygonStore polygonStore;
+
+    private final AdminDivisions adminDivisions;
+
+    // 每个街道的相邻街道（外包矩形相交），轨迹查询第一次用到时计算；下标为 Street.getIndex()
+    private final AtomicReferenceArray<Street[]> neighbours;
+
+    // 分层网格查找表，未开启时为 null；由 GeoIndexBuilder 在发布前设置
+    private GridIndex gridIndex;
+
+    // 省市区边界树，未加载边界时为 null；hierarchicalLookup 为 true 时先按区缩小街道候选
+    private AdminHierarchy hierarchy;
+    private boolean hierarchicalLookup;
+
+    // 查询指标，为 null 时不记录；由 GeoDataLoader 在发布前设置
+    private GeoMetrics metrics;
+
+    private final long loadedAt = System.currentTimeMillis();
+
+    // 进程内唯一的索引编号，缓存以它区分不同索引（热加载前后、不同分片）的结果，不持有索引本身
+    private static final AtomicInteger GENERATIONS = new AtomicInteger();
+    private final int generation = GENERATIONS.incrementAndGet();
+
+    // 所有街道都有预处理的堆内多边形，classify 代价较低且能给出确定结果
+    private final boolean cellsClassifiable;
+
+    GeoIndex(GeometryFactory geometryFactory, List<Street> streets, STRtreeIndex strTreeIndex,
+             PolygonStore polygonStore, AdminDivisions adminDivisions) {
+        this.geometryFactory = geometryFactory;
+        this.streets = Collections.unmodifiableList(streets);
+        this.strTreeIndex = strTreeIndex;
+        this.polygonStore = polygonStore;
+        this.adminDivisions = adminDivisions;
+        this.neighbours = new AtomicReferenceArray<>(streets.size());
+        this.cellsClassifiable = polygonStore == null
+                && streets.stream().allMatch(s -> s.getPolygon() == null || s.getPreparedPolygon() != null);
+    }
+
+    /**
+     * 根据给定的经纬度进行逆地理编码，返回对应的街道信息
+     * 全程使用原始坐标：网格表、STRtree 回调遍历、PolygonLocator 点面判断都不创建对象
+     * @param lng 经度
+     * @param lat 纬度
+     * @return 匹配的Street对象，如果未找到则返回null
+     */
+    public Street reverseGeocode(double lng, double lat) {
+        // 先查网格表，落在街道内部或空白区域的点直接返回，边界单元再走空间索引
+        if (gridIndex != null) {
+            int id = gridIndex.lookup(lng, lat);
+            if (id >= 0) {
+                return streets.get(id);
+            }
+            if (id == GridIndex.EMPTY) {
+                return null;
+            }
+        }
+
+        // 逐级定位到区后只检查该区的街道，区内查不到（边界数据与街道不完全一致）时仍走空间索引
+        if (hierarchicalLookup) {
+            AdminBoundary boundary = hierarchy.locate(lng, lat);
+            if (boundary != null) {
+                for (Street street : boundary.getStreets()) {
+                    if (covers(street, lng, lat) && contains(street, lng, lat)) {
+                        return street;
+                    }
+                }
+            }
+        }
+
+        // 使用STRtree空间索引查询可能包含该点的候选街道（基于外包矩形），
+        // 在回调中精确判断点是否在街道的多边形内部，多边形重叠时返回下标最小的包含该点的街道
+        return POINT_QUERY.get().find(this, lng, lat);
+    }
+
+    /**
+     * 判断点是否在街道多边形内部，优先使用原始坐标点面索引，堆外存储模式下直接在映射区上判断；
+     * 未做预处理（geo.prepared-geometry=false）时退回 Geometry.contains，需要创建 Point
+     * 有简化多边形时先用它判断，只有落在容差带内的点才查原多边形
+     */
+    public boolean contains(Street street, double x, double y) {
+        return contains(street, x, y, null);
+    }
+
+    /**
+     * @param query 不为 null 时累计检查的边数
+     */
+    private boolean contains(Street street, double x, double y, PointQuery query) {
+        PolygonLocator coarse = street.getCoarseLocator();
+        if (coarse != null) {
+            if (query != null) {
+                query.edges += coarse.edgesAt(y);
+            }
+            int location = coarse.locate(x, y);
+            if (location != PolygonLocator.UNCERTAIN) {
+                return location == PolygonLocator.INSIDE;
+            }
+        }
+        PolygonLocator locator = street.getLocator();
+        if (locator != null) {
+            if (query != null) {
+                query.edges += locator.edgesAt(y);
+            }
+            return locator.contains(x, y);
+        }
+        if (street.getPolygon() != null) {
+            if (query != null) {
+                query.edges += street.getPolygon().getNumPoints();
+            }
+            return street.getPolygon().contains(geometryFactory.createPoint(new Coordinate(x, y)));
+        }
+        return polygonStore != null && street.getShapeId() >= 0
+                && polygonStore.contains(street.getShapeId(), x, y);
+    }
+
+    /**
+     * 轨迹查询：同一轨迹上相邻的点通常落在同一街道内，先检查上一个点所在的街道，
+     * 再检查与其外包矩形相交的街道，都不包含时再按 reverseGeocode 查询
+     * 多边形重叠处可能与 reverseGeocode 的结果不同，优先保持在上一个街道内
+     *
+     * @param previous 同一轨迹上一个点的结果，可以为 null 或不属于当前索引（热加载前的结果）
+     */
+    public Street reverseGeocodeNear(Street previous, double lng, double lat) {
+        if (previous != null && owns(previous)) {
+            if (covers(previous, lng, lat) && contains(previous, lng, lat)) {
+                recordTrack(GeoMetrics.TRACK_SAME);
+                return previous;
+            }
+            for (Street neighbour : neighbours(previous)) {
+                if (covers(neighbour, lng, lat) && contains(neighbour, lng, lat)) {
+                    recordTrack(GeoMetrics.TRACK_NEIGHBOUR);
+                    return neighbour;
+                }
+            }
+        }
+        recordTrack(GeoMetrics.TRACK_INDEX);
+        return reverseGeocode(lng, lat);
+    }
+
+    /**
+     * 街道是否属于当前索引
+     */
+    public boolean owns(Street street) {
+        int i = street.getIndex();
+        return i >= 0 && i < streets.size() && streets.get(i) == street;
+    }
+
+    private static boolean covers(Street street, double x, double y) {
+        Envelope envelope = street.getEnvelope();
+        return envelope == null || envelope.contains(x, y);
+    }
+
+    private Street[] neighbours(Street street) {
+        Street[] result = neighbours.get(street.getIndex());
+        if (result == null) {
+            Envelope envelope = street.getEnvelope() != null
+                    ? street.getEnvelope() : street.getPolygon().getEnvelopeInternal();
+            result = strTreeIndex.query(envelope).stream()
+                    .filter(candidate -> candidate != street)
+                    .toArray(Street[]::new);
+            // 并发计算的结果相同，后写入的覆盖先写入的即可
+            neighbours.set(street.getIndex(), result);
+        }
+        return result;
+    }
+
+    private void recordTrack(int level) {
+        if (metrics != null) {
+            metrics.recordTrack(level);
+        }
+    }
+
+    public boolean contains(Street street, Point point) {
+        return contains(street, point.getX(), point.getY());
+    }
+
+    /**
+     * 查找距离上限内边界最近的街道，用于点落在街道之间的空隙、海岸线外或因 GPS 漂移略出边界的情况
+     * 先按以查询点为中心、边长为两倍上限的矩形在 STRtree 中取候选，再逐个计算到边界的实际距离，
+     * 结果只与距离（米）有关；应在 reverseGeocode 查不到时再调用
+     *
+     * @param maxMeters 距离上限（米）
+     * @return 上限内没有街道时返回 null
+     */
+    public NearestStreet nearest(double lng, double lat, double maxMeters) {
+        double dLng = GeoDistance.metersToLngDegrees(maxMeters, lat);
+        double dLat = GeoDistance.metersToLatDegrees(maxMeters);
+        Envelope search = new Envelope(lng - dLng, lng + dLng, lat - dLat, lat + dLat);
+        Street best = null;
+        double bestMeters = maxMeters;
+        for (Street candidate : strTreeIndex.query(search)) {
+            double meters = distanceMeters(candidate, lng, lat);
+            if (best == null ? meters <= bestMeters : meters < bestMeters) {
+                best = candidate;
+                bestMeters = meters;
+            }
+        }
+        return best == null ? null : new NearestStreet(best, bestMeters);
+    }
+
+    /**
+     * 点到街道多边形边界的距离（米）
+     */
+    public double distanceMeters(Street street, double x, double y) {
+        PolygonLocator locator = street.getLocator();
+        if (locator != null) {
+            return locator.distanceMeters(x, y);
+        }
+        if (street.getPolygon() != null) {
+            return GeoDistance.toGeometryMeters(street.getPolygon(), x, y);
+        }
+        if (polygonStore != null && street.getShapeId() >= 0) {
+            return polygonStore.distanceMeters(street.getShapeId(), x, y);
+        }
+        return Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * 判断矩形范围内任意一点的查询结果是否都等于 street（street 为 null 表示都查不到）
+     */
+    public boolean isUniform(Envelope cell, Street street) {
+        int id = classify(cell);
+        return street == null ? id == GridIndex.EMPTY : id == street.getIndex();
+    }
+
+    /**
+     * 对矩形范围分类：只有一个街道多边形与矩形相交且严格包含整个矩形时返回其下标，
+     * 没有街道多边形与矩形相交时返回 EMPTY，其余情况返回 FALLBACK；
+     * 堆外存储模式下没有 JTS 多边形，无法精确判断，一律返回 FALLBACK
+     */
+    int classify(Envelope cell) {
+        Geometry cellGeometry = geometryFactory.toGeometry(cell);
+        Street only = null;
+        for (Street candidate : strTreeIndex.query(cell)) {
+            if (candidate.getPolygon() == null) {
+                return GridIndex.FALLBACK;
+            }
+            PreparedGeometry prepared = candidate.getPreparedPolygon();
+            boolean intersects = prepared != null
+                    ? prepared.intersects(cellGeometry)
+                    : candidate.getPolygon().intersects(cellGeometry);
+            if (intersects) {
+                if (only != null) {
+                    return GridIndex.FALLBACK;
+                }
+                only = candidate;
+            }
+        }
+        if (only == null) {
+            return GridIndex.EMPTY;
+        }
+        PreparedGeometry prepared = only.getPreparedPolygon();
+        if (prepared == null) {
+            prepared = PreparedGeometryFactory.prepare(only.getPolygon());
+        }
+        return prepared.containsProperly(cellGeometry) ? only.getIndex() : GridIndex.FALLBACK;
+    }
+
+    void setGridIndex(GridIndex gridIndex) {
+        this.gridIndex = gridIndex;
+    }
+
+    public GridIndex getGridIndex() {
+        return gridIndex;
+    }
+
+    void setHierarchy(AdminHierarchy hierarchy, boolean hierarchicalLookup) {
+        this.hierarchy = hierarchy;
+        this.hierarchicalLookup = hierarchy != null && hierarchicalLookup;
+    }
+
+    public AdminHierarchy getHierarchy() {
+        return hierarchy;
+    }
+
+    /**
+     * 包含该点的最深一级省市区边界，用于查不到街道时返回部分结果；未加载边界或不在任何边界内时返回 null
+     */
+    public AdminBoundary locateAdmin(double lng, double lat) {
+        return hierarchy == null ? null : hierarchy.locate(lng, lat);
+    }
+
+    void setMetrics(GeoMetrics metrics) {
+        this.metrics = metrics;
+    }
+
+    /**
+     * 按街道编码查询省市区，编码所在的区已加载时不创建对象；
+     * 已查到 Street 时直接使用 street.getAdminPath()
+     */
+    public AdminPath getAdminPath(String streetId) {
+        return adminDivisions.find(streetId);
+    }
+
+    /**
+     * 旧接口：返回新建的可修改 Map
+     */
+    public Map<String, String> getAddress(String streetId) {
+        return getAdminPath(streetId).toMap();
+    }
+
+    public List<Street> getStreets() {
+        return streets;
+    }
+
+    public STRtreeIndex getStrTreeIndex() {
+        return strTreeIndex;
+    }
+
+    public PolygonStore getPolygonStore() {
+        return polygonStore;
+    }
+
+    public int getGeneration() {
+        return generation;
+    }
+
+    /**
+     * isUniform 是否值得调用：堆外存储模式下没有 JTS 多边形，一律判为 FALLBACK；
+     * 未预处理多边形（geo.prepared-geometry=false）时每次判断都要做完整的几何相交
+     */
+    public boolean isCellsClassifiable() {
+        return cellsClassifiable;
+    }
+
+    public long getLoadedAt() {
+        return loadedAt;
+    }
+
+    /**
+     * 单点查询上下文：复用查询矩形，STRtree 以回调方式遍历候选，不创建结果列表
+     * 候选数与检查的边数累计在字段中，查询结束后记录一次指标
+     * 只在所属线程内使用
+     */
+    private static final class PointQuery implements ItemVisitor {
+        private final Envelope envelope = new Envelope();
+        private GeoIndex index;
+        private double x;
+        private double y;
+        private Street result;
+        private int candidates;
+        private long edges;
+
+        Street find(GeoIndex index, double x, double y) {
+            this.index = index;
+            this.x = x;
+            this.y = y;
+            this.result = null;
+            this.candidates = 0;
+            this.edges = 0;
+            envelope.init(x, x, y, y);
+            index.strTreeIndex.query(envelope, this);
+            if (index.metrics != null) {
+                index.metrics.recordQuery(candidates, edges);
+            }
+            Street found = result;
+            // 不持有索引引用，热加载后旧索引可以被回收
+            this.index = null;
+            this.result = null;
+            return found;
+        }
+
+        @Override
+        public void visitItem(Object item) {
+            candidates++;
+            // STRtree 无法中途停止遍历，多边形重叠时取下标最小的街道，结果与候选的遍历顺序无关
+            Street street = (Street) item;
+            if ((result == null || street.getIndex() < result.getIndex()) && index.contains(street, x, y, this)) {
+                result = street;
+            }
+        }
+    }
+}
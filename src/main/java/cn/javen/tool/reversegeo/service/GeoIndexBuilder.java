@@ -0,0 +1,630 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.AdminDivisions;
+import cn.javen.tool.reversegeo.model.AdminHierarchy;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.PolygonLocator;
+import cn.javen.tool.reversegeo.model.STRtreeIndex;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.storage.PolygonStore;
+import cn.javen.tool.reversegeo.storage.StreetSnapshot;
+import com.opencsv.CSVParser;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.*;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinWorkerThread;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.IntStream;
+
+/**
+ * @Description 加载街道与行政区划数据，构建一份完整的 GeoIndex
+ * 每次构建使用独立的对象，不影响正在对外服务的索引，可以在后台线程中执行
+ * CSV 解析、WKT 解码、多边形预处理和空间索引构建在专用的 ForkJoinPool 中并行执行，构建结束后关闭
+ * @Author: Javen
+ * @CreateTime: 2025/10/15 10:20
+ */
+public class GeoIndexBuilder {
+
+    private static final Logger log = LoggerFactory.getLogger(GeoIndexBuilder.class);
+
+    // CSV 分段大小范围：段数默认为线程数的 4 倍，段过小时合并，单段不超过 256MB（一次内存映射）
+    private static final long MIN_RANGE_BYTES = 1L << 20;
+    private static final long MAX_RANGE_BYTES = 256L << 20;
+
+    private final GeoProperties properties;
+    private final GeometryFactory geometryFactory;
+    private final int threads;
+    // 分片模式下只加载这一个省的快照；为 null 时按全量配置加载，分片模式下全量索引只包含行政区划
+    private final Path shardSnapshot;
+
+    // 存储所有街道（可替换为 RTree 索引）
+    private final List<Street> streets = new ArrayList<>();
+
+    // 堆外多边形存储，仅 MAPPED 模式下使用
+    private PolygonStore polygonStore;
+
+    // 空间索引：使用 STRtree（JTS 提供）
+    private STRtreeIndex strTreeIndex;
+
+    // 行政区划映射
+    private final AdminDivisions adminDivisions = new AdminDivisions();
+
+    // 省、市、区边界：先并行解析多边形，解析省市区名称时再生成 AdminBoundary
+    private final List<ParsedBoundary> parsedBoundaries = new ArrayList<>();
+    private final List<AdminBoundary> boundaries = new ArrayList<>();
+
+    // 加载过程中丢失数据的错误，热加载时有错误则不发布新索引；CSV 分段解析时由多个线程写入
+    private final List<String> failures = Collections.synchronizedList(new ArrayList<>());
+
+    // 街道数据来源（csv / snapshot / mapped），以及 CSV 解析、WKT 解码的累计线程耗时，用于启动耗时日志
+    private String streetSource = "csv";
+    private final LongAdder csvNanos = new LongAdder();
+    private final LongAdder wktNanos = new LongAdder();
+
+    public GeoIndexBuilder(GeoProperties properties, GeometryFactory geometryFactory) {
+        this(properties, geometryFactory, null);
+    }
+
+    public GeoIndexBuilder(GeoProperties properties, GeometryFactory geometryFactory, Path shardSnapshot) {
+        this.properties = properties;
+        this.geometryFactory = geometryFactory;
+        this.shardSnapshot = shardSnapshot;
+        int configured = properties.getLoad().getThreads();
+        this.threads = configured > 0 ? configured : Runtime.getRuntime().availableProcessors();
+    }
+
+    public GeoIndex build() {
+        ForkJoinPool pool = newPool(threads);
+        try {
+            long start = System.nanoTime();
+            loadAdminMapping();       // 加载省市区映射
+            long adminDone = System.nanoTime();
+            loadStreets(pool);        // 加载街道数据
+            loadBoundaries(pool);     // 加载省市区边界
+            long streetsDone = System.nanoTime();
+            resolveAdminPaths();      // 解析街道所属省市区
+            long resolveDone = System.nanoTime();
+            preparePolygons(pool);    // 预处理多边形
+            long prepareDone = System.nanoTime();
+            strTreeIndex = buildSpatialIndex(streets, pool);  // 构建空间索引
+            long indexDone = System.nanoTime();
+            GeoIndex index = new GeoIndex(geometryFactory, streets, strTreeIndex, polygonStore, adminDivisions);
+            buildGridIndex(index, pool);  // 构建网格查找表
+            long gridDone = System.nanoTime();
+            buildHierarchy(index);    // 挂接省市区边界与街道
+
+            log.info("索引构建完成: {} 个街道，{} 线程，总耗时 {}ms；行政区划 {}ms，街道 {}ms（来源 {}，"
+                            + "CSV 解析 {}ms、WKT 解码 {}ms 为各线程累计），省市区解析 {}ms，多边形预处理 {}ms，"
+                            + "空间索引 {}ms，网格查找表 {}ms",
+                    streets.size(), threads, millis(start, gridDone), millis(start, adminDone),
+                    millis(adminDone, streetsDone), streetSource,
+                    TimeUnit.NANOSECONDS.toMillis(csvNanos.sum()), TimeUnit.NANOSECONDS.toMillis(wktNanos.sum()),
+                    millis(streetsDone, resolveDone), millis(resolveDone, prepareDone),
+                    millis(prepareDone, indexDone), millis(indexDone, gridDone));
+            return index;
+        } finally {
+            pool.shutdownNow();
+        }
+    }
+
+    private static long millis(long from, long to) {
+        return TimeUnit.NANOSECONDS.toMillis(to - from);
+    }
+
+    /**
+     * 构建专用的线程池，守护线程，不占用公共 ForkJoinPool；分片路由网格也使用
+     */
+    static ForkJoinPool newPool(int threads) {
+        return new ForkJoinPool(threads, pool -> {
+            ForkJoinWorkerThread thread = ForkJoinPool.defaultForkJoinWorkerThreadFactory.newThread(pool);
+            thread.setName("geo-load-" + thread.getPoolIndex());
+            thread.setDaemon(true);
+            return thread;
+        }, null, false);
+    }
+
+    /**
+     * 在 pool 中执行并等待结果，任务中的异常原样抛出
+     */
+    private static <T> T invoke(ForkJoinPool pool, Supplier<T> task) {
+        try {
+            return pool.submit(task::get).get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("索引构建被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        }
+    }
+
+    public List<String> getFailures() {
+        return failures;
+    }
+
+    /**
+     * 查询省
+     * SELECT left(t.administrative_code, 2), t.area_name from t_pbm_poi_districts t where t.level=2 and t.is_deleted=0 and t.parent_id=1 order by t.administrative_code;
+     *
+     * 查询市
+     * SELECT left(t.administrative_code, 4) as code, t.area_name from t_pbm_poi_districts t where t.level=3
+     * and t.county_id=0
+     * and t.whole_id like '1,%'
+     * and t.is_deleted=0 having code != '' order by t.administrative_code;
+     *
+     *
+     */
+    private void loadAdminMapping() {
+        try {
+            String adminDir = properties.getAdminDir();
+            List<String> provices = Files.readAllLines(Path.of(adminDir, "province.txt"));
+            provices.forEach(adminDivisions::putProvince);
+
+            List<String> citys = Files.readAllLines(Path.of(adminDir, "city.txt"));
+            citys.forEach(adminDivisions::putCity);
+
+            List<String> districts = Files.readAllLines(Path.of(adminDir, "district.txt"));
+            districts.forEach(adminDivisions::putDistrict);
+        } catch (Exception e) {
+            e.printStackTrace();
+            failures.add("行政区划加载失败: " + e);
+        }
+    }
+
+    /**
+     * 加载街道数据：快照文件存在时直接内存映射读取，否则解析 CSV
+     * 分片模式下只读取指定省的快照，街道由 ShardedGeoIndex 按需加载
+     */
+    private void loadStreets(ForkJoinPool pool) {
+        if (shardSnapshot != null) {
+            try {
+                streets.addAll(StreetSnapshot.read(shardSnapshot, geometryFactory));
+                streetSource = "shard " + shardSnapshot.getFileName();
+            } catch (IOException | RuntimeException e) {
+                e.printStackTrace();
+                failures.add("分片加载失败 " + shardSnapshot + ": " + e);
+            }
+            return;
+        }
+        if (properties.getShard().isEnabled()) {
+            streetSource = "none";
+            return;
+        }
+        if (properties.getStorage() == GeoProperties.StorageMode.MAPPED && loadMappedStreets()) {
+            streetSource = "mapped";
+            return;
+        }
+        String snapshot = properties.getSnapshot();
+        if (snapshot != null && !snapshot.isEmpty() && Files.exists(Path.of(snapshot)) && isCurrent(Path.of(snapshot))) {
+            try {
+                streets.addAll(StreetSnapshot.read(Path.of(snapshot), geometryFactory));
+                streetSource = "snapshot";
+                return;
+            } catch (IOException | RuntimeException e) {
+                // 快照损坏或版本不符时退回 CSV
+                e.printStackTrace();
+                streets.clear();
+            }
+        }
+        loadStreetsFromCSV(pool);
+    }
+
+    /**
+     * 由 CSV 转换得到的文件是否不早于 CSV：修改 CSV 后快照尚未重新生成时，启动与热加载都改用 CSV，不使用过期的快照
+     */
+    private boolean isCurrent(Path converted) {
+        Path csv = Path.of(properties.getStreetsCsv());
+        try {
+            if (Files.exists(csv) && Files.getLastModifiedTime(csv).compareTo(Files.getLastModifiedTime(converted)) > 0) {
+                log.warn("{} 早于街道 CSV {}，改用 CSV 加载，请重新生成快照", converted, csv);
+                return false;
+            }
+        } catch (IOException e) {
+            log.warn("无法比较 {} 与 {} 的修改时间: {}", converted, csv, e.toString());
+        }
+        return true;
+    }
+
+    /**
+     * 堆外存储模式：快照只读取街道属性和外包矩形，多边形坐标留在内存映射的 PolygonStore 中
+     * 快照与多边形存储文件由同一次转换生成，第 i 条街道对应第 i 个形状
+     *
+     * @return 是否加载成功，失败时退回堆内模式
+     */
+    private boolean loadMappedStreets() {
+        String snapshot = properties.getSnapshot();
+        String store = properties.getPolygonStore();
+        if (snapshot == null || snapshot.isEmpty() || store == null || store.isEmpty()
+                || !Files.exists(Path.of(snapshot)) || !Files.exists(Path.of(store))) {
+            log.warn("堆外存储模式需要快照 {} 和多边形存储文件 {}，退回堆内模式", snapshot, store);
+            return false;
+        }
+        if (!isCurrent(Path.of(snapshot)) || !isCurrent(Path.of(store))) {
+            return false;
+        }
+        try {
+            List<Street> loaded = StreetSnapshot.read(Path.of(snapshot), geometryFactory, false);
+            PolygonStore opened = PolygonStore.open(Path.of(store));
+            if (opened.size() != loaded.size()) {
+                log.warn("快照 {} 有 {} 个街道，多边形存储 {} 有 {} 个形状，不匹配，退回堆内模式",
+                        snapshot, loaded.size(), store, opened.size());
+                return false;
+            }
+            for (int i = 0; i < loaded.size(); i++) {
+                if (loaded.get(i).getEnvelope() != null) {
+                    loaded.get(i).setShapeId(i);
+                }
+            }
+            streets.addAll(loaded);
+            polygonStore = opened;
+            return true;
+        } catch (IOException | RuntimeException e) {
+            log.warn("加载快照 {} 或多边形存储 {} 失败，退回堆内模式", snapshot, store, e);
+            return false;
+        }
+    }
+
+    /**
+     * 按字节范围分段并行解析 CSV：文件切成若干段，分段边界对齐到换行符之后，
+     * 每段由一个线程独立解码 UTF-8、拆分字段、解析 WKT，最后按段的顺序拼接，街道顺序与文件一致
+     * 要求字段内不含换行（WKT 与街道名称都满足）
+     */
+    private void loadStreetsFromCSV(ForkJoinPool pool) {
+        String csvFile = properties.getStreetsCsv(); // 默认放在 resources 目录
+        try (FileChannel channel = FileChannel.open(Path.of(csvFile), StandardOpenOption.READ)) {
+            long[] bounds = splitRanges(channel, Math.max(threads * 4L, (channel.size() + MAX_RANGE_BYTES - 1) / MAX_RANGE_BYTES));
+            // 有序流按段下标收集，结果顺序与文件一致
+            List<List<Street>> parts = invoke(pool, () -> IntStream.range(0, bounds.length - 1)
+                    .parallel()
+                    .mapToObj(k -> parseRange(channel, bounds[k], bounds[k + 1], k == 0))
+                    .toList());
+            for (List<Street> part : parts) {
+                streets.addAll(part);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            failures.add("街道数据加载失败: " + e);
+        }
+    }
+
+    /**
+     * 把 [0, size) 切成约 count 段，除首尾外的边界后移到下一个换行符之后
+     * 行比段长时相邻边界会重合，重复的边界去掉
+     *
+     * @return 升序的段边界，首个为 0，最后一个为文件长度
+     */
+    private static long[] splitRanges(FileChannel channel, long count) throws IOException {
+        long size = channel.size();
+        count = Math.max(1, Math.min(count, size / MIN_RANGE_BYTES + 1));
+        long[] bounds = new long[(int) count + 1];
+        int n = 1;
+        ByteBuffer buffer = ByteBuffer.allocate(8192);
+        for (int k = 1; k < count; k++) {
+            long pos = Math.max(size * k / count, bounds[n - 1]);
+            long next = nextLineStart(channel, pos, buffer);
+            if (next > bounds[n - 1] && next < size) {
+                bounds[n++] = next;
+            }
+        }
+        bounds[n++] = size;
+        return Arrays.copyOf(bounds, n);
+    }
+
+    /**
+     * pos 及之后第一个换行符的下一个字节，没有换行符时返回文件长度
+     */
+    private static long nextLineStart(FileChannel channel, long pos, ByteBuffer buffer) throws IOException {
+        long size = channel.size();
+        while (pos < size) {
+            buffer.clear();
+            int read = channel.read(buffer, pos);
+            if (read <= 0) {
+                break;
+            }
+            for (int i = 0; i < read; i++) {
+                if (buffer.get(i) == '\n') {
+                    return pos + i + 1;
+                }
+            }
+            pos += read;
+        }
+        return size;
+    }
+
+    /**
+     * 解析 [from, to) 内的完整行，每段使用独立的 CSVParser 与 WKTReader（二者都非线程安全）
+     * 某一行解析失败时记录错误，该段后续的行不再加载，与原来逐行读取时遇错即停的行为一致
+     */
+    private List<Street> parseRange(FileChannel channel, long from, long to, boolean skipHeader) {
+        List<Street> result = new ArrayList<>();
+        CSVParser parser = new CSVParser();
+        WKTReader wktReader = new WKTReader(geometryFactory);
+        long csvTime = 0;
+        long wktTime = 0;
+        try {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, from, to - from);
+            byte[] line = new byte[4096];
+            int limit = buffer.limit();
+            int pos = 0;
+            boolean first = skipHeader;
+            while (pos < limit) {
+                int end = pos;
+                while (end < limit && buffer.get(end) != '\n') {
+                    end++;
+                }
+                int len = end - pos;
+                if (len > 0 && buffer.get(end - 1) == '\r') {
+                    len--;
+                }
+                if (len > line.length) {
+                    line = new byte[Math.max(len, line.length * 2)];
+                }
+                buffer.get(pos, line, 0, len);
+                pos = end + 1;
+                if (first) {
+                    first = false;
+                    continue;
+                } // skip header
+                if (len == 0) {
+                    continue;
+                }
+
+                long t0 = System.nanoTime();
+                String[] row = parser.parseLine(new String(line, 0, len, StandardCharsets.UTF_8));
+                long t1 = System.nanoTime();
+                Street street = parseRow(row, wktReader, geometryFactory);
+                long t2 = System.nanoTime();
+                csvTime += t1 - t0;
+                wktTime += t2 - t1;
+                result.add(street);
+            }
+        } catch (Exception e) {
+            e.printStackTrace();
+            failures.add("街道数据加载失败（字节 " + from + " - " + to + "）: " + e);
+        } finally {
+            csvNanos.add(csvTime);
+            wktNanos.add(wktTime);
+        }
+        return result;
+    }
+
+    /**
+     * CSV 一行：streetid,name,level,center,polygon
+     */
+    private static Street parseRow(String[] line, WKTReader wktReader, GeometryFactory geometryFactory)
+            throws ParseException {
+        Street street = new Street();
+        street.setStreetId(line[0]);
+        street.setName(line[1]);
+        street.setLevel(line[2]);
+
+        // 解析 center (POINT)
+        if (line[3] != null && !line[3].isEmpty()) {
+            String[] center = parsePointFromWKT(line[3]);
+            if (center != null) {
+                double lng = Double.parseDouble(center[0]);
+                double lat = Double.parseDouble(center[1]);
+                street.setCenter(geometryFactory.createPoint(new Coordinate(lng, lat)));
+            }
+        }
+
+        // 解析 polygon (WKT)
+        if (line[4] != null && !line[4].isEmpty()) {
+            Geometry geom = wktReader.read(line[4]);
+            street.setPolygon(geom);
+            street.setEnvelope(geom.getEnvelopeInternal());
+        }
+        return street;
+    }
+
+    private static String[] parsePointFromWKT(String wkt) {
+        // POINT(116.4056 39.9126)
+        int start = wkt.indexOf('(') + 1;
+        int end = wkt.indexOf(')');
+        if (start > 0 && end > start) {
+            String[] coords = wkt.substring(start, end).split(" ");
+            return new String[]{coords[0], coords[1]};
+        }
+        return null;
+    }
+    /**
+     * 按街道编码前缀解析省市区，同一区的街道共享一个 AdminPath，查询时不再截取字符串、查 Map
+     * 边界按自身编码解析，省、市边界的下级名称为"未知"
+     */
+    private void resolveAdminPaths() {
+        for (Street street : streets) {
+            street.setAdminPath(adminDivisions.resolve(street.getStreetId()));
+        }
+        for (ParsedBoundary parsed : parsedBoundaries) {
+            boundaries.add(new AdminBoundary(parsed.code(), parsed.level(), adminDivisions.resolve(parsed.id()),
+                    parsed.envelope(), parsed.locator(), parsed.coarseLocator()));
+        }
+        parsedBoundaries.clear();
+        adminDivisions.freeze();
+    }
+
+    /**
+     * 加载省、市、区边界（geo.boundary.enabled），CSV 每行 code,name,polygon，名称以行政区划映射文件为准
+     * 边界多边形通常远大于街道，WKT 解码与点面索引构建在 pool 中并行执行；
+     * 分片模式下只在全量索引（只含行政区划）中加载，单个省的分片不加载
+     */
+    private void loadBoundaries(ForkJoinPool pool) {
+        GeoProperties.Boundary boundary = properties.getBoundary();
+        if (!boundary.isEnabled() || shardSnapshot != null) {
+            return;
+        }
+        List<String> lines;
+        try {
+            lines = Files.readAllLines(Path.of(boundary.getCsv()), StandardCharsets.UTF_8);
+        } catch (IOException e) {
+            e.printStackTrace();
+            failures.add("行政区划边界加载失败: " + e);
+            return;
+        }
+        GeoProperties.Simplify simplify = properties.getSimplify();
+        // 有序流，边界顺序与文件一致
+        List<ParsedBoundary> parsed = invoke(pool, () -> lines.parallelStream()
+                .map(line -> parseBoundary(line, simplify))
+                .filter(Objects::nonNull)
+                .toList());
+        parsedBoundaries.addAll(parsed);
+    }
+
+    /**
+     * 表头、空行与编码不是 2/4/6 位数字的行返回 null；WKT 无法解析或几何非法时记录错误
+     */
+    private ParsedBoundary parseBoundary(String line, GeoProperties.Simplify simplify) {
+        if (line.isBlank()) {
+            return null;
+        }
+        try {
+            String[] row = new CSVParser().parseLine(line);
+            if (row.length < 3) {
+                return null;
+            }
+            String id = row[0].replace("\uFEFF", "").trim();
+            int level = AdminBoundary.levelOf(id);
+            int code = level < 0 ? -1 : AdminPath.parseCode(id, id.length());
+            if (code < 0) {
+                return null;
+            }
+            Geometry polygon = new WKTReader(geometryFactory).read(row[2]);
+            PolygonLocator coarse = simplify.isEnabled() && polygon.getNumPoints() >= simplify.getMinVertices()
+                    ? PolygonLocator.coarse(polygon, simplify.getTolerance()) : null;
+            return new ParsedBoundary(id, code, level, polygon.getEnvelopeInternal(),
+                    PolygonLocator.of(polygon), coarse);
+        } catch (IOException | ParseException | IllegalArgumentException e) {
+            // JTS 对不闭合的环等非法几何抛出 IllegalArgumentException
+            failures.add("行政区划边界解析失败: " + e);
+            return null;
+        }
+    }
+
+    private record ParsedBoundary(String id, int code, int level, Envelope envelope,
+                                  PolygonLocator locator, PolygonLocator coarseLocator) {
+    }
+
+    /**
+     * 边界按编码挂接上下级，街道按所属区挂到区级边界下；需要在街道下标确定之后执行
+     */
+    private void buildHierarchy(GeoIndex index) {
+        if (boundaries.isEmpty()) {
+            return;
+        }
+        long start = System.nanoTime();
+        AdminHierarchy hierarchy = AdminHierarchy.build(boundaries, streets);
+        index.setHierarchy(hierarchy, properties.getBoundary().isHierarchicalLookup());
+        log.info("行政区划边界: 省 {}、市 {}、区 {}，{} 个街道挂接到区，逐级查找 {}，耗时 {}ms",
+                hierarchy.count(AdminBoundary.PROVINCE), hierarchy.count(AdminBoundary.CITY),
+                hierarchy.count(AdminBoundary.DISTRICT), hierarchy.getAssignedStreets(),
+                properties.getBoundary().isHierarchicalLookup() ? "开启" : "关闭", millis(start, System.nanoTime()));
+    }
+
+    /**
+     * 预处理街道多边形
+     * 原始 Geometry.contains 每次都要对全部顶点做一次射线穿越判断，复杂多边形开销与顶点数成正比；
+     * PolygonLocator 为边建立 Y 方向分带索引，单次判断只需检查点所在带内的少量边，且基于原始坐标、不创建对象
+     * PreparedGeometry 只用于构建网格查找表时的面面判断，其内部索引在第一次使用时懒构建
+     * 顶点数较多的街道另外构建简化多边形，大部分点只需检查少量边，只有容差带内的点才查原多边形
+     * 各街道互不依赖，在 pool 中并行处理
+     */
+    private void preparePolygons(ForkJoinPool pool) {
+        if (!properties.isPreparedGeometry()) {
+            return;
+        }
+        GeoProperties.Simplify simplify = properties.getSimplify();
+        LongAdder simplified = new LongAdder();
+        LongAdder originalVertices = new LongAdder();
+        LongAdder coarseVertices = new LongAdder();
+        invoke(pool, () -> {
+            streets.parallelStream().forEach(street -> {
+                Geometry polygon = street.getPolygon();
+                if (polygon == null) {
+                    return;
+                }
+                street.setLocator(PolygonLocator.of(polygon));
+                street.setPreparedPolygon(PreparedGeometryFactory.prepare(polygon));
+
+                int vertices = polygon.getNumPoints();
+                if (simplify.isEnabled() && vertices >= simplify.getMinVertices()) {
+                    PolygonLocator coarse = PolygonLocator.coarse(polygon, simplify.getTolerance());
+                    street.setCoarseLocator(coarse);
+                    simplified.increment();
+                    originalVertices.add(vertices);
+                    coarseVertices.add(coarse.getNumPoints());
+                }
+            });
+            return null;
+        });
+        if (simplified.sum() > 0) {
+            log.info("多边形简化: {} 个街道（顶点数 >= {}），顶点 {} -> {}，减少 {}%，容差 {} 度",
+                    simplified.sum(), simplify.getMinVertices(), originalVertices.sum(), coarseVertices.sum(),
+                    (originalVertices.sum() - coarseVertices.sum()) * 100 / originalVertices.sum(),
+                    simplify.getTolerance());
+        }
+    }
+
+    /**
+     * 构建空间索引（STRtree）以提高逆地理编码的查询效率
+     * 遍历所有已加载的街道数据，将具有有效多边形的街道插入到STRtree空间索引中
+     * 每个街道的多边形外包矩形（Envelope）作为索引键，街道对象本身作为值
+     * 最后调用build()方法完成索引的构建
+     * 街道较多时按中心 x 切成多个分片在 pool 中并行打包，见 STRtreeIndex.pack
+     * 只依赖街道列表，基准测试可单独计时
+     */
+    public static STRtreeIndex buildSpatialIndex(List<Street> streets, ForkJoinPool pool) {
+        // 遍历所有街道对象，记录下标
+        for (int i = 0; i < streets.size(); i++) {
+            streets.get(i).setIndex(i);
+        }
+        // 只有具有有效多边形（堆内几何对象或堆外形状）的街道进入索引
+        // 外包矩形在加载时已算好（CSV 取 getEnvelopeInternal()，快照直接读表），用于空间索引的快速筛选
+        return STRtreeIndex.pack(streets, pool);
+    }
+
+    /**
+     * 构建分层网格查找表，需要堆内多边形做精确的覆盖判断，堆外存储模式下不构建
+     */
+    private void buildGridIndex(GeoIndex index, ForkJoinPool pool) {
+        GeoProperties.Grid grid = properties.getGrid();
+        if (!grid.isEnabled() || polygonStore != null) {
+            return;
+        }
+        Envelope extent = new Envelope();
+        for (Street street : streets) {
+            if (street.getEnvelope() != null) {
+                extent.expandToInclude(street.getEnvelope());
+            }
+        }
+        if (extent.isNull()) {
+            return;
+        }
+        index.setGridIndex(GridIndex.build(extent, grid.getRootSize(), grid.getMaxDepth(), index::classify,
+                pool));
+    }
+}
@@ -0,0 +1,167 @@
+package cn.javen.tool.reversegeo.service;
+
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import io.micrometer.core.instrument.composite.CompositeMeterRegistry;
+import org.springframework.stereotype.Component;
+
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * @Description 逆地理编码指标（Micrometer，经 Actuator 以 /actuator/prometheus 暴露）
+ * 所有 Meter 在构造时注册并保存引用，记录时只做 LongAdder 累加与分桶计数，查询路径不查表、不加锁、不创建对象
+ * 接口耗时由 Spring Boot 自带的 http.server.requests 记录，分位数在 application.properties 中配置
+ * @Author: Javen
+ * @CreateTime: 2025/11/4 10:00
+ */
+@Component
+public class GeoMetrics {
+
+    private static final double[] PERCENTILES = {0.5, 0.99, 0.999};
+
+    // 轨迹查询命中的层级：上一个点的街道、相邻街道、回退到完整查询
+    public static final int TRACK_SAME = 0;
+    public static final int TRACK_NEIGHBOUR = 1;
+    public static final int TRACK_INDEX = 2;
+
+    private final MeterRegistry registry;
+
+    private final Timer reverse;
+    private final Counter hits;
+    private final Counter misses;
+    private final DistributionSummary candidates;
+    private final DistributionSummary edges;
+    private final DistributionSummary batchPoints;
+    private final Counter csvRows;
+    private final Counter rejectedBatches;
+    private final Counter rejectedSingles;
+    private final Counter[] trackLookups;
+
+    public GeoMetrics(MeterRegistry registry) {
+        this.registry = registry;
+        this.reverse = Timer.builder("geo.reverse")
+                .description("单点逆地理编码耗时（GeoDataLoader.reverseGeocode，含缓存与网格表）")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.hits = Counter.builder("geo.reverse.result")
+                .description("逆地理编码查到 / 查不到街道的次数")
+                .tag("result", "hit")
+                .register(registry);
+        this.misses = Counter.builder("geo.reverse.result")
+                .description("逆地理编码查到 / 查不到街道的次数")
+                .tag("result", "miss")
+                .register(registry);
+        this.candidates = DistributionSummary.builder("geo.query.candidates")
+                .description("每次 STRtree 查询得到的候选街道数（外包矩形包含查询点）")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .maximumExpectedValue(256.0)
+                .register(registry);
+        this.edges = DistributionSummary.builder("geo.query.edges")
+                .description("每次查询点面判断检查的多边形边数")
+                .baseUnit("edges")
+                .publishPercentiles(PERCENTILES)
+                .publishPercentileHistogram()
+                .register(registry);
+        this.batchPoints = DistributionSummary.builder("geo.batch.points")
+                .description("每个批量请求的点数")
+                .baseUnit("points")
+                .publishPercentileHistogram()
+                .register(registry);
+        this.csvRows = Counter.builder("geo.csv.rows")
+                .description("CSV 逆地理编码已写出的行数，rate() 即吞吐量")
+                .baseUnit("rows")
+                .register(registry);
+        this.rejectedBatches = Counter.builder("geo.admission.rejected")
+                .description("超出并发上限被拒绝（429）的请求数")
+                .tag("type", "batch")
+                .register(registry);
+        this.rejectedSingles = Counter.builder("geo.admission.rejected")
+                .description("超出并发上限被拒绝（429）的请求数")
+                .tag("type", "single")
+                .register(registry);
+        String[] levels = {"same", "neighbour", "index"};
+        this.trackLookups = new Counter[levels.length];
+        for (int i = 0; i < levels.length; i++) {
+            trackLookups[i] = Counter.builder("geo.track.lookups")
+                    .description("轨迹查询命中上一个点的街道（same）、相邻街道（neighbour）或回退到完整查询（index）的次数")
+                    .tag("result", levels[i])
+                    .register(registry);
+        }
+    }
+
+    /**
+     * 不上报的指标，离线工具与基准测试中使用；未添加子注册表的 CompositeMeterRegistry 返回空实现
+     */
+    public static GeoMetrics noop() {
+        return new GeoMetrics(new CompositeMeterRegistry());
+    }
+
+    public void recordReverse(long nanos, boolean hit) {
+        reverse.record(nanos, TimeUnit.NANOSECONDS);
+        (hit ? hits : misses).increment();
+    }
+
+    /**
+     * 一次 STRtree 查询的候选数与检查的边数，网格表与缓存直接命中的查询不记录
+     */
+    public void recordQuery(int candidateCount, long edgeCount) {
+        candidates.record(candidateCount);
+        edges.record(edgeCount);
+    }
+
+    public void recordBatch(long points) {
+        batchPoints.record(points);
+    }
+
+    public void recordCsvRows(long rows) {
+        csvRows.increment(rows);
+    }
+
+    /**
+     * @param level TRACK_SAME、TRACK_NEIGHBOUR 或 TRACK_INDEX
+     */
+    public void recordTrack(int level) {
+        trackLookups[level].increment();
+    }
+
+    public void recordRejected(boolean batch) {
+        (batch ? rejectedBatches : rejectedSingles).increment();
+    }
+
+    /**
+     * 逆地理编码线程池的队列深度与活跃线程数
+     */
+    public void bindExecutor(ThreadPoolExecutor pool) {
+        Gauge.builder("geo.executor.queued", pool, p -> p.getQueue().size())
+                .description("逆地理编码线程池排队的任务数")
+                .register(registry);
+        Gauge.builder("geo.executor.active", pool, ThreadPoolExecutor::getActiveCount)
+                .description("逆地理编码线程池正在执行任务的线程数")
+                .register(registry);
+    }
+
+    /**
+     * 量化网格缓存的命中统计，读取缓存自身的计数器，不在查询路径上额外记录
+     */
+    public void bindCache(ReverseGeocodeCache cache) {
+        FunctionCounter.builder("geo.cache.requests", cache, ReverseGeocodeCache::getHits)
+                .description("量化网格缓存：hit 直接返回，boundary 命中边界网格后精确查询，miss 未命中")
+                .tag("result", "hit")
+                .register(registry);
+        FunctionCounter.builder("geo.cache.requests", cache, ReverseGeocodeCache::getBoundaryHits)
+                .description("量化网格缓存：hit 直接返回，boundary 命中边界网格后精确查询，miss 未命中")
+                .tag("result", "boundary")
+                .register(registry);
+        FunctionCounter.builder("geo.cache.requests", cache, ReverseGeocodeCache::getMisses)
+                .description("量化网格缓存：hit 直接返回，boundary 命中边界网格后精确查询，miss 未命中")
+                .tag("result", "miss")
+                .register(registry);
+    }
+}
@@ -0,0 +1,167 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import jakarta.annotation.PreDestroy;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Service;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * @Description 逆地理编码的执行模型：一个按 CPU 核数设定的专用线程池，加上单点请求与批量请求两级准入控制
+ * 请求线程（平台线程或虚拟线程）只负责收发数据，批量请求的分块查询统一在线程池中执行，不再借用公共 ForkJoinPool；
+ * 名额用完时立即拒绝（调用方返回 429），而不是无限排队拖慢所有请求
+ * 每个批量请求的在途块数有上限，线程池队列长度 = 批量请求上限 × 每请求在途块数，已接受的请求不会因队列满而中途失败
+ * @Author: Javen
+ * @CreateTime: 2025/11/5 10:00
+ */
+@Service
+public class GeocodeExecutor {
+
+    private final int threads;
+    private final int chunksPerRequest;
+    private final long admissionTimeoutMillis;
+    private final ThreadPoolExecutor pool;
+    // 为 null 表示不限
+    private final Semaphore batchPermits;
+    private final Semaphore singlePermits;
+    private final GeoMetrics metrics;
+
+    private final Admission batchAdmission;
+    private final Admission singleAdmission;
+
+    /**
+     * 离线工具与基准测试使用，不上报指标
+     */
+    public GeocodeExecutor(GeoProperties properties) {
+        this(properties, GeoMetrics.noop());
+    }
+
+    @Autowired
+    public GeocodeExecutor(GeoProperties properties, GeoMetrics metrics) {
+        GeoProperties.Serving serving = properties.getServing();
+        this.threads = serving.getThreads() > 0 ? serving.getThreads() : Runtime.getRuntime().availableProcessors();
+        this.chunksPerRequest = threads * 2;
+        this.admissionTimeoutMillis = serving.getAdmissionTimeoutMillis();
+        this.metrics = metrics;
+        int maxBatches = serving.getMaxConcurrentBatches();
+        this.batchPermits = maxBatches > 0 ? new Semaphore(maxBatches) : null;
+        this.singlePermits = serving.getMaxInFlight() > 0 ? new Semaphore(serving.getMaxInFlight()) : null;
+        this.batchAdmission = new Admission(batchPermits);
+        this.singleAdmission = new Admission(singlePermits);
+
+        // 批量请求不限时队列也不设上限，由每请求在途块数限制内存
+        BlockingQueue<Runnable> queue = maxBatches > 0
+                ? new ArrayBlockingQueue<>(maxBatches * chunksPerRequest)
+                : new LinkedBlockingQueue<>();
+        AtomicInteger counter = new AtomicInteger();
+        this.pool = new ThreadPoolExecutor(threads, threads, 0L, TimeUnit.MILLISECONDS, queue, r -> {
+            Thread thread = new Thread(r, "geocode-" + counter.incrementAndGet());
+            thread.setDaemon(true);
+            return thread;
+        });
+        metrics.bindExecutor(pool);
+    }
+
+    /**
+     * 批量请求分块查询使用的线程池
+     */
+    public ExecutorService getExecutor() {
+        return pool;
+    }
+
+    public int getThreads() {
+        return threads;
+    }
+
+    /**
+     * 每个批量请求最多同时提交的块数
+     */
+    public int getChunksPerRequest() {
+        return chunksPerRequest;
+    }
+
+    /**
+     * 申请一个批量请求名额，在 try-with-resources 中使用，结束时释放
+     *
+     * @throws RejectedExecutionException 名额已满
+     */
+    public Admission admitBatch() {
+        if (!acquire(batchPermits)) {
+            metrics.recordRejected(true);
+            throw new RejectedExecutionException("批量请求已达上限");
+        }
+        return batchAdmission;
+    }
+
+    /**
+     * 等待一个批量请求名额，后台任务使用：名额用完时排队等待而不是拒绝，不计入拒绝次数
+     *
+     * @throws InterruptedException 等待时被中断（服务关闭）
+     */
+    public Admission awaitBatch() throws InterruptedException {
+        if (batchPermits != null) {
+            batchPermits.acquire();
+        }
+        return batchAdmission;
+    }
+
+    /**
+     * 申请一个单点请求名额，返回共享的 Admission 对象，不创建对象
+     *
+     * @throws RejectedExecutionException 名额已满
+     */
+    public Admission admitSingle() {
+        if (!acquire(singlePermits)) {
+            metrics.recordRejected(false);
+            throw new RejectedExecutionException("请求已达上限");
+        }
+        return singleAdmission;
+    }
+
+    private boolean acquire(Semaphore permits) {
+        if (permits == null) {
+            return true;
+        }
+        if (admissionTimeoutMillis <= 0) {
+            return permits.tryAcquire();
+        }
+        try {
+            return permits.tryAcquire(admissionTimeoutMillis, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+
+    @PreDestroy
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    /**
+     * 准入名额，close() 归还一个名额；同一类请求共享一个实例
+     */
+    public static final class Admission implements AutoCloseable {
+        private final Semaphore permits;
+
+        private Admission(Semaphore permits) {
+            this.permits = permits;
+        }
+
+        @Override
+        public void close() {
+            if (permits != null) {
+                permits.release();
+            }
+        }
+    }
+}
@@ -0,0 +1,377 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.GeoDistance;
+import cn.javen.tool.reversegeo.model.RegionDistrict;
+import cn.javen.tool.reversegeo.model.RegionStreet;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.storage.PolygonStore;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.CoordinateSequenceFilter;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.Polygonal;
+import org.locationtech.jts.geom.TopologyException;
+import org.locationtech.jts.geom.prep.PreparedGeometry;
+import org.locationtech.jts.geom.prep.PreparedGeometryFactory;
+import org.locationtech.jts.io.ParseException;
+import org.locationtech.jts.io.WKTReader;
+import org.springframework.stereotype.Service;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.BiPredicate;
+import java.util.function.IntSupplier;
+
+/**
+ * @Description 区域查询：与矩形或多边形相交的街道，可选计算每个街道与区域重叠的面积及占街道面积的比例
+ * 先以区域的外包矩形在 STRtree 中取候选街道，按街道下标从小到大逐批取出，再用预处理的区域几何逐个精确判断；
+ * 矩形区域完整包含街道外包矩形时直接命中，不读取街道多边形
+ * 候选较多时按块提交到 GeocodeExecutor 的线程池并行判断，每块单独预处理区域几何，避免多个线程争用其延迟构建的内部索引
+ * 按街道返回时分页：游标记录本页最后判断的街道下标与索引编号，下一页只保留下标更大的候选建成小顶堆（线性时间），
+ * 只为实际取出判断的候选付出对数代价，不对全部候选排序；每轮判断的候选数不超过本页还差的街道数；
+ * 索引重新加载后编号变化，旧游标失效
+ * 堆外存储模式下从映射区重建街道多边形；分片模式下没有全量 STRtree，不支持区域查询
+ * 面积按街道外包矩形中心纬度把平方度换算为平方米，街道尺度内的误差可以忽略
+ * @Author: Javen
+ * @CreateTime: 2025/11/14 10:10
+ */
+@Service
+public class RegionQueryService {
+
+    private final GeoDataLoader geoDataLoader;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+    private final int defaultPageSize;
+    private final int maxPageSize;
+    private final int chunkSize;
+
+    public RegionQueryService(GeoDataLoader geoDataLoader, GeoProperties properties, GeocodeExecutor geocodeExecutor) {
+        this.geoDataLoader = geoDataLoader;
+        this.executor = geocodeExecutor.getExecutor();
+        this.maxInFlight = geocodeExecutor.getChunksPerRequest();
+        GeoProperties.Region region = properties.getRegion();
+        this.defaultPageSize = region.getDefaultPageSize();
+        this.maxPageSize = region.getMaxPageSize();
+        this.chunkSize = region.getChunkSize();
+    }
+
+    /**
+     * 一页街道
+     *
+     * @param streets    按街道下标排序的命中街道
+     * @param candidates 外包矩形与区域相交的候选街道总数，命中数不超过该值
+     * @param next       下一页的游标，没有更多候选时为 null
+     */
+    public record Page(List<RegionStreet> streets, int candidates, String next) {
+    }
+
+    /**
+     * 矩形区域
+     *
+     * @param crs 坐标的坐标系，转换为 WGS84 后矩形的边不再严格平行于经纬线
+     */
+    public Geometry bbox(double minLng, double minLat, double maxLng, double maxLat, CoordinateSystem crs) {
+        if (!(minLng < maxLng && minLat < maxLat)) {
+            throw new IllegalArgumentException("bbox 应为 minLng,minLat,maxLng,maxLat");
+        }
+        Geometry region = geoDataLoader.getGeometryFactory().toGeometry(new Envelope(minLng, maxLng, minLat, maxLat));
+        return toWgs84(region, crs);
+    }
+
+    /**
+     * WKT 描述的 POLYGON / MULTIPOLYGON 区域，自相交等无效多边形修复后使用
+     */
+    public Geometry parse(String wkt, CoordinateSystem crs) {
+        Geometry region;
+        try {
+            region = new WKTReader(geoDataLoader.getGeometryFactory()).read(wkt);
+        } catch (ParseException e) {
+            throw new IllegalArgumentException("无法解析 WKT: " + e.getMessage());
+        }
+        if (!(region instanceof Polygonal) || region.isEmpty()) {
+            throw new IllegalArgumentException("查询区域必须是 POLYGON 或 MULTIPOLYGON");
+        }
+        region = toWgs84(region, crs);
+        // 无效多边形求交时会抛出 TopologyException
+        return region.isValid() ? region : region.buffer(0);
+    }
+
+    private static Geometry toWgs84(Geometry region, CoordinateSystem crs) {
+        if (crs == CoordinateSystem.WGS84) {
+            return region;
+        }
+        region.apply(new CoordinateSequenceFilter() {
+            @Override
+            public void filter(CoordinateSequence seq, int i) {
+                double[] wgs84 = crs.toWgs84(seq.getX(i), seq.getY(i));
+                seq.setOrdinate(i, CoordinateSequence.X, wgs84[0]);
+                seq.setOrdinate(i, CoordinateSequence.Y, wgs84[1]);
+            }
+
+            @Override
+            public boolean isDone() {
+                return false;
+            }
+
+            @Override
+            public boolean isGeometryChanged() {
+                return true;
+            }
+        });
+        return region;
+    }
+
+    /**
+     * 与区域相交的街道，按街道下标顺序分页
+     *
+     * @param area   是否计算重叠面积与占比
+     * @param cursor 上一页返回的 next，首页为 null
+     * @param size   每页街道数，不大于 0 时取 geo.region.default-page-size，不超过 geo.region.max-page-size
+     */
+    public Page streets(Geometry region, boolean area, String cursor, int size) {
+        GeoIndex index = geoDataLoader.getIndex();
+        int pageSize = size <= 0 ? defaultPageSize : Math.min(size, maxPageSize);
+        int after = parseCursor(cursor, index);
+        List<Street> found = index.getStrTreeIndex().query(region.getEnvelopeInternal());
+        CandidateHeap candidates = new CandidateHeap(found, after);
+        List<RegionStreet> streets = new ArrayList<>();
+        int last = scan(index, region, candidates, () -> pageSize - streets.size(), area, (street, hit) -> {
+            streets.add(hit);
+            return streets.size() < pageSize;
+        });
+        return new Page(streets, found.size(), last >= 0 ? index.getGeneration() + ":" + last : null);
+    }
+
+    /**
+     * 按区汇总与区域相交的街道，区的数量有限，不分页；顺序为各区第一个命中街道的下标顺序
+     */
+    public List<RegionDistrict> districts(Geometry region, boolean area) {
+        GeoIndex index = geoDataLoader.getIndex();
+        CandidateHeap candidates = new CandidateHeap(index.getStrTreeIndex().query(region.getEnvelopeInternal()), -1);
+        // [街道数, 重叠面积]
+        Map<AdminPath, double[]> totals = new LinkedHashMap<>();
+        scan(index, region, candidates, () -> Integer.MAX_VALUE, area, (street, hit) -> {
+            double[] total = totals.computeIfAbsent(street.getAdminPath(), k -> new double[2]);
+            total[0]++;
+            if (hit.area() != null) {
+                total[1] += hit.area();
+            }
+            return true;
+        });
+        List<RegionDistrict> result = new ArrayList<>(totals.size());
+        totals.forEach((admin, total) -> result.add(new RegionDistrict(admin.getProvince(), admin.getCity(),
+                admin.getDistrict(), (int) total[0], area ? total[1] : null)));
+        return result;
+    }
+
+    /**
+     * @return 上一页最后判断的街道下标，首页为 -1
+     */
+    private static int parseCursor(String cursor, GeoIndex index) {
+        if (cursor == null || cursor.isEmpty()) {
+            return -1;
+        }
+        int generation;
+        int position;
+        try {
+            int colon = cursor.indexOf(':');
+            generation = Integer.parseInt(cursor.substring(0, colon));
+            position = Integer.parseInt(cursor.substring(colon + 1));
+        } catch (NumberFormatException | StringIndexOutOfBoundsException e) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        if (generation != index.getGeneration()) {
+            throw new IllegalArgumentException("数据已重新加载，游标失效，请从第一页重新查询");
+        }
+        if (position < 0) {
+            throw new IllegalArgumentException("无效的游标: " + cursor);
+        }
+        return position;
+    }
+
+    /**
+     * 按下标从小到大取出候选，把命中的街道依次交给 accept，每轮并行判断至多 maxInFlight 块，
+     * 且不超过 remaining 给出的还需要的街道数（命中数不会多于判断的候选数）；
+     * accept 返回 false 时停止，本轮剩余的判断结果丢弃，下一页从停下的街道之后重新取
+     *
+     * @return 停下时最后交给 accept 的街道下标；候选全部判断完时返回 -1
+     */
+    private int scan(GeoIndex index, Geometry region, CandidateHeap candidates, IntSupplier remaining,
+                     boolean area, BiPredicate<Street, RegionStreet> accept) {
+        int window = chunkSize * maxInFlight;
+        while (!candidates.isEmpty()) {
+            Street[] batch = candidates.poll(Math.min(window, Math.max(1, remaining.getAsInt())));
+            RegionStreet[] hits = evaluate(index, region, batch, 0, batch.length, area);
+            for (int i = 0; i < batch.length; i++) {
+                if (hits[i] != null && !accept.test(batch[i], hits[i])) {
+                    return i + 1 < batch.length || !candidates.isEmpty() ? batch[i].getIndex() : -1;
+                }
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * 判断 [from, to) 内的候选，结果与候选一一对应，未命中的为 null；不超过一块时在当前线程判断
+     */
+    private RegionStreet[] evaluate(GeoIndex index, Geometry region, Street[] candidates, int from, int to,
+                                    boolean area) {
+        RegionStreet[] hits = new RegionStreet[to - from];
+        if (to - from <= chunkSize) {
+            evaluateChunk(index, region, candidates, from, to, area, hits, from);
+            return hits;
+        }
+        Deque<Future<?>> futures = new ArrayDeque<>();
+        try {
+            for (int start = from; start < to; start += chunkSize) {
+                int s = start;
+                int e = Math.min(to, start + chunkSize);
+                futures.add(executor.submit(() -> evaluateChunk(index, region, candidates, s, e, area, hits, from)));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("区域查询被中断", e);
+        } catch (ExecutionException e) {
+            throw new IllegalStateException("区域查询失败", e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+        return hits;
+    }
+
+    private void evaluateChunk(GeoIndex index, Geometry region, Street[] candidates, int from, int to, boolean area,
+                               RegionStreet[] hits, int offset) {
+        PreparedGeometry prepared = PreparedGeometryFactory.prepare(region);
+        Envelope rectangle = region.isRectangle() ? region.getEnvelopeInternal() : null;
+        for (int i = from; i < to; i++) {
+            hits[i - offset] = evaluateStreet(index, prepared, rectangle, candidates[i], area);
+        }
+    }
+
+    /**
+     * @param rectangle 区域为矩形时为其范围，否则为 null
+     * @return 不相交时返回 null
+     */
+    private RegionStreet evaluateStreet(GeoIndex index, PreparedGeometry prepared, Envelope rectangle, Street street,
+                                        boolean area) {
+        Envelope envelope = street.getEnvelope();
+        boolean inside = rectangle != null && rectangle.contains(envelope);
+        if (inside && !area) {
+            return RegionStreet.of(street, null, null);
+        }
+        Geometry polygon = polygonOf(index, street);
+        if (polygon == null) {
+            return inside ? RegionStreet.of(street, null, null) : null;
+        }
+        if (!inside) {
+            if (!prepared.intersects(polygon)) {
+                return null;
+            }
+            if (!area) {
+                return RegionStreet.of(street, null, null);
+            }
+            inside = prepared.contains(polygon);
+        }
+        double total = polygon.getArea();
+        double overlap = inside ? total : overlap(prepared.getGeometry(), polygon);
+        double cosLat = Math.cos(Math.toRadians((envelope.getMinY() + envelope.getMaxY()) / 2));
+        double squareMeters = GeoDistance.METERS_PER_DEGREE * GeoDistance.METERS_PER_DEGREE * cosLat;
+        return RegionStreet.of(street, overlap * squareMeters, total > 0 ? overlap / total : 0.0);
+    }
+
+    private static double overlap(Geometry region, Geometry polygon) {
+        try {
+            return region.intersection(polygon).getArea();
+        } catch (TopologyException e) {
+            // 街道多边形自相交时修复后重试
+            return region.intersection(polygon.buffer(0)).getArea();
+        }
+    }
+
+    /**
+     * 街道多边形，堆外存储模式下从映射区重建
+     */
+    private Geometry polygonOf(GeoIndex index, Street street) {
+        if (street.getPolygon() != null) {
+            return street.getPolygon();
+        }
+        PolygonStore store = index.getPolygonStore();
+        if (store != null && street.getShapeId() >= 0) {
+            GeometryFactory factory = geoDataLoader.getGeometryFactory();
+            return store.toGeometry(street.getShapeId(), factory);
+        }
+        return null;
+    }
+
+    /**
+     * 下标大于 after 的候选街道组成的小顶堆，按街道下标从小到大取出
+     * 建堆是线性时间，每取出一个候选 O(log n)，一页只取出实际判断的候选，不需要对全部候选排序
+     */
+    private static final class CandidateHeap {
+        private final Street[] heap;
+        private int size;
+
+        CandidateHeap(List<Street> found, int after) {
+            heap = new Street[found.size()];
+            for (Street street : found) {
+                if (street.getIndex() > after) {
+                    heap[size++] = street;
+                }
+            }
+            for (int i = size / 2 - 1; i >= 0; i--) {
+                siftDown(i);
+            }
+        }
+
+        boolean isEmpty() {
+            return size == 0;
+        }
+
+        /**
+         * 取出下标最小的至多 count 个候选，按下标升序
+         */
+        Street[] poll(int count) {
+            Street[] result = new Street[Math.min(count, size)];
+            for (int i = 0; i < result.length; i++) {
+                result[i] = heap[0];
+                heap[0] = heap[--size];
+                heap[size] = null;
+                siftDown(0);
+            }
+            return result;
+        }
+
+        private void siftDown(int i) {
+            Street item = heap[i];
+            while (true) {
+                int child = i * 2 + 1;
+                if (child >= size) {
+                    break;
+                }
+                if (child + 1 < size && heap[child + 1].getIndex() < heap[child].getIndex()) {
+                    child++;
+                }
+                if (heap[child].getIndex() >= item.getIndex()) {
+                    break;
+                }
+                heap[i] = heap[child];
+                i = child;
+            }
+            heap[i] = item;
+        }
+    }
+}
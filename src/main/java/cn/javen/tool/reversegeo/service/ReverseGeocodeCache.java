@@ -0,0 +1,164 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.model.Street;
+import com.github.benmanes.caffeine.cache.Cache;
+import com.github.benmanes.caffeine.cache.Caffeine;
+import com.github.benmanes.caffeine.cache.stats.CacheStats;
+import org.locationtech.jts.geom.Envelope;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * @Description 逆地理编码结果缓存：按经纬度量化网格缓存，同一网格内的点共享结果
+ * 底层使用 Caffeine（W-TinyLFU 淘汰策略，命中时无锁读取），容量有上限
+ * 只有整个网格都落在同一街道内部（或完全不与任何街道相交）时才直接返回缓存结果，
+ * 跨越多边形边界的网格只记录"边界"标记，命中后仍走精确查询，保证结果与不开缓存时一致
+ * 网格分类（isUniform）代价较高，第一次访问只记录"待分类"，同一网格第二次被访问时才分类，
+ * 只出现一次的网格不做分类；无法低成本分类的索引（堆外存储、未预处理多边形）直接跳过缓存
+ * 缓存键带上索引编号而不引用索引本身，热加载或分片淘汰后旧索引可以被回收，旧缓存项随之失效
+ * @Author: Javen
+ * @CreateTime: 2025/10/17 9:50
+ */
+public class ReverseGeocodeCache {
+
+    // 缓存值：>= 0 为街道在索引中的下标，其余为以下标记
+    private static final int EMPTY = -1;
+    private static final int BOUNDARY = -2;
+    private static final int PENDING = -3;
+
+    private final double grid;
+    // 网格外扩一点余量，抵消 floor 与乘法的浮点误差，保证查询点一定落在判断过的矩形内
+    private final double margin;
+    private final Cache<CellKey, Integer> cache;
+    // 查询用的键按线程复用，命中时不分配对象；写入时才创建新键
+    private final ThreadLocal<CellKey> probe = ThreadLocal.withInitial(CellKey::new);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder boundaryHits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder bypassed = new LongAdder();
+
+    /**
+     * @param grid 网格边长（度），如 1e-5 约 1 米
+     * @param maximumSize 最多缓存的网格数
+     */
+    public ReverseGeocodeCache(double grid, long maximumSize) {
+        if (!(grid >= 1e-7)) {
+            // 经纬度除以网格边长需要放进 int，网格过小会溢出
+            throw new IllegalArgumentException("缓存网格边长不能小于 1e-7: " + grid);
+        }
+        this.grid = grid;
+        this.margin = grid * 1e-6;
+        this.cache = Caffeine.newBuilder()
+                .maximumSize(maximumSize)
+                .recordStats()
+                .build();
+    }
+
+    /**
+     * 查询缓存，未命中时在给定索引上精确查询并写入缓存
+     * 缓存键包含索引编号，热加载替换索引后旧缓存项不会再命中，由 invalidateAll 或淘汰策略清理
+     */
+    public Street reverseGeocode(GeoIndex index, double lng, double lat) {
+        if (!index.isCellsClassifiable()) {
+            bypassed.increment();
+            return index.reverseGeocode(lng, lat);
+        }
+        long cellX = (long) Math.floor(lng / grid);
+        long cellY = (long) Math.floor(lat / grid);
+        long cellId = (cellX << 32) | (cellY & 0xFFFFFFFFL);
+        int generation = index.getGeneration();
+
+        CellKey key = probe.get().set(cellId, generation);
+        Integer value = cache.getIfPresent(key);
+        if (value == null) {
+            misses.increment();
+            cache.put(new CellKey().set(cellId, generation), PENDING);
+            return index.reverseGeocode(lng, lat);
+        }
+        int v = value;
+        if (v >= 0) {
+            hits.increment();
+            return index.getStreets().get(v);
+        }
+        if (v == EMPTY) {
+            hits.increment();
+            return null;
+        }
+        boundaryHits.increment();
+        Street street = index.reverseGeocode(lng, lat);
+        if (v == PENDING) {
+            // 网格第二次被访问，说明不是一次性的点，此时再分类
+            Envelope cell = new Envelope(cellX * grid - margin, (cellX + 1) * grid + margin,
+                    cellY * grid - margin, (cellY + 1) * grid + margin);
+            int classified = !index.isUniform(cell, street) ? BOUNDARY
+                    : street == null ? EMPTY : street.getIndex();
+            cache.put(new CellKey().set(cellId, generation), classified);
+        }
+        return street;
+    }
+
+    /**
+     * 清空所有缓存项，索引热加载后调用，尽快释放旧索引的缓存空间
+     */
+    public void invalidateAll() {
+        cache.invalidateAll();
+    }
+
+    public long getHits() {
+        return hits.sum();
+    }
+
+    public long getBoundaryHits() {
+        return boundaryHits.sum();
+    }
+
+    public long getMisses() {
+        return misses.sum();
+    }
+
+    public Map<String, Object> getStats() {
+        CacheStats stats = cache.stats();
+        long hit = hits.sum();
+        long boundary = boundaryHits.sum();
+        long miss = misses.sum();
+        long total = hit + boundary + miss;
+        Map<String, Object> result = new LinkedHashMap<>();
+        result.put("grid", grid);
+        result.put("size", cache.estimatedSize());
+        result.put("hits", hit);
+        result.put("boundaryHits", boundary);
+        result.put("misses", miss);
+        result.put("bypassed", bypassed.sum());
+        result.put("hitRate", total == 0 ? 0.0 : (double) hit / total);
+        result.put("evictions", stats.evictionCount());
+        return result;
+    }
+
+    /**
+     * 缓存键：量化后的网格编号与生成缓存项的索引编号
+     * 可变对象只用于按线程复用的查询键，写入缓存的键创建后不再修改
+     */
+    private static final class CellKey {
+        private long cell;
+        private int generation;
+
+        CellKey set(long cell, int generation) {
+            this.cell = cell;
+            this.generation = generation;
+            return this;
+        }
+
+        @Override
+        public boolean equals(Object o) {
+            return o instanceof CellKey other && cell == other.cell && generation == other.generation;
+        }
+
+        @Override
+        public int hashCode() {
+            return Long.hashCode(cell * 31 + generation);
+        }
+    }
+}
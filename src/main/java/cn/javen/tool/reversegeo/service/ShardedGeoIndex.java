@@ -0,0 +1,394 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.GeoDistance;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.NearestStreet;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.storage.StreetSnapshot;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.index.strtree.STRtree;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.*;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Stream;
+
+/**
+ * @Description 按省分片的街道数据：启动时只读取每个省快照的街道外包矩形，构建分片路由网格（GridIndex），
+ * 单元只被一个省的街道覆盖时直接路由到该省，没有街道覆盖时不加载任何分片，只有省界附近的细小单元才逐个检查
+ * 省的外包范围（各省外包范围大量重叠，只按范围路由会把点送进多个省，加载本不需要的分片）
+ * 某省的街道在第一次有点路由到该省时才加载为一份独立的 GeoIndex，冷分片可按数量上限或空闲时间卸载
+ * 只服务少数省份的区域实例，内存只与实际被查询的省份有关
+ * 分片集合在构建后不变，热加载时整体替换；单个分片的加载与卸载只替换其 GeoIndex 引用，查询路径不加锁
+ * @Author: Javen
+ * @CreateTime: 2025/11/3 10:00
+ */
+public class ShardedGeoIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(ShardedGeoIndex.class);
+
+    private static final String SUFFIX = ".snap";
+
+    private final GeoProperties properties;
+    private final GeometryFactory geometryFactory;
+    private final GeoMetrics metrics;
+    private final Shard[] shards;
+    // 分片路由网格，值为分片下标；没有分片时为 null
+    private final GridIndex routing;
+    // 全部分片的街道属性（不含几何），供二进制响应的字典使用
+    private final List<Street> catalog;
+    private final int maxLoaded;
+
+    private ShardedGeoIndex(GeoProperties properties, GeometryFactory geometryFactory, GeoMetrics metrics,
+                            Shard[] shards, GridIndex routing, List<Street> catalog) {
+        this.properties = properties;
+        this.geometryFactory = geometryFactory;
+        this.metrics = metrics;
+        this.shards = shards;
+        this.routing = routing;
+        this.catalog = catalog;
+        this.maxLoaded = properties.getShard().getMaxLoaded();
+    }
+
+    /**
+     * 扫描分片目录，读取每个省快照的街道外包矩形构建路由网格，读取街道属性（不解码几何），并加载 preload 中的省
+     *
+     * @throws IOException 目录不存在或快照损坏
+     */
+    public static ShardedGeoIndex open(GeoProperties properties, GeometryFactory geometryFactory,
+                                       GeoMetrics metrics) throws IOException {
+        GeoProperties.Shard config = properties.getShard();
+        Set<String> serve = new HashSet<>(config.getProvinces());
+        List<Shard> shards = new ArrayList<>();
+        // 各省街道的外包矩形，只在构建路由网格时使用
+        STRtree coverage = new STRtree();
+        Envelope extentAll = new Envelope();
+        List<Street> catalog = new ArrayList<>();
+        try (Stream<Path> files = Files.list(Path.of(config.getDir()))) {
+            for (Path file : files.sorted().toList()) {
+                String name = file.getFileName().toString();
+                if (!name.endsWith(SUFFIX)) {
+                    continue;
+                }
+                String code = name.substring(0, name.length() - SUFFIX.length());
+                if (!serve.isEmpty() && !serve.contains(code)) {
+                    continue;
+                }
+                List<Envelope> envelopes = StreetSnapshot.readEnvelopes(file);
+                if (envelopes.isEmpty()) {
+                    continue;
+                }
+                Envelope extent = new Envelope();
+                Integer id = shards.size();
+                for (Envelope envelope : envelopes) {
+                    extent.expandToInclude(envelope);
+                    coverage.insert(envelope, id);
+                }
+                extentAll.expandToInclude(extent);
+                shards.add(new Shard(code, file, extent));
+                catalog.addAll(StreetSnapshot.read(file, geometryFactory, false));
+            }
+        }
+        long start = System.nanoTime();
+        // 网格按根单元并行构建，先建好 STRtree，避免在并行查询中触发延迟构建
+        coverage.build();
+        GridIndex routing = null;
+        if (!shards.isEmpty()) {
+            int threads = properties.getLoad().getThreads();
+            ForkJoinPool pool = GeoIndexBuilder.newPool(
+                    threads > 0 ? threads : Runtime.getRuntime().availableProcessors());
+            try {
+                routing = GridIndex.build(extentAll, config.getRouteRootSize(), config.getRouteMaxDepth(),
+                        cell -> route(coverage, cell), pool);
+            } finally {
+                pool.shutdownNow();
+            }
+        }
+        ShardedGeoIndex index = new ShardedGeoIndex(properties, geometryFactory, metrics,
+                shards.toArray(new Shard[0]), routing, catalog);
+        log.info("按省分片: {} 个分片，目录 {}，路由网格构建 {}ms", shards.size(), config.getDir(),
+                TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        for (Shard shard : index.shards) {
+            if (config.getPreload().contains(shard.code)) {
+                index.acquire(shard);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * 路由网格的单元分类：只有一个省的街道外包矩形与单元相交时返回该省的分片下标，
+     * 没有时返回 EMPTY，多个省交界时返回 FALLBACK 继续细分
+     */
+    private static int route(STRtree coverage, Envelope cell) {
+        int found = GridIndex.EMPTY;
+        for (Object item : coverage.query(cell)) {
+            int id = (Integer) item;
+            if (found == GridIndex.EMPTY) {
+                found = id;
+            } else if (found != id) {
+                return GridIndex.FALLBACK;
+            }
+        }
+        return found;
+    }
+
+    /**
+     * 逆地理编码：按路由网格找到唯一可能包含该点的分片，省界附近的单元依次检查外包范围包含该点的分片，
+     * 未加载的分片先同步加载
+     * 缓存项按各分片索引的编号区分，同一网格在不同分片中的结果互不覆盖
+     *
+     * @param cache 量化网格缓存，未开启时为 null
+     */
+    public Street reverseGeocode(double lng, double lat, ReverseGeocodeCache cache) {
+        int route = routing == null ? GridIndex.EMPTY : routing.lookup(lng, lat);
+        if (route >= 0) {
+            return reverseGeocode(shards[route], lng, lat, cache);
+        }
+        if (route == GridIndex.EMPTY) {
+            return null;
+        }
+        for (Shard shard : shards) {
+            if (shard.extent.contains(lng, lat)) {
+                Street street = reverseGeocode(shard, lng, lat, cache);
+                if (street != null) {
+                    return street;
+                }
+            }
+        }
+        return null;
+    }
+
+    private Street reverseGeocode(Shard shard, double lng, double lat, ReverseGeocodeCache cache) {
+        GeoIndex index = acquire(shard);
+        if (index == null) {
+            return null;
+        }
+        return cache != null ? cache.reverseGeocode(index, lng, lat) : index.reverseGeocode(lng, lat);
+    }
+
+    /**
+     * 轨迹查询：先在上一个点所在的分片中按 GeoIndex.reverseGeocodeNear 查询，查不到时再检查所有分片
+     * 上一个点所在的分片已卸载或已热加载时直接按普通查询处理
+     */
+    public Street reverseGeocodeNear(Street previous, double lng, double lat, ReverseGeocodeCache cache) {
+        if (previous != null) {
+            for (Shard shard : shards) {
+                GeoIndex index = shard.index;
+                if (index != null && index.owns(previous)) {
+                    shard.lastAccess = System.nanoTime();
+                    Street street = index.reverseGeocodeNear(previous, lng, lat);
+                    if (street != null) {
+                        return street;
+                    }
+                    break;
+                }
+            }
+        }
+        return reverseGeocode(lng, lat, cache);
+    }
+
+    /**
+     * 距离上限内边界最近的街道，只检查外包范围在上限内的分片
+     */
+    public NearestStreet nearest(double lng, double lat, double maxMeters) {
+        NearestStreet best = null;
+        for (Shard shard : shards) {
+            if (!withinDistance(shard.extent, lng, lat, maxMeters)) {
+                continue;
+            }
+            GeoIndex index = acquire(shard);
+            NearestStreet found = index == null ? null : index.nearest(lng, lat, maxMeters);
+            if (found != null && (best == null || found.distanceMeters() < best.distanceMeters())) {
+                best = found;
+            }
+        }
+        return best;
+    }
+
+    private static boolean withinDistance(Envelope extent, double lng, double lat, double maxMeters) {
+        double dLng = GeoDistance.metersToLngDegrees(maxMeters, lat);
+        double dLat = GeoDistance.metersToLatDegrees(maxMeters);
+        return lng >= extent.getMinX() - dLng && lng <= extent.getMaxX() + dLng
+                && lat >= extent.getMinY() - dLat && lat <= extent.getMaxY() + dLat;
+    }
+
+    /**
+     * 取分片的索引，未加载时加载；加载失败的分片在下次热加载前不再重试
+     *
+     * @return 加载失败时返回 null
+     */
+    private GeoIndex acquire(Shard shard) {
+        GeoIndex index = shard.index;
+        if (index == null) {
+            index = load(shard);
+        }
+        shard.lastAccess = System.nanoTime();
+        return index;
+    }
+
+    private GeoIndex load(Shard shard) {
+        GeoIndex index;
+        synchronized (shard) {
+            if (shard.index != null || shard.error != null) {
+                return shard.index;
+            }
+            long start = System.nanoTime();
+            GeoIndexBuilder builder = new GeoIndexBuilder(properties, geometryFactory, shard.path);
+            try {
+                index = builder.build();
+            } catch (RuntimeException e) {
+                e.printStackTrace();
+                shard.error = e.toString();
+                return null;
+            }
+            if (!builder.getFailures().isEmpty()) {
+                shard.error = String.join("; ", builder.getFailures());
+                log.warn("分片 {} 加载失败: {}", shard.code, shard.error);
+                return null;
+            }
+            index.setMetrics(metrics);
+            shard.index = index;
+            shard.loads++;
+            log.info("分片 {} 加载完成: {} 个街道，耗时 {}ms", shard.code, index.getStreets().size(),
+                    TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start));
+        }
+        shard.lastAccess = System.nanoTime();
+        evictOverflow(shard);
+        return index;
+    }
+
+    /**
+     * 已加载分片数超过上限时，卸载最久未访问的分片（不卸载刚加载的分片）
+     */
+    private synchronized void evictOverflow(Shard keep) {
+        if (maxLoaded <= 0) {
+            return;
+        }
+        while (true) {
+            int loaded = 0;
+            Shard coldest = null;
+            for (Shard shard : shards) {
+                if (shard.index == null) {
+                    continue;
+                }
+                loaded++;
+                if (shard != keep && (coldest == null || shard.lastAccess < coldest.lastAccess)) {
+                    coldest = shard;
+                }
+            }
+            if (loaded <= maxLoaded || coldest == null) {
+                return;
+            }
+            unload(coldest, "超出驻留上限");
+        }
+    }
+
+    /**
+     * 卸载超过 idleMillis 未被访问的分片，由定时任务调用
+     *
+     * @return 卸载的分片数
+     */
+    public synchronized int evictIdle(long idleMillis) {
+        long now = System.nanoTime();
+        int evicted = 0;
+        for (Shard shard : shards) {
+            if (shard.index != null && now - shard.lastAccess > TimeUnit.MILLISECONDS.toNanos(idleMillis)) {
+                unload(shard, "空闲");
+                evicted++;
+            }
+        }
+        return evicted;
+    }
+
+    /**
+     * 卸载只替换引用，正在使用该分片的查询继续持有旧索引直到结束
+     */
+    private void unload(Shard shard, String reason) {
+        synchronized (shard) {
+            if (shard.index == null) {
+                return;
+            }
+            shard.index = null;
+            shard.evictions++;
+        }
+        log.info("分片 {} 已卸载（{}）", shard.code, reason);
+    }
+
+    /**
+     * 当前已加载分片中的全部街道
+     */
+    public List<Street> getLoadedStreets() {
+        List<Street> streets = new ArrayList<>();
+        for (Shard shard : shards) {
+            GeoIndex index = shard.index;
+            if (index != null) {
+                streets.addAll(index.getStreets());
+            }
+        }
+        return streets;
+    }
+
+    /**
+     * 全部分片的街道，只有属性没有几何，省市区未解析
+     */
+    public List<Street> getCatalog() {
+        return catalog;
+    }
+
+    public Map<String, Object> getStats() {
+        long now = System.nanoTime();
+        int loaded = 0;
+        List<Map<String, Object>> list = new ArrayList<>();
+        for (Shard shard : shards) {
+            GeoIndex index = shard.index;
+            if (index != null) {
+                loaded++;
+            }
+            Map<String, Object> item = new LinkedHashMap<>();
+            item.put("province", shard.code);
+            item.put("loaded", index != null);
+            item.put("streets", index != null ? index.getStreets().size() : 0);
+            item.put("loads", shard.loads);
+            item.put("evictions", shard.evictions);
+            item.put("idleSeconds", shard.lastAccess == 0 ? null : TimeUnit.NANOSECONDS.toSeconds(now - shard.lastAccess));
+            item.put("error", shard.error);
+            list.add(item);
+        }
+        Map<String, Object> stats = new LinkedHashMap<>();
+        stats.put("shards", shards.length);
+        stats.put("loaded", loaded);
+        stats.put("maxLoaded", maxLoaded);
+        stats.put("routing", routing == null ? null : routing.getStats());
+        stats.put("detail", list);
+        return stats;
+    }
+
+    /**
+     * 一个省的分片：外包范围在构建时确定，索引按需加载、可卸载
+     */
+    private static final class Shard {
+        final String code;
+        final Path path;
+        final Envelope extent;
+        volatile GeoIndex index;
+        volatile long lastAccess;
+        volatile String error;
+        // 只在持有分片锁时修改
+        int loads;
+        int evictions;
+
+        Shard(String code, Path path, Envelope extent) {
+            this.code = code;
+            this.path = path;
+            this.extent = extent;
+        }
+    }
+}
@@ -0,0 +1,443 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.CsvUtil;
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.AdminBoundary;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.HilbertCurve;
+import cn.javen.tool.reversegeo.model.Street;
+import com.opencsv.CSVReader;
+import com.opencsv.CSVWriter;
+import com.opencsv.exceptions.CsvValidationException;
+import org.locationtech.jts.geom.Envelope;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.function.IntConsumer;
+
+/**
+ * @Description 批量空间连接：一次性给大量点标注所在街道，用于离线分析
+ * 每次读入一块点，按 Hilbert 曲线序号排序后切成若干 tile，相邻的点落在同一 tile 内；
+ * 每个 tile 先查网格表，剩下的点只查询一次 STRtree（以 tile 的外包矩形），
+ * 再逐个候选街道判断 tile 内落在其外包矩形中的点，tile 之间在 GeocodeExecutor 的线程池中并行
+ * （调用方持有一个批量请求名额，与其它批量请求共用查询线程，CPU 占用受准入控制约束）
+ * 与逐点 reverseGeocode 相比，STRtree 下降次数从每点一次减少到每 tile 一次，同一街道的点面判断连续执行
+ * 多边形重叠处取下标最小的包含该点的街道，与逐点查询的结果相同
+ * 输入输出：CSV 与 CsvReverseService 相同（第 3、4 列为经纬度，追加省、市、区、街道）；
+ * 二进制输入为小端 float64 的 lng,lat 序列，输出为 StreetDictionary 的响应格式，字典写到 输出文件.dict
+ * 分片模式下没有全量 STRtree，退回逐点查询
+ * @Author: Javen
+ * @CreateTime: 2025/11/13 10:30
+ */
+@Service
+public class SpatialJoinService {
+
+    private static final Logger log = LoggerFactory.getLogger(SpatialJoinService.class);
+
+    // Hilbert 网格每边 2^15 格，序号不超过 2^30，与点下标合成一个 long 排序
+    private static final int CURVE_ORDER = 15;
+    private static final long INVALID_KEY = 1L << (2 * CURVE_ORDER);
+    // tile 拆分的下限
+    private static final int MIN_TILE_POINTS = 32;
+    // tile 内分桶时每桶的平均点数
+    private static final int BUCKET_POINTS = 4;
+    // 进度日志的最小间隔
+    private static final long PROGRESS_INTERVAL_NANOS = 5_000_000_000L;
+
+    private final GeoDataLoader geoDataLoader;
+    private final GeoMetrics metrics;
+    private final StreetDictionary dictionary;
+    private final Path dir;
+    private final int blockSize;
+    private final int tilePoints;
+    private final ExecutorService executor;
+    private final int maxInFlight;
+
+    public SpatialJoinService(GeoDataLoader geoDataLoader, GeoProperties properties, GeoMetrics metrics,
+                              StreetDictionary dictionary, GeocodeExecutor geocodeExecutor) {
+        this.geoDataLoader = geoDataLoader;
+        this.metrics = metrics;
+        this.dictionary = dictionary;
+        GeoProperties.Join join = properties.getJoin();
+        this.dir = Path.of(join.getDir()).toAbsolutePath().normalize();
+        this.blockSize = join.getBlockSize();
+        this.tilePoints = join.getTilePoints();
+        this.executor = geocodeExecutor.getExecutor();
+        this.maxInFlight = geocodeExecutor.getChunksPerRequest();
+    }
+
+    /**
+     * 把接口传入的文件名解析为数据目录（geo.join.dir）下的路径
+     *
+     * @throws IllegalArgumentException 绝对路径或含 .. 的路径指向了数据目录之外
+     */
+    public Path resolve(String name) {
+        Path path = dir.resolve(name).normalize();
+        if (!path.startsWith(dir) || path.equals(dir)) {
+            throw new IllegalArgumentException("文件必须位于空间连接数据目录内: " + name);
+        }
+        return path;
+    }
+
+    /**
+     * CSV 文件空间连接，输出格式与 CsvReverseService 相同
+     *
+     * @param input  数据目录下的输入文件名
+     * @param output 数据目录下的输出文件名
+     * @param crs 输入坐标的坐标系，输出中的经纬度列保持原样
+     * @return 处理的行数
+     */
+    public long joinCsv(String input, String output, CoordinateSystem crs) {
+        Path inputPath = resolve(input);
+        Path outputPath = resolve(output);
+        long start = System.nanoTime();
+        long lastLog = start;
+        long rows = 0;
+        try (CSVReader reader = CsvUtil.openReader(inputPath.toString(), ',');
+             CSVWriter writer = CsvUtil.openWriter(outputPath.toString(), ',')) {
+            List<String[]> lines = new ArrayList<>(Math.min(blockSize, 1 << 16));
+            double[] coords = new double[blockSize * 2];
+            while (true) {
+                lines.clear();
+                String[] line;
+                while (lines.size() < blockSize && (line = reader.readNext()) != null) {
+                    lines.add(line);
+                }
+                if (lines.isEmpty()) {
+                    break;
+                }
+                int n = lines.size();
+                for (int i = 0; i < n; i++) {
+                    String[] row = lines.get(i);
+                    try {
+                        coords[i * 2] = Double.parseDouble(row[2]);
+                        coords[i * 2 + 1] = Double.parseDouble(row[3]);
+                    } catch (NumberFormatException | ArrayIndexOutOfBoundsException e) {
+                        coords[i * 2] = Double.NaN;
+                        coords[i * 2 + 1] = Double.NaN;
+                    }
+                }
+                crs.toWgs84(coords, 0, n);
+                Street[] streets = join(coords, n);
+                AdminBoundary[] admins = locateMisses(coords, n, streets);
+                for (int i = 0; i < n; i++) {
+                    boolean header = Double.isNaN(coords[i * 2]) || Double.isNaN(coords[i * 2 + 1]);
+                    writer.writeNext(CsvReverseService.outputRow(lines.get(i), streets[i],
+                            admins == null ? null : admins[i], header));
+                }
+                rows += n;
+                metrics.recordCsvRows(n);
+                long now = System.nanoTime();
+                if (now - lastLog >= PROGRESS_INTERVAL_NANOS) {
+                    log.info("spatial-join {}: {} 行, {} 行/秒", input, rows, rate(rows, now - start));
+                    lastLog = now;
+                }
+            }
+        } catch (IOException | CsvValidationException e) {
+            throw new RuntimeException("空间连接失败: " + input, e);
+        }
+        log.info("spatial-join {} 完成: {} 行, {} 行/秒", input, rows, rate(rows, System.nanoTime() - start));
+        return rows;
+    }
+
+    /**
+     * 二进制文件空间连接：输入为小端 float64 的 lng,lat 序列，输出为字典编码的记录，字典写到 output.dict
+     * 输入、输出文件名同 joinCsv，按数据目录解析
+     *
+     * @return 处理的点数
+     */
+    public long joinBinary(String input, String output, CoordinateSystem crs) throws IOException {
+        Path inputPath = resolve(input);
+        Path outputPath = resolve(output);
+        Path dictPath = resolve(output + ".dict");
+        long start = System.nanoTime();
+        long lastLog = start;
+        long points = 0;
+        try (FileChannel channel = FileChannel.open(inputPath, StandardOpenOption.READ);
+             OutputStream out = new BufferedOutputStream(Files.newOutputStream(outputPath), 1 << 16)) {
+            StreetDictionary.Encoder encoder = dictionary.encoder(out);
+            encoder.writeHeader();
+            ByteBuffer buffer = ByteBuffer.allocateDirect(blockSize * 16).order(ByteOrder.LITTLE_ENDIAN);
+            double[] coords = new double[blockSize * 2];
+            while (true) {
+                buffer.clear();
+                while (buffer.hasRemaining() && channel.read(buffer) > 0) {
+                    // 读满一块或到文件末尾
+                }
+                buffer.flip();
+                // 末尾不足 16 字节的残片忽略
+                int n = buffer.remaining() / 16;
+                if (n == 0) {
+                    break;
+                }
+                buffer.asDoubleBuffer().get(coords, 0, n * 2);
+                crs.toWgs84(coords, 0, n);
+                for (Street street : join(coords, n)) {
+                    encoder.writeRecord(street);
+                }
+                points += n;
+                metrics.recordBatch(n);
+                long now = System.nanoTime();
+                if (now - lastLog >= PROGRESS_INTERVAL_NANOS) {
+                    log.info("spatial-join {}: {} 点, {} 点/秒", input, points, rate(points, now - start));
+                    lastLog = now;
+                }
+            }
+            encoder.flush();
+        }
+        try (OutputStream out = new BufferedOutputStream(Files.newOutputStream(dictPath))) {
+            dictionary.writeDictionary(out, 0);
+        }
+        log.info("spatial-join {} 完成: {} 点, {} 点/秒", input, points, rate(points, System.nanoTime() - start));
+        return points;
+    }
+
+    /**
+     * 对扁平坐标数组 [lng,lat,...] 的前 points 个点做空间连接，不修改 coords
+     *
+     * @return 与输入点一一对应，查不到或坐标为 NaN 的为 null
+     */
+    public Street[] join(double[] coords, int points) {
+        Street[] result = new Street[points];
+        if (geoDataLoader.isSharded()) {
+            parallel(points, i -> {
+                double x = coords[i * 2];
+                double y = coords[i * 2 + 1];
+                if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                    result[i] = geoDataLoader.reverseGeocode(x, y);
+                }
+            });
+            return result;
+        }
+        GeoIndex index = geoDataLoader.getIndex();
+        long[] order = sortByCurve(coords, points);
+        int valid = points;
+        while (valid > 0 && order[valid - 1] >>> 32 == INVALID_KEY) {
+            valid--;
+        }
+        int tiles = (valid + tilePoints - 1) / tilePoints;
+        int sorted = valid;
+        parallel(tiles, t -> joinTile(index, coords, order,
+                t * tilePoints, Math.min(sorted, (t + 1) * tilePoints), result));
+        return result;
+    }
+
+    /**
+     * 按 Hilbert 序号排序，返回 序号 << 32 | 点下标；坐标为 NaN 的点序号为 INVALID_KEY，排在最后
+     */
+    private long[] sortByCurve(double[] coords, int points) {
+        double minX = Double.POSITIVE_INFINITY, minY = Double.POSITIVE_INFINITY;
+        double maxX = Double.NEGATIVE_INFINITY, maxY = Double.NEGATIVE_INFINITY;
+        for (int i = 0; i < points; i++) {
+            double x = coords[i * 2];
+            double y = coords[i * 2 + 1];
+            if (!Double.isNaN(x) && !Double.isNaN(y)) {
+                minX = Math.min(minX, x);
+                maxX = Math.max(maxX, x);
+                minY = Math.min(minY, y);
+                maxY = Math.max(maxY, y);
+            }
+        }
+        int cells = 1 << CURVE_ORDER;
+        // 范围为 0 时（只有一个点或所有点重合）所有点都落在第 0 格
+        double scaleX = maxX > minX ? (cells - 1) / (maxX - minX) : 0;
+        double scaleY = maxY > minY ? (cells - 1) / (maxY - minY) : 0;
+        double originX = minX;
+        double originY = minY;
+        long[] order = new long[points];
+        parallel(points, i -> {
+            double x = coords[i * 2];
+            double y = coords[i * 2 + 1];
+            long key = Double.isNaN(x) || Double.isNaN(y) ? INVALID_KEY
+                    : HilbertCurve.index(CURVE_ORDER, (int) ((x - originX) * scaleX), (int) ((y - originY) * scaleY));
+            order[i] = key << 32 | i;
+        });
+        Arrays.sort(order);
+        return order;
+    }
+
+    /**
+     * 处理 order[from, to) 中的点：先查网格表，剩下的点以 tile 外包矩形查询一次候选街道，
+     * 再按候选顺序逐个街道判断尚未命中的点
+     */
+    private static void joinTile(GeoIndex index, double[] coords, long[] order, int from, int to, Street[] result) {
+        int n = to - from;
+        double[] xs = new double[n];
+        double[] ys = new double[n];
+        int[] ids = new int[n];
+        int pending = 0;
+        GridIndex grid = index.getGridIndex();
+        List<Street> streets = index.getStreets();
+        for (int k = from; k < to; k++) {
+            int i = (int) order[k];
+            double x = coords[i * 2];
+            double y = coords[i * 2 + 1];
+            if (grid != null) {
+                int id = grid.lookup(x, y);
+                if (id >= 0) {
+                    result[i] = streets.get(id);
+                    continue;
+                }
+                if (id == GridIndex.EMPTY) {
+                    continue;
+                }
+            }
+            xs[pending] = x;
+            ys[pending] = y;
+            ids[pending] = i;
+            pending++;
+        }
+        if (pending > 0) {
+            joinRange(index, xs, ys, ids, 0, pending, result);
+        }
+    }
+
+    /**
+     * 候选街道比点多时（点分布稀疏、tile 跨越曲线上的跳跃），逐街道扫描不如逐点查询，按曲线顺序对半拆分后再处理
+     * 点先按外包矩形分桶（每桶平均 BUCKET_POINTS 个点），每个街道只检查与其外包矩形重叠的桶内的点，
+     * 总工作量约为 候选数 + 各街道外包矩形内的点数，而不是 候选数 × 点数
+     */
+    private static void joinRange(GeoIndex index, double[] xs, double[] ys, int[] ids, int from, int to,
+                                  Street[] result) {
+        Envelope envelope = new Envelope();
+        for (int k = from; k < to; k++) {
+            envelope.expandToInclude(xs[k], ys[k]);
+        }
+        List<Street> candidates = index.getStrTreeIndex().query(envelope);
+        int n = to - from;
+        if (candidates.size() > n && n > MIN_TILE_POINTS) {
+            int mid = (from + to) >>> 1;
+            joinRange(index, xs, ys, ids, from, mid, result);
+            joinRange(index, xs, ys, ids, mid, to, result);
+            return;
+        }
+        if (candidates.isEmpty()) {
+            return;
+        }
+        // 按下标处理候选，点先被下标小的街道占用，多边形重叠时与逐点查询取同一个街道
+        candidates.sort(Comparator.comparingInt(Street::getIndex));
+
+        // 计数排序分桶：第 b 桶的点为 members[bucketStart[b] .. bucketStart[b + 1])
+        int side = Math.max(1, (int) Math.sqrt((double) n / BUCKET_POINTS));
+        double minX = envelope.getMinX();
+        double minY = envelope.getMinY();
+        double scaleX = envelope.getWidth() > 0 ? side / envelope.getWidth() : 0;
+        double scaleY = envelope.getHeight() > 0 ? side / envelope.getHeight() : 0;
+        int[] bucketStart = new int[side * side + 1];
+        int[] bucketOf = new int[n];
+        for (int k = from; k < to; k++) {
+            int b = bucket(ys[k], minY, scaleY, side) * side + bucket(xs[k], minX, scaleX, side);
+            bucketOf[k - from] = b;
+            bucketStart[b + 1]++;
+        }
+        for (int b = 0; b < side * side; b++) {
+            bucketStart[b + 1] += bucketStart[b];
+        }
+        int[] fill = Arrays.copyOf(bucketStart, side * side);
+        int[] members = new int[n];
+        for (int k = from; k < to; k++) {
+            members[fill[bucketOf[k - from]]++] = k;
+        }
+
+        int remaining = n;
+        for (Street street : candidates) {
+            Envelope bounds = street.getEnvelope();
+            int col0 = bucket(bounds.getMinX(), minX, scaleX, side);
+            int col1 = bucket(bounds.getMaxX(), minX, scaleX, side);
+            int row0 = bucket(bounds.getMinY(), minY, scaleY, side);
+            int row1 = bucket(bounds.getMaxY(), minY, scaleY, side);
+            for (int row = row0; row <= row1; row++) {
+                for (int b = row * side + col0, end = row * side + col1; b <= end; b++) {
+                    for (int m = bucketStart[b]; m < bucketStart[b + 1]; m++) {
+                        int k = members[m];
+                        if (result[ids[k]] == null && bounds.contains(xs[k], ys[k])
+                                && index.contains(street, xs[k], ys[k])) {
+                            result[ids[k]] = street;
+                            remaining--;
+                        }
+                    }
+                }
+            }
+            if (remaining == 0) {
+                return;
+            }
+        }
+    }
+
+    private static int bucket(double v, double min, double scale, int side) {
+        int b = (int) ((v - min) * scale);
+        return b < 0 ? 0 : Math.min(b, side - 1);
+    }
+
+    /**
+     * 查不到街道的点所在的省市区边界，未加载边界时返回 null
+     */
+    private AdminBoundary[] locateMisses(double[] coords, int points, Street[] streets) {
+        if (geoDataLoader.getIndex().getHierarchy() == null) {
+            return null;
+        }
+        AdminBoundary[] admins = new AdminBoundary[points];
+        parallel(points, i -> {
+            double x = coords[i * 2];
+            double y = coords[i * 2 + 1];
+            if (streets[i] == null && !Double.isNaN(x) && !Double.isNaN(y)) {
+                admins[i] = geoDataLoader.locateAdmin(x, y);
+            }
+        });
+        return admins;
+    }
+
+    /**
+     * 把 [0, count) 切成至多 maxInFlight 段，提交到 GeocodeExecutor 的线程池并等待全部完成，任务中的异常原样抛出
+     */
+    private void parallel(int count, IntConsumer body) {
+        int chunks = Math.max(1, Math.min(maxInFlight, count));
+        List<Future<?>> futures = new ArrayList<>(chunks);
+        try {
+            for (int k = 0; k < chunks; k++) {
+                int from = (int) ((long) count * k / chunks);
+                int to = (int) ((long) count * (k + 1) / chunks);
+                futures.add(executor.submit(() -> {
+                    for (int i = from; i < to; i++) {
+                        body.accept(i);
+                    }
+                }));
+            }
+            for (Future<?> future : futures) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("空间连接被中断", e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException re) {
+                throw re;
+            }
+            throw new IllegalStateException(e.getCause());
+        } finally {
+            futures.forEach(f -> f.cancel(true));
+        }
+    }
+
+    private static long rate(long rows, long nanos) {
+        return nanos <= 0 ? 0 : rows * 1_000_000_000L / nanos;
+    }
+}
@@ -0,0 +1,309 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.NearestStreet;
+import cn.javen.tool.reversegeo.model.Street;
+import org.springframework.stereotype.Component;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @Description 二进制响应（application/x-reversegeo）使用的字典：街道与省市区只在字典中出现一次，响应中每个点只写一个变长整数编号
+ * 字典由当前发布的全部街道生成：街道按编码排序后依次编号，省市区按第一次出现的顺序编号，
+ * 相同的数据在任何进程、任何时刻生成的字典逐字节相同；字典标识取字典内容的 64 位哈希，
+ * 热加载后数据不变时标识不变，数据变化时客户端看到新标识后重新下载
+ * 编号缓存在 Street 上，之后的编码只需核对字典中该编号的街道编码，不查表、不加锁
+ * <p>
+ * 整数均为无符号 varint（每字节 7 位，低位在前），字符串为 varint 字节长度 + UTF-8，null 长度为 0
+ * 响应：'RGEO' 版本(1 字节) 字典标识(8 字节大端) 记录...
+ * 记录：0 表示查不到；否则为 (编号 + 1) << 1 | 最近街道标记，最近街道后跟距离（分米）
+ * 字典：'RGED' 版本 字典标识 省市区数 {区划编码+1 省 市 区}... from 街道数 {街道编码 名称 省市区编号}...
+ * @Author: Javen
+ * @CreateTime: 2025/11/6 10:00
+ */
+@Component
+public class StreetDictionary {
+
+    public static final String MEDIA_TYPE = "application/x-reversegeo";
+
+    private static final byte[] RESPONSE_MAGIC = {'R', 'G', 'E', 'O'};
+    private static final byte[] DICTIONARY_MAGIC = {'R', 'G', 'E', 'D'};
+    private static final int FORMAT_VERSION = 1;
+
+    private final GeoDataLoader loader;
+
+    // 当前字典，街道列表换成新对象（热加载）后在下一次使用时重建
+    private volatile Snapshot snapshot;
+
+    public StreetDictionary(GeoDataLoader loader) {
+        this.loader = loader;
+    }
+
+    public long getId() {
+        return current().id;
+    }
+
+    public int size() {
+        return current().streets.length;
+    }
+
+    private Snapshot current() {
+        List<Street> catalog = loader.getCatalog();
+        Snapshot current = snapshot;
+        if (current != null && current.source == catalog) {
+            return current;
+        }
+        synchronized (this) {
+            current = snapshot;
+            if (current == null || current.source != catalog) {
+                current = Snapshot.of(catalog);
+                snapshot = current;
+            }
+            return current;
+        }
+    }
+
+    /**
+     * 写出字典：全部省市区，以及编号从 from 开始的街道
+     */
+    public void writeDictionary(OutputStream out, int from) throws IOException {
+        Snapshot current = current();
+        Encoder encoder = new Encoder(out, current);
+        encoder.writeSnapshot(current, from);
+        encoder.flush();
+    }
+
+    /**
+     * 响应编码器，内部带写缓冲，写完后调用 flush()；不是线程安全的
+     */
+    public Encoder encoder(OutputStream out) {
+        return new Encoder(out, current());
+    }
+
+    private record StreetEntry(String streetId, String name, int admin) {
+    }
+
+    /**
+     * 不可变的字典内容
+     */
+    private static final class Snapshot {
+        // 生成字典的街道列表，用于判断数据是否已热加载
+        private final List<Street> source;
+        private final StreetEntry[] streets;
+        private final AdminPath[] admins;
+        private final Map<String, Integer> codes;
+        private final long id;
+
+        private Snapshot(List<Street> source, StreetEntry[] streets, AdminPath[] admins, Map<String, Integer> codes) {
+            this.source = source;
+            this.streets = streets;
+            this.admins = admins;
+            this.codes = codes;
+            this.id = hash(this);
+        }
+
+        /**
+         * 街道按编码排序后编号，编码重复时只保留第一条；省市区按第一次出现的顺序编号
+         */
+        static Snapshot of(List<Street> source) {
+            List<Street> sorted = new ArrayList<>(source);
+            sorted.sort(Comparator.comparing(Street::getStreetId, Comparator.nullsFirst(Comparator.naturalOrder())));
+            Map<String, Integer> codes = new HashMap<>(sorted.size() * 2);
+            Map<String, Integer> adminCodes = new HashMap<>();
+            List<StreetEntry> streets = new ArrayList<>(sorted.size());
+            List<AdminPath> admins = new ArrayList<>();
+            for (Street street : sorted) {
+                if (street.getStreetId() == null || codes.containsKey(street.getStreetId())) {
+                    continue;
+                }
+                AdminPath path = street.getAdminPath();
+                String key = path.getDistrictCode() + "\0" + path.getProvince() + '\0' + path.getCity()
+                        + '\0' + path.getDistrict();
+                int admin = adminCodes.computeIfAbsent(key, k -> {
+                    admins.add(path);
+                    return admins.size() - 1;
+                });
+                codes.put(street.getStreetId(), streets.size());
+                streets.add(new StreetEntry(street.getStreetId(), street.getName(), admin));
+            }
+            return new Snapshot(source, streets.toArray(new StreetEntry[0]), admins.toArray(new AdminPath[0]), codes);
+        }
+
+        /**
+         * 字典内容（标识写为 0）的 64 位 FNV-1a 哈希
+         */
+        private static long hash(Snapshot snapshot) {
+            HashStream hash = new HashStream();
+            try {
+                new Encoder(hash, snapshot).writeContent(snapshot, 0);
+            } catch (IOException e) {
+                throw new IllegalStateException(e);
+            }
+            return hash.value;
+        }
+    }
+
+    private static final class HashStream extends OutputStream {
+        private long value = 0xcbf29ce484222325L;
+
+        @Override
+        public void write(int b) {
+            value = (value ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+
+        @Override
+        public void write(byte[] b, int off, int len) {
+            long h = value;
+            for (int i = off; i < off + len; i++) {
+                h = (h ^ (b[i] & 0xFF)) * 0x100000001b3L;
+            }
+            value = h;
+        }
+    }
+
+    public static final class Encoder {
+        private final OutputStream out;
+        private final Snapshot snapshot;
+        private final byte[] buf = new byte[1 << 16];
+        private int pos;
+
+        private Encoder(OutputStream out, Snapshot snapshot) {
+            this.out = out;
+            this.snapshot = snapshot;
+        }
+
+        public void writeHeader() throws IOException {
+            writeBytes(RESPONSE_MAGIC);
+            writeByte(FORMAT_VERSION);
+            writeLong(snapshot.id);
+        }
+
+        /**
+         * 一个点的结果，查不到时 street 为 null
+         * 编码器创建后发生热加载时，新数据中字典里没有的街道按查不到写出
+         */
+        public void writeRecord(Street street) throws IOException {
+            int code = street == null ? -1 : code(street);
+            writeVarint(code < 0 ? 0 : (code + 1L) << 1);
+        }
+
+        public void writeRecord(NearestStreet nearest) throws IOException {
+            int code = code(nearest.street());
+            if (code < 0) {
+                writeVarint(0);
+                return;
+            }
+            writeVarint((code + 1L) << 1 | 1);
+            writeVarint(Math.round(nearest.distanceMeters() * 10));
+        }
+
+        /**
+         * 街道在本字典中的编号，Street 上缓存的编号与字典中的街道编码一致时直接使用，否则查表后更新缓存
+         */
+        private int code(Street street) {
+            StreetEntry[] streets = snapshot.streets;
+            int code = street.getDictCode();
+            if (code >= 0 && code < streets.length && streets[code].streetId().equals(street.getStreetId())) {
+                return code;
+            }
+            Integer found = snapshot.codes.get(street.getStreetId());
+            if (found == null) {
+                return -1;
+            }
+            street.setDictCode(found);
+            return found;
+        }
+
+        void writeSnapshot(Snapshot snapshot, int from) throws IOException {
+            writeBytes(DICTIONARY_MAGIC);
+            writeByte(FORMAT_VERSION);
+            writeLong(snapshot.id);
+            writeContent(snapshot, from);
+        }
+
+        private void writeContent(Snapshot snapshot, int from) throws IOException {
+            writeVarint(snapshot.admins.length);
+            for (AdminPath admin : snapshot.admins) {
+                writeVarint(admin.getDistrictCode() + 1L);
+                writeString(admin.getProvince());
+                writeString(admin.getCity());
+                writeString(admin.getDistrict());
+            }
+            int start = Math.min(Math.max(from, 0), snapshot.streets.length);
+            writeVarint(start);
+            writeVarint(snapshot.streets.length - start);
+            for (int i = start; i < snapshot.streets.length; i++) {
+                StreetEntry entry = snapshot.streets[i];
+                writeString(entry.streetId());
+                writeString(entry.name());
+                writeVarint(entry.admin());
+            }
+            flushBuffer();
+        }
+
+        void writeVarint(long value) throws IOException {
+            ensure(10);
+            while ((value & ~0x7FL) != 0) {
+                buf[pos++] = (byte) ((value & 0x7F) | 0x80);
+                value >>>= 7;
+            }
+            buf[pos++] = (byte) value;
+        }
+
+        void writeString(String value) throws IOException {
+            if (value == null) {
+                writeVarint(0);
+                return;
+            }
+            byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+            writeVarint(bytes.length);
+            writeBytes(bytes);
+        }
+
+        void writeLong(long value) throws IOException {
+            ensure(8);
+            for (int shift = 56; shift >= 0; shift -= 8) {
+                buf[pos++] = (byte) (value >>> shift);
+            }
+        }
+
+        void writeByte(int value) throws IOException {
+            ensure(1);
+            buf[pos++] = (byte) value;
+        }
+
+        void writeBytes(byte[] bytes) throws IOException {
+            if (bytes.length > buf.length) {
+                flushBuffer();
+                out.write(bytes);
+                return;
+            }
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, buf, pos, bytes.length);
+            pos += bytes.length;
+        }
+
+        private void ensure(int n) throws IOException {
+            if (pos + n > buf.length) {
+                flushBuffer();
+            }
+        }
+
+        private void flushBuffer() throws IOException {
+            out.write(buf, 0, pos);
+            pos = 0;
+        }
+
+        public void flush() throws IOException {
+            flushBuffer();
+            out.flush();
+        }
+    }
+}
@@ -0,0 +1,148 @@
+package cn.javen.tool.reversegeo.service;
+
+import cn.javen.tool.reversegeo.model.AdminPath;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.Street;
+import org.springframework.stereotype.Service;
+
+import java.io.BufferedReader;
+import java.io.BufferedWriter;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Objects;
+
+/**
+ * @Description 轨迹逆地理编码：输入为按设备、按时间排序的 GPS 点，每行 device,time,lng,lat，
+ * 同一设备的点依次查询，先检查上一个点所在的街道及其相邻街道，查不到时才走空间索引（GeoDataLoader.reverseGeocodeNear）
+ * 输出不是逐点结果，而是街道变化的分段：设备在某街道内的进入时间、离开时间与点数，NDJSON 每行一段
+ * 不同设备的点可以交错，同一设备的点必须按时间顺序；查不到街道的连续点也输出一段，街道字段为 null
+ * 时间原样回显，不解析格式；输入为 GCJ-02 / BD-09 坐标时逐点转换为 WGS84 后查询
+ * @Author: Javen
+ * @CreateTime: 2025/11/7 10:00
+ */
+@Service
+public class TrackReverseService {
+
+    private final GeoDataLoader geoDataLoader;
+    private final GeoMetrics metrics;
+
+    public TrackReverseService(GeoDataLoader geoDataLoader, GeoMetrics metrics) {
+        this.geoDataLoader = geoDataLoader;
+        this.metrics = metrics;
+    }
+
+    /**
+     * 读完输入后写出所有设备最后一段；分段在街道变化时立即写出
+     *
+     * @param crs 输入坐标的坐标系
+     * @return 处理的点数（不含无法解析的行）
+     */
+    public long reverse(InputStream in, CoordinateSystem crs, OutputStream out) throws IOException {
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8), 1 << 16);
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8), 1 << 16);
+        // 按设备第一次出现的顺序输出最后一段
+        Map<String, Track> tracks = new LinkedHashMap<>();
+        long points = 0;
+        // 复用的转换缓冲
+        double[] point = new double[2];
+        String line;
+        while ((line = reader.readLine()) != null) {
+            int c1 = line.indexOf(',');
+            int c2 = c1 < 0 ? -1 : line.indexOf(',', c1 + 1);
+            int c3 = c2 < 0 ? -1 : line.indexOf(',', c2 + 1);
+            if (c3 < 0) {
+                continue;
+            }
+            try {
+                point[0] = Double.parseDouble(line.substring(c2 + 1, c3).trim());
+                point[1] = Double.parseDouble(line.substring(c3 + 1).trim());
+            } catch (NumberFormatException e) {
+                // 表头或无法解析的行
+                continue;
+            }
+            crs.toWgs84(point, 0, 1);
+            String device = line.substring(0, c1).trim();
+            String time = line.substring(c1 + 1, c2).trim();
+            Track track = tracks.computeIfAbsent(device, Track::new);
+            Street street = geoDataLoader.reverseGeocodeNear(track.street, point[0], point[1]);
+            points++;
+            if (track.points > 0 && sameStreet(track.street, street)) {
+                track.exit = time;
+                track.points++;
+                // 热加载后换成新索引中的对象，下一个点可以在新索引中按相邻关系查询
+                track.street = street;
+                continue;
+            }
+            if (track.points > 0) {
+                writeSegment(track, writer);
+            }
+            track.street = street;
+            track.enter = time;
+            track.exit = time;
+            track.points = 1;
+        }
+        for (Track track : tracks.values()) {
+            writeSegment(track, writer);
+        }
+        writer.flush();
+        metrics.recordBatch(points);
+        return points;
+    }
+
+    private static boolean sameStreet(Street a, Street b) {
+        if (a == b) {
+            return true;
+        }
+        return a != null && b != null && Objects.equals(a.getStreetId(), b.getStreetId());
+    }
+
+    private static void writeSegment(Track track, Writer writer) throws IOException {
+        writer.write("{\"device\":");
+        BatchReverseService.writeString(writer, track.device);
+        writer.write(",\"enter\":");
+        BatchReverseService.writeString(writer, track.enter);
+        writer.write(",\"exit\":");
+        BatchReverseService.writeString(writer, track.exit);
+        writer.write(",\"points\":");
+        writer.write(Integer.toString(track.points));
+        Street street = track.street;
+        if (street == null) {
+            writer.write(",\"street\":null}\n");
+            return;
+        }
+        AdminPath admin = street.getAdminPath();
+        writer.write(",\"province\":");
+        BatchReverseService.writeString(writer, admin.getProvince());
+        writer.write(",\"city\":");
+        BatchReverseService.writeString(writer, admin.getCity());
+        writer.write(",\"district\":");
+        BatchReverseService.writeString(writer, admin.getDistrict());
+        writer.write(",\"street\":");
+        BatchReverseService.writeString(writer, street.getName());
+        writer.write(",\"streetid\":");
+        BatchReverseService.writeString(writer, street.getStreetId());
+        writer.write("}\n");
+    }
+
+    /**
+     * 一个设备当前所在的分段
+     */
+    private static final class Track {
+        final String device;
+        Street street;
+        String enter;
+        String exit;
+        int points;
+
+        Track(String device) {
+            this.device = device;
+        }
+    }
+}
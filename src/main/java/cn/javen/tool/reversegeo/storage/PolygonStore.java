@@ -0,0 +1,237 @@
+package cn.javen.tool.reversegeo.storage;
+
+/**
+ * @Description 堆外多边形存储：环坐标以紧凑 double 数组形式存放在内存映射文件中，点面判断直接在映射区上做射线法
+ * @Author: Javen
+ * @CreateTime: 2025/10/13 16:30
+ *
+ * 文件布局（小端，坐标区 8 字节对齐）：
+ * <pre>
+ * HEADER  magic(int) version(int) shapeCount(int) ringCount(int) pointCount(long)
+ * SHAPES  shapeCount 条记录：ringStart(int) ringCount(int)
+ * RINGS   ringCount + 1 个 int：每个环在坐标区的起始点序号，最后一个为结束哨兵
+ * COORDS  pointCount 个点：x(double) y(double)
+ * </pre>
+ * 文件只读映射，多个 JVM 进程加载同一文件时共享操作系统页缓存；堆上只保留 Street 句柄
+ */
+
+import cn.javen.tool.reversegeo.model.GeoDistance;
+import cn.javen.tool.reversegeo.model.Street;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.CoordinateSequence;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+
+public class PolygonStore {
+
+    public static final int MAGIC = 0x52475053; // "RGPS"
+    public static final int VERSION = 1;
+
+    private static final int HEADER_SIZE = 24;
+
+    private final ByteBuffer buffer;
+    private final int shapeCount;
+    private final int shapesOffset;
+    private final int ringsOffset;
+    private final int coordsOffset;
+
+    private PolygonStore(ByteBuffer buffer) throws IOException {
+        this.buffer = buffer.order(ByteOrder.LITTLE_ENDIAN);
+        if (this.buffer.capacity() < HEADER_SIZE
+                || this.buffer.getInt(0) != MAGIC || this.buffer.getInt(4) != VERSION) {
+            throw new IOException("不是多边形存储文件或版本不符");
+        }
+        this.shapeCount = this.buffer.getInt(8);
+        int ringCount = this.buffer.getInt(12);
+        long pointCount = this.buffer.getLong(16);
+        // 截断的文件在查询时才会越界，加载时先核对各段大小
+        long coords = (HEADER_SIZE + shapeCount * 8L + (ringCount + 1L) * 4 + 7) & ~7L;
+        if (shapeCount < 0 || ringCount < 0 || pointCount < 0 || coords + pointCount * 16 > this.buffer.capacity()) {
+            throw new IOException("多边形存储文件已损坏，文件头与文件大小 " + this.buffer.capacity() + " 不符");
+        }
+        this.shapesOffset = HEADER_SIZE;
+        this.ringsOffset = shapesOffset + shapeCount * 8;
+        this.coordsOffset = align8(ringsOffset + (ringCount + 1) * 4);
+    }
+
+    /**
+     * 只读映射多边形存储文件
+     */
+    public static PolygonStore open(Path path) throws IOException {
+        return new PolygonStore(StreetSnapshot.map(path));
+    }
+
+    /**
+     * 按列表顺序写出每个街道的多边形，第 i 个街道的 shapeId 即为 i
+     */
+    public static void write(List<Street> streets, Path path) throws IOException {
+        List<LinearRing> rings = new ArrayList<>();
+        int[] shapeRingStart = new int[streets.size()];
+        int[] shapeRingCount = new int[streets.size()];
+        long pointCount = 0;
+        for (int i = 0; i < streets.size(); i++) {
+            shapeRingStart[i] = rings.size();
+            Geometry geometry = streets.get(i).getPolygon();
+            if (geometry != null) {
+                for (int g = 0; g < geometry.getNumGeometries(); g++) {
+                    Polygon polygon = (Polygon) geometry.getGeometryN(g);
+                    rings.add(polygon.getExteriorRing());
+                    for (int h = 0; h < polygon.getNumInteriorRing(); h++) {
+                        rings.add(polygon.getInteriorRingN(h));
+                    }
+                }
+                pointCount += geometry.getNumPoints();
+            }
+            shapeRingCount[i] = rings.size() - shapeRingStart[i];
+        }
+        if (pointCount > (Integer.MAX_VALUE - 1024) / 16) {
+            throw new IOException("顶点数过多，超出单文件映射上限: " + pointCount);
+        }
+
+        int ringsOffset = HEADER_SIZE + streets.size() * 8;
+        int coordsOffset = align8(ringsOffset + (rings.size() + 1) * 4);
+        ByteBuffer out = ByteBuffer.allocate(coordsOffset + (int) pointCount * 16).order(ByteOrder.LITTLE_ENDIAN);
+        out.putInt(MAGIC).putInt(VERSION).putInt(streets.size()).putInt(rings.size()).putLong(pointCount);
+        for (int i = 0; i < streets.size(); i++) {
+            out.putInt(shapeRingStart[i]).putInt(shapeRingCount[i]);
+        }
+        int point = 0;
+        int coordPos = coordsOffset;
+        for (LinearRing ring : rings) {
+            out.putInt(point);
+            CoordinateSequence seq = ring.getCoordinateSequence();
+            for (int k = 0; k < seq.size(); k++) {
+                out.putDouble(coordPos, seq.getX(k));
+                out.putDouble(coordPos + 8, seq.getY(k));
+                coordPos += 16;
+            }
+            point += seq.size();
+        }
+        out.putInt(point);
+        out.position(0).limit(out.capacity());
+
+        // 映射中的文件被原地截断会导致读取进程崩溃，必须写临时文件后原子替换
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            StreetSnapshot.writeFully(channel, out);
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    public int size() {
+        return shapeCount;
+    }
+
+    /**
+     * 射线法（奇偶规则）判断点是否在形状内部，外环与内环（洞）统一处理
+     *
+     * @param shapeId 形状序号
+     * @param x 经度
+     * @param y 纬度
+     */
+    public boolean contains(int shapeId, double x, double y) {
+        int record = shapesOffset + shapeId * 8;
+        int ringStart = buffer.getInt(record);
+        int ringEnd = ringStart + buffer.getInt(record + 4);
+        boolean inside = false;
+        for (int r = ringStart; r < ringEnd; r++) {
+            int from = buffer.getInt(ringsOffset + r * 4);
+            int to = buffer.getInt(ringsOffset + (r + 1) * 4);
+            // 环首尾闭合，依次检查边 (k-1, k)
+            int pos = coordsOffset + from * 16;
+            double x1 = buffer.getDouble(pos);
+            double y1 = buffer.getDouble(pos + 8);
+            for (int k = from + 1; k < to; k++) {
+                pos += 16;
+                double x2 = buffer.getDouble(pos);
+                double y2 = buffer.getDouble(pos + 8);
+                if ((y1 > y) != (y2 > y) && x < (x2 - x1) * (y - y1) / (y2 - y1) + x1) {
+                    inside = !inside;
+                }
+                x1 = x2;
+                y1 = y2;
+            }
+        }
+        return inside;
+    }
+
+    /**
+     * 点到形状所有环的最短距离（米）
+     */
+    public double distanceMeters(int shapeId, double x, double y) {
+        double cosLat = Math.cos(Math.toRadians(y));
+        int record = shapesOffset + shapeId * 8;
+        int ringStart = buffer.getInt(record);
+        int ringEnd = ringStart + buffer.getInt(record + 4);
+        double min = Double.POSITIVE_INFINITY;
+        for (int r = ringStart; r < ringEnd; r++) {
+            int from = buffer.getInt(ringsOffset + r * 4);
+            int to = buffer.getInt(ringsOffset + (r + 1) * 4);
+            int pos = coordsOffset + from * 16;
+            double x1 = buffer.getDouble(pos);
+            double y1 = buffer.getDouble(pos + 8);
+            for (int k = from + 1; k < to; k++) {
+                pos += 16;
+                double x2 = buffer.getDouble(pos);
+                double y2 = buffer.getDouble(pos + 8);
+                min = Math.min(min, GeoDistance.segmentMeters(x, y, x1, y1, x2, y2, cosLat));
+                x1 = x2;
+                y1 = y2;
+            }
+        }
+        return min;
+    }
+
+    /**
+     * 形状的顶点数
+     */
+    public int pointCount(int shapeId) {
+        int record = shapesOffset + shapeId * 8;
+        int ringStart = buffer.getInt(record);
+        int ringEnd = ringStart + buffer.getInt(record + 4);
+        return buffer.getInt(ringsOffset + ringEnd * 4) - buffer.getInt(ringsOffset + ringStart * 4);
+    }
+
+    /**
+     * 从映射区重建 JTS 多边形，用于区域相交与面积计算等需要完整几何的场景，每次调用都会复制坐标
+     * 存储中不区分外环与内环，按奇偶规则对各环依次做对称差，结果与 contains 的判断一致
+     *
+     * @return 没有环的形状返回 null
+     */
+    public Geometry toGeometry(int shapeId, GeometryFactory factory) {
+        int record = shapesOffset + shapeId * 8;
+        int ringStart = buffer.getInt(record);
+        int ringEnd = ringStart + buffer.getInt(record + 4);
+        Geometry result = null;
+        for (int r = ringStart; r < ringEnd; r++) {
+            int from = buffer.getInt(ringsOffset + r * 4);
+            int to = buffer.getInt(ringsOffset + (r + 1) * 4);
+            Coordinate[] coordinates = new Coordinate[to - from];
+            int pos = coordsOffset + from * 16;
+            for (int k = 0; k < coordinates.length; k++, pos += 16) {
+                coordinates[k] = new Coordinate(buffer.getDouble(pos), buffer.getDouble(pos + 8));
+            }
+            Polygon ring = factory.createPolygon(coordinates);
+            result = result == null ? ring : result.symDifference(ring);
+        }
+        return result;
+    }
+
+    private static int align8(int offset) {
+        return (offset + 7) & ~7;
+    }
+}
@@ -0,0 +1,460 @@
+package cn.javen.tool.reversegeo.storage;
+
+/**
+ * @Description 街道数据二进制快照：启动时代替 CSV + WKT 解析
+ * @Author: Javen
+ * @CreateTime: 2025/10/11 9:40
+ *
+ * 文件布局（大端）：
+ * <pre>
+ * HEADER   magic(int) version(int) scale(double) count(int) reserved(int) stringsOffset(long) geometryOffset(long)
+ * TABLE    count 条定长记录（64 字节）：
+ *          stringPos(int) geometryPos(int) geometryLen(int) flags(int) centerX centerY minX minY maxX maxY(double)
+ * STRINGS  每条街道依次为 streetId、name、level，均为 varint 长度 + UTF-8 字节
+ * GEOMETRY 每条街道一个块：type(byte) [polygonCount(varint)] 每个面 ringCount(varint) 每个环 pointCount(varint)
+ *          坐标按 scale 定点化后与前一个点做差，再 zigzag + varint 编码
+ * </pre>
+ * 街道表按写入时的列表顺序存放（STRtree 打包时自行排序，文件不预排）；外包矩形直接取表中的值，不需要再遍历几何顶点
+ * reserved 早期版本写的是 STRtree 节点容量，读取时忽略
+ */
+
+import cn.javen.tool.reversegeo.model.Street;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.MultiPolygon;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+public class StreetSnapshot {
+
+    public static final int MAGIC = 0x52475353; // "RGSS"
+    public static final int VERSION = 1;
+    // 默认定点化精度 1e-7 度，约 1 厘米
+    public static final double DEFAULT_SCALE = 1e7;
+
+    private static final int HEADER_SIZE = 40;
+    private static final int RECORD_SIZE = 64;
+
+    private static final int FLAG_CENTER = 1;
+    private static final int FLAG_POLYGON = 2;
+
+    private static final byte TYPE_POLYGON = 1;
+    private static final byte TYPE_MULTI_POLYGON = 2;
+
+    /**
+     * 将街道列表写为快照文件
+     *
+     * @param streets 街道列表
+     * @param path 输出路径
+     * @param scale 坐标定点化倍数
+     */
+    public static void write(List<Street> streets, Path path, double scale) throws IOException {
+        int count = streets.size();
+        byte[][] blobs = new byte[count][];
+        Envelope[] envelopes = new Envelope[count];
+        for (int i = 0; i < count; i++) {
+            Geometry polygon = streets.get(i).getPolygon();
+            if (polygon != null) {
+                ByteSink sink = new ByteSink(polygon.getNumPoints() * 4 + 16);
+                Envelope env = new Envelope();
+                encodeGeometry(polygon, scale, sink, env);
+                blobs[i] = sink.toByteArray();
+                envelopes[i] = env;
+            }
+        }
+
+        ByteBuffer table = ByteBuffer.allocate(count * RECORD_SIZE);
+        ByteSink strings = new ByteSink(count * 32);
+        ByteSink geometry = new ByteSink(1 << 16);
+        for (int idx = 0; idx < count; idx++) {
+            Street street = streets.get(idx);
+            int flags = 0;
+            double cx = 0, cy = 0;
+            if (street.getCenter() != null) {
+                flags |= FLAG_CENTER;
+                cx = street.getCenter().getX();
+                cy = street.getCenter().getY();
+            }
+            int geometryPos = geometry.size();
+            int geometryLen = 0;
+            Envelope env = envelopes[idx];
+            if (blobs[idx] != null) {
+                flags |= FLAG_POLYGON;
+                geometry.write(blobs[idx]);
+                geometryLen = blobs[idx].length;
+            }
+            table.putInt(strings.size());
+            table.putInt(geometryPos);
+            table.putInt(geometryLen);
+            table.putInt(flags);
+            table.putDouble(cx);
+            table.putDouble(cy);
+            table.putDouble(env != null ? env.getMinX() : 0);
+            table.putDouble(env != null ? env.getMinY() : 0);
+            table.putDouble(env != null ? env.getMaxX() : 0);
+            table.putDouble(env != null ? env.getMaxY() : 0);
+
+            strings.writeString(street.getStreetId());
+            strings.writeString(street.getName());
+            strings.writeString(street.getLevel());
+        }
+        table.flip();
+
+        long stringsOffset = HEADER_SIZE + (long) count * RECORD_SIZE;
+        long geometryOffset = stringsOffset + strings.size();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_SIZE);
+        header.putInt(MAGIC);
+        header.putInt(VERSION);
+        header.putDouble(scale);
+        header.putInt(count);
+        header.putInt(0);
+        header.putLong(stringsOffset);
+        header.putLong(geometryOffset);
+        header.flip();
+
+        // 先写临时文件再原子替换，运行中的服务热加载时不会读到写了一半的文件
+        Path tmp = path.resolveSibling(path.getFileName() + ".tmp");
+        try (FileChannel channel = FileChannel.open(tmp, StandardOpenOption.CREATE,
+                StandardOpenOption.WRITE, StandardOpenOption.TRUNCATE_EXISTING)) {
+            writeFully(channel, header);
+            writeFully(channel, table);
+            writeFully(channel, strings.toByteBuffer());
+            writeFully(channel, geometry.toByteBuffer());
+        }
+        Files.move(tmp, path, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 以内存映射方式读取快照，返回的街道列表与写入时的顺序相同
+     */
+    public static List<Street> read(Path path, GeometryFactory factory) throws IOException {
+        return read(path, factory, true);
+    }
+
+    /**
+     * 读取快照
+     *
+     * @param decodeGeometry 是否解码多边形为 JTS 对象；堆外存储模式下只需要街道属性和外包矩形
+     */
+    public static List<Street> read(Path path, GeometryFactory factory, boolean decodeGeometry) throws IOException {
+        ByteBuffer buffer = map(path);
+        checkLayout(buffer, path);
+        double scale = buffer.getDouble(8);
+        int count = buffer.getInt(16);
+        int stringsOffset = (int) buffer.getLong(24);
+        int geometryOffset = (int) buffer.getLong(32);
+
+        Cursor cursor = new Cursor(buffer);
+        List<Street> streets = new ArrayList<>(count);
+        try {
+            for (int i = 0; i < count; i++) {
+                int record = HEADER_SIZE + i * RECORD_SIZE;
+                int stringPos = buffer.getInt(record);
+                int geometryPos = buffer.getInt(record + 4);
+                int geometryLen = buffer.getInt(record + 8);
+                int flags = buffer.getInt(record + 12);
+                if (stringPos < 0 || stringPos >= geometryOffset - stringsOffset || geometryPos < 0 || geometryLen < 0
+                        || (long) geometryOffset + geometryPos + geometryLen > buffer.capacity()) {
+                    throw new IOException("快照已损坏，第 " + i + " 条记录越界: " + path);
+                }
+
+                Street street = new Street();
+                cursor.pos = stringsOffset + stringPos;
+                street.setStreetId(cursor.readString());
+                street.setName(cursor.readString());
+                street.setLevel(cursor.readString());
+
+                if ((flags & FLAG_CENTER) != 0) {
+                    street.setCenter(factory.createPoint(new Coordinate(
+                            buffer.getDouble(record + 16), buffer.getDouble(record + 24))));
+                }
+                if ((flags & FLAG_POLYGON) != 0) {
+                    street.setEnvelope(new Envelope(
+                            buffer.getDouble(record + 32), buffer.getDouble(record + 48),
+                            buffer.getDouble(record + 40), buffer.getDouble(record + 56)));
+                    if (decodeGeometry) {
+                        cursor.pos = geometryOffset + geometryPos;
+                        street.setPolygon(decodeGeometry(cursor, scale, factory));
+                    }
+                }
+                streets.add(street);
+            }
+        } catch (RuntimeException e) {
+            // 截断或被改写的文件在解码变长整数、字符串或构造多边形时越界
+            throw new IOException("快照已损坏: " + path, e);
+        }
+        return streets;
+    }
+
+    /**
+     * 只读取街道表，返回所有多边形外包矩形的并集，不解析字符串和几何，用于分片的粗略范围索引
+     *
+     * @return 快照中没有多边形时返回空的 Envelope（isNull() 为 true）
+     */
+    public static Envelope readExtent(Path path) throws IOException {
+        ByteBuffer buffer = map(path);
+        checkLayout(buffer, path);
+        int count = buffer.getInt(16);
+        Envelope extent = new Envelope();
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            if ((buffer.getInt(record + 12) & FLAG_POLYGON) != 0) {
+                extent.expandToInclude(buffer.getDouble(record + 32), buffer.getDouble(record + 40));
+                extent.expandToInclude(buffer.getDouble(record + 48), buffer.getDouble(record + 56));
+            }
+        }
+        return extent;
+    }
+
+    /**
+     * 只读取街道表，返回每个多边形街道的外包矩形，不解析字符串和几何，用于构建分片路由网格
+     */
+    public static List<Envelope> readEnvelopes(Path path) throws IOException {
+        ByteBuffer buffer = map(path);
+        checkLayout(buffer, path);
+        int count = buffer.getInt(16);
+        List<Envelope> envelopes = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            int record = HEADER_SIZE + i * RECORD_SIZE;
+            if ((buffer.getInt(record + 12) & FLAG_POLYGON) != 0) {
+                envelopes.add(new Envelope(buffer.getDouble(record + 32), buffer.getDouble(record + 48),
+                        buffer.getDouble(record + 40), buffer.getDouble(record + 56)));
+            }
+        }
+        return envelopes;
+    }
+
+    /**
+     * 检查文件头与各段的偏移、长度是否与文件大小一致，截断的文件在读取记录前即可发现
+     */
+    private static void checkLayout(ByteBuffer buffer, Path path) throws IOException {
+        long size = buffer.capacity();
+        if (size < HEADER_SIZE || buffer.getInt(0) != MAGIC) {
+            throw new IOException("不是街道快照文件: " + path);
+        }
+        if (buffer.getInt(4) != VERSION) {
+            throw new IOException("不支持的快照版本: " + buffer.getInt(4));
+        }
+        int count = buffer.getInt(16);
+        long stringsOffset = buffer.getLong(24);
+        long geometryOffset = buffer.getLong(32);
+        if (count < 0 || stringsOffset != HEADER_SIZE + (long) count * RECORD_SIZE
+                || geometryOffset < stringsOffset || geometryOffset > size) {
+            throw new IOException("快照已损坏，文件头与文件大小 " + size + " 不符: " + path);
+        }
+    }
+
+    static ByteBuffer map(Path path) throws IOException {
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.READ)) {
+            long size = channel.size();
+            if (size > Integer.MAX_VALUE) {
+                throw new IOException("文件超过 2GB，无法整体映射: " + path);
+            }
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, 0, size);
+            return buffer;
+        }
+    }
+
+    static void writeFully(FileChannel channel, ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    private static void encodeGeometry(Geometry geometry, double scale, ByteSink sink, Envelope env) {
+        long[] last = new long[2];
+        if (geometry instanceof Polygon polygon) {
+            sink.write(TYPE_POLYGON);
+            encodePolygon(polygon, scale, sink, env, last);
+        } else if (geometry instanceof MultiPolygon multiPolygon) {
+            sink.write(TYPE_MULTI_POLYGON);
+            sink.writeVarInt(multiPolygon.getNumGeometries());
+            for (int i = 0; i < multiPolygon.getNumGeometries(); i++) {
+                encodePolygon((Polygon) multiPolygon.getGeometryN(i), scale, sink, env, last);
+            }
+        } else {
+            throw new IllegalArgumentException("不支持的几何类型: " + geometry.getGeometryType());
+        }
+    }
+
+    private static void encodePolygon(Polygon polygon, double scale, ByteSink sink, Envelope env, long[] last) {
+        sink.writeVarInt(1 + polygon.getNumInteriorRing());
+        encodeRing(polygon.getExteriorRing(), scale, sink, env, last);
+        for (int i = 0; i < polygon.getNumInteriorRing(); i++) {
+            encodeRing(polygon.getInteriorRingN(i), scale, sink, env, last);
+        }
+    }
+
+    private static void encodeRing(LinearRing ring, double scale, ByteSink sink, Envelope env, long[] last) {
+        var seq = ring.getCoordinateSequence();
+        sink.writeVarInt(seq.size());
+        for (int i = 0; i < seq.size(); i++) {
+            long x = Math.round(seq.getX(i) * scale);
+            long y = Math.round(seq.getY(i) * scale);
+            sink.writeVarLong(zigzag(x - last[0]));
+            sink.writeVarLong(zigzag(y - last[1]));
+            last[0] = x;
+            last[1] = y;
+            // 外包矩形按解码后的坐标计算，保证与读取端完全一致
+            env.expandToInclude(x / scale, y / scale);
+        }
+    }
+
+    private static Geometry decodeGeometry(Cursor cursor, double scale, GeometryFactory factory) {
+        long[] last = new long[2];
+        byte type = cursor.readByte();
+        if (type == TYPE_POLYGON) {
+            return decodePolygon(cursor, scale, factory, last);
+        }
+        int count = cursor.readVarInt();
+        Polygon[] polygons = new Polygon[count];
+        for (int i = 0; i < count; i++) {
+            polygons[i] = decodePolygon(cursor, scale, factory, last);
+        }
+        return factory.createMultiPolygon(polygons);
+    }
+
+    private static Polygon decodePolygon(Cursor cursor, double scale, GeometryFactory factory, long[] last) {
+        int ringCount = cursor.readVarInt();
+        LinearRing shell = decodeRing(cursor, scale, factory, last);
+        LinearRing[] holes = new LinearRing[ringCount - 1];
+        for (int i = 0; i < holes.length; i++) {
+            holes[i] = decodeRing(cursor, scale, factory, last);
+        }
+        return factory.createPolygon(shell, holes);
+    }
+
+    private static LinearRing decodeRing(Cursor cursor, double scale, GeometryFactory factory, long[] last) {
+        int n = cursor.readVarInt();
+        Coordinate[] coords = new Coordinate[n];
+        for (int i = 0; i < n; i++) {
+            last[0] += unzigzag(cursor.readVarLong());
+            last[1] += unzigzag(cursor.readVarLong());
+            coords[i] = new Coordinate(last[0] / scale, last[1] / scale);
+        }
+        return factory.createLinearRing(coords);
+    }
+
+    static long zigzag(long v) {
+        return (v << 1) ^ (v >> 63);
+    }
+
+    static long unzigzag(long v) {
+        return (v >>> 1) ^ -(v & 1);
+    }
+
+    /**
+     * 基于绝对位置的读取游标
+     */
+    static class Cursor {
+        final ByteBuffer buffer;
+        int pos;
+
+        Cursor(ByteBuffer buffer) {
+            this.buffer = buffer;
+        }
+
+        byte readByte() {
+            return buffer.get(pos++);
+        }
+
+        int readVarInt() {
+            return (int) readVarLong();
+        }
+
+        long readVarLong() {
+            long result = 0;
+            int shift = 0;
+            byte b;
+            do {
+                b = buffer.get(pos++);
+                result |= (long) (b & 0x7F) << shift;
+                shift += 7;
+            } while (b < 0);
+            return result;
+        }
+
+        String readString() {
+            int len = readVarInt();
+            byte[] bytes = new byte[len];
+            buffer.get(pos, bytes);
+            pos += len;
+            return new String(bytes, StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * 可扩容的字节缓冲，用于写入阶段拼装各段
+     */
+    static class ByteSink {
+        private byte[] data;
+        private int size;
+
+        ByteSink(int capacity) {
+            data = new byte[Math.max(capacity, 16)];
+        }
+
+        int size() {
+            return size;
+        }
+
+        void write(byte b) {
+            ensure(1);
+            data[size++] = b;
+        }
+
+        void write(byte[] bytes) {
+            ensure(bytes.length);
+            System.arraycopy(bytes, 0, data, size, bytes.length);
+            size += bytes.length;
+        }
+
+        void writeVarInt(int v) {
+            writeVarLong(v & 0xFFFFFFFFL);
+        }
+
+        void writeVarLong(long v) {
+            ensure(10);
+            while ((v & ~0x7FL) != 0) {
+                data[size++] = (byte) ((v & 0x7F) | 0x80);
+                v >>>= 7;
+            }
+            data[size++] = (byte) v;
+        }
+
+        void writeString(String s) {
+            byte[] bytes = (s == null ? "" : s).getBytes(StandardCharsets.UTF_8);
+            writeVarInt(bytes.length);
+            write(bytes);
+        }
+
+        byte[] toByteArray() {
+            return Arrays.copyOf(data, size);
+        }
+
+        ByteBuffer toByteBuffer() {
+            return ByteBuffer.wrap(data, 0, size);
+        }
+
+        private void ensure(int extra) {
+            if (size + extra > data.length) {
+                data = Arrays.copyOf(data, Math.max(data.length * 2, size + extra));
+            }
+        }
+    }
+}
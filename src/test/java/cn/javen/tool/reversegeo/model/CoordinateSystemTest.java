@@ -0,0 +1,132 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description CoordinateSystem 的逆变换：用公开的 WGS84 → GCJ-02 → BD-09 正向公式生成坐标，
+ * 转换回 WGS84 后与原坐标的差必须小于 1e-9 度；境外坐标与 NaN 保持不变；
+ * 批量转换与单点转换结果一致
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 11:30
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CoordinateSystemTest {
+
+    private static final double A = 6378245.0;
+    private static final double EE = 0.00669342162296594323;
+    private static final double X_PI = Math.PI * 3000.0 / 180.0;
+
+    @Test
+    void gcj02RoundTrip() {
+        Random random = new Random(31);
+        for (int i = 0; i < 10000; i++) {
+            double lng = 73 + random.nextDouble() * 62;
+            double lat = 18 + random.nextDouble() * 35;
+            double[] gcj = wgs84ToGcj02(lng, lat);
+            double[] wgs = CoordinateSystem.GCJ02.toWgs84(gcj[0], gcj[1]);
+            assertEquals(lng, wgs[0], 1e-9);
+            assertEquals(lat, wgs[1], 1e-9);
+        }
+    }
+
+    @Test
+    void bd09RoundTrip() {
+        Random random = new Random(32);
+        for (int i = 0; i < 10000; i++) {
+            double lng = 73 + random.nextDouble() * 62;
+            double lat = 18 + random.nextDouble() * 35;
+            double[] gcj = wgs84ToGcj02(lng, lat);
+            double[] bd = gcj02ToBd09(gcj[0], gcj[1]);
+            double[] wgs = CoordinateSystem.BD09.toWgs84(bd[0], bd[1]);
+            assertEquals(lng, wgs[0], 1e-9);
+            assertEquals(lat, wgs[1], 1e-9);
+        }
+    }
+
+    @Test
+    void batchConversionInPlace() {
+        double[] gcj = wgs84ToGcj02(116.397, 39.908);
+        double[] coords = {1, 2, gcj[0], gcj[1], Double.NaN, Double.NaN, 10.0, 50.0};
+        CoordinateSystem.GCJ02.toWgs84(coords, 2, 3);
+        assertEquals(1, coords[0]);
+        assertEquals(2, coords[1]);
+        assertEquals(116.397, coords[2], 1e-9);
+        assertEquals(39.908, coords[3], 1e-9);
+        assertTrue(Double.isNaN(coords[4]) && Double.isNaN(coords[5]));
+        // 境外坐标不偏移
+        assertEquals(10.0, coords[6]);
+        assertEquals(50.0, coords[7]);
+    }
+
+    /**
+     * 批量接口从任意偏移开始原地转换，每个点的结果与单点接口逐位相同，偏移之前和转换范围之后的坐标不动
+     */
+    @Test
+    void batchMatchesSinglePoint() {
+        Random random = new Random(33);
+        int points = 1000;
+        for (CoordinateSystem crs : CoordinateSystem.values()) {
+            double[] coords = new double[points * 2 + 4];
+            for (int i = 0; i < coords.length; i++) {
+                coords[i] = i % 2 == 0 ? 73 + random.nextDouble() * 62 : 18 + random.nextDouble() * 35;
+            }
+            double[] original = coords.clone();
+            crs.toWgs84(coords, 2, points);
+            assertEquals(original[0], coords[0]);
+            assertEquals(original[1], coords[1]);
+            for (int i = 2; i < points * 2 + 2; i += 2) {
+                assertArrayEquals(crs.toWgs84(original[i], original[i + 1]), new double[]{coords[i], coords[i + 1]},
+                        crs + " 第 " + (i / 2 - 1) + " 个点");
+            }
+            assertEquals(original[coords.length - 2], coords[coords.length - 2]);
+            assertEquals(original[coords.length - 1], coords[coords.length - 1]);
+        }
+    }
+
+    @Test
+    void wgs84IsIdentity() {
+        assertArrayEquals(new double[]{116.397, 39.908}, CoordinateSystem.WGS84.toWgs84(116.397, 39.908));
+    }
+
+    @Test
+    void parse() {
+        assertEquals(CoordinateSystem.WGS84, CoordinateSystem.parse(null));
+        assertEquals(CoordinateSystem.WGS84, CoordinateSystem.parse(" "));
+        assertEquals(CoordinateSystem.WGS84, CoordinateSystem.parse("epsg-4326"));
+        assertEquals(CoordinateSystem.GCJ02, CoordinateSystem.parse("gcj-02"));
+        assertEquals(CoordinateSystem.GCJ02, CoordinateSystem.parse("GCJ_02"));
+        assertEquals(CoordinateSystem.BD09, CoordinateSystem.parse("bd09ll"));
+        assertThrows(IllegalArgumentException.class, () -> CoordinateSystem.parse("utm"));
+    }
+
+    private static double[] wgs84ToGcj02(double lng, double lat) {
+        double x = lng - 105.0, y = lat - 35.0;
+        double dLat = -100.0 + 2.0 * x + 3.0 * y + 0.2 * y * y + 0.1 * x * y + 0.2 * Math.sqrt(Math.abs(x));
+        dLat += (20.0 * Math.sin(6.0 * x * Math.PI) + 20.0 * Math.sin(2.0 * x * Math.PI)) * 2.0 / 3.0;
+        dLat += (20.0 * Math.sin(y * Math.PI) + 40.0 * Math.sin(y / 3.0 * Math.PI)) * 2.0 / 3.0;
+        dLat += (160.0 * Math.sin(y / 12.0 * Math.PI) + 320 * Math.sin(y * Math.PI / 30.0)) * 2.0 / 3.0;
+        double dLng = 300.0 + x + 2.0 * y + 0.1 * x * x + 0.1 * x * y + 0.1 * Math.sqrt(Math.abs(x));
+        dLng += (20.0 * Math.sin(6.0 * x * Math.PI) + 20.0 * Math.sin(2.0 * x * Math.PI)) * 2.0 / 3.0;
+        dLng += (20.0 * Math.sin(x * Math.PI) + 40.0 * Math.sin(x / 3.0 * Math.PI)) * 2.0 / 3.0;
+        dLng += (150.0 * Math.sin(x / 12.0 * Math.PI) + 300.0 * Math.sin(x / 30.0 * Math.PI)) * 2.0 / 3.0;
+        double radLat = lat / 180.0 * Math.PI;
+        double magic = 1 - EE * Math.sin(radLat) * Math.sin(radLat);
+        double sqrtMagic = Math.sqrt(magic);
+        dLat = (dLat * 180.0) / ((A * (1 - EE)) / (magic * sqrtMagic) * Math.PI);
+        dLng = (dLng * 180.0) / (A / sqrtMagic * Math.cos(radLat) * Math.PI);
+        return new double[]{lng + dLng, lat + dLat};
+    }
+
+    private static double[] gcj02ToBd09(double lng, double lat) {
+        double z = Math.sqrt(lng * lng + lat * lat) + 0.00002 * Math.sin(lat * X_PI);
+        double theta = Math.atan2(lat, lng) + 0.000003 * Math.cos(lng * X_PI);
+        return new double[]{z * Math.cos(theta) + 0.0065, z * Math.sin(theta) + 0.006};
+    }
+}
@@ -0,0 +1,108 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description GridIndex 查找结果与 JTS 对照：直接命中的单元内的点必须被该多边形覆盖，空单元内的点不能被任何多边形覆盖
+ * 并行构建与单线程构建的查找表一致；分类器直接用 JTS 实现，只检验网格的细分与查找，GeoIndex 的分类器见 GeoIndexTest
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 10:40
+ */
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GridIndexTest {
+
+    @Test
+    void lookupAgreesWithJts() {
+        Random random = new Random(6);
+        List<Geometry> shapes = new ArrayList<>();
+        shapes.add(TestShapes.star(random, 116.02, 39.02, 0.015, 300, true));
+        shapes.add(TestShapes.multi(random, 116.06, 39.05, 0.01, 120));
+        shapes.add(TestShapes.staircase(random, 116.0, 39.06, 3));
+        // 落在第一个多边形的洞里
+        shapes.add(TestShapes.star(random, 116.02, 39.02, 0.002, 40, false));
+
+        Envelope extent = new Envelope();
+        shapes.forEach(shape -> extent.expandToInclude(shape.getEnvelopeInternal()));
+        GridIndex grid = GridIndex.build(extent, 0.01, 6, cell -> classify(shapes, cell),
+                ForkJoinPool.commonPool());
+
+        Geometry all = TestShapes.FACTORY.buildGeometry(shapes);
+        double[] points = TestShapes.randomPoints(random, all, 50000);
+        int direct = 0;
+        for (int i = 0; i < points.length; i += 2) {
+            double x = points[i], y = points[i + 1];
+            int id = grid.lookup(x, y);
+            if (id >= 0) {
+                direct++;
+                assertTrue(TestShapes.jtsCovers(shapes.get(id), x, y), () -> "(" + x + ", " + y + ")");
+            } else if (id == GridIndex.EMPTY) {
+                for (Geometry shape : shapes) {
+                    assertFalse(TestShapes.jtsCovers(shape, x, y), () -> "(" + x + ", " + y + ")");
+                }
+            }
+        }
+        assertTrue(direct > 0);
+    }
+
+    /**
+     * 各根网格并行构建后合并，合并结果与单线程构建一致；数据范围外的点直接判为 EMPTY
+     */
+    @Test
+    void parallelBuildMatchesSingleThread() throws InterruptedException {
+        Random random = new Random(7);
+        List<Geometry> shapes = new ArrayList<>();
+        for (int i = 0; i < 12; i++) {
+            shapes.add(TestShapes.star(random, 116 + random.nextDouble() * 0.1, 39 + random.nextDouble() * 0.1,
+                    0.01, 20 + random.nextInt(200), random.nextBoolean()));
+        }
+        Envelope extent = new Envelope();
+        shapes.forEach(shape -> extent.expandToInclude(shape.getEnvelopeInternal()));
+        ForkJoinPool single = new ForkJoinPool(1);
+        ForkJoinPool parallel = new ForkJoinPool(4);
+        try {
+            GridIndex expected = GridIndex.build(extent, 0.01, 6, cell -> classify(shapes, cell), single);
+            GridIndex actual = GridIndex.build(extent, 0.01, 6, cell -> classify(shapes, cell), parallel);
+            assertEquals(expected.getStats().get("nodes"), actual.getStats().get("nodes"));
+            for (int i = 0; i < 50000; i++) {
+                double x = extent.getMinX() - 0.01 + random.nextDouble() * (extent.getWidth() + 0.02);
+                double y = extent.getMinY() - 0.01 + random.nextDouble() * (extent.getHeight() + 0.02);
+                int id = actual.lookup(x, y);
+                assertEquals(expected.lookup(x, y), id, "(" + x + ", " + y + ")");
+                if (!extent.contains(x, y)) {
+                    assertEquals(GridIndex.EMPTY, id, "(" + x + ", " + y + ")");
+                }
+            }
+        } finally {
+            single.shutdown();
+            parallel.shutdown();
+            single.awaitTermination(10, TimeUnit.SECONDS);
+            parallel.awaitTermination(10, TimeUnit.SECONDS);
+        }
+    }
+
+    private static int classify(List<Geometry> shapes, Envelope cell) {
+        Geometry cellGeometry = TestShapes.FACTORY.toGeometry(cell);
+        int found = GridIndex.EMPTY;
+        for (int i = 0; i < shapes.size(); i++) {
+            if (shapes.get(i).intersects(cellGeometry)) {
+                if (found != GridIndex.EMPTY) {
+                    return GridIndex.FALLBACK;
+                }
+                found = i;
+            }
+        }
+        return found == GridIndex.EMPTY || shapes.get(found).covers(cellGeometry) ? found : GridIndex.FALLBACK;
+    }
+}
@@ -0,0 +1,56 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description HilbertCurve：每一阶都是格点到 [0, 4^order) 的双射，序号相邻的格点在平面上相邻
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 11:40
+ */
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class HilbertCurveTest {
+
+    @Test
+    void firstOrder() {
+        assertEquals(0, HilbertCurve.index(1, 0, 0));
+        assertEquals(1, HilbertCurve.index(1, 0, 1));
+        assertEquals(2, HilbertCurve.index(1, 1, 1));
+        assertEquals(3, HilbertCurve.index(1, 1, 0));
+    }
+
+    @Test
+    void bijectionAndAdjacency() {
+        for (int order = 1; order <= 7; order++) {
+            int n = 1 << order;
+            int[] xs = new int[n * n];
+            int[] ys = new int[n * n];
+            boolean[] seen = new boolean[n * n];
+            for (int x = 0; x < n; x++) {
+                for (int y = 0; y < n; y++) {
+                    long d = HilbertCurve.index(order, x, y);
+                    assertTrue(d >= 0 && d < (long) n * n, "序号越界: " + d);
+                    assertTrue(!seen[(int) d], "序号重复: " + d);
+                    seen[(int) d] = true;
+                    xs[(int) d] = x;
+                    ys[(int) d] = y;
+                }
+            }
+            for (int d = 1; d < n * n; d++) {
+                int step = Math.abs(xs[d] - xs[d - 1]) + Math.abs(ys[d] - ys[d - 1]);
+                assertEquals(1, step, "order " + order + " 序号 " + d + " 与前一个格点不相邻");
+            }
+        }
+    }
+
+    @Test
+    void highestOrderStaysInRange() {
+        int max = (1 << 30) - 1;
+        assertEquals(0, HilbertCurve.index(30, 0, 0));
+        long corner = HilbertCurve.index(30, max, 0);
+        assertEquals((1L << 60) - 1, corner);
+        assertTrue(HilbertCurve.index(30, max, max) < (1L << 60));
+    }
+}
@@ -0,0 +1,68 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 粗略定位（简化多边形 + 容差带）与原多边形对照：容差带外给出的 INSIDE / OUTSIDE 与 JTS 一致，
+ * 离边界超过两倍容差的点不会落入 UNCERTAIN，顶点一律 UNCERTAIN
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 10:40
+ */
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.operation.distance.DistanceOp;
+
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolygonLocatorCoarseTest {
+
+    private static final double TOLERANCE = 0.00005;
+
+    @Test
+    void coarseLocateAgreesOutsideToleranceBand() {
+        Random random = new Random(4);
+        int uncertain = 0;
+        for (Geometry shape : PolygonLocatorTest.shapes(14)) {
+            PolygonLocator coarse = PolygonLocator.coarse(shape, TOLERANCE);
+            Geometry boundary = shape.getBoundary();
+            double[] random1 = TestShapes.randomPoints(random, shape, 500);
+            double[] band = TestShapes.nearVertices(random, shape, TOLERANCE * 3);
+            for (double[] points : new double[][]{random1, band}) {
+                for (int i = 0; i < points.length; i += 2) {
+                    double x = points[i], y = points[i + 1];
+                    int location = coarse.locate(x, y);
+                    if (location == PolygonLocator.UNCERTAIN) {
+                        uncertain++;
+                        continue;
+                    }
+                    assertEquals(TestShapes.jtsContains(shape, x, y), location == PolygonLocator.INSIDE,
+                            () -> "(" + x + ", " + y + ") " + shape);
+                }
+            }
+            // 离原边界超过两倍容差的点，到简化边界的距离仍大于容差，必须给出确定结果
+            for (int i = 0; i < band.length; i += 2) {
+                double x = band[i], y = band[i + 1];
+                double distance = DistanceOp.distance(boundary,
+                        TestShapes.FACTORY.createPoint(new Coordinate(x, y)));
+                if (distance > TOLERANCE * 2.01) {
+                    assertNotEquals(PolygonLocator.UNCERTAIN, coarse.locate(x, y), () -> "(" + x + ", " + y + ")");
+                }
+            }
+        }
+        assertTrue(uncertain > 0, "容差带内的点应返回 UNCERTAIN");
+    }
+
+    @Test
+    void coarseVerticesAreUncertain() {
+        for (Geometry shape : PolygonLocatorTest.shapes(15)) {
+            PolygonLocator coarse = PolygonLocator.coarse(shape, TOLERANCE);
+            for (Coordinate vertex : shape.getCoordinates()) {
+                assertEquals(PolygonLocator.UNCERTAIN, coarse.locate(vertex.x, vertex.y), () -> vertex + " " + shape);
+            }
+        }
+    }
+}
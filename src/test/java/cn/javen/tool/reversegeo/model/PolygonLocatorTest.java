@@ -0,0 +1,102 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description PolygonLocator 与 JTS 的随机对照：精确版本与 Geometry.contains 完全一致（边界上的点不算包含），
+ * 到边界的最短距离与 GeoDistance 一致
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 10:20
+ */
+
+import org.junit.jupiter.api.Test;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+
+class PolygonLocatorTest {
+
+    static List<Geometry> shapes(long seed) {
+        Random random = new Random(seed);
+        List<Geometry> shapes = new ArrayList<>();
+        for (int i = 0; i < 20; i++) {
+            int n = 8 + random.nextInt(400);
+            double cx = 116 + random.nextDouble(), cy = 39 + random.nextDouble();
+            shapes.add(TestShapes.star(random, cx, cy, 0.01, n, false));
+            shapes.add(TestShapes.star(random, cx, cy, 0.01, n, true));
+            shapes.add(TestShapes.multi(random, cx, cy, 0.01, n));
+            shapes.add(TestShapes.staircase(random, 116, 39, 4 + random.nextInt(60)));
+        }
+        return shapes;
+    }
+
+    @Test
+    void containsMatchesJtsForRandomPoints() {
+        Random random = new Random(1);
+        for (Geometry shape : shapes(11)) {
+            PolygonLocator locator = PolygonLocator.of(shape);
+            double[] points = TestShapes.randomPoints(random, shape, 500);
+            for (int i = 0; i < points.length; i += 2) {
+                double x = points[i], y = points[i + 1];
+                assertEquals(TestShapes.jtsContains(shape, x, y), locator.contains(x, y),
+                        () -> "(" + x + ", " + y + ") " + shape);
+            }
+        }
+    }
+
+    @Test
+    void verticesAreNotContained() {
+        for (Geometry shape : shapes(12)) {
+            PolygonLocator locator = PolygonLocator.of(shape);
+            for (Coordinate vertex : shape.getCoordinates()) {
+                assertFalse(locator.contains(vertex.x, vertex.y), () -> vertex + " " + shape);
+            }
+        }
+    }
+
+    /**
+     * 最短距离按环逐边计算，与 GeoDistance 对几何逐环计算的结果完全相同，环与环之间的断开处不算边
+     */
+    @Test
+    void distanceMatchesGeoDistance() {
+        Random random = new Random(4);
+        for (Geometry shape : shapes(5)) {
+            PolygonLocator locator = PolygonLocator.of(shape);
+            Coordinate centre = shape.getEnvelopeInternal().centre();
+            for (int i = 0; i < 200; i++) {
+                double x = centre.x + (random.nextDouble() - 0.5) * 0.05;
+                double y = centre.y + (random.nextDouble() - 0.5) * 0.05;
+                assertEquals(GeoDistance.toGeometryMeters(shape, x, y), locator.distanceMeters(x, y),
+                        () -> "(" + x + ", " + y + ") " + shape);
+            }
+        }
+    }
+
+    /**
+     * 阶梯多边形的台阶纬度恰好是分带边界，取这些纬度上的点（包括水平边上的点和顶点）与 JTS 对照
+     */
+    @Test
+    void pointsOnBandEdgesMatchJts() {
+        Random random = new Random(3);
+        for (int s = 0; s < 50; s++) {
+            int steps = 4 + random.nextInt(60);
+            Geometry shape = TestShapes.staircase(random, 116, 39, steps);
+            PolygonLocator locator = PolygonLocator.of(shape);
+            for (int k = 0; k <= steps; k++) {
+                double y = 39 + k * TestShapes.STEP;
+                for (int c = -1; c <= 12; c++) {
+                    double x = 116 + c * TestShapes.STEP;
+                    assertEquals(TestShapes.jtsContains(shape, x, y), locator.contains(x, y),
+                            () -> "(" + x + ", " + y + ") " + shape);
+                    double xr = x + random.nextDouble() * TestShapes.STEP;
+                    assertEquals(TestShapes.jtsContains(shape, xr, y), locator.contains(xr, y),
+                            () -> "(" + xr + ", " + y + ") " + shape);
+                }
+            }
+        }
+    }
+}
@@ -0,0 +1,123 @@
+package cn.javen.tool.reversegeo.model;
+
+/**
+ * @Description 测试用的随机多边形：星形多边形（可带洞）、多面，以及顶点全部落在 2 的负幂格点上的阶梯多边形，
+ * 阶梯多边形的顶点纬度与 PolygonLocator 的分带边界重合，坐标可精确表示，边界上的点能精确构造
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 10:00
+ */
+
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.GeometryFactory;
+import org.locationtech.jts.geom.LinearRing;
+import org.locationtech.jts.geom.Polygon;
+import org.locationtech.jts.geom.PrecisionModel;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+public final class TestShapes {
+
+    public static final GeometryFactory FACTORY = new GeometryFactory(new PrecisionModel(), 4326);
+
+    // 阶梯多边形的台阶高度（度），2 的负幂
+    public static final double STEP = 1.0 / 64;
+
+    private TestShapes() {
+    }
+
+    /**
+     * 以 (cx, cy) 为中心的星形环：n 个顶点按角度排列，半径在 [rMin, rMax] 内随机，环不会自交
+     */
+    public static LinearRing starRing(Random random, double cx, double cy, double rMin, double rMax, int n) {
+        Coordinate[] coordinates = new Coordinate[n + 1];
+        for (int i = 0; i < n; i++) {
+            double angle = (i + random.nextDouble() * 0.5) * 2 * Math.PI / n;
+            double r = rMin + random.nextDouble() * (rMax - rMin);
+            coordinates[i] = new Coordinate(cx + r * Math.cos(angle), cy + r * Math.sin(angle));
+        }
+        coordinates[n] = new Coordinate(coordinates[0]);
+        return FACTORY.createLinearRing(coordinates);
+    }
+
+    /**
+     * 星形多边形，withHole 为 true 时中间挖一个星形洞（洞的最大半径小于外环的最小半径）
+     */
+    public static Polygon star(Random random, double cx, double cy, double radius, int n, boolean withHole) {
+        LinearRing shell = starRing(random, cx, cy, radius * 0.6, radius, n);
+        if (!withHole) {
+            return FACTORY.createPolygon(shell);
+        }
+        LinearRing hole = starRing(random, cx, cy, radius * 0.2, radius * 0.4, Math.max(3, n / 2));
+        return FACTORY.createPolygon(shell, new LinearRing[]{hole});
+    }
+
+    /**
+     * 两个互不相交的星形组成的多面，其中一个带洞
+     */
+    public static Geometry multi(Random random, double cx, double cy, double radius, int n) {
+        return FACTORY.createMultiPolygon(new Polygon[]{
+                star(random, cx - radius * 1.5, cy, radius * 0.7, n, true),
+                star(random, cx + radius * 1.5, cy, radius * 0.7, n, false)});
+    }
+
+    /**
+     * 阶梯多边形：从 (x0, y0) 开始 steps 级台阶，每级左右边界随机，顶点坐标都是 STEP 的整数倍
+     * 外环共 4 * steps + 2 条边，PolygonLocator 分为 steps 带，每带高度恰好为 STEP，台阶的纬度都落在分带边界上
+     */
+    public static Polygon staircase(Random random, double x0, double y0, int steps) {
+        List<Coordinate> right = new ArrayList<>();
+        List<Coordinate> left = new ArrayList<>();
+        for (int k = 0; k < steps; k++) {
+            double xl = x0 + random.nextInt(4) * STEP;
+            double xr = x0 + (6 + random.nextInt(4)) * STEP;
+            right.add(new Coordinate(xr, y0 + k * STEP));
+            right.add(new Coordinate(xr, y0 + (k + 1) * STEP));
+            left.add(new Coordinate(xl, y0 + k * STEP));
+            left.add(new Coordinate(xl, y0 + (k + 1) * STEP));
+        }
+        List<Coordinate> ring = new ArrayList<>(right);
+        for (int i = left.size() - 1; i >= 0; i--) {
+            ring.add(left.get(i));
+        }
+        ring.add(new Coordinate(ring.get(0)));
+        return FACTORY.createPolygon(ring.toArray(new Coordinate[0]));
+    }
+
+    /**
+     * 外包矩形外扩 10% 范围内的随机点
+     */
+    public static double[] randomPoints(Random random, Geometry geometry, int count) {
+        var env = geometry.getEnvelopeInternal();
+        double dx = env.getWidth() * 0.1, dy = env.getHeight() * 0.1;
+        double[] points = new double[count * 2];
+        for (int i = 0; i < count; i++) {
+            points[i * 2] = env.getMinX() - dx + random.nextDouble() * (env.getWidth() + 2 * dx);
+            points[i * 2 + 1] = env.getMinY() - dy + random.nextDouble() * (env.getHeight() + 2 * dy);
+        }
+        return points;
+    }
+
+    /**
+     * 各顶点附近 maxOffset 范围内的随机点，用于覆盖容差带
+     */
+    public static double[] nearVertices(Random random, Geometry geometry, double maxOffset) {
+        Coordinate[] vertices = geometry.getCoordinates();
+        double[] points = new double[vertices.length * 2];
+        for (int i = 0; i < vertices.length; i++) {
+            points[i * 2] = vertices[i].x + (random.nextDouble() * 2 - 1) * maxOffset;
+            points[i * 2 + 1] = vertices[i].y + (random.nextDouble() * 2 - 1) * maxOffset;
+        }
+        return points;
+    }
+
+    public static boolean jtsContains(Geometry geometry, double x, double y) {
+        return geometry.contains(FACTORY.createPoint(new Coordinate(x, y)));
+    }
+
+    public static boolean jtsCovers(Geometry geometry, double x, double y) {
+        return geometry.covers(FACTORY.createPoint(new Coordinate(x, y)));
+    }
+}
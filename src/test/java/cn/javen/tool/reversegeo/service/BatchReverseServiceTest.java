@@ -0,0 +1,44 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 批量请求的坐标快速解析：与 Double.parseDouble 结果逐位一致，没有数字的输入返回 NaN
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 14:00
+ */
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class BatchReverseServiceTest {
+
+    @Test
+    void inputsWithoutDigitsAreNaN() {
+        for (String input : new String[]{"-", "+", ".", "-.", "+.", "..", "-e5", "abc"}) {
+            assertTrue(Double.isNaN(parse(input)), input);
+        }
+    }
+
+    @Test
+    void matchesDoubleParseDouble() {
+        for (String input : new String[]{"0", "-0", "0.", ".5", "-.5", "+1.25", "116.397428", "39.90923",
+                "000123.4500", "1e3", "-1.5E-3", "12345678901234567890.5", "0.1234567890123456789"}) {
+            assertEquals(Double.parseDouble(input), parse(input), input);
+        }
+        Random random = new Random(50);
+        for (int i = 0; i < 100000; i++) {
+            String input = String.valueOf(random.nextInt(360) - 180) + "."
+                    + String.format("%09d", random.nextInt(1_000_000_000)).substring(0, 1 + random.nextInt(9));
+            assertEquals(Double.parseDouble(input), parse(input), input);
+        }
+    }
+
+    private static double parse(String input) {
+        byte[] bytes = ("[" + input + "]").getBytes(StandardCharsets.ISO_8859_1);
+        return BatchReverseService.parseDouble(bytes, 1, bytes.length - 1);
+    }
+}
@@ -0,0 +1,201 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description CSV 异步任务的断点续跑：任务在断点之后被杀掉（状态文件停在 RUNNING，输出文件在断点后还有写了一半的行），
+ * 重启恢复后输出与一次跑完的结果逐字节相同，断点之前的输出不重写；输出文件比断点短时从头重跑；
+ * 按文件名提交时不能读取输入目录之外的文件
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 14:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.CsvJob;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class CsvJobServiceTest {
+
+    private static final int ROWS = 3000;
+
+    @TempDir
+    Path dir;
+
+    private GeoProperties properties;
+    private GeoDataLoader loader;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path streets = dir.resolve("streets.csv");
+        try (Writer writer = Files.newBufferedWriter(streets, StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < 20; i++) {
+                Envelope cell = new Envelope(116 + i * 0.01, 116.01 + i * 0.01, 39, 39.01);
+                writer.write("110101000" + String.format("%03d", i) + ",街道" + i + ",4,,\""
+                        + TestShapes.FACTORY.toGeometry(cell).toText() + "\"\n");
+            }
+        }
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        Path input = Files.createDirectories(dir.resolve("input")).resolve("gps.csv");
+        Random random = new Random(60);
+        StringBuilder csv = new StringBuilder();
+        for (int i = 0; i < ROWS; i++) {
+            // 约一成的点在所有街道之外
+            csv.append(i).append(",0,").append(116 + random.nextDouble() * 0.22).append(',')
+                    .append(39 + random.nextDouble() * 0.011).append('\n');
+        }
+        Files.writeString(input, csv);
+
+        properties = new GeoProperties();
+        properties.setStreetsCsv(streets.toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        properties.getServing().setThreads(2);
+        properties.getCsv().setBatchSize(64);
+        properties.getJobs().setDir(dir.resolve("jobs").toString());
+        properties.getJobs().setInputDir(dir.resolve("input").toString());
+        properties.getJobs().setCheckpointRows(256);
+        loader = new GeoDataLoader(properties);
+    }
+
+    @Test
+    void resumeAfterKillMatchesUninterruptedRun() throws Exception {
+        CsvJobService first = service();
+        CsvJob job = await(first, first.submit("gps.csv", CoordinateSystem.WGS84).getId());
+        byte[] expected = Files.readAllBytes(Path.of(job.getOutput()));
+        first.shutdown();
+
+        // 断点在第 1024 行，之后的行写了一部分，最后一行只写了一半
+        long checkpointRows = 1024;
+        int checkpointBytes = offsetOfLine(expected, checkpointRows);
+        int partial = offsetOfLine(expected, checkpointRows + 100) + 7;
+        byte[] crashed = Arrays.copyOf(expected, partial + 5);
+        Arrays.fill(crashed, partial, crashed.length, (byte) '#');
+        kill(job, checkpointRows, checkpointBytes, crashed);
+
+        CsvJobService second = service();
+        second.recover();
+        CsvJob resumed = await(second, job.getId());
+        assertEquals(ROWS, resumed.getRowsDone());
+        assertArrayEquals(expected, Files.readAllBytes(Path.of(resumed.getOutput())));
+        second.shutdown();
+    }
+
+    /**
+     * 断点之前的输出不重写：在断点前做个记号，恢复后记号仍在，其余字节与一次跑完的结果相同
+     */
+    @Test
+    void resumeKeepsOutputBeforeCheckpoint() throws Exception {
+        CsvJobService first = service();
+        CsvJob job = await(first, first.submit("gps.csv", CoordinateSystem.WGS84).getId());
+        byte[] expected = Files.readAllBytes(Path.of(job.getOutput()));
+        first.shutdown();
+
+        long checkpointRows = 512;
+        int checkpointBytes = offsetOfLine(expected, checkpointRows);
+        byte[] marked = expected.clone();
+        marked[checkpointBytes - 2] = '~';
+        kill(job, checkpointRows, checkpointBytes, Arrays.copyOf(marked, checkpointBytes + 3));
+
+        CsvJobService second = service();
+        second.recover();
+        CsvJob resumed = await(second, job.getId());
+        assertArrayEquals(marked, Files.readAllBytes(Path.of(resumed.getOutput())));
+        second.shutdown();
+    }
+
+    @Test
+    void outputShorterThanCheckpointRestartsFromZero() throws Exception {
+        CsvJobService first = service();
+        CsvJob job = await(first, first.submit("gps.csv", CoordinateSystem.WGS84).getId());
+        byte[] expected = Files.readAllBytes(Path.of(job.getOutput()));
+        first.shutdown();
+
+        long checkpointRows = 2048;
+        int checkpointBytes = offsetOfLine(expected, checkpointRows);
+        kill(job, checkpointRows, checkpointBytes, Arrays.copyOf(expected, checkpointBytes / 2));
+
+        CsvJobService second = service();
+        second.recover();
+        CsvJob resumed = await(second, job.getId());
+        assertArrayEquals(expected, Files.readAllBytes(Path.of(resumed.getOutput())));
+        second.shutdown();
+    }
+
+    @Test
+    void namesOutsideInputDirAreRejected() throws IOException {
+        Files.writeString(dir.resolve("secret.csv"), "1,0,116.005,39.005\n");
+        CsvJobService service = service();
+        for (String name : new String[]{"../secret.csv", dir.resolve("secret.csv").toString(), "..", ""}) {
+            assertThrows(IllegalArgumentException.class, () -> service.submit(name, CoordinateSystem.WGS84), name);
+        }
+        assertTrue(service.list().isEmpty());
+        service.shutdown();
+    }
+
+    private CsvJobService service() {
+        GeocodeExecutor executor = new GeocodeExecutor(properties);
+        return new CsvJobService(new CsvReverseService(loader, properties, GeoMetrics.noop(), executor), executor,
+                properties);
+    }
+
+    /**
+     * 把已完成任务的状态改回被杀掉时的样子：状态 RUNNING，断点停在 checkpointRows，输出文件为 output
+     */
+    private static void kill(CsvJob job, long checkpointRows, long checkpointBytes, byte[] output) throws IOException {
+        Path file = Path.of(job.getOutput()).resolveSibling("job.properties");
+        CsvJob state = CsvJob.load(file);
+        state.setStatus(CsvJob.Status.RUNNING);
+        state.setCheckpointRows(checkpointRows);
+        state.setCheckpointBytes(checkpointBytes);
+        state.setRowsDone(checkpointRows + 100);
+        state.setFinishedAt(0);
+        state.save(file);
+        Files.write(Path.of(job.getOutput()), output);
+    }
+
+    private static CsvJob await(CsvJobService service, String id) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (System.currentTimeMillis() < deadline) {
+            CsvJob job = service.get(id);
+            if (job.getStatus() == CsvJob.Status.SUCCEEDED) {
+                return job;
+            }
+            assertTrue(job.getStatus() != CsvJob.Status.FAILED, job.getError());
+            Thread.sleep(20);
+        }
+        throw new AssertionError("任务未在 30 秒内完成: " + id);
+    }
+
+    /**
+     * 第 line 行（从 0 开始）的起始字节
+     */
+    private static int offsetOfLine(byte[] bytes, long line) {
+        int offset = 0;
+        for (long n = 0; n < line; n++) {
+            while (bytes[offset] != '\n') {
+                offset++;
+            }
+            offset++;
+        }
+        return offset;
+    }
+}
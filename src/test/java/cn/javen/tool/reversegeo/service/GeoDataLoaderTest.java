@@ -0,0 +1,124 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 热加载：新索引构建完成后整体替换，替换前取出的旧索引继续按旧数据回答；
+ * 加载失败（行政区划文件缺失）时保留旧索引并记录错误，下一次成功加载后清除错误
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 16:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNotSame;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoDataLoaderTest {
+
+    @TempDir
+    Path dir;
+
+    private Path csv;
+    private GeoProperties properties;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        csv = dir.resolve("streets.csv");
+        writeCsv(10, "旧");
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        properties = new GeoProperties();
+        properties.setStreetsCsv(csv.toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+    }
+
+    @Test
+    void reloadSwapsIndexAndOldIndexKeepsAnswering() throws IOException {
+        GeoDataLoader loader = new GeoDataLoader(properties);
+        GeoIndex old = loader.getIndex();
+        assertEquals("街道3旧", loader.reverseGeocode(116.035, 39.005).getName());
+        assertNull(loader.reverseGeocode(116.155, 39.005));
+
+        writeCsv(20, "新");
+        assertTrue(loader.reload());
+        GeoIndex next = loader.getIndex();
+        assertNotSame(old, next);
+        assertTrue(next.getGeneration() > old.getGeneration());
+        assertEquals("街道3新", loader.reverseGeocode(116.035, 39.005).getName());
+        assertEquals("街道15新", loader.reverseGeocode(116.155, 39.005).getName());
+        assertEquals(20, loader.getStreets().size());
+
+        // 替换前取出索引的查询不受影响
+        assertEquals("街道3旧", old.reverseGeocode(116.035, 39.005).getName());
+        assertNull(old.reverseGeocode(116.155, 39.005));
+        assertEquals(10, old.getStreets().size());
+        loader.shutdown();
+    }
+
+    @Test
+    void failedReloadKeepsOldIndex() throws IOException {
+        GeoDataLoader loader = new GeoDataLoader(properties);
+        GeoIndex old = loader.getIndex();
+
+        writeCsv(20, "新");
+        Files.delete(dir.resolve("province.txt"));
+        assertFalse(loader.reload());
+        assertSame(old, loader.getIndex());
+        assertEquals("街道3旧", loader.reverseGeocode(116.035, 39.005).getName());
+        assertNotNull(loader.getReloadStatus().get("lastReloadError"));
+
+        Files.writeString(dir.resolve("province.txt"), "");
+        assertTrue(loader.reload());
+        assertEquals("街道3新", loader.reverseGeocode(116.035, 39.005).getName());
+        assertNull(loader.getReloadStatus().get("lastReloadError"));
+        loader.shutdown();
+    }
+
+    @Test
+    void reloadAsyncPublishesInBackground() throws Exception {
+        GeoDataLoader loader = new GeoDataLoader(properties);
+        GeoIndex old = loader.getIndex();
+        writeCsv(20, "新");
+        assertTrue(loader.reloadAsync());
+        long deadline = System.currentTimeMillis() + 30_000;
+        while (loader.getIndex() == old && System.currentTimeMillis() < deadline) {
+            Thread.sleep(20);
+        }
+        Street street = loader.reverseGeocode(116.155, 39.005);
+        assertNotNull(street);
+        assertEquals("街道15新", street.getName());
+        loader.shutdown();
+    }
+
+    /**
+     * count 个相邻的 0.01 度方块街道，名称带 suffix
+     */
+    private void writeCsv(int count, String suffix) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < count; i++) {
+                Envelope cell = new Envelope(116 + i * 0.01, 116.01 + i * 0.01, 39, 39.01);
+                writer.write("110101000" + String.format("%03d", i) + ",街道" + i + suffix + ",4,,\""
+                        + TestShapes.FACTORY.toGeometry(cell).toText() + "\"\n");
+            }
+        }
+    }
+}
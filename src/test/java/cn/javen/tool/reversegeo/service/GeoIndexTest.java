@@ -0,0 +1,177 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description GeoIndex 与 JTS 的随机对照：网格查找表、简化多边形容差带、原始坐标点面判断组合后，
+ * reverseGeocode 的结果必须与逐个街道做 Geometry.contains 完全一致；网格分类给出的街道必须覆盖整个单元
+ * 街道包括带洞的多边形、洞里的街道、多面，以及共用边的阶梯多边形；多边形重叠处取下标最小的街道
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 11:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.GridIndex;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+import org.locationtech.jts.geom.Polygon;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeoIndexTest {
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void reverseGeocodeMatchesJtsWithGridAndSimplify() throws IOException {
+        GeoIndex index = build(true, true);
+        assertTrue(index.getStreets().stream().anyMatch(s -> s.getCoarseLocator() != null), "应构建简化多边形");
+        assertMatchesJts(index);
+    }
+
+    @Test
+    void reverseGeocodeMatchesJtsWithoutGridAndSimplify() throws IOException {
+        assertMatchesJts(build(false, false));
+    }
+
+    @Test
+    void overlappingStreetsResolveToLowestIndex() throws IOException {
+        // 相互重叠的星形：重叠处必须取下标最小的街道，与 STRtree 的分片和遍历顺序无关
+        Random random = new Random(23);
+        List<Geometry> shapes = new ArrayList<>();
+        for (int i = 0; i < 8; i++) {
+            shapes.add(TestShapes.star(random, 116.02 + (i % 4) * 0.006, 39.02 + (i / 4) * 0.006, 0.008,
+                    60 + random.nextInt(200), i % 3 == 0));
+        }
+        assertMatchesJts(build(shapes, true, true));
+        assertMatchesJts(build(shapes, false, false));
+    }
+
+    @Test
+    void classifiedCellsAreCoveredByTheirStreet() throws IOException {
+        GeoIndex index = build(true, true);
+        Random random = new Random(21);
+        Envelope extent = extent(index);
+        int uniform = 0;
+        for (int i = 0; i < 5000; i++) {
+            double size = 0.0005 + random.nextDouble() * 0.004;
+            double x = extent.getMinX() + random.nextDouble() * extent.getWidth();
+            double y = extent.getMinY() + random.nextDouble() * extent.getHeight();
+            Envelope cell = new Envelope(x, x + size, y, y + size);
+            Geometry cellGeometry = TestShapes.FACTORY.toGeometry(cell);
+            int id = index.classify(cell);
+            if (id >= 0) {
+                uniform++;
+                assertTrue(index.getStreets().get(id).getPolygon().covers(cellGeometry), cell::toString);
+            } else if (id == GridIndex.EMPTY) {
+                for (Street street : index.getStreets()) {
+                    assertFalse(street.getPolygon().intersects(cellGeometry), cell::toString);
+                }
+            }
+        }
+        assertTrue(uniform > 0);
+    }
+
+    private void assertMatchesJts(GeoIndex index) {
+        Random random = new Random(22);
+        List<double[]> batches = new ArrayList<>();
+        Geometry all = TestShapes.FACTORY.buildGeometry(index.getStreets().stream().map(Street::getPolygon).toList());
+        batches.add(TestShapes.randomPoints(random, all, 30000));
+        for (Street street : index.getStreets()) {
+            // 容差带内外的点，以及顶点本身
+            batches.add(TestShapes.nearVertices(random, street.getPolygon(), 0.0002));
+            batches.add(vertices(street.getPolygon()));
+        }
+        for (double[] points : batches) {
+            for (int i = 0; i < points.length; i += 2) {
+                double x = points[i], y = points[i + 1];
+                Street expected = null;
+                for (Street street : index.getStreets()) {
+                    if (TestShapes.jtsContains(street.getPolygon(), x, y)) {
+                        expected = street;
+                        break;
+                    }
+                }
+                assertSame(expected, index.reverseGeocode(x, y), () -> "(" + x + ", " + y + ")");
+                for (Street street : index.getStreets()) {
+                    assertEquals(TestShapes.jtsContains(street.getPolygon(), x, y), index.contains(street, x, y),
+                            () -> street.getStreetId() + " (" + x + ", " + y + ")");
+                }
+            }
+        }
+    }
+
+    private GeoIndex build(boolean grid, boolean simplify) throws IOException {
+        Random random = new Random(20);
+        List<Geometry> shapes = new ArrayList<>();
+        Polygon withHole = TestShapes.star(random, 116.02, 39.02, 0.015, 300, true);
+        shapes.add(withHole);
+        // 洞里的街道
+        shapes.add(TestShapes.star(random, 116.02, 39.02, 0.002, 250, false));
+        shapes.add(TestShapes.multi(random, 116.06, 39.05, 0.01, 220));
+        // 两个共用竖直边的矩形
+        double s = TestShapes.STEP;
+        shapes.add(TestShapes.FACTORY.toGeometry(new Envelope(116, 116 + s, 39.0625, 39.0625 + s)));
+        shapes.add(TestShapes.FACTORY.toGeometry(new Envelope(116 + s, 116 + 2 * s, 39.0625, 39.0625 + s)));
+        return build(shapes, grid, simplify);
+    }
+
+    private GeoIndex build(List<Geometry> shapes, boolean grid, boolean simplify) throws IOException {
+        Path csv = dir.resolve("streets.csv");
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < shapes.size(); i++) {
+                writer.write("11010100000" + i + ",街道" + i + ",4,,\"" + shapes.get(i).toText() + "\"\n");
+            }
+        }
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(csv.toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        properties.getGrid().setEnabled(grid);
+        properties.getGrid().setRootSize(0.01);
+        properties.getSimplify().setEnabled(simplify);
+        properties.getSimplify().setMinVertices(100);
+        GeoIndexBuilder builder = new GeoIndexBuilder(properties, TestShapes.FACTORY);
+        GeoIndex index = builder.build();
+        assertEquals(List.of(), builder.getFailures());
+        assertEquals(shapes.size(), index.getStreets().size());
+        return index;
+    }
+
+    private static Envelope extent(GeoIndex index) {
+        Envelope extent = new Envelope();
+        index.getStreets().forEach(street -> extent.expandToInclude(street.getPolygon().getEnvelopeInternal()));
+        return extent;
+    }
+
+    private static double[] vertices(Geometry geometry) {
+        Coordinate[] coordinates = geometry.getCoordinates();
+        double[] points = new double[coordinates.length * 2];
+        for (int i = 0; i < coordinates.length; i++) {
+            points[i * 2] = coordinates[i].x;
+            points[i * 2 + 1] = coordinates[i].y;
+        }
+        return points;
+    }
+}
@@ -0,0 +1,130 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 准入控制：名额用完时 admitBatch / admitSingle 立即拒绝（接口返回 429），归还名额后可再次申请；
+ * 配置了等待时间时等到名额归还为止；后台任务的 awaitBatch 排队等待而不是拒绝；上限为 0 时不限
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 17:30
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import org.junit.jupiter.api.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class GeocodeExecutorTest {
+
+    @Test
+    void batchRejectedWhenPermitsExhausted() {
+        GeocodeExecutor executor = executor(2, 0, 0);
+        GeocodeExecutor.Admission first = executor.admitBatch();
+        GeocodeExecutor.Admission second = executor.admitBatch();
+        assertThrows(RejectedExecutionException.class, executor::admitBatch);
+        first.close();
+        executor.admitBatch().close();
+        second.close();
+        executor.shutdown();
+    }
+
+    @Test
+    void singleRejectedWhenPermitsExhausted() {
+        GeocodeExecutor executor = executor(0, 3, 0);
+        GeocodeExecutor.Admission held = executor.admitSingle();
+        executor.admitSingle();
+        executor.admitSingle();
+        assertThrows(RejectedExecutionException.class, executor::admitSingle);
+        // 批量请求不限，不受单点名额影响
+        for (int i = 0; i < 100; i++) {
+            executor.admitBatch();
+        }
+        held.close();
+        executor.admitSingle().close();
+        executor.shutdown();
+    }
+
+    @Test
+    void admissionTimeoutWaitsForRelease() throws InterruptedException {
+        GeocodeExecutor executor = executor(1, 0, 5_000);
+        GeocodeExecutor.Admission held = executor.admitBatch();
+        Thread releaser = new Thread(() -> {
+            sleep(100);
+            held.close();
+        });
+        releaser.start();
+        long start = System.nanoTime();
+        executor.admitBatch().close();
+        assertTrue(System.nanoTime() - start >= TimeUnit.MILLISECONDS.toNanos(50));
+        releaser.join();
+
+        GeocodeExecutor impatient = executor(1, 0, 50);
+        impatient.admitBatch();
+        assertThrows(RejectedExecutionException.class, impatient::admitBatch);
+        executor.shutdown();
+        impatient.shutdown();
+    }
+
+    @Test
+    @SuppressWarnings("try")
+    void awaitBatchBlocksInsteadOfRejecting() throws InterruptedException {
+        GeocodeExecutor executor = executor(1, 0, 0);
+        GeocodeExecutor.Admission held = executor.admitBatch();
+        CountDownLatch admitted = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try (GeocodeExecutor.Admission ignored = executor.awaitBatch()) {
+                admitted.countDown();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        });
+        waiter.start();
+        assertFalse(admitted.await(200, TimeUnit.MILLISECONDS));
+        held.close();
+        assertTrue(admitted.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        // 后台任务归还名额后，接口请求可以再次申请
+        executor.admitBatch().close();
+        executor.shutdown();
+    }
+
+    @Test
+    void awaitBatchIsInterruptible() throws InterruptedException {
+        GeocodeExecutor executor = executor(1, 0, 0);
+        executor.admitBatch();
+        Thread.currentThread().interrupt();
+        assertThrows(InterruptedException.class, executor::awaitBatch);
+        assertFalse(Thread.currentThread().isInterrupted());
+        executor.shutdown();
+    }
+
+    @Test
+    void chunksPerRequestFollowsThreads() {
+        GeocodeExecutor executor = executor(1, 0, 0);
+        assertEquals(3, executor.getThreads());
+        assertEquals(6, executor.getChunksPerRequest());
+        executor.shutdown();
+    }
+
+    private static GeocodeExecutor executor(int maxBatches, int maxInFlight, long timeoutMillis) {
+        GeoProperties properties = new GeoProperties();
+        properties.getServing().setThreads(3);
+        properties.getServing().setMaxConcurrentBatches(maxBatches);
+        properties.getServing().setMaxInFlight(maxInFlight);
+        properties.getServing().setAdmissionTimeoutMillis(timeoutMillis);
+        return new GeocodeExecutor(properties);
+    }
+
+    private static void sleep(long millis) {
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
@@ -0,0 +1,143 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 区域查询分页：任意页大小逐页取完的结果与一次取完相同，按街道下标排序且与 JTS 求交一致；
+ * 数据重新加载后旧游标被拒绝，格式错误的游标被拒绝
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 18:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.CoordinateSystem;
+import cn.javen.tool.reversegeo.model.RegionStreet;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class RegionQueryServiceTest {
+
+    // 30 x 30 个星形街道，间距 0.01 度
+    private static final int SIDE = 30;
+    private static final String DIAMOND =
+            "POLYGON ((116.02 39.15, 116.15 39.02, 116.28 39.15, 116.15 39.28, 116.02 39.15))";
+
+    @TempDir
+    Path dir;
+
+    private GeoProperties properties;
+    private GeoDataLoader loader;
+    private RegionQueryService service;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        writeCsv(62);
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        properties = new GeoProperties();
+        properties.setStreetsCsv(dir.resolve("streets.csv").toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        properties.getServing().setThreads(2);
+        // 小块让一页的判断分成多块并行
+        properties.getRegion().setChunkSize(8);
+        properties.getRegion().setMaxPageSize(SIDE * SIDE);
+        loader = new GeoDataLoader(properties);
+        service = new RegionQueryService(loader, properties, new GeocodeExecutor(properties));
+    }
+
+    @Test
+    void pagesConcatenateToFullResult() {
+        Geometry region = service.parse(DIAMOND, CoordinateSystem.WGS84);
+        RegionQueryService.Page all = service.streets(region, true, null, SIDE * SIDE);
+        assertNull(all.next());
+
+        // 与 JTS 逐个求交对照，按街道下标升序
+        List<String> expected = new ArrayList<>();
+        for (Street street : loader.getIndex().getStreets()) {
+            if (region.intersects(street.getPolygon())) {
+                expected.add(street.getStreetId());
+            }
+        }
+        assertTrue(expected.size() > 100);
+        assertEquals(expected, ids(all.streets()));
+        assertTrue(all.candidates() >= expected.size());
+
+        for (int size : new int[]{1, 7, 50, 1000}) {
+            List<RegionStreet> paged = new ArrayList<>();
+            String cursor = null;
+            do {
+                RegionQueryService.Page page = service.streets(region, true, cursor, size);
+                assertTrue(page.streets().size() <= size);
+                assertEquals(all.candidates(), page.candidates());
+                paged.addAll(page.streets());
+                cursor = page.next();
+            } while (cursor != null);
+            assertEquals(all.streets(), paged, "size " + size);
+        }
+    }
+
+    @Test
+    void districtsCountEveryHit() {
+        Geometry region = service.parse(DIAMOND, CoordinateSystem.WGS84);
+        int hits = service.streets(region, false, null, SIDE * SIDE).streets().size();
+        assertEquals(hits, service.districts(region, false).stream().mapToInt(d -> d.streets()).sum());
+    }
+
+    @Test
+    void staleCursorIsRejectedAfterReload() throws IOException {
+        Geometry region = service.parse(DIAMOND, CoordinateSystem.WGS84);
+        String cursor = service.streets(region, false, null, 10).next();
+        assertNotNull(cursor);
+        assertEquals(10, service.streets(region, false, cursor, 10).streets().size());
+
+        // 同样的数据重新加载，加载时间可能不变，索引编号一定变化
+        assertTrue(loader.reload());
+        assertThrows(IllegalArgumentException.class, () -> service.streets(region, false, cursor, 10));
+        assertNotNull(service.streets(region, false, null, 10).next());
+    }
+
+    @Test
+    void malformedCursorIsRejected() {
+        Geometry region = service.parse(DIAMOND, CoordinateSystem.WGS84);
+        int generation = loader.getIndex().getGeneration();
+        for (String cursor : new String[]{"abc", "12", ":", generation + ":x", generation + ":-5", "x:1"}) {
+            assertThrows(IllegalArgumentException.class, () -> service.streets(region, false, cursor, 10), cursor);
+        }
+    }
+
+    private static List<String> ids(List<RegionStreet> streets) {
+        return streets.stream().map(RegionStreet::streetid).toList();
+    }
+
+    private void writeCsv(long seed) throws IOException {
+        Random random = new Random(seed);
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("streets.csv"), StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < SIDE * SIDE; i++) {
+                double cx = 116.005 + (i % SIDE) * 0.01, cy = 39.005 + (i / SIDE) * 0.01;
+                writer.write("110101" + String.format("%06d", i) + ",街道" + i + ",4,,\""
+                        + TestShapes.star(random, cx, cy, 0.0045, 8 + random.nextInt(60), false).toText()
+                        + "\"\n");
+            }
+        }
+    }
+}
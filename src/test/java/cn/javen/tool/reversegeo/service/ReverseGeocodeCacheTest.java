@@ -0,0 +1,154 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 量化网格缓存：第一次访问只记待分类，第二次访问才分类，之后街道内部与空白网格直接命中，
+ * 跨边界的网格每次都走精确查询；不能低成本分类的索引跳过缓存；热加载后旧索引的缓存项不再命中并被清空
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 16:30
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class ReverseGeocodeCacheTest {
+
+    // 网格边长 1e-4 度，街道是 0.01 度的方块，x = 116.01 处的网格跨两个街道
+    private static final double GRID = 1e-4;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void secondVisitClassifiesInteriorCell() throws IOException {
+        GeoIndex index = loader(true, "").getIndex();
+        ReverseGeocodeCache cache = new ReverseGeocodeCache(GRID, 1000);
+        Street street = index.reverseGeocode(116.00505, 39.00505);
+
+        assertSame(street, cache.reverseGeocode(index, 116.00505, 39.00505));
+        assertCounts(cache, 0, 0, 1);
+        // 第二次访问：待分类，走精确查询并分类
+        assertSame(street, cache.reverseGeocode(index, 116.00507, 39.00502));
+        assertCounts(cache, 0, 1, 1);
+        // 之后同一网格内的点直接命中
+        assertSame(street, cache.reverseGeocode(index, 116.00501, 39.00509));
+        assertSame(street, cache.reverseGeocode(index, 116.00509, 39.00501));
+        assertCounts(cache, 2, 1, 1);
+    }
+
+    @Test
+    void emptyCellIsHitAfterClassification() throws IOException {
+        GeoIndex index = loader(true, "").getIndex();
+        ReverseGeocodeCache cache = new ReverseGeocodeCache(GRID, 1000);
+        for (int i = 0; i < 3; i++) {
+            assertNull(cache.reverseGeocode(index, 116.50005, 39.00505));
+        }
+        assertCounts(cache, 1, 1, 1);
+    }
+
+    @Test
+    void boundaryCellAlwaysQueriesExactly() throws IOException {
+        GeoIndex index = loader(true, "").getIndex();
+        ReverseGeocodeCache cache = new ReverseGeocodeCache(GRID, 1000);
+        Random random = new Random(70);
+        // x = 116.01 所在的网格压在两个街道的公共边上，网格内的点都必须与精确查询一致
+        double cellMinX = Math.floor(116.01 / GRID) * GRID;
+        for (int i = 0; i < 200; i++) {
+            double x = cellMinX + random.nextDouble() * GRID;
+            double y = 39.005 + random.nextDouble() * GRID;
+            assertSame(index.reverseGeocode(x, y), cache.reverseGeocode(index, x, y), "(" + x + ", " + y + ")");
+        }
+        assertCounts(cache, 0, 199, 1);
+    }
+
+    @Test
+    void indexWithoutPreparedPolygonsBypassesCache() throws IOException {
+        GeoIndex index = loader(false, "").getIndex();
+        assertFalse(index.isCellsClassifiable());
+        ReverseGeocodeCache cache = new ReverseGeocodeCache(GRID, 1000);
+        for (int i = 0; i < 3; i++) {
+            assertSame(index.reverseGeocode(116.00505, 39.00505), cache.reverseGeocode(index, 116.00505, 39.00505));
+        }
+        assertCounts(cache, 0, 0, 0);
+        assertEquals(3L, cache.getStats().get("bypassed"));
+        assertEquals(0L, cache.getStats().get("size"));
+    }
+
+    @Test
+    void reloadDropsCachedResultsOfOldIndex() throws IOException {
+        GeoDataLoader loader = loader(true, "旧");
+        GeoIndex old = loader.getIndex();
+        for (int i = 0; i < 3; i++) {
+            assertEquals("街道0旧", loader.reverseGeocode(116.00505, 39.00505).getName());
+        }
+        assertEquals(1L, loader.getCacheStats().get("hits"));
+        assertTrue((Long) loader.getCacheStats().get("size") > 0);
+
+        writeCsv("新");
+        assertTrue(loader.reload());
+        assertEquals(0L, loader.getCacheStats().get("size"));
+        assertEquals("街道0新", loader.reverseGeocode(116.00505, 39.00505).getName());
+
+        // 不清空缓存时，键中的索引编号也保证旧索引的结果不会被新索引命中
+        ReverseGeocodeCache cache = new ReverseGeocodeCache(GRID, 1000);
+        for (int i = 0; i < 3; i++) {
+            cache.reverseGeocode(old, 116.00505, 39.00505);
+        }
+        assertEquals("街道0新", cache.reverseGeocode(loader.getIndex(), 116.00505, 39.00505).getName());
+        assertEquals("街道0旧", cache.reverseGeocode(old, 116.00505, 39.00505).getName());
+        loader.shutdown();
+    }
+
+    private static void assertCounts(ReverseGeocodeCache cache, long hits, long boundaryHits, long misses) {
+        Map<String, Object> stats = cache.getStats();
+        assertEquals(hits, cache.getHits(), () -> stats.toString());
+        assertEquals(boundaryHits, cache.getBoundaryHits(), () -> stats.toString());
+        assertEquals(misses, cache.getMisses(), () -> stats.toString());
+    }
+
+    private GeoDataLoader loader(boolean prepared, String suffix) throws IOException {
+        writeCsv(suffix);
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(dir.resolve("streets.csv").toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        properties.setPreparedGeometry(prepared);
+        properties.getCache().setEnabled(true);
+        properties.getCache().setGrid(GRID);
+        return new GeoDataLoader(properties);
+    }
+
+    /**
+     * 10 个相邻的 0.01 度方块街道
+     */
+    private void writeCsv(String suffix) throws IOException {
+        try (Writer writer = Files.newBufferedWriter(dir.resolve("streets.csv"), StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < 10; i++) {
+                Envelope cell = new Envelope(116 + i * 0.01, 116.01 + i * 0.01, 39, 39.01);
+                writer.write("110101000" + String.format("%03d", i) + ",街道" + i + suffix + ",4,,\""
+                        + TestShapes.FACTORY.toGeometry(cell).toText() + "\"\n");
+            }
+        }
+    }
+}
@@ -0,0 +1,165 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 按省分片：打开时只读外包范围，查询命中的省才加载，路由结果与全量索引一致（包括两省交界）；
+ * 超出驻留上限时卸载最久未访问的分片，空闲分片按时间卸载，卸载后再次查询重新加载
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 17:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import cn.javen.tool.reversegeo.storage.StreetSnapshot;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+class ShardedGeoIndexTest {
+
+    // 每省一行 5 个 0.01 度方块：11 与 12 相邻（交界处路由需要细分），13 远离其他省
+    private static final String[] PROVINCES = {"11", "12", "13"};
+    private static final double[] ORIGINS = {116.0, 116.05, 117.0};
+
+    @TempDir
+    Path dir;
+
+    private GeoProperties properties;
+    private GeoIndex full;
+
+    @BeforeEach
+    void setUp() throws IOException {
+        Path shardDir = Files.createDirectories(dir.resolve("shards"));
+        List<Street> all = new ArrayList<>();
+        for (int p = 0; p < PROVINCES.length; p++) {
+            List<Street> streets = new ArrayList<>();
+            for (int i = 0; i < 5; i++) {
+                Street street = new Street();
+                street.setStreetId(PROVINCES[p] + "01010000" + String.format("%02d", i));
+                street.setName("街道" + PROVINCES[p] + "-" + i);
+                street.setLevel("4");
+                street.setPolygon(TestShapes.FACTORY.toGeometry(
+                        new Envelope(ORIGINS[p] + i * 0.01, ORIGINS[p] + (i + 1) * 0.01, 39, 39.01)));
+                streets.add(street);
+            }
+            StreetSnapshot.write(streets, shardDir.resolve(PROVINCES[p] + ".snap"), StreetSnapshot.DEFAULT_SCALE);
+            all.addAll(streets);
+        }
+        Path snapshot = dir.resolve("streets.snap");
+        StreetSnapshot.write(all, snapshot, StreetSnapshot.DEFAULT_SCALE);
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        properties = new GeoProperties();
+        properties.setSnapshot(snapshot.toString());
+        properties.setStreetsCsv(dir.resolve("missing.csv").toString());
+        properties.setAdminDir(dir.toString());
+        full = new GeoDataLoader(properties).getIndex();
+        properties.getShard().setEnabled(true);
+        properties.getShard().setDir(shardDir.toString());
+        properties.getShard().setRouteRootSize(0.1);
+    }
+
+    @Test
+    void loadsOnlyQueriedProvinceAndMatchesFullIndex() throws IOException {
+        ShardedGeoIndex sharded = open();
+        assertEquals(15, sharded.getCatalog().size());
+        assertEquals(List.of(), loaded(sharded));
+
+        assertEquals("120101000002", sharded.reverseGeocode(116.075, 39.005, null).getStreetId());
+        assertEquals(List.of("12"), loaded(sharded));
+        // 范围外的点不加载任何分片
+        assertNull(sharded.reverseGeocode(116.5, 39.005, null));
+        assertNull(sharded.reverseGeocode(116.075, 39.5, null));
+        assertEquals(List.of("12"), loaded(sharded));
+
+        Random random = new Random(80);
+        for (int i = 0; i < 20000; i++) {
+            double x = 115.99 + random.nextDouble() * 1.07;
+            double y = 38.995 + random.nextDouble() * 0.02;
+            if (i % 2 == 0) {
+                // 一半的点集中在 11、12 两省交界附近
+                x = 116.05 + (random.nextDouble() - 0.5) * 0.002;
+            }
+            Street expected = full.reverseGeocode(x, y);
+            Street actual = sharded.reverseGeocode(x, y, null);
+            assertEquals(expected == null ? null : expected.getStreetId(),
+                    actual == null ? null : actual.getStreetId(), "(" + x + ", " + y + ")");
+        }
+        assertEquals(List.of("11", "12", "13"), loaded(sharded));
+        assertEquals(15, sharded.getLoadedStreets().size());
+    }
+
+    @Test
+    void maxLoadedEvictsLeastRecentlyUsed() throws IOException {
+        properties.getShard().setMaxLoaded(2);
+        ShardedGeoIndex sharded = open();
+        sharded.reverseGeocode(116.005, 39.005, null);
+        sharded.reverseGeocode(117.005, 39.005, null);
+        // 再访问 11，13 变为最久未访问
+        sharded.reverseGeocode(116.015, 39.005, null);
+        assertEquals(List.of("11", "13"), loaded(sharded));
+
+        assertNotNull(sharded.reverseGeocode(116.075, 39.005, null));
+        assertEquals(List.of("11", "12"), loaded(sharded));
+        assertEquals(1, detail(sharded, "13").get("evictions"));
+
+        // 被卸载的分片再次查询时重新加载
+        assertEquals("130101000001", sharded.reverseGeocode(117.015, 39.005, null).getStreetId());
+        assertEquals(2, detail(sharded, "13").get("loads"));
+        assertEquals(2, loaded(sharded).size());
+    }
+
+    @Test
+    void evictIdleUnloadsOnlyIdleShards() throws IOException, InterruptedException {
+        ShardedGeoIndex sharded = open();
+        sharded.reverseGeocode(116.005, 39.005, null);
+        sharded.reverseGeocode(117.005, 39.005, null);
+        assertEquals(0, sharded.evictIdle(60_000));
+        assertEquals(List.of("11", "13"), loaded(sharded));
+
+        Thread.sleep(300);
+        sharded.reverseGeocode(117.005, 39.005, null);
+        assertEquals(1, sharded.evictIdle(150));
+        assertEquals(List.of("13"), loaded(sharded));
+
+        assertEquals("110101000000", sharded.reverseGeocode(116.005, 39.005, null).getStreetId());
+        assertEquals(2, detail(sharded, "11").get("loads"));
+    }
+
+    private ShardedGeoIndex open() throws IOException {
+        return ShardedGeoIndex.open(properties, TestShapes.FACTORY, GeoMetrics.noop());
+    }
+
+    private static List<String> loaded(ShardedGeoIndex sharded) {
+        List<String> codes = new ArrayList<>();
+        for (Map<String, Object> item : details(sharded)) {
+            if ((Boolean) item.get("loaded")) {
+                codes.add((String) item.get("province"));
+            }
+        }
+        return codes;
+    }
+
+    private static Map<String, Object> detail(ShardedGeoIndex sharded, String code) {
+        return details(sharded).stream().filter(item -> code.equals(item.get("province"))).findFirst().orElseThrow();
+    }
+
+    @SuppressWarnings("unchecked")
+    private static List<Map<String, Object>> details(ShardedGeoIndex sharded) {
+        return (List<Map<String, Object>>) sharded.getStats().get("detail");
+    }
+}
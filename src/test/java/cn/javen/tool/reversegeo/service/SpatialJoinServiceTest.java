@@ -0,0 +1,109 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description 空间连接与逐点查询对照：按 Hilbert 曲线排序、分 tile 并行连接后，每个点的结果与 GeoIndex.reverseGeocode 相同，
+ * 多边形重叠时也一致；NaN 与范围外的点为 null；文件名不能指向数据目录之外
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 15:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class SpatialJoinServiceTest {
+
+    // 10 x 10 个星形街道，间距 0.01 度
+    private static final int SIDE = 10;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void joinMatchesReverseGeocode() throws IOException {
+        assertJoinMatches(loader(0.0045));
+    }
+
+    @Test
+    void joinMatchesReverseGeocodeWhereStreetsOverlap() throws IOException {
+        // 半径超过间距，每个街道与周围街道重叠，重叠处两边都取下标最小的街道
+        assertJoinMatches(loader(0.012));
+    }
+
+    private void assertJoinMatches(GeoDataLoader loader) {
+        GeoIndex index = loader.getIndex();
+        Random random = new Random(61);
+        int points = 20000;
+        double[] coords = new double[points * 2];
+        for (int i = 0; i < points; i++) {
+            coords[i * 2] = 115.99 + random.nextDouble() * (SIDE * 0.01 + 0.02);
+            coords[i * 2 + 1] = 38.99 + random.nextDouble() * (SIDE * 0.01 + 0.02);
+        }
+        coords[0] = Double.NaN;
+        coords[3] = Double.NaN;
+        double[] original = coords.clone();
+        for (int tilePoints : new int[]{32, 100, 4096}) {
+            Street[] streets = service(loader, tilePoints).join(coords, points);
+            for (int i = 0; i < points; i++) {
+                double x = coords[i * 2], y = coords[i * 2 + 1];
+                Street expected = Double.isNaN(x) || Double.isNaN(y) ? null : index.reverseGeocode(x, y);
+                assertSame(expected, streets[i], "tilePoints " + tilePoints + " (" + x + ", " + y + ")");
+            }
+        }
+        // join 不修改输入坐标
+        assertArrayEquals(original, coords);
+        loader.shutdown();
+    }
+
+    @Test
+    void namesOutsideDataDirAreRejected() throws IOException {
+        SpatialJoinService service = service(loader(0.0045), 2048);
+        for (String name : new String[]{"../streets.csv", dir.resolve("streets.csv").toString(), "..", ""}) {
+            assertThrows(IllegalArgumentException.class, () -> service.resolve(name), name);
+        }
+    }
+
+    private SpatialJoinService service(GeoDataLoader loader, int tilePoints) {
+        GeoProperties properties = new GeoProperties();
+        properties.getServing().setThreads(2);
+        properties.getJoin().setDir(dir.resolve("join").toString());
+        properties.getJoin().setTilePoints(tilePoints);
+        return new SpatialJoinService(loader, properties, GeoMetrics.noop(), new StreetDictionary(loader),
+                new GeocodeExecutor(properties));
+    }
+
+    private GeoDataLoader loader(double radius) throws IOException {
+        Path streets = dir.resolve("streets.csv");
+        Random random = new Random(60);
+        try (Writer writer = Files.newBufferedWriter(streets, StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (int i = 0; i < SIDE * SIDE; i++) {
+                double cx = 116.005 + (i % SIDE) * 0.01, cy = 39.005 + (i / SIDE) * 0.01;
+                writer.write("110101" + String.format("%06d", i) + ",街道" + i + ",4,,\""
+                        + TestShapes.star(random, cx, cy, radius, 8 + random.nextInt(200), i % 3 == 0).toText()
+                        + "\"\n");
+            }
+        }
+        for (String name : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(dir.resolve(name), "");
+        }
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(streets.toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(dir.toString());
+        return new GeoDataLoader(properties);
+    }
+}
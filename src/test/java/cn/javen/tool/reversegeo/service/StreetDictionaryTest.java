@@ -0,0 +1,121 @@
+package cn.javen.tool.reversegeo.service;
+
+/**
+ * @Description StreetDictionary 的确定性：同样的街道数据无论 CSV 行序如何，生成的字典逐字节相同、标识相同，
+ * 街道按编码排序编号；数据变化后热加载，字典标识随之变化
+ * @Author: Javen
+ * @CreateTime: 2025/11/18 10:00
+ */
+
+import cn.javen.tool.reversegeo.config.GeoProperties;
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Envelope;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class StreetDictionaryTest {
+
+    private static final int STREETS = 40;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void sameDataGivesSameDictionary() throws IOException {
+        StreetDictionary first = new StreetDictionary(loader("a", 1, ""));
+        StreetDictionary second = new StreetDictionary(loader("b", 2, ""));
+        assertEquals(first.getId(), second.getId());
+        assertEquals(STREETS, first.size());
+        assertArrayEquals(dictionary(first, 0), dictionary(second, 0));
+        assertArrayEquals(dictionary(first, 7), dictionary(second, 7));
+    }
+
+    @Test
+    void codesFollowSortedStreetIds() throws IOException {
+        GeoDataLoader loader = loader("a", 3, "");
+        StreetDictionary dictionary = new StreetDictionary(loader);
+        List<Street> streets = new ArrayList<>(loader.getStreets());
+        Collections.shuffle(streets, new Random(4));
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        StreetDictionary.Encoder encoder = dictionary.encoder(out);
+        for (Street street : streets) {
+            encoder.writeRecord(street);
+        }
+        encoder.flush();
+        byte[] bytes = out.toByteArray();
+        // 编号小于 63，每条记录一个字节：(编号 + 1) << 1
+        assertEquals(streets.size(), bytes.length);
+        for (int i = 0; i < streets.size(); i++) {
+            int code = Integer.parseInt(streets.get(i).getStreetId().substring(9));
+            assertEquals((code + 1) << 1, bytes[i]);
+        }
+    }
+
+    @Test
+    void reloadWithChangedDataChangesId() throws IOException {
+        GeoDataLoader loader = loader("a", 5, "");
+        StreetDictionary dictionary = new StreetDictionary(loader);
+        long before = dictionary.getId();
+        assertTrue(loader.reload());
+        assertEquals(before, dictionary.getId());
+        writeCsv(dir.resolve("a").resolve("streets.csv"), 6, "新");
+        assertTrue(loader.reload());
+        assertNotEquals(before, dictionary.getId());
+    }
+
+    private static byte[] dictionary(StreetDictionary dictionary, int from) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        dictionary.writeDictionary(out, from);
+        return out.toByteArray();
+    }
+
+    private GeoDataLoader loader(String name, long seed, String suffix) throws IOException {
+        Path data = Files.createDirectories(dir.resolve(name));
+        Path csv = data.resolve("streets.csv");
+        writeCsv(csv, seed, suffix);
+        for (String file : new String[]{"province.txt", "city.txt", "district.txt"}) {
+            Files.writeString(data.resolve(file), "");
+        }
+        GeoProperties properties = new GeoProperties();
+        properties.setStreetsCsv(csv.toString());
+        properties.setSnapshot("");
+        properties.setAdminDir(data.toString());
+        return new GeoDataLoader(properties);
+    }
+
+    /**
+     * 一行一个小方块街道，行序按 seed 打乱
+     */
+    private static void writeCsv(Path csv, long seed, String suffix) throws IOException {
+        List<String> rows = new ArrayList<>();
+        for (int i = 0; i < STREETS; i++) {
+            Envelope cell = new Envelope(116 + i * 0.01, 116.009 + i * 0.01, 39, 39.009);
+            rows.add("110101000" + String.format("%03d", i) + ",街道" + i + suffix + ",4,,\""
+                    + TestShapes.FACTORY.toGeometry(cell).toText() + "\"\n");
+        }
+        Collections.shuffle(rows, new Random(seed));
+        try (Writer writer = Files.newBufferedWriter(csv, StandardCharsets.UTF_8)) {
+            writer.write("streetid,name,level,center,polygon\n");
+            for (String row : rows) {
+                writer.write(row);
+            }
+        }
+    }
+}
@@ -0,0 +1,73 @@
+package cn.javen.tool.reversegeo.storage;
+
+/**
+ * @Description 多边形存储与快照读回的多边形对照：顶点数、几何与点面判断一致；截断或不是存储格式的文件在打开时抛出 IOException
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 12:10
+ */
+
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+class PolygonStoreTest {
+
+    private static final double SCALE = StreetSnapshot.DEFAULT_SCALE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void polygonStoreMatchesSnapshotGeometry() throws IOException {
+        Path snapshot = dir.resolve("streets.snap");
+        Path rings = dir.resolve("streets.rings");
+        StreetSnapshot.write(StreetSnapshotTest.streets(), snapshot, SCALE);
+        List<Street> read = StreetSnapshot.read(snapshot, TestShapes.FACTORY);
+        PolygonStore.write(read, rings);
+        PolygonStore store = PolygonStore.open(rings);
+        assertEquals(read.size(), store.size());
+
+        Random random = new Random(41);
+        for (int i = 0; i < read.size(); i++) {
+            Geometry polygon = read.get(i).getPolygon();
+            if (polygon == null) {
+                continue;
+            }
+            assertEquals(polygon.getNumPoints(), store.pointCount(i));
+            assertTrue(polygon.equalsTopo(store.toGeometry(i, TestShapes.FACTORY)));
+            double[] points = TestShapes.randomPoints(random, polygon, 2000);
+            for (int k = 0; k < points.length; k += 2) {
+                assertEquals(TestShapes.jtsContains(polygon, points[k], points[k + 1]),
+                        store.contains(i, points[k], points[k + 1]));
+            }
+        }
+    }
+
+    @Test
+    void truncatedFilesAreRejected() throws IOException {
+        Path rings = dir.resolve("streets.rings");
+        PolygonStore.write(StreetSnapshotTest.streets(), rings);
+        byte[] bytes = Files.readAllBytes(rings);
+        Path truncated = dir.resolve("truncated.rings");
+        for (int length = 0; length < bytes.length; length += Math.max(1, bytes.length / 200)) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> PolygonStore.open(truncated), "长度 " + length);
+        }
+        Path snapshot = dir.resolve("streets.snap");
+        StreetSnapshot.write(StreetSnapshotTest.streets(), snapshot, SCALE);
+        assertThrows(IOException.class, () -> PolygonStore.open(snapshot));
+    }
+}
@@ -0,0 +1,139 @@
+package cn.javen.tool.reversegeo.storage;
+
+/**
+ * @Description 快照与多边形存储的往返：属性原样读回，坐标误差不超过半个定点化单位，外包矩形与几何一致；
+ * 街道按写入顺序读回；截断的文件在加载时抛出 IOException
+ * @Author: Javen
+ * @CreateTime: 2025/11/17 11:50
+ */
+
+import cn.javen.tool.reversegeo.model.Street;
+import cn.javen.tool.reversegeo.model.TestShapes;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+import org.locationtech.jts.geom.Coordinate;
+import org.locationtech.jts.geom.Envelope;
+import org.locationtech.jts.geom.Geometry;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.function.Function;
+import java.util.stream.Collectors;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+class StreetSnapshotTest {
+
+    private static final double SCALE = StreetSnapshot.DEFAULT_SCALE;
+
+    @TempDir
+    Path dir;
+
+    @Test
+    void roundTrip() throws IOException {
+        List<Street> streets = streets();
+        Path path = dir.resolve("streets.snap");
+        StreetSnapshot.write(streets, path, SCALE);
+        List<Street> read = StreetSnapshot.read(path, TestShapes.FACTORY);
+        assertEquals(streets.size(), read.size());
+
+        Map<String, Street> byId = read.stream().collect(Collectors.toMap(Street::getStreetId, Function.identity()));
+        Envelope extent = new Envelope();
+        for (Street expected : streets) {
+            Street actual = byId.get(expected.getStreetId());
+            assertNotNull(actual, expected.getStreetId());
+            assertEquals(expected.getName(), actual.getName());
+            assertEquals(expected.getLevel(), actual.getLevel());
+            if (expected.getCenter() == null) {
+                assertNull(actual.getCenter());
+            } else {
+                assertEquals(expected.getCenter().getX(), actual.getCenter().getX());
+                assertEquals(expected.getCenter().getY(), actual.getCenter().getY());
+            }
+            if (expected.getPolygon() == null) {
+                assertNull(actual.getPolygon());
+                continue;
+            }
+            Geometry a = expected.getPolygon(), b = actual.getPolygon();
+            assertEquals(a.getGeometryType(), b.getGeometryType());
+            assertEquals(a.getNumGeometries(), b.getNumGeometries());
+            Coordinate[] ca = a.getCoordinates(), cb = b.getCoordinates();
+            assertEquals(ca.length, cb.length);
+            for (int i = 0; i < ca.length; i++) {
+                assertEquals(ca[i].x, cb[i].x, 0.5 / SCALE + 1e-12);
+                assertEquals(ca[i].y, cb[i].y, 0.5 / SCALE + 1e-12);
+            }
+            assertEquals(b.getEnvelopeInternal(), actual.getEnvelope());
+            extent.expandToInclude(actual.getEnvelope());
+        }
+        assertEquals(extent, StreetSnapshot.readExtent(path));
+        assertEquals(streets.stream().filter(s -> s.getPolygon() != null).count(),
+                StreetSnapshot.readEnvelopes(path).size());
+    }
+
+    @Test
+    void readKeepsWriteOrder() throws IOException {
+        List<Street> streets = streets();
+        Collections.shuffle(streets, new Random(42));
+        Path path = dir.resolve("streets.snap");
+        StreetSnapshot.write(streets, path, SCALE);
+        List<Street> read = StreetSnapshot.read(path, TestShapes.FACTORY, false);
+        assertEquals(streets.stream().map(Street::getStreetId).toList(),
+                read.stream().map(Street::getStreetId).toList());
+    }
+
+    @Test
+    void withoutGeometryDecode() throws IOException {
+        Path path = dir.resolve("streets.snap");
+        StreetSnapshot.write(streets(), path, SCALE);
+        for (Street street : StreetSnapshot.read(path, TestShapes.FACTORY, false)) {
+            assertNull(street.getPolygon());
+        }
+    }
+
+    @Test
+    void truncatedFilesAreRejected() throws IOException {
+        Path path = dir.resolve("streets.snap");
+        StreetSnapshot.write(streets(), path, SCALE);
+        byte[] bytes = Files.readAllBytes(path);
+        Path truncated = dir.resolve("truncated.snap");
+        for (int length = 0; length < bytes.length; length += Math.max(1, bytes.length / 200)) {
+            Files.write(truncated, Arrays.copyOf(bytes, length));
+            assertThrows(IOException.class, () -> StreetSnapshot.read(truncated, TestShapes.FACTORY),
+                    "长度 " + length);
+        }
+    }
+
+    static List<Street> streets() {
+        Random random = new Random(40);
+        List<Street> streets = new ArrayList<>();
+        for (int i = 0; i < 30; i++) {
+            Street street = new Street();
+            street.setStreetId("1101010000" + String.format("%02d", i));
+            street.setName("街道" + i);
+            street.setLevel(i % 5 == 0 ? "" : "4");
+            double cx = 116 + random.nextDouble(), cy = 39 + random.nextDouble();
+            if (i % 3 != 2) {
+                street.setCenter(TestShapes.FACTORY.createPoint(new Coordinate(cx, cy)));
+            }
+            street.setPolygon(switch (i % 4) {
+                case 0 -> TestShapes.star(random, cx, cy, 0.01, 10 + random.nextInt(300), true);
+                case 1 -> TestShapes.multi(random, cx, cy, 0.01, 10 + random.nextInt(100));
+                case 2 -> TestShapes.star(random, cx, cy, 0.01, 10 + random.nextInt(300), false);
+                default -> null;
+            });
+            streets.add(street);
+        }
+        return streets;
+    }
+}